@@ -130,6 +130,48 @@ urlProcessors.push(function(url, deps){
 // require.combo needs to be defined before this code is loaded
 combo.done = function(load, config, opt_deps) {
 	var hasArg = "", base64,
+	    getMids = function(opt_deps) {
+			var mids = [], i, dep;
+			for (i = 0; !!(dep = opt_deps[i]); i++) {
+				mids[i] = dep.prefix ? (dep.prefix + "!" + dep.name) : dep.name;
+			}
+			return mids;
+	    },
+	    getUrl = function(opt_deps) {
+			var i, url = contextPath || "";
+			url = addModulesToUrl(url, ["modules", "moduleIds"], opt_deps, moduleIdMap, base64 ? base64.encode : null);
+			url = addModulesToUrl(url, ["exEnc", "exIds"], excludes || [], moduleIdMap,  base64 ? base64.encode : null);
+			url += (hasArg ? '&' + hasArg : "");
+
+			// Allow any externally provided URL processors to make their contribution
+			// to the URL
+			for (i = 0; i < urlProcessors.length; i++) {
+				url = urlProcessors[i](url, opt_deps);
+			}
+			return url;
+	    },
+	    // Requests the layers for the specified module lists using a single multi-layer
+	    // request.  Returns false if the server doesn't support multi-layer requests or
+	    // if the combined request URL would be too long.
+	    sendMultiLayerRequest = function(load, config, layers) {
+			if (!combo.serverOptions || !combo.serverOptions.multiLayer) {
+				return false;
+			}
+			var mids = [], url = (contextPath || "") + "?parts=" + layers.length, i, layerUrl;
+			for (i = 0; i < layers.length; i++) {
+				layerUrl = getUrl(layers[i]);
+				url += "&p" + i + "=" + encodeURIComponent(layerUrl.substring(layerUrl.indexOf("?") + 1));
+				mids = mids.concat(getMids(layers[i]));
+			}
+			if (maxUrlLength && url.length > maxUrlLength) {
+				return false;
+			}
+			if (config.has("dojo-trace-api")) {
+				config.trace("loader-inject-combo", [mids.join(', ')]);
+			}
+			load(mids, url);
+			return true;
+	    },
 	    sendRequest = function(load, config, opt_deps) {
 			var mids = [], i, dep;
 			opt_deps = opt_deps || deps;
@@ -142,29 +184,20 @@ combo.done = function(load, config, opt_deps) {
 					(combo.isI18nResource(dep) ? i18nModules : nonI18nModules).push(dep);
 				}
 				if (i18nModules.length && nonI18nModules.length) {
-					// Mixed request.  Separate into i18n and non-i18n requests
+					// Mixed request.  Separate into i18n and non-i18n layers, requested
+					// together if the server supports it, or separately if not.
 					deps = [];
 					depmap = {};
-					sendRequest(load, config, nonI18nModules);
-					sendRequest(load, config, i18nModules);
+					if (!sendMultiLayerRequest(load, config, [nonI18nModules, i18nModules])) {
+						sendRequest(load, config, nonI18nModules);
+						sendRequest(load, config, i18nModules);
+					}
 					return;
 				}
 			}
 
-			for (i = 0, dep; !!(dep = opt_deps[i]); i++) {
-				mids[i] = dep.prefix ? (dep.prefix + "!" + dep.name) : dep.name;
-			}
-
-			var url = contextPath || "";
-			url = addModulesToUrl(url, ["modules", "moduleIds"], opt_deps, moduleIdMap, base64 ? base64.encode : null);
-			url = addModulesToUrl(url, ["exEnc", "exIds"], excludes || [], moduleIdMap,  base64 ? base64.encode : null);
-			url += (hasArg ? '&' + hasArg : "");
-
-			// Allow any externally provided URL processors to make their contribution
-			// to the URL
-			for (i = 0; i < urlProcessors.length; i++) {
-				url = urlProcessors[i](url, opt_deps);
-			}
+			mids = getMids(opt_deps);
+			var url = getUrl(opt_deps);
 
 			if (config.has("dojo-trace-api")) {
 				config.trace("loader-inject-combo", [mids.join(', ')]);
@@ -0,0 +1,34 @@
+/*
+ * (C) Copyright IBM Corp. 2012, 2016 All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ibm.jaggr.core;
+
+/**
+ * Interface implemented by aggregator components, extensions and caches that
+ * collect runtime statistics which should be included in the output of the
+ * aggregator's request statistics console command.
+ */
+public interface IStatisticsProvider {
+
+	/**
+	 * Returns the current statistics for this component, formatted for
+	 * display. Multi-line statistics are separated by the platform line
+	 * separator.
+	 *
+	 * @return the statistics, or the empty string if there are none to report
+	 */
+	public String getStatistics();
+}
@@ -92,6 +92,41 @@ public class InitParams implements Iterable<InitParam>{
 	 */
 	public static final String MAXLAYERCACHECAPACITY_MB_INITPARAM = "maxlayercachecapacity_mb"; //$NON-NLS-1$
 
+	/**
+	 * Name of the servlet init-param that specifies the maximum number of
+	 * layers (distinct combinations of requested modules) held by the layer
+	 * cache.
+	 */
+	public static final String MAXLAYERCACHEENTRIES_INITPARAM = "maxlayercacheentries"; //$NON-NLS-1$
+
+	/**
+	 * Name of the servlet init-param that specifies the maximum capacity of
+	 * the gzip cache in megabytes.
+	 */
+	public static final String MAXGZIPCACHECAPACITY_MB_INITPARAM = "maxgzipcachecapacity_mb"; //$NON-NLS-1$
+
+	/**
+	 * Name of the servlet init-param that specifies the maximum capacity of
+	 * each resource converter cache in megabytes.
+	 */
+	public static final String MAXCONVERTERCACHECAPACITY_MB_INITPARAM = "maxconvertercachecapacity_mb"; //$NON-NLS-1$
+
+	/**
+	 * Name of the servlet init-param that specifies the maximum number of
+	 * simplified has! plugin formulas held by the formula cache.  The formula
+	 * cache is shared by all the aggregators in the process, so it is sized
+	 * for the largest value specified by any of them.
+	 */
+	public static final String MAXFORMULACACHEENTRIES_INITPARAM = "maxformulacacheentries"; //$NON-NLS-1$
+
+	/**
+	 * Name of the servlet init-param that specifies the number of threads
+	 * used to process layer requests asynchronously when the
+	 * {@link com.ibm.jaggr.core.options.IOptions#ENABLE_ASYNC_REQUESTS} option
+	 * is enabled.
+	 */
+	public static final String REQUESTPOOLSIZE_INITPARAM = "requestpoolsize"; //$NON-NLS-1$
+
 	/**
 	 * Name of the servlet init-param that specifies aggregator aliases within the servlet
 	 */
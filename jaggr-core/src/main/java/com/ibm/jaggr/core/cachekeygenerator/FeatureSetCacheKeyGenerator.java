@@ -21,15 +21,13 @@ import com.ibm.jaggr.core.config.IConfig;
 import com.ibm.jaggr.core.transport.IHttpTransport;
 import com.ibm.jaggr.core.util.Features;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
-import java.util.SortedMap;
 import java.util.SortedSet;
-import java.util.TreeMap;
 import java.util.TreeSet;
 
 import javax.servlet.http.HttpServletRequest;
@@ -48,6 +46,12 @@ public final class FeatureSetCacheKeyGenerator extends AbstractCollectionCacheKe
 	 */
 	private final Set<String> depFeatures;
 
+	/**
+	 * The features this key generator depends on, in sorted order. Computed
+	 * on demand since this field is not serialized.
+	 */
+	private transient volatile String[] sortedDepFeatures;
+
 	/**
 	 * true if this cache key generator is provisional.
 	 */
@@ -87,40 +91,53 @@ public final class FeatureSetCacheKeyGenerator extends AbstractCollectionCacheKe
 		IAggregator aggr = (IAggregator) request
 				.getAttribute(IAggregator.AGGREGATOR_REQATTRNAME);
 		IConfig config = aggr.getConfig();
-		// First, create a sorted map from the provided feature map and then
-		// trim unused features.  We use a sorted map to ensure consistency
-		// in the order that the feature names appear within the key.
-		SortedMap<String, Boolean> map = new TreeMap<String, Boolean>();
-		for (String featureName : features.featureNames()) {
-			map.put(featureName, features.isFeature(featureName));
-		}
-
-		if (depFeatures != null) {
-			// If features we depend that are not specified in the request should
-			// be regarded as being false, then add them to the request feature map.
-			if (config.isCoerceUndefinedToFalse()) {
-				for (String s : depFeatures) {
-					if (!map.keySet().contains(s)) {
-						map.put(s, false);
-					}
+		StringBuffer sb = new StringBuffer(eyecatcher).append("{"); //$NON-NLS-1$
+		int start = sb.length();
+		// Feature names are added in sorted order to ensure consistency in the
+		// order that the feature names appear within the key.  The request
+		// features are sorted only once per request (see
+		// Features#sortedFeatureNames()) and the dependent features are sorted
+		// only once per key generator, so no intermediate collections are
+		// needed to build the key.
+		if (depFeatures == null) {
+			for (String featureName : features.sortedFeatureNames()) {
+				appendFeature(sb, start, featureName, features.isFeature(featureName));
+			}
+		} else {
+			// If features we depend on that are not specified in the request should
+			// be regarded as being false, then include them in the key.
+			boolean coerceUndefinedToFalse = config.isCoerceUndefinedToFalse();
+			for (String featureName : getSortedDepFeatures()) {
+				if (features.contains(featureName)) {
+					appendFeature(sb, start, featureName, features.isFeature(featureName));
+				} else if (coerceUndefinedToFalse) {
+					appendFeature(sb, start, featureName, false);
 				}
 			}
+		}
+		return sb.append("}").toString(); //$NON-NLS-1$
+	}
 
-			// Remove from the map all the features that this generator doesn't
-			// depend on.
-			map.keySet().retainAll(depFeatures);
+	private void appendFeature(StringBuffer sb, int start, String featureName, boolean value) {
+		// Note: the separator test is intentionally the same as in previous versions
+		// so that keys for existing cache entries are unchanged.
+		if (sb.length() - start > 1) {
+			sb.append(","); //$NON-NLS-1$
 		}
-		StringBuffer sb = new StringBuffer();
-		// Now build the key from the defined pruned feature set.
-		for (Map.Entry<String, Boolean> entry : map.entrySet()) {
-			if (sb.length() > 1) {
-				sb.append(","); //$NON-NLS-1$
-			}
-			sb.append(entry.getValue() ? "" : "!"); //$NON-NLS-1$ //$NON-NLS-2$
-			sb.append(entry.getKey());
+		if (!value) {
+			sb.append("!"); //$NON-NLS-1$
 		}
-		sb.insert(0, eyecatcher + "{").append("}").toString(); //$NON-NLS-1$ //$NON-NLS-2$
-		return sb.toString();
+		sb.append(featureName);
+	}
+
+	private String[] getSortedDepFeatures() {
+		String[] result = sortedDepFeatures;
+		if (result == null) {
+			result = depFeatures.toArray(new String[depFeatures.size()]);
+			Arrays.sort(result);
+			sortedDepFeatures = result;
+		}
+		return result;
 	}
 
 	/* (non-Javadoc)
@@ -56,14 +56,23 @@ public class KeyGenUtil {
 	 * @return The aggregated cache key
 	 */
 	static public String generateKey(HttpServletRequest request, Iterable<ICacheKeyGenerator> keyGens) {
-		StringBuffer sb = new StringBuffer();
+		// Avoid copying the key when only one generator contributes to it
+		String first = null;
+		StringBuffer sb = null;
 		for (ICacheKeyGenerator keyGen : keyGens) {
 			String key = keyGen.generateKey(request);
 			if (key != null && key.length() > 0) {
-				sb.append(sb.length() > 0 ? ";" : "").append(key); //$NON-NLS-1$ //$NON-NLS-2$
+				if (first == null) {
+					first = key;
+				} else {
+					if (sb == null) {
+						sb = new StringBuffer(first);
+					}
+					sb.append(";").append(key); //$NON-NLS-1$
+				}
 			}
 		}
-		return sb.toString();
+		return sb != null ? sb.toString() : (first != null ? first : ""); //$NON-NLS-1$
 	}
 
 	/**
@@ -33,7 +33,8 @@ public class ServerExpandLayersCacheKeyGenerator extends AbstractCacheKeyGenerat
 	 */
 	@Override
 	public String generateKey(HttpServletRequest request) {
-		return eyecatcher + ":" + (RequestUtil.isServerExpandedLayers(request) ? "1" : "0"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		// constant expressions, so no string concatenation at runtime
+		return RequestUtil.isServerExpandedLayers(request) ? eyecatcher + ":1" : eyecatcher + ":0"; //$NON-NLS-1$ //$NON-NLS-2$
 	}
 
 	/* (non-Javadoc)
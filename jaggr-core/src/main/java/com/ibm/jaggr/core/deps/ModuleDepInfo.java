@@ -158,7 +158,20 @@ public class ModuleDepInfo implements Serializable {
 	 * @return The list of has! plugin prefixes for this module.
 	 */
 	public Collection<String> getHasPluginPrefixes() {
-		return getHasPluginPrefixes(null);
+		return getHasPluginPrefixes(false);
+	}
+
+	/**
+	 * Provided for backwards compatibility
+	 *
+	 * @param formulaCache
+	 *          not used
+	 *
+	 * @return The list of has! plugin prefixes for this module.
+	 * @deprecated use {@link #getHasPluginPrefixes(boolean)} instead
+	 */
+	public Collection<String> getHasPluginPrefixes(Map<?, ?> formulaCache) {
+		return getHasPluginPrefixes(false);
 	}
 
 	/**
@@ -173,13 +186,14 @@ public class ModuleDepInfo implements Serializable {
 	 * {@link TreeSet} is used to obtain predictable ordering of terms in compound has conditionals,
 	 * mostly for unit tests.
 	 *
-	 * @param formulaCache
-	 *          the formula cache
+	 * @param bddSimplification
+	 *          true if the formula should be simplified using binary decision
+	 *          diagrams (see {@link BooleanFormula#simplify(boolean)})
 	 *
 	 * @return The list of has! plugin prefixes for this module.
 	 */
-	public Collection<String> getHasPluginPrefixes(Map<?, ?> formulaCache) {
-		formula = formula.simplify(formulaCache);
+	public Collection<String> getHasPluginPrefixes(boolean bddSimplification) {
+		formula = formula.simplify(bddSimplification);
 		if (formula.isTrue()) {
 			return null;
 		}
@@ -404,14 +418,27 @@ public class ModuleDepInfo implements Serializable {
 	}
 
 	/**
-	 * Simplifies the boolean formula
+	 * Provided for backwards compatibility
 	 *
 	 * @param formulaCache
-	 *          the formula cache
+	 *          not used
 	 * @return this object
+	 * @deprecated use {@link #simplify(boolean)} instead
 	 */
 	public ModuleDepInfo simplify(Map<?, ?> formulaCache) {
-		formula = formula.simplify(formulaCache);
+		return simplify(false);
+	}
+
+	/**
+	 * Simplifies the boolean formula
+	 *
+	 * @param bddSimplification
+	 *          true if the formula should be simplified using binary decision
+	 *          diagrams (see {@link BooleanFormula#simplify(boolean)})
+	 * @return this object
+	 */
+	public ModuleDepInfo simplify(boolean bddSimplification) {
+		formula = formula.simplify(bddSimplification);
 		return this;
 	}
 
@@ -175,7 +175,20 @@ public class ModuleDeps extends LinkedHashMap<String, ModuleDepInfo> implements
 	 * @return The set of module ids
 	 */
 	public Set<String> getModuleIds() {
-		return getModuleIds(null);
+		return getModuleIds(false);
+	}
+
+	/**
+	 * Provided for backwards compatibility
+	 *
+	 * @param formulaCache
+	 *          not used
+	 *
+	 * @return The set of module ids
+	 * @deprecated use {@link #getModuleIds(boolean)} instead
+	 */
+	public Set<String> getModuleIds(Map<?, ?> formulaCache) {
+		return getModuleIds(false);
 	}
 
 	/**
@@ -184,15 +197,16 @@ public class ModuleDeps extends LinkedHashMap<String, ModuleDepInfo> implements
 	 * one map entry may result in multiple (or zero) result entries depending on the evaluation of
 	 * the boolean formula which represents the has conditionals.
 	 *
-	 * @param formulaCache
-	 *          the formula cache or null
+	 * @param bddSimplification
+	 *          true if the has conditionals should be simplified using binary
+	 *          decision diagrams (see {@link ModuleDepInfo#simplify(boolean)})
 	 *
 	 * @return The set of module ids
 	 */
-	public Set<String> getModuleIds(Map<?, ?> formulaCache) {
+	public Set<String> getModuleIds(boolean bddSimplification) {
 		Set<String> result = new LinkedHashSet<String>();
 		for (Map.Entry<String, ModuleDepInfo> entry : entrySet()) {
-			Collection<String> prefixes = entry.getValue().getHasPluginPrefixes(formulaCache);
+			Collection<String> prefixes = entry.getValue().getHasPluginPrefixes(bddSimplification);
 			if (prefixes == null) {
 				result.add(entry.getKey());
 			} else {
@@ -259,15 +273,28 @@ public class ModuleDeps extends LinkedHashMap<String, ModuleDepInfo> implements
 	}
 
 	/**
-	 * Simplifies the boolean formulas for each contained {@link ModuleDepInfo}
+	 * Provided for backwards compatibility
 	 *
 	 * @param formulaCache
-	 *          the formula cache
+	 *          not used
 	 * @return this object
+	 * @deprecated use {@link #simplify(boolean)} instead
 	 */
 	public ModuleDeps simplify(Map<?, ?> formulaCache) {
+		return simplify(false);
+	}
+
+	/**
+	 * Simplifies the boolean formulas for each contained {@link ModuleDepInfo}
+	 *
+	 * @param bddSimplification
+	 *          true if the formulas should be simplified using binary decision
+	 *          diagrams (see {@link ModuleDepInfo#simplify(boolean)})
+	 * @return this object
+	 */
+	public ModuleDeps simplify(boolean bddSimplification) {
 		for (ModuleDepInfo info : values()) {
-			info.simplify(formulaCache);
+			info.simplify(bddSimplification);
 		}
 		return this;
 	}
@@ -28,6 +28,7 @@ import com.ibm.jaggr.core.IServiceProviderExtensionPoint;
 import com.ibm.jaggr.core.IServiceReference;
 import com.ibm.jaggr.core.IServiceRegistration;
 import com.ibm.jaggr.core.IShutdownListener;
+import com.ibm.jaggr.core.IStatisticsProvider;
 import com.ibm.jaggr.core.IVariableResolver;
 import com.ibm.jaggr.core.InitParams;
 import com.ibm.jaggr.core.NotFoundException;
@@ -43,12 +44,17 @@ import com.ibm.jaggr.core.impl.cache.CacheManagerImpl;
 import com.ibm.jaggr.core.impl.cache.GzipCacheImpl;
 import com.ibm.jaggr.core.impl.config.ConfigImpl;
 import com.ibm.jaggr.core.impl.deps.DependenciesImpl;
+import com.ibm.jaggr.core.impl.layer.FrontDoorCache;
 import com.ibm.jaggr.core.impl.layer.LayerImpl;
+import com.ibm.jaggr.core.impl.layer.LayerPartRequest;
+import com.ibm.jaggr.core.impl.layer.LayerPartResponse;
+import com.ibm.jaggr.core.impl.layer.LayerPrefetcher;
 import com.ibm.jaggr.core.impl.module.ModuleImpl;
 import com.ibm.jaggr.core.impl.resource.NotFoundResource;
 import com.ibm.jaggr.core.layer.ILayer;
 import com.ibm.jaggr.core.layer.ILayerCache;
 import com.ibm.jaggr.core.layer.ILayerListener;
+import com.ibm.jaggr.core.layer.ILayerPrefetchHandler;
 import com.ibm.jaggr.core.module.IModule;
 import com.ibm.jaggr.core.module.IModuleCache;
 import com.ibm.jaggr.core.modulebuilder.IModuleBuilder;
@@ -65,6 +71,8 @@ import com.ibm.jaggr.core.util.CopyUtil;
 import com.ibm.jaggr.core.util.RequestUtil;
 import com.ibm.jaggr.core.util.SequenceNumberProvider;
 import com.ibm.jaggr.core.util.StringUtil;
+import com.ibm.jaggr.core.util.TypeUtil;
+import com.ibm.jaggr.core.util.rhino.RhinoEngine;
 
 import com.google.common.net.HttpHeaders;
 
@@ -85,6 +93,7 @@ import java.io.ObjectOutputStream;
 import java.io.OutputStream;
 import java.io.StringReader;
 import java.io.UnsupportedEncodingException;
+import java.io.Writer;
 import java.net.FileNameMap;
 import java.net.URI;
 import java.net.URISyntaxException;
@@ -99,6 +108,7 @@ import java.util.Dictionary;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Hashtable;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -107,16 +117,27 @@ import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
 
 import javax.activation.MimetypesFileTypeMap;
+import javax.servlet.AsyncContext;
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletContext;
 import javax.servlet.ServletException;
+import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -166,6 +187,51 @@ public abstract class AbstractAggregatorImpl extends HttpServlet implements IAgg
 	protected InitParams initParams = null;
 	protected MimetypesFileTypeMap fileTypeMap = null;
 	protected FileNameMap fileNameMap = null;
+	protected final FrontDoorCache frontDoorCache = new FrontDoorCache();
+	protected final LayerPrefetcher layerPrefetcher = new LayerPrefetcher();
+
+	private static final String LAYER_PREFETCH_THREADNAME = "{0} Layer Prefetch Thread - {1}"; //$NON-NLS-1$
+
+	/**
+	 * Runs the speculative layer builds started by
+	 * {@link #predictFollowupRequests(HttpServletRequest, HttpServletResponse)}.
+	 * Has one thread for each prefetch permit, so prefetches never queue and
+	 * never occupy the build executor threads that they wait on.  Threads are
+	 * created on first use.
+	 */
+	private final ExecutorService prefetchExecutor = Executors.newFixedThreadPool(
+			layerPrefetcher.getMaxConcurrentPrefetches(), new ThreadFactory() {
+				private final AtomicInteger threadCount = new AtomicInteger();
+				@Override
+				public Thread newThread(Runnable r) {
+					return new Thread(r,
+							MessageFormat.format(LAYER_PREFETCH_THREADNAME,
+									new Object[]{getName(), threadCount.incrementAndGet()}
+							)
+					);
+				}
+			});
+
+	/**
+	 * The maximum number of layers of multi-layer requests that may be built
+	 * concurrently on request executor threads. Kept well below the default
+	 * request pool size so that multi-layer requests can't tie up the threads
+	 * needed by asynchronous requests. Layers that can't be given a thread
+	 * are built on the thread processing the multi-layer request.
+	 */
+	protected static final int MAX_CONCURRENT_LAYER_PARTS = 4;
+
+	private final Semaphore layerPartPermits = new Semaphore(MAX_CONCURRENT_LAYER_PARTS);
+
+	/**
+	 * The default number of threads used to process asynchronous layer
+	 * requests (see {@link InitParams#REQUESTPOOLSIZE_INITPARAM})
+	 */
+	public static final int DEFAULT_REQUESTPOOLSIZE = 20;
+
+	private static final String REQUEST_PROCESSOR_THREADNAME = "{0} Request Processor Thread - {1}"; //$NON-NLS-1$
+
+	private volatile ExecutorService requestExecutor = null;
 
 	private LinkedList<IAggregatorExtension> resourceFactoryExtensions = new LinkedList<IAggregatorExtension>();
 	private LinkedList<IAggregatorExtension> resourceConverterExtensions = new LinkedList<IAggregatorExtension>();
@@ -261,6 +327,10 @@ public abstract class AbstractAggregatorImpl extends HttpServlet implements IAgg
 		currentRequest.remove();
 		if (!isShuttingDown) {
 			isShuttingDown = true;
+			if (requestExecutor != null) {
+				requestExecutor.shutdown();
+			}
+			prefetchExecutor.shutdown();
 			IServiceReference[] refs = null;
 			try {
 				refs = getPlatformServices().getServiceReferences(IShutdownListener.class.getName(), "(name=" + getName() + ")"); //$NON-NLS-1$ //$NON-NLS-2$
@@ -362,12 +432,7 @@ public abstract class AbstractAggregatorImpl extends HttpServlet implements IAgg
 
 		String pathInfo = req.getPathInfo();
 		if (pathInfo == null  || (ILayer.SOURCEMAP_RESOURCE_PATH).equals(pathInfo)) {
-			currentRequest.set(req);
-			try {
-				processAggregatorRequest(req, resp);
-			} finally {
-				currentRequest.set(null);
-			}
+			processLayerRequest(req, resp);
 		} else {
 			boolean processed = false;
 			// search resource paths to see if we should treat as aggregator request or resource request
@@ -375,7 +440,7 @@ public abstract class AbstractAggregatorImpl extends HttpServlet implements IAgg
 				String path = entry.getKey();
 				if (entry.getValue() == null) {
 					if (path.equals(pathInfo) || (path + ILayer.SOURCEMAP_RESOURCE_PATH).equals(pathInfo)) {
-						processAggregatorRequest(req, resp);
+						processLayerRequest(req, resp);
 						processed = true;
 						break;
 					} else if (pathInfo.startsWith(path) && pathInfo.charAt(path.length()) == '/') {
@@ -492,6 +557,116 @@ public abstract class AbstractAggregatorImpl extends HttpServlet implements IAgg
 
 	}
 
+	/**
+	 * Processes a layer request. If asynchronous processing is enabled by the
+	 * {@link IOptions#ENABLE_ASYNC_REQUESTS} option and supported by the
+	 * container for this request, then the request is suspended and processed
+	 * on the request executor, freeing the container thread while the layer
+	 * is built. Otherwise, the request is processed on the calling thread.
+	 *
+	 * @param req
+	 *            the request object
+	 * @param resp
+	 *            the response object
+	 */
+	protected void processLayerRequest(final HttpServletRequest req, final HttpServletResponse resp) {
+		if (req.isAsyncSupported() && !req.isAsyncStarted() &&
+				Boolean.parseBoolean(getOptions().getOption(IOptions.ENABLE_ASYNC_REQUESTS))) {
+			final AsyncContext asyncContext = req.startAsync(req, resp);
+			// Layer builds are not subject to a time limit when processed synchronously
+			asyncContext.setTimeout(0);
+			try {
+				getRequestExecutor().execute(new Runnable() {
+					@Override
+					public void run() {
+						currentRequest.set(req);
+						try {
+							processAggregatorRequest(req, resp);
+						} finally {
+							currentRequest.set(null);
+							asyncContext.complete();
+						}
+					}
+				});
+			} catch (RejectedExecutionException e) {
+				// The executor has been shut down
+				resp.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+				asyncContext.complete();
+			}
+			return;
+		}
+		currentRequest.set(req);
+		try {
+			processAggregatorRequest(req, resp);
+		} finally {
+			currentRequest.set(null);
+		}
+	}
+
+	/**
+	 * Returns the executor used to process layer requests that have been
+	 * suspended using servlet asynchronous processing. The executor is owned
+	 * by this aggregator and is created on first use. Layer requests may wait
+	 * on tasks submitted to the build executor, so this executor must not be
+	 * the build executor. Once the aggregator has been shut down, the executor
+	 * rejects new tasks.
+	 *
+	 * @return the request executor
+	 */
+	protected ExecutorService getRequestExecutor() {
+		ExecutorService result = requestExecutor;
+		if (result == null) {
+			synchronized (this) {
+				result = requestExecutor;
+				if (result == null) {
+					result = requestExecutor = newRequestExecutor();
+					if (isShuttingDown) {
+						result.shutdown();
+					}
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Creates the executor returned by {@link #getRequestExecutor()}. The
+	 * default implementation returns a fixed size thread pool with the number
+	 * of threads specified by {@link #getRequestPoolSize()}.
+	 *
+	 * @return a new executor service
+	 */
+	protected ExecutorService newRequestExecutor() {
+		final AtomicInteger threadCount = new AtomicInteger();
+		return Executors.newFixedThreadPool(getRequestPoolSize(), new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				return new Thread(r,
+						MessageFormat.format(REQUEST_PROCESSOR_THREADNAME,
+								new Object[]{getName(), threadCount.incrementAndGet()}
+						)
+				);
+			}
+		});
+	}
+
+	/**
+	 * Returns the number of threads used to process asynchronous layer
+	 * requests, as specified by the {@link InitParams#REQUESTPOOLSIZE_INITPARAM}
+	 * init-param, or {@link #DEFAULT_REQUESTPOOLSIZE} if not specified.
+	 *
+	 * @return the request thread pool size
+	 */
+	protected int getRequestPoolSize() {
+		int result = DEFAULT_REQUESTPOOLSIZE;
+		InitParams initParams = getInitParams();
+		if (initParams != null) {
+			List<String> values = initParams.getValues(InitParams.REQUESTPOOLSIZE_INITPARAM);
+			result = TypeUtil.asInt(values.size()  > 0 ? values.get(values.size()-1) : null,  DEFAULT_REQUESTPOOLSIZE);
+		}
+		return Math.max(1, result);
+	}
+
 	protected void processAggregatorRequest(HttpServletRequest req, HttpServletResponse resp) {
 		final String sourceMethod = "processAggregatorRequest"; //$NON-NLS-1$
 		boolean isTraceLogging = log.isLoggable(Level.FINER);
@@ -532,6 +707,12 @@ public abstract class AbstractAggregatorImpl extends HttpServlet implements IAgg
 				}
 			}
 
+			// Try to satisfy repeat requests without decoding the request
+			String frontDoorKey = getFrontDoorCacheKey(req);
+			if (frontDoorKey != null && serveFromFrontDoorCache(req, resp, frontDoorKey)) {
+				return;
+			}
+
 			getTransport().decorateRequest(req);
 
 			// Validate source map requests now that we've decorated the request.
@@ -543,6 +724,13 @@ public abstract class AbstractAggregatorImpl extends HttpServlet implements IAgg
 					!RequestUtil.isSourceMapRequest(req)) {
 				throw new BadRequestException();
 			}
+
+			@SuppressWarnings("unchecked")
+			List<String> layerParts = (List<String>)req.getAttribute(IHttpTransport.LAYERPARTS_REQATTRNAME);
+			if (layerParts != null) {
+				processMultiLayerRequest(req, resp, layerParts);
+				return;
+			}
 			notifyRequestListeners(RequestNotifierAction.start, req, resp);
 
 			ILayer layer = getLayer(req);
@@ -566,11 +754,13 @@ public abstract class AbstractAggregatorImpl extends HttpServlet implements IAgg
 					resp.setDateHeader("Last-Modified", lastModified); //$NON-NLS-1$
 					int expires = getConfig().getExpires();
 					boolean hasCacheBust = req.getAttribute(IHttpTransport.CACHEBUST_REQATTRNAME) != null;
-					resp.addHeader(
-							"Cache-Control", //$NON-NLS-1$
-							"public" + (expires > 0 && hasCacheBust ? (", max-age=" + expires) : "") //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
-					);
+					String cacheControl = "public" + (expires > 0 && hasCacheBust ? (", max-age=" + expires) : ""); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+					resp.addHeader("Cache-Control", cacheControl); //$NON-NLS-1$
+					if (frontDoorKey != null) {
+						frontDoorCache.put(frontDoorKey, getCacheManager().getCache(), req, lastModified, cacheControl);
+					}
 				}
+				predictFollowupRequests(req, resp);
 				writeResponse(in, req, resp);
 			}
 			notifyRequestListeners(RequestNotifierAction.end, req, resp);
@@ -1164,6 +1354,387 @@ public abstract class AbstractAggregatorImpl extends HttpServlet implements IAgg
 		return contentType;
 	}
 
+	/**
+	 * Returns the key used to look up the request in the front door cache, or
+	 * null if the request may not be satisfied from the front door cache.
+	 * Requests are not eligible if development or debug mode is enabled, if
+	 * the front door cache has been disabled, or if there are registered
+	 * request listeners (which may modify the request or response in ways that
+	 * are not reflected in the key).
+	 *
+	 * @param req
+	 *            the request object
+	 * @return the front door cache key, or null
+	 */
+	protected String getFrontDoorCacheKey(HttpServletRequest req) {
+		IOptions options = getOptions();
+		if (options.isDevelopmentMode() || options.isDebugMode() ||
+				Boolean.parseBoolean(options.getOption(IOptions.DISABLE_FRONTDOORCACHE))) {
+			return null;
+		}
+		IServiceReference[] refs = null;
+		try {
+			refs = getPlatformServices().getServiceReferences(IRequestListener.class.getName(),  "(name="+getName()+")"); //$NON-NLS-1$ //$NON-NLS-2$
+		} catch (PlatformServicesException e) {
+			if (log.isLoggable(Level.SEVERE)) {
+				log.log(Level.SEVERE, e.getMessage(), e);
+			}
+			return null;
+		}
+		if (refs != null && refs.length > 0) {
+			return null;
+		}
+		return FrontDoorCache.getKey(req);
+	}
+
+	/**
+	 * Satisfies the request using the layer build in the front door cache for
+	 * the specified key, if there is one.
+	 *
+	 * @param req
+	 *            the request object
+	 * @param resp
+	 *            the response object
+	 * @param key
+	 *            the key returned by {@link #getFrontDoorCacheKey(HttpServletRequest)}
+	 * @return true if the response was provided from the front door cache
+	 * @throws IOException
+	 */
+	protected boolean serveFromFrontDoorCache(HttpServletRequest req, HttpServletResponse resp, String key) throws IOException {
+		FrontDoorCache.Entry entry = frontDoorCache.get(key, getCacheManager().getCache());
+		if (entry == null) {
+			return false;
+		}
+		long modifiedSince = req.getDateHeader("If-Modified-Since"); //$NON-NLS-1$
+		if (modifiedSince >= entry.getLastModified()) {
+			resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+			return true;
+		}
+		InputStream in = entry.tryGetInputStream(req, resp);
+		if (in == null) {
+			return false;
+		}
+		resp.setDateHeader("Last-Modified", entry.getLastModified()); //$NON-NLS-1$
+		resp.addHeader("Cache-Control", entry.getCacheControl()); //$NON-NLS-1$
+		predictFollowupRequests(req, resp);
+		writeResponse(in, req, resp);
+		return true;
+	}
+
+	/**
+	 * Responds to a multi-layer request. A request is decorated for each of
+	 * the requested layers and the last-modified time of the response is
+	 * determined from the layers before any of them are built, so that
+	 * not-modified responses don't require building the layers. Otherwise,
+	 * the layers are built in parallel, using request executor threads (see
+	 * {@link #getRequestExecutor()}) for all but the first layer when
+	 * available, and are returned, in order, in a single response. Each layer
+	 * is cached individually just as if it had been requested by itself. The
+	 * layers are always built uncompressed, with the response as a whole being
+	 * gzip encoded if the client accepts it.
+	 *
+	 * @param req
+	 *            the request object
+	 * @param resp
+	 *            the response object
+	 * @param layerParts
+	 *            the query strings for the requested layers
+	 * @throws Exception
+	 */
+	protected void processMultiLayerRequest(HttpServletRequest req, HttpServletResponse resp, List<String> layerParts) throws Exception {
+		final String sourceMethod = "processMultiLayerRequest"; //$NON-NLS-1$
+		List<LayerPartBuilder> builders = new ArrayList<LayerPartBuilder>(layerParts.size());
+		long lastModified = getCacheManager().getCache().getCreated();
+		boolean ignoreCached = false;
+		for (String layerPart : layerParts) {
+			LayerPartRequest partReq = new LayerPartRequest(req, layerPart);
+			partReq.setAttribute(CONCURRENTMAP_REQATTRNAME, new ConcurrentHashMap<String, Object>());
+			LayerPartBuilder builder = new LayerPartBuilder(partReq, new LayerPartResponse(resp));
+			builder.prepare();
+			lastModified = Math.max(lastModified, builder.lastModified);
+			ignoreCached |= RequestUtil.isIgnoreCached(builder.request);
+			builders.add(builder);
+		}
+		lastModified = (lastModified / 1000) * 1000;
+		long modifiedSince = req.getDateHeader("If-Modified-Since"); //$NON-NLS-1$
+		if (modifiedSince >= lastModified && !ignoreCached) {
+			resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+			for (LayerPartBuilder builder : builders) {
+				notifyRequestListeners(RequestNotifierAction.end, builder.request, builder.response);
+			}
+			return;
+		}
+
+		List<FutureTask<InputStream>> tasks = new ArrayList<FutureTask<InputStream>>(builders.size());
+		for (LayerPartBuilder builder : builders) {
+			final FutureTask<InputStream> task = new FutureTask<InputStream>(builder);
+			if (!tasks.isEmpty() && layerPartPermits.tryAcquire()) {
+				try {
+					getRequestExecutor().execute(new Runnable() {
+						@Override
+						public void run() {
+							try {
+								task.run();
+							} finally {
+								layerPartPermits.release();
+							}
+						}
+					});
+				} catch (RejectedExecutionException e) {
+					layerPartPermits.release();
+				}
+			}
+			tasks.add(task);
+		}
+
+		// Wait for all the layers, building on this thread any that haven't been
+		// started yet (running a task that has already been started does nothing).
+		InputStream[] streams = new InputStream[tasks.size()];
+		Throwable error = null;
+		for (int i = 0; i < tasks.size(); i++) {
+			FutureTask<InputStream> task = tasks.get(i);
+			task.run();
+			try {
+				streams[i] = task.get();
+			} catch (ExecutionException e) {
+				if (error == null) {
+					error = e.getCause();
+				}
+			}
+		}
+		try {
+			if (error != null) {
+				throw error instanceof Exception ? (Exception)error : new RuntimeException(error);
+			}
+			boolean noCache = false, hasCacheBust = true;
+			for (LayerPartBuilder builder : builders) {
+				noCache |= builder.request.getAttribute(ILayer.NOCACHE_RESPONSE_REQATTRNAME) != null;
+				hasCacheBust &= builder.request.getAttribute(IHttpTransport.CACHEBUST_REQATTRNAME) != null;
+			}
+			resp.setContentType(builders.get(0).response.getContentType());
+			resp.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+			if (noCache) {
+				resp.addHeader("Cache-Control", "no-cache, no-store"); //$NON-NLS-1$ //$NON-NLS-2$
+			} else {
+				resp.setDateHeader("Last-Modified", lastModified); //$NON-NLS-1$
+				int expires = getConfig().getExpires();
+				resp.addHeader("Cache-Control", "public" + (expires > 0 && hasCacheBust ? (", max-age=" + expires) : "")); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+			}
+			OutputStream out = resp.getOutputStream();
+			try {
+				if (RequestUtil.isGzipEncoding(req)) {
+					resp.setHeader("Content-Encoding", "gzip"); //$NON-NLS-1$ //$NON-NLS-2$
+					out = new GZIPOutputStream(out);
+				}
+				for (int i = 0; i < streams.length; i++) {
+					if (i > 0) {
+						// Layers may end with a line comment (e.g. sourceMappingURL)
+						out.write('\n');
+					}
+					IOUtils.copy(streams[i], out);
+				}
+				out.close();
+			} catch (IOException e) {
+				// Probably because the connection was closed by the client.
+				logException(req, Level.FINE, sourceMethod, e);
+			} finally {
+				IOUtils.closeQuietly(out);
+			}
+			for (LayerPartBuilder builder : builders) {
+				notifyRequestListeners(RequestNotifierAction.end, builder.request, builder.response);
+			}
+		} finally {
+			for (InputStream in : streams) {
+				IOUtils.closeQuietly(in);
+			}
+		}
+	}
+
+	/**
+	 * Decorates the request for one of the layers of a multi-layer request
+	 * and determines the layer's last-modified time (see {@link #prepare()}),
+	 * and then returns the input stream for the layer.
+	 */
+	private class LayerPartBuilder implements Callable<InputStream> {
+		final LayerPartRequest request;
+		final LayerPartResponse response;
+		ILayer layer;
+		long lastModified;
+
+		LayerPartBuilder(LayerPartRequest request, LayerPartResponse response) {
+			this.request = request;
+			this.response = response;
+		}
+
+		/**
+		 * Decorates the request and looks up the layer. Called on the request
+		 * thread before {@link #call()}.
+		 *
+		 * @throws Exception
+		 */
+		void prepare() throws Exception {
+			HttpServletRequest previous = currentRequest.get();
+			currentRequest.set(request);
+			try {
+				getTransport().decorateRequest(request);
+				notifyRequestListeners(RequestNotifierAction.start, request, response);
+				layer = getLayer(request);
+				lastModified = layer.getLastModified(request);
+			} finally {
+				currentRequest.set(previous);
+			}
+		}
+
+		/* (non-Javadoc)
+		 * @see java.util.concurrent.Callable#call()
+		 */
+		@Override
+		public InputStream call() throws Exception {
+			HttpServletRequest previous = currentRequest.get();
+			currentRequest.set(request);
+			try {
+				return layer.getInputStream(request, response);
+			} finally {
+				currentRequest.set(previous);
+			}
+		}
+	}
+
+	/**
+	 * Records the request with the layer prefetcher and, if follow-up requests
+	 * are predicted for it, adds preload hints for the predicted layers to the
+	 * response and, if this aggregator implements {@link ILayerPrefetchHandler},
+	 * starts speculative builds of the predicted layers on the prefetch
+	 * executor. Does nothing unless {@link IOptions#ENABLE_LAYER_PREFETCH} is
+	 * set, or if development mode or debug mode is enabled.
+	 * <p>
+	 * Called only for valid requests that are about to be answered with the
+	 * layer content, so that bad requests and not-modified responses don't
+	 * affect the predictions.
+	 *
+	 * @param req
+	 *            the request object
+	 * @param resp
+	 *            the response object
+	 */
+	protected void predictFollowupRequests(HttpServletRequest req, HttpServletResponse resp) {
+		IOptions options = getOptions();
+		if (!Boolean.parseBoolean(options.getOption(IOptions.ENABLE_LAYER_PREFETCH)) ||
+				options.isDevelopmentMode() || options.isDebugMode()) {
+			return;
+		}
+		String client = LayerPrefetcher.getClientKey(req);
+		String uri = LayerPrefetcher.getRequestUri(req);
+		if (client == null || uri == null) {
+			return;
+		}
+		List<String> predicted = layerPrefetcher.requestReceived(client, uri, System.currentTimeMillis());
+		if (predicted.isEmpty()) {
+			return;
+		}
+		// Snapshot the headers and cookies that can influence the response, since the
+		// speculative builds run after this request has completed.
+		Map<String, String> headers = null;
+		Cookie[] cookies = null;
+		final ILayerPrefetchHandler prefetchHandler = (this instanceof ILayerPrefetchHandler) ? (ILayerPrefetchHandler)this : null;
+		if (prefetchHandler != null) {
+			headers = new HashMap<String, String>();
+			for (String name : new String[]{HttpHeaders.ACCEPT_ENCODING, HttpHeaders.ACCEPT_LANGUAGE}) {
+				String value = req.getHeader(name);
+				if (value != null) {
+					headers.put(name, value);
+				}
+			}
+			Cookie[] reqCookies = req.getCookies();
+			if (reqCookies != null) {
+				cookies = new Cookie[reqCookies.length];
+				for (int i = 0; i < reqCookies.length; i++) {
+					cookies[i] = (Cookie)reqCookies[i].clone();
+				}
+			}
+		}
+		for (final String predictedUri : predicted) {
+			resp.addHeader(HttpHeaders.LINK, "<" + predictedUri + ">; rel=preload; as=script"); //$NON-NLS-1$ //$NON-NLS-2$
+			if (prefetchHandler != null && layerPrefetcher.startPrefetch(predictedUri)) {
+				final Map<String, String> prefetchHeaders = headers;
+				final Cookie[] prefetchCookies = cookies;
+				try {
+					prefetchExecutor.execute(new Runnable() {
+						@Override
+						public void run() {
+							try {
+								prefetchHandler.prefetchLayer(predictedUri, prefetchHeaders, prefetchCookies);
+							} catch (Throwable t) {
+								if (log.isLoggable(Level.FINE)) {
+									log.log(Level.FINE, predictedUri, t);
+								}
+							} finally {
+								layerPrefetcher.prefetchDone();
+							}
+						}
+					});
+				} catch (RejectedExecutionException e) {
+					// The aggregator is shutting down
+					layerPrefetcher.prefetchDone();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Writes the front door cache, layer prefetch and Rhino engine statistics,
+	 * followed by the statistics of the config, module builders, resource
+	 * converters and caches that implement {@link IStatisticsProvider}, to the
+	 * specified writer.
+	 *
+	 * @param writer
+	 *            the writer
+	 * @throws IOException
+	 */
+	public void dumpRequestStatistics(Writer writer) throws IOException {
+		String newline = System.getProperty("line.separator"); //$NON-NLS-1$
+		writer.append(frontDoorCache.toString()).append(newline);
+		writer.append(layerPrefetcher.toString()).append(newline);
+		writer.append(RhinoEngine.getStatistics()).append(newline);
+		for (IStatisticsProvider provider : getStatisticsProviders()) {
+			String stats = provider.getStatistics();
+			if (stats != null && stats.length() > 0) {
+				writer.append(stats).append(newline);
+			}
+		}
+	}
+
+	/**
+	 * Returns the aggregator components that provide statistics for
+	 * {@link #dumpRequestStatistics(Writer)}. The same instance may be
+	 * registered for more than one extension, so providers are returned only
+	 * once, in the order they are first encountered.
+	 *
+	 * @return the statistics providers
+	 */
+	protected Collection<IStatisticsProvider> getStatisticsProviders() {
+		List<Object> candidates = new ArrayList<Object>();
+		candidates.add(getConfig());
+		for (IAggregatorExtension extension : getExtensions(IModuleBuilderExtensionPoint.ID)) {
+			candidates.add(extension.getInstance());
+		}
+		for (IAggregatorExtension extension : getExtensions(IResourceConverterExtensionPoint.ID)) {
+			candidates.add(extension.getInstance());
+		}
+		ICacheManager cacheMgr = getCacheManager();
+		if (cacheMgr != null) {
+			candidates.add(cacheMgr.getCache());
+		}
+		Set<Object> seen = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+		List<IStatisticsProvider> result = new ArrayList<IStatisticsProvider>();
+		for (Object candidate : candidates) {
+			if (candidate instanceof IStatisticsProvider && seen.add(candidate)) {
+				result.add((IStatisticsProvider)candidate);
+			}
+		}
+		return result;
+	}
+
 	/**
 	 * Calls the registered request notifier listeners.
 	 *
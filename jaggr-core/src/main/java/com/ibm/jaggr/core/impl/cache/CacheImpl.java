@@ -17,6 +17,7 @@
 package com.ibm.jaggr.core.impl.cache;
 
 import com.ibm.jaggr.core.IAggregator;
+import com.ibm.jaggr.core.IStatisticsProvider;
 import com.ibm.jaggr.core.cache.ICache;
 import com.ibm.jaggr.core.cache.IGenericCache;
 import com.ibm.jaggr.core.cache.IGzipCache;
@@ -31,7 +32,7 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.regex.Pattern;
 
-public class CacheImpl implements ICache {
+public class CacheImpl implements ICache, IStatisticsProvider {
 	private static final long serialVersionUID = -4409057458310867441L;
 	/// The caches
 	private ILayerCache _layerCache;
@@ -138,6 +139,31 @@ public class CacheImpl implements ICache {
 		}
 	}
 
+	/**
+	 * Returns the statistics of the gzip cache and of the named caches (e.g.
+	 * the resource converter caches) that provide them. Named cache statistics
+	 * are prefixed with the cache name.
+	 *
+	 * @return the cache statistics
+	 */
+	@Override
+	public String getStatistics() {
+		String newline = System.getProperty("line.separator"); //$NON-NLS-1$
+		StringBuffer sb = new StringBuffer();
+		if (_gzipCache instanceof IStatisticsProvider) {
+			sb.append(((IStatisticsProvider)_gzipCache).getStatistics());
+		}
+		for (Map.Entry<String, IGenericCache> entry : _namedCaches.entrySet()) {
+			if (entry.getValue() instanceof IStatisticsProvider) {
+				String stats = ((IStatisticsProvider)entry.getValue()).getStatistics();
+				if (stats != null && stats.length() > 0) {
+					sb.append(sb.length() > 0 ? newline : "").append(entry.getKey()).append(": ").append(stats); //$NON-NLS-1$ //$NON-NLS-2$
+				}
+			}
+		}
+		return sb.toString();
+	}
+
 	@Override
 	public void setAggregator(IAggregator aggregator) {
 		_layerCache.setAggregator(aggregator);
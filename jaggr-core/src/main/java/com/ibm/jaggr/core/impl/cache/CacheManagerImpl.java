@@ -20,6 +20,7 @@ import com.ibm.jaggr.core.IAggregator;
 import com.ibm.jaggr.core.IServiceReference;
 import com.ibm.jaggr.core.IServiceRegistration;
 import com.ibm.jaggr.core.IShutdownListener;
+import com.ibm.jaggr.core.InitParams;
 import com.ibm.jaggr.core.PlatformServicesException;
 import com.ibm.jaggr.core.cache.CacheControl;
 import com.ibm.jaggr.core.cache.ICache;
@@ -33,7 +34,9 @@ import com.ibm.jaggr.core.options.IOptions;
 import com.ibm.jaggr.core.options.IOptionsListener;
 import com.ibm.jaggr.core.util.ConsoleService;
 import com.ibm.jaggr.core.util.CopyUtil;
+import com.ibm.jaggr.core.util.FormulaCache;
 import com.ibm.jaggr.core.util.SignalUtil;
+import com.ibm.jaggr.core.util.TypeUtil;
 
 import org.apache.commons.io.input.ReaderInputStream;
 import org.apache.commons.lang3.StringUtils;
@@ -109,6 +112,14 @@ public class CacheManagerImpl implements ICacheManager, IShutdownListener, IConf
 
 		_directory = new File(aggregator.getWorkingDirectory(), CACHEDIR_NAME);
 		_aggregator = aggregator;
+		InitParams initParams = aggregator.getInitParams();
+		if (initParams != null) {
+			List<String> values = initParams.getValues(InitParams.MAXFORMULACACHEENTRIES_INITPARAM);
+			if (values.size() > 0) {
+				FormulaCache.getInstance().ensureCapacity(
+						TypeUtil.asInt(values.get(values.size()-1), FormulaCache.DEFAULT_CAPACITY));
+			}
+		}
 		// Make sure the cache directory exists
 		if (!_directory.exists()) {
 			if (!_directory.mkdirs()) {
@@ -243,6 +254,11 @@ public class CacheManagerImpl implements ICacheManager, IShutdownListener, IConf
 	@Override
 	public void dumpCache(Writer writer, Pattern filter) throws IOException {
 		_cache.get().dump(writer, filter);
+		if (filter == null) {
+			// The formula cache isn't keyed by strings, so only the summary is dumped,
+			// and only when all entries are requested
+			writer.append(FormulaCache.getInstance().toString()).append(System.getProperty("line.separator")); //$NON-NLS-1$
+		}
 	}
 
 	/* (non-Javadoc)
@@ -16,6 +16,7 @@
 package com.ibm.jaggr.core.impl.cache;
 
 import com.ibm.jaggr.core.IAggregator;
+import com.ibm.jaggr.core.InitParams;
 import com.ibm.jaggr.core.cache.ICacheManager;
 import com.ibm.jaggr.core.cache.IGenericCache;
 import com.ibm.jaggr.core.cache.IGzipCache;
@@ -35,13 +36,21 @@ import java.io.InputStream;
 import java.io.Serializable;
 import java.net.URI;
 import java.net.URLConnection;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.zip.Deflater;
 
-public class GzipCacheImpl extends GenericCacheImpl<ICacheEntry> implements Serializable,
+/**
+ * Cache of gzipped static resources.  The cache is bounded by the total size
+ * of the gzipped content (see {@link WeightedCacheImpl}), and the cache files
+ * of evicted entries are deleted.
+ */
+public class GzipCacheImpl extends WeightedCacheImpl<ICacheEntry> implements Serializable,
 		IGzipCache {
-	private static final long serialVersionUID = 9075726057738934199L;
+	private static final long serialVersionUID = -2418832466317306095L;
+
+	static final int DEFAULT_MAXCAPACITY_MB = 100;
 
 	private static final Logger log = Logger.getLogger(GzipCacheImpl.class.getName());
 	private static final String sourceClass = GzipCacheImpl.class.getName();
@@ -85,6 +94,37 @@ public class GzipCacheImpl extends GenericCacheImpl<ICacheEntry> implements Seri
 		 * {@link bytes} will be reset to null (un-synchronized).
 		 */
 		volatile private File file;
+
+		/**
+		 * The size of the gzipped content.  Set before {@link #file} is set.
+		 */
+		volatile private long size;
+
+		/**
+		 * Set to 1 when the cache file has been deleted following eviction of the entry.
+		 * Updated with {@link #DELETED_UPDATER} rather than by synchronizing on the entry,
+		 * since entries may be evicted by threads that hold the lock of another entry.
+		 */
+		volatile transient private int deleted;
+
+		private static final AtomicIntegerFieldUpdater<CacheEntry> DELETED_UPDATER =
+				AtomicIntegerFieldUpdater.newUpdater(CacheEntry.class, "deleted"); //$NON-NLS-1$
+
+		/**
+		 * Deletes the cache file, if it has been written and not already deleted.
+		 *
+		 * @param cacheManager
+		 *            the cache manager
+		 */
+		void deleteFile(ICacheManager cacheManager) {
+			if (file != null && cacheManager != null && DELETED_UPDATER.compareAndSet(this, 0, 1)) {
+				cacheManager.deleteFileDelayed(file.getName());
+			}
+		}
+	}
+
+	public GzipCacheImpl() {
+		super(InitParams.MAXGZIPCACHECAPACITY_MB_INITPARAM, DEFAULT_MAXCAPACITY_MB);
 	}
 
 	/*
@@ -129,7 +169,7 @@ public class GzipCacheImpl extends GenericCacheImpl<ICacheEntry> implements Seri
 						// Stale cache entry, remove it and create a new one below
 						cacheMap.remove(key, tryCacheEntry);
 						// also delete the associated cache file asynchronously.
-						cacheManager.deleteFileDelayed(file.getName());
+						tryCacheEntry.deleteFile(cacheManager);
 					} else {
 						try {
 							retLength.setValue(file.length());
@@ -187,7 +227,9 @@ public class GzipCacheImpl extends GenericCacheImpl<ICacheEntry> implements Seri
 
 						// Important - CacheEntry.lastModified must be set before cacheEntry.bytes
 						cacheEntry.lastModified = lastModified;
+						cacheEntry.size = bos.size();
 						cacheEntry.bytes = bos.toByteArray();
+						reweigh(key, cacheEntry);
 						result = new ByteArrayInputStream(cacheEntry.bytes);
 						retLength.setValue(cacheEntry.bytes.length);
 
@@ -217,6 +259,10 @@ public class GzipCacheImpl extends GenericCacheImpl<ICacheEntry> implements Seri
 										// cacheEntry.bytes
 										cacheEntry.file = cacheFile;
 										cacheEntry.bytes = null;
+										if (!reweigh(key, cacheEntry)) {
+											// The entry was evicted or removed before the file was written
+											cacheEntry.deleteFile(cacheManager);
+										}
 									}
 								});
 					} catch (Throwable t) {
@@ -242,9 +288,26 @@ public class GzipCacheImpl extends GenericCacheImpl<ICacheEntry> implements Seri
 		return result;
 	}
 
+	/* (non-Javadoc)
+	 * @see com.ibm.jaggr.core.impl.cache.WeightedCacheImpl#weightOf(java.lang.Object)
+	 */
+	@Override
+	protected long weightOf(ICacheEntry entry) {
+		return ((CacheEntry)entry).size;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.ibm.jaggr.core.impl.cache.WeightedCacheImpl#evicted(java.lang.String, java.lang.Object)
+	 */
+	@Override
+	protected void evicted(String key, ICacheEntry entry) {
+		((CacheEntry)entry).deleteFile(cacheManager);
+	}
+
 	@Override
 	public void setAggregator(IAggregator aggregator) {
 		cacheManager = aggregator.getCacheManager();
+		super.setAggregator(aggregator);
 	}
 
 	/* (non-Javadoc)
@@ -17,6 +17,7 @@ package com.ibm.jaggr.core.impl.cache;
 
 import com.ibm.jaggr.core.IAggregator;
 import com.ibm.jaggr.core.IAggregatorExtension;
+import com.ibm.jaggr.core.InitParams;
 import com.ibm.jaggr.core.cache.IGenericCache;
 import com.ibm.jaggr.core.cache.IResourceConverterCache;
 import com.ibm.jaggr.core.resource.IResource;
@@ -27,17 +28,21 @@ import java.io.File;
 import java.io.IOException;
 import java.io.Serializable;
 import java.net.URI;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * Implementation of a generic cache for resource converters.  Clients provide the implementation
  * for converting a resource and writing it to a cache file, and this class handles the management
- * of the cache file in the aggregator cache.
+ * of the cache file in the aggregator cache.  The cache is bounded by the total size of the cache
+ * files (see {@link WeightedCacheImpl}), and the cache files of evicted entries are deleted.
  */
-public class ResourceConverterCacheImpl extends GenericCacheImpl<ResourceConverterCacheImpl.CacheEntry> implements Serializable, IResourceConverterCache {
+public class ResourceConverterCacheImpl extends WeightedCacheImpl<ResourceConverterCacheImpl.CacheEntry> implements Serializable, IResourceConverterCache {
 
-	private static final long serialVersionUID = 5441922319434222745L;
+	private static final long serialVersionUID = 3619857026183347220L;
+
+	static final int DEFAULT_MAXCAPACITY_MB = 100;
 
 	private static final String sourceClass = ResourceConverterCacheImpl.class.getName();
 	private static final Logger log = Logger.getLogger(sourceClass);
@@ -77,6 +82,33 @@ public class ResourceConverterCacheImpl extends GenericCacheImpl<ResourceConvert
 		 * The reference uri from the original source resource.
 		 */
 		volatile private URI referenceUri;
+
+		/**
+		 * The size of the cache file.  Set before {@link #filename} is set.
+		 */
+		volatile private long size;
+
+		/**
+		 * Set to 1 when the cache file has been deleted following eviction of the entry.
+		 * Updated with {@link #DELETED_UPDATER} rather than by synchronizing on the entry,
+		 * since entries may be evicted by threads that hold the lock of another entry.
+		 */
+		volatile transient private int deleted;
+
+		private static final AtomicIntegerFieldUpdater<CacheEntry> DELETED_UPDATER =
+				AtomicIntegerFieldUpdater.newUpdater(CacheEntry.class, "deleted"); //$NON-NLS-1$
+
+		/**
+		 * Deletes the cache file, if it has been written and not already deleted.
+		 *
+		 * @param aggregator
+		 *            the aggregator
+		 */
+		void deleteFile(IAggregator aggregator) {
+			if (filename != null && aggregator != null && DELETED_UPDATER.compareAndSet(this, 0, 1)) {
+				aggregator.getCacheManager().deleteFileDelayed(filename);
+			}
+		}
 	}
 
 	/**
@@ -85,6 +117,7 @@ public class ResourceConverterCacheImpl extends GenericCacheImpl<ResourceConvert
 	 * @param suffix the suffix to use for cache file names.
 	 */
 	public ResourceConverterCacheImpl(IConverter converter, String prefix, String suffix) {
+		super(InitParams.MAXCONVERTERCACHECAPACITY_MB_INITPARAM, DEFAULT_MAXCAPACITY_MB);
 		this.converter = converter;
 		this.prefix = prefix;
 		this.suffix = suffix;
@@ -137,7 +170,7 @@ public class ResourceConverterCacheImpl extends GenericCacheImpl<ResourceConvert
 					// Stale cache entry, remove it and create a new one below
 					cacheMap.remove(key, tryCacheEntry);
 					// also delete the associated cache file asynchronously.
-					aggregator.getCacheManager().deleteFileDelayed(cacheFile.getName());
+					tryCacheEntry.deleteFile(aggregator);
 				} else {
 					// found result in cache. Return it.
 					result = fileResourceFactory.newResource(cacheFile.toURI());
@@ -174,8 +207,13 @@ public class ResourceConverterCacheImpl extends GenericCacheImpl<ResourceConvert
 					cacheFile = File.createTempFile(prefix, "." + fname + suffix, cacheDir); //$NON-NLS-1$
 					converter.generateCacheContent(source, cacheFile);
 					cacheFile.setLastModified(source.lastModified());
+					cacheEntry.size = cacheFile.length();
 					cacheEntry.filename = cacheFile.getName();
 					referenceUri = cacheEntry.referenceUri = source.getReferenceURI();
+					if (!reweigh(key, cacheEntry)) {
+						// The entry was evicted or removed while the file was being created
+						cacheEntry.deleteFile(aggregator);
+					}
 				} catch (Throwable t) {
 					cacheEntry.ex = (t instanceof IOException) ? (IOException) t
 							: new IOException(t);
@@ -197,12 +235,29 @@ public class ResourceConverterCacheImpl extends GenericCacheImpl<ResourceConvert
 		return result;
 	}
 
+	/* (non-Javadoc)
+	 * @see com.ibm.jaggr.core.impl.cache.WeightedCacheImpl#weightOf(java.lang.Object)
+	 */
+	@Override
+	protected long weightOf(CacheEntry entry) {
+		return entry.size;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.ibm.jaggr.core.impl.cache.WeightedCacheImpl#evicted(java.lang.String, java.lang.Object)
+	 */
+	@Override
+	protected void evicted(String key, CacheEntry entry) {
+		entry.deleteFile(aggregator);
+	}
+
 	/* (non-Javadoc)
 	 * @see com.ibm.jaggr.core.impl.cache.GenericCacheImpl#setAggregator(com.ibm.jaggr.core.IAggregator)
 	 */
 	@Override
 	public void setAggregator(IAggregator aggregator) {
 		this.aggregator = aggregator;
+		super.setAggregator(aggregator);
 		// get the file resource factory
 		Iterable<IAggregatorExtension> iter = aggregator.getExtensions(IResourceFactoryExtensionPoint.ID);
 		for (IAggregatorExtension ext : iter) {
@@ -0,0 +1,263 @@
+/*
+ * (C) Copyright IBM Corp. 2012, 2016 All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ibm.jaggr.core.impl.cache;
+
+import com.ibm.jaggr.core.IAggregator;
+import com.ibm.jaggr.core.IStatisticsProvider;
+import com.ibm.jaggr.core.InitParams;
+import com.ibm.jaggr.core.util.TypeUtil;
+
+import com.googlecode.concurrentlinkedhashmap.ConcurrentLinkedHashMap;
+import com.googlecode.concurrentlinkedhashmap.EvictionListener;
+import com.googlecode.concurrentlinkedhashmap.Weigher;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.io.Writer;
+import java.text.MessageFormat;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Base class for generic caches whose entries are backed by files in the
+ * cache directory.  The cache map is a {@link ConcurrentLinkedHashMap} that
+ * is bounded by the total size, in bytes, of the cache entries as reported by
+ * {@link #weightOf(Object)}.  When the capacity is exceeded, least recently
+ * used entries are evicted and {@link #evicted(String, Object)} is called so
+ * that sub-classes can delete the backing files.
+ * <p>
+ * The weight of an entry is computed when the entry is added to the map.
+ * Entries that are added before their content is available (so that
+ * concurrent requests for the same key wait for the content to be created)
+ * should be re-weighed by calling {@link #reweigh(String, Object)} once the
+ * content has been created.
+ * <p>
+ * The capacity is specified in megabytes by an init-param.  It is applied
+ * when the aggregator is set, so it may be changed across restarts of a
+ * serialized cache.
+ *
+ * @param <T>
+ *            the cache entry type
+ */
+public abstract class WeightedCacheImpl<T> extends GenericCacheImpl<T> implements IStatisticsProvider {
+	private static final long serialVersionUID = -3180476312870151744L;
+
+	private static final long MB = 1024 * 1024;
+
+	private final String capacityInitParam;
+
+	private final int defaultCapacityMB;
+
+	private final AtomicLong hits = new AtomicLong();
+
+	private final AtomicLong misses = new AtomicLong();
+
+	private final AtomicLong evictions = new AtomicLong();
+
+	/**
+	 * @param capacityInitParam
+	 *            the name of the init-param that specifies the capacity of the
+	 *            cache in megabytes
+	 * @param defaultCapacityMB
+	 *            the capacity of the cache in megabytes if the init-param is
+	 *            not specified
+	 */
+	protected WeightedCacheImpl(String capacityInitParam, int defaultCapacityMB) {
+		this.capacityInitParam = capacityInitParam;
+		this.defaultCapacityMB = defaultCapacityMB;
+		cacheMap = new ConcurrentLinkedHashMap.Builder<String, T>()
+				.maximumWeightedCapacity(defaultCapacityMB * MB)
+				.weigher(new EntryWeigher<T>(this))
+				.listener(new EntryEvictionListener<T>(this))
+				.build();
+	}
+
+	/**
+	 * Returns the size, in bytes, of the cache entry, including the content
+	 * that is held in memory and the backing file.  Entries whose content has
+	 * not yet been created may return 0.
+	 *
+	 * @param entry
+	 *            the cache entry
+	 * @return the size of the entry
+	 */
+	protected abstract long weightOf(T entry);
+
+	/**
+	 * Called when a cache entry is evicted from the cache because the capacity
+	 * was exceeded.  Implementations should delete the backing file using
+	 * {@link com.ibm.jaggr.core.cache.ICacheManager#deleteFileDelayed(String)}
+	 * so that readers of the file are not affected.
+	 *
+	 * @param key
+	 *            the key of the evicted entry
+	 * @param entry
+	 *            the evicted entry
+	 */
+	protected abstract void evicted(String key, T entry);
+
+	/* (non-Javadoc)
+	 * @see com.ibm.jaggr.core.impl.cache.GenericCacheImpl#get(java.lang.String)
+	 */
+	@Override
+	public T get(String key) {
+		T result = super.get(key);
+		(result != null ? hits : misses).incrementAndGet();
+		return result;
+	}
+
+	/**
+	 * Updates the weight of the specified cache entry after its content has
+	 * been created.  If the entry is no longer in the cache (because it was
+	 * evicted or removed while the content was being created), then false is
+	 * returned and the caller is responsible for deleting the backing file.
+	 *
+	 * @param key
+	 *            the entry key
+	 * @param entry
+	 *            the cache entry
+	 * @return true if the entry is in the cache
+	 */
+	protected boolean reweigh(String key, T entry) {
+		return cacheMap.replace(key, entry, entry);
+	}
+
+	/**
+	 * @return the capacity of the cache in bytes
+	 */
+	public long getCapacity() {
+		return getMap().capacity();
+	}
+
+	/**
+	 * @return the total size, in bytes, of the entries in the cache
+	 */
+	public long getWeightedSize() {
+		return getMap().weightedSize();
+	}
+
+	/**
+	 * @return the number of entries evicted because the capacity was exceeded
+	 */
+	public long getEvictions() {
+		return evictions.get();
+	}
+
+	/* (non-Javadoc)
+	 * @see com.ibm.jaggr.core.impl.cache.GenericCacheImpl#setAggregator(com.ibm.jaggr.core.IAggregator)
+	 */
+	@Override
+	public void setAggregator(IAggregator aggregator) {
+		long capacity = getMaxCapacity(aggregator);
+		if (capacity != getMap().capacity()) {
+			// Reducing the capacity evicts entries, so sub-classes must have
+			// initialized whatever the eviction callback needs before calling us
+			getMap().setCapacity(capacity);
+		}
+	}
+
+	/**
+	 * Returns the capacity of the cache in bytes, as specified by the
+	 * capacity init-param.
+	 *
+	 * @param aggregator
+	 *            the aggregator
+	 * @return the capacity in bytes
+	 */
+	protected long getMaxCapacity(IAggregator aggregator) {
+		InitParams initParams = aggregator.getInitParams();
+		int result = defaultCapacityMB;
+		if (initParams != null) {
+			List<String> values = initParams.getValues(capacityInitParam);
+			result = TypeUtil.asInt(values.size() > 0 ? values.get(values.size()-1) : null, defaultCapacityMB);
+		}
+		return Math.max(1, result) * MB;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.ibm.jaggr.core.impl.cache.GenericCacheImpl#dump(java.io.Writer, java.util.regex.Pattern)
+	 */
+	@Override
+	public void dump(Writer writer, Pattern filter) throws IOException {
+		super.dump(writer, filter);
+		writer.append(toString()).append(System.getProperty("line.separator")); //$NON-NLS-1$
+	}
+
+	/* (non-Javadoc)
+	 * @see com.ibm.jaggr.core.IStatisticsProvider#getStatistics()
+	 */
+	@Override
+	public String getStatistics() {
+		return toString();
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		long hitCount = hits.get(), total = hitCount + misses.get();
+		return MessageFormat.format(
+				"{0}: entries = {1}, size = {2,number,#} of {3,number,#} bytes, hits = {4}, misses = {5} ({6}% hit rate), evictions = {7}", //$NON-NLS-1$
+				new Object[]{getClass().getSimpleName(), cacheMap.size(), getWeightedSize(), getCapacity(),
+						hitCount, total - hitCount, total > 0 ? hitCount * 100 / total : 0, evictions.get()}
+				);
+	}
+
+	private ConcurrentLinkedHashMap<String, T> getMap() {
+		return (ConcurrentLinkedHashMap<String, T>)cacheMap;
+	}
+
+	/**
+	 * Serializable weigher that delegates to the cache.
+	 * ConcurrentLinkedHashMap requires weights of at least 1.
+	 */
+	private static class EntryWeigher<T> implements Weigher<T>, Serializable {
+		private static final long serialVersionUID = 7350305718433592281L;
+
+		private final WeightedCacheImpl<T> cache;
+
+		private EntryWeigher(WeightedCacheImpl<T> cache) {
+			this.cache = cache;
+		}
+
+		@Override
+		public int weightOf(T entry) {
+			return (int)Math.max(1, Math.min(Integer.MAX_VALUE, cache.weightOf(entry)));
+		}
+	}
+
+	/**
+	 * Serializable eviction listener that delegates to the cache.
+	 */
+	private static class EntryEvictionListener<T> implements EvictionListener<String, T>, Serializable {
+		private static final long serialVersionUID = -4505470420417867931L;
+
+		private final WeightedCacheImpl<T> cache;
+
+		private EntryEvictionListener(WeightedCacheImpl<T> cache) {
+			this.cache = cache;
+		}
+
+		@Override
+		public void onEviction(String key, T entry) {
+			cache.evictions.incrementAndGet();
+			cache.evicted(key, entry);
+		}
+	}
+}
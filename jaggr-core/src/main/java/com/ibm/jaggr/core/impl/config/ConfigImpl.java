@@ -20,6 +20,7 @@ import com.ibm.jaggr.core.IAggregator;
 import com.ibm.jaggr.core.IServiceReference;
 import com.ibm.jaggr.core.IServiceRegistration;
 import com.ibm.jaggr.core.IShutdownListener;
+import com.ibm.jaggr.core.IStatisticsProvider;
 import com.ibm.jaggr.core.InitParams;
 import com.ibm.jaggr.core.PlatformServicesException;
 import com.ibm.jaggr.core.config.IConfig;
@@ -74,7 +75,7 @@ import java.util.logging.Logger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-public class ConfigImpl implements IConfig, IShutdownListener, IOptionsListener {
+public class ConfigImpl implements IConfig, IShutdownListener, IOptionsListener, IStatisticsProvider {
 	private static final Logger log = Logger.getLogger(ConfigImpl.class.getName());
 
 	/** regular expression for detecting if a plugin name is the has! plugin */
@@ -100,6 +101,7 @@ public class ConfigImpl implements IConfig, IShutdownListener, IOptionsListener
 	private Set<String> jsPluginDelegators;
 	private Scriptable sharedScope;
 	private Map<String, Object> defaultFeatureMap;
+	private volatile ConfigIndex index;
 
 	protected List<IServiceRegistration> serviceRegs = new LinkedList<IServiceRegistration>();
 
@@ -251,6 +253,7 @@ public class ConfigImpl implements IConfig, IShutdownListener, IOptionsListener
 			textPluginDelegators = loadTextPluginDelegators(rawConfig);
 			jsPluginDelegators = loadJsPluginDelegators(rawConfig);
 			defaultFeatureMap = loadDefaultFeatures(rawConfig);
+			index = new ConfigIndex(paths, packages, aliases);
 		} catch (URISyntaxException e) {
 			throw new IOException(e);
 		}
@@ -275,6 +278,7 @@ public class ConfigImpl implements IConfig, IShutdownListener, IOptionsListener
 			cacheBust = loadCacheBust(rawConfig);
 			textPluginDelegators = loadTextPluginDelegators(rawConfig);
 			jsPluginDelegators = loadJsPluginDelegators(rawConfig);
+			index = new ConfigIndex(paths, packages, aliases);
 		} catch (URISyntaxException e) {
 			throw new IOException(e);
 		}
@@ -468,6 +472,11 @@ public class ConfigImpl implements IConfig, IShutdownListener, IOptionsListener
 	 */
 	@Override
 	public URI locateModuleResource(String mid, boolean isJavaScript) {
+		final String key = (isJavaScript ? "1" : "0") + mid; //$NON-NLS-1$ //$NON-NLS-2$
+		URI cached = index.locationCache.get(key, null, null);
+		if (cached != null) {
+			return cached;
+		}
 		Location location = null;
 		String remainder = null;
 
@@ -480,24 +489,13 @@ public class ConfigImpl implements IConfig, IShutdownListener, IOptionsListener
 			mid = getPackages().get(mid).getMain();
 		}
 		if (location == null) {
-			// Still no match.  Iterate through the paths and packages looking
-			// for an entry that matches part of the module id
+			// Still no match.  Look for the path or package with the longest
+			// prefix that matches part of the module id
 			String prefix = ""; //$NON-NLS-1$
-			for (Map.Entry<String, Location> entry : getPaths().entrySet()) {
-				if (mid.startsWith(entry.getKey()) && entry.getKey().length() > prefix.length()) {
-					if (entry.getKey().endsWith("/") || mid.charAt(entry.getKey().length()) == '/') { //$NON-NLS-1$
-						prefix = entry.getKey();
-						location = entry.getValue();
-					}
-				}
-			}
-			for (Map.Entry<String, IPackage> entry : getPackages().entrySet()) {
-				if (mid.startsWith(entry.getKey()) && entry.getKey().length() > prefix.length()) {
-					if (entry.getKey().endsWith("/") || mid.charAt(entry.getKey().length()) == '/') { //$NON-NLS-1$
-						prefix = entry.getKey();
-						location = entry.getValue().getLocation();
-					}
-				}
+			Map.Entry<String, Location> match = index.findLocation(mid);
+			if (match != null) {
+				prefix = match.getKey();
+				location = match.getValue();
 			}
 			if (prefix.length() > 0) {
 				// We found a partial match.  Set the remainder
@@ -527,6 +525,11 @@ public class ConfigImpl implements IConfig, IShutdownListener, IOptionsListener
 			URI override = toResourceUri(location.getOverride(), remainder, isJavaScript);
 			result = (override != null && aggregator.newResource(override).exists()) ?
 					override : toResourceUri(location.getPrimary(), remainder, isJavaScript);
+			// Override resources may be added or removed at any time, so only results for
+			// locations without an override are memoized
+			if (location.getOverride() == null && result != null) {
+				index.locationCache.put(key, result);
+			}
 
 		} catch (URISyntaxException e) {
 			if (log.isLoggable(Level.WARNING)) {
@@ -589,13 +592,33 @@ public class ConfigImpl implements IConfig, IShutdownListener, IOptionsListener
 			log.entering(ConfigImpl.class.getName(), sourceMethod, new Object[]{mid, features, dependentFeatures, sb, resolveAliases, evaluateHasPluginConditionals});
 		}
 
-		mid = _resolve(mid, features, dependentFeatures, resolveAliases, evaluateHasPluginConditionals, 0, sb);
-
-		// check for package name and replace with the package's main module id
-		IPackage pkg = packages.get(mid);
-		if (pkg != null) {
-			mid = pkg.getMain();
+		// Results are memoized by module id and flags, and by the values of the features that
+		// the result depends on.  Diagnostic requests (sb != null) are not memoized because
+		// the diagnostic output is produced only when the module id is actually resolved.
+		ConfigIndex idx = index;
+		String key = null;
+		String result = null;
+		if (sb == null && mid != null && idx != null) {
+			key = (resolveAliases ? "1" : "0") + (evaluateHasPluginConditionals ? "1" : "0") + mid; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+			result = idx.resolveCache.get(key, features, dependentFeatures);
+		}
+		if (result == null) {
+			Set<String> deps = new HashSet<String>();
+			result = _resolve(mid, features, deps, resolveAliases, evaluateHasPluginConditionals, 0, sb);
+
+			// check for package name and replace with the package's main module id
+			IPackage pkg = packages.get(result);
+			if (pkg != null) {
+				result = pkg.getMain();
+			}
+			if (dependentFeatures != null) {
+				dependentFeatures.addAll(deps);
+			}
+			if (key != null && result != null) {
+				idx.resolveCache.put(key, result, features, deps);
+			}
 		}
+		mid = result;
 		if (isTraceLogging) {
 			log.exiting(ConfigImpl.class.getName(), sourceMethod, mid);
 		}
@@ -829,64 +852,71 @@ public class ConfigImpl implements IConfig, IShutdownListener, IOptionsListener
 		if (isTraceLogging) {
 			log.entering(ConfigImpl.class.getName(), sourceMethod, new Object[]{name, features, dependentFeatures, sb});
 		}
-		List<IAlias> aliases = getAliases();
-		String result = name;
-		// Iterate through the list of aliases in reverse order so that last matching alias wins
-		// so as to emulate the behavior of dojo's loader.
-		for (int j = aliases.size()-1; j >= 0; j--) {
-			IAlias alias = aliases.get(j);
+		// Results are memoized by name, and for replacement functions, by the values of the
+		// features that the function queried.
+		String result = index.aliasCache.get(name, features, dependentFeatures);
+		if (result != null) {
+			if (isTraceLogging) {
+				log.exiting(ConfigImpl.class.getName(), sourceMethod, result);
+			}
+			return result;
+		}
+		result = name;
+		// If more than one alias matches, then the last matching alias wins so as to emulate
+		// the behavior of dojo's loader.
+		IAlias alias = index.findAlias(name);
+		boolean isFeatureDependent = false;
+		if (alias != null) {
 			Object pattern = alias.getPattern();
 			if (pattern instanceof String) {
-				if (alias.getPattern().equals(name)) {
-					if (isTraceLogging) {
-						log.finer("Matched alias pattern " + alias.getPattern().toString() + ": " + alias.getReplacement().toString()); //$NON-NLS-1$ //$NON-NLS-2$
-					}
-					result = (String)alias.getReplacement();
-					break;
+				if (isTraceLogging) {
+					log.finer("Matched alias pattern " + alias.getPattern().toString() + ": " + alias.getReplacement().toString()); //$NON-NLS-1$ //$NON-NLS-2$
 				}
+				result = (String)alias.getReplacement();
 			} else {
 				Matcher m = ((Pattern)pattern).matcher(name);
-				if (m.find()) {
-					m.reset();
-					Object replacement = alias.getReplacement();
-					if (replacement instanceof String) {
-						if (isTraceLogging) {
-							log.finer("Matched alias pattern " + alias.getPattern().toString() + ": " + replacement.toString()); //$NON-NLS-1$ //$NON-NLS-2$
-						}
-						result = m.replaceAll((String)replacement);
-					} else if (replacement instanceof Function){
-						// replacement is a javascript function.
-						Context cx = Context.enter();
-						if (isTraceLogging) {
-							log.finer("Matched alias pattern " + alias.getPattern().toString() + ": " + toString(replacement)); //$NON-NLS-1$ //$NON-NLS-2$
-						}
-						try {
-							Scriptable threadScope = cx.newObject(sharedScope);
-							threadScope.setPrototype(sharedScope);
-							threadScope.setParentScope(null);
-							HasFunction hasFn = newHasFunction(threadScope, features);
-							ScriptableObject.putProperty(threadScope, "has", hasFn); //$NON-NLS-1$
-							StringBuffer sbResult = new StringBuffer();
-							while (m.find()) {
-								ArrayList<Object> groups = new ArrayList<Object>(m.groupCount()+1);
-								groups.add(m.group(0));
-								for (int i = 0; i < m.groupCount(); i++) {
-									groups.add(m.group(i+1));
-								}
-								String r = (String)((Function)replacement).call(cx, threadScope, null, groups.toArray()).toString();
-								m.appendReplacement(sbResult, r);
-								dependentFeatures.addAll(hasFn.getDependentFeatures());
+				Object replacement = alias.getReplacement();
+				if (replacement instanceof String) {
+					if (isTraceLogging) {
+						log.finer("Matched alias pattern " + alias.getPattern().toString() + ": " + replacement.toString()); //$NON-NLS-1$ //$NON-NLS-2$
+					}
+					result = m.replaceAll((String)replacement);
+				} else if (replacement instanceof Function){
+					// replacement is a javascript function.
+					isFeatureDependent = true;
+					Context cx = Context.enter();
+					if (isTraceLogging) {
+						log.finer("Matched alias pattern " + alias.getPattern().toString() + ": " + toString(replacement)); //$NON-NLS-1$ //$NON-NLS-2$
+					}
+					try {
+						Scriptable threadScope = cx.newObject(sharedScope);
+						threadScope.setPrototype(sharedScope);
+						threadScope.setParentScope(null);
+						HasFunction hasFn = newHasFunction(threadScope, features);
+						ScriptableObject.putProperty(threadScope, "has", hasFn); //$NON-NLS-1$
+						StringBuffer sbResult = new StringBuffer();
+						while (m.find()) {
+							ArrayList<Object> groups = new ArrayList<Object>(m.groupCount()+1);
+							groups.add(m.group(0));
+							for (int i = 0; i < m.groupCount(); i++) {
+								groups.add(m.group(i+1));
 							}
-							m.appendTail(sbResult);
-							result = sbResult.toString();
-						} finally {
-							Context.exit();
+							String r = (String)((Function)replacement).call(cx, threadScope, null, groups.toArray()).toString();
+							m.appendReplacement(sbResult, r);
 						}
+						m.appendTail(sbResult);
+						result = sbResult.toString();
+						dependentFeatures.addAll(hasFn.getDependentFeatures());
+						index.aliasCache.put(name, result, features, hasFn.getDependentFeatures());
+					} finally {
+						Context.exit();
 					}
-					break;
 				}
 			}
 		}
+		if (!isFeatureDependent) {
+			index.aliasCache.put(name, result);
+		}
 		if (isTraceLogging) {
 			log.exiting(ConfigImpl.class.getName(), sourceMethod, result);
 		}
@@ -1438,6 +1468,18 @@ public class ConfigImpl implements IConfig, IShutdownListener, IOptionsListener
 		return strConfig != null ? strConfig : "{}"; //$NON-NLS-1$
 	}
 
+	/**
+	 * Returns the hit rate statistics for the alias, module id and module
+	 * location resolution caches of this config.
+	 *
+	 * @return the resolution cache statistics
+	 */
+	@Override
+	public String getStatistics() {
+		ConfigIndex idx = index;
+		return idx != null ? idx.toString() : ""; //$NON-NLS-1$
+	}
+
 	/* (non-Javadoc)
 	 * @see com.ibm.jaggr.core.config.IConfig#getProperty(java.lang.String, java.lang.Class)
 	 */
@@ -1475,6 +1517,11 @@ public class ConfigImpl implements IConfig, IShutdownListener, IOptionsListener
 	 */
 	@Override
 	public void optionsUpdated(IOptions options, long sequence) {
+		// Replacement functions may query the options
+		ConfigIndex idx = index;
+		if (idx != null) {
+			idx.clearOptionDependentResults();
+		}
 		Context cx = Context.enter();
 		try {
 			Scriptable jsOptions = cx.newObject(sharedScope);
@@ -0,0 +1,179 @@
+/*
+ * (C) Copyright IBM Corp. 2012, 2016 All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ibm.jaggr.core.impl.config;
+
+import com.ibm.jaggr.core.config.IConfig.IAlias;
+import com.ibm.jaggr.core.config.IConfig.IPackage;
+import com.ibm.jaggr.core.config.IConfig.Location;
+
+import java.net.URI;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Immutable lookup structures compiled from the paths, packages and aliases
+ * of a loaded config, together with memos of resolution results.
+ * <p>
+ * Path and package prefixes are held in a single map keyed on the prefix, so
+ * the longest matching prefix for a module id is found by probing the map at
+ * each path separator in the module id, longest first, rather than by
+ * scanning all the paths and packages. String aliases are held in a map, and
+ * only the regular expression aliases that were declared after the matching
+ * string alias (if any) need to be tried.
+ * <p>
+ * Alias resolution results, module id resolution results and module resource
+ * URIs are memoized in {@link ResolutionCache}s, which take into account the
+ * features that the results depend on.
+ */
+final class ConfigIndex {
+
+	private final Map<String, Location> prefixes;
+
+	private final List<IAlias> aliases;
+
+	private final Map<String, Integer> stringAliases;
+
+	/** indices of the regular expression aliases, in descending order */
+	private final int[] regexAliases;
+
+	/** Memo of alias resolution results, keyed on the module name */
+	final ResolutionCache<String> aliasCache;
+
+	/**
+	 * Memo of module id resolution results, keyed on the module id and the
+	 * resolution flags
+	 */
+	final ResolutionCache<String> resolveCache;
+
+	/**
+	 * Memo of module resource URIs, keyed on the module id and the JavaScript
+	 * flag. Only URIs for locations without overrides are memoized, since
+	 * override resources are checked for existence on every lookup.
+	 */
+	final ResolutionCache<URI> locationCache;
+
+	ConfigIndex(Map<String, Location> paths, Map<String, IPackage> packages, List<IAlias> aliases) {
+		this(paths, packages, aliases, ResolutionCache.DEFAULT_CAPACITY);
+	}
+
+	ConfigIndex(Map<String, Location> paths, Map<String, IPackage> packages, List<IAlias> aliases, int capacity) {
+		// Paths take precedence over packages with the same name
+		Map<String, Location> prefixMap = new HashMap<String, Location>();
+		for (Map.Entry<String, IPackage> entry : packages.entrySet()) {
+			prefixMap.put(entry.getKey(), entry.getValue().getLocation());
+		}
+		prefixMap.putAll(paths);
+		prefixes = Collections.unmodifiableMap(prefixMap);
+
+		this.aliases = aliases != null ? new ArrayList<IAlias>(aliases) : Collections.<IAlias>emptyList();
+		Map<String, Integer> stringMap = new HashMap<String, Integer>();
+		List<Integer> regexList = new ArrayList<Integer>();
+		for (int i = this.aliases.size()-1; i >= 0; i--) {
+			Object pattern = this.aliases.get(i).getPattern();
+			if (pattern instanceof String) {
+				// last matching alias wins
+				if (!stringMap.containsKey(pattern)) {
+					stringMap.put((String)pattern, i);
+				}
+			} else {
+				regexList.add(i);
+			}
+		}
+		stringAliases = Collections.unmodifiableMap(stringMap);
+		regexAliases = new int[regexList.size()];
+		for (int i = 0; i < regexAliases.length; i++) {
+			regexAliases[i] = regexList.get(i);
+		}
+		aliasCache = new ResolutionCache<String>("Alias resolution cache", capacity); //$NON-NLS-1$
+		resolveCache = new ResolutionCache<String>("Module id resolution cache", capacity); //$NON-NLS-1$
+		locationCache = new ResolutionCache<URI>("Module location cache", capacity); //$NON-NLS-1$
+	}
+
+	/**
+	 * Returns the path or package with the longest prefix matching the
+	 * specified module id. A prefix matches if the module id starts with the
+	 * prefix followed by a path separator, or if the prefix ends with a path
+	 * separator and the module id starts with the prefix.
+	 *
+	 * @param mid
+	 *            the module id
+	 * @return the matching prefix and its location, or null
+	 */
+	Map.Entry<String, Location> findLocation(String mid) {
+		for (int i = mid.lastIndexOf('/'); i >= 0; i = mid.lastIndexOf('/', i-1)) {
+			String prefix = mid.substring(0, i+1);
+			Location location = prefixes.get(prefix);
+			if (location == null && i > 0) {
+				prefix = mid.substring(0, i);
+				location = prefixes.get(prefix);
+			}
+			if (location != null) {
+				return new AbstractMap.SimpleImmutableEntry<String, Location>(prefix, location);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the alias that applies to the specified module name. If more
+	 * than one alias matches, then the last one declared wins so as to emulate
+	 * the behavior of dojo's loader.
+	 *
+	 * @param name
+	 *            the module name
+	 * @return the matching alias, or null
+	 */
+	IAlias findAlias(String name) {
+		Integer stringMatch = stringAliases.get(name);
+		int floor = stringMatch != null ? stringMatch : -1;
+		for (int index : regexAliases) {
+			if (index < floor) {
+				break;
+			}
+			if (((Pattern)aliases.get(index).getPattern()).matcher(name).find()) {
+				return aliases.get(index);
+			}
+		}
+		return stringMatch != null ? aliases.get(stringMatch) : null;
+	}
+
+	/**
+	 * Discards the memoized results that may depend on the aggregator options
+	 * (alias replacement functions can query the options)
+	 */
+	void clearOptionDependentResults() {
+		aliasCache.clear();
+		resolveCache.clear();
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		String newline = System.getProperty("line.separator"); //$NON-NLS-1$
+		return new StringBuffer()
+			.append(aliasCache.toString()).append(newline)
+			.append(resolveCache.toString()).append(newline)
+			.append(locationCache.toString()).toString();
+	}
+}
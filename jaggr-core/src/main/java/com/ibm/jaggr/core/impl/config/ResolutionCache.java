@@ -0,0 +1,211 @@
+/*
+ * (C) Copyright IBM Corp. 2012, 2016 All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ibm.jaggr.core.impl.config;
+
+import com.ibm.jaggr.core.util.Features;
+
+import com.googlecode.concurrentlinkedhashmap.ConcurrentLinkedHashMap;
+
+import java.text.MessageFormat;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded, concurrent memo of config resolution results.
+ * <p>
+ * Results that depend on features (because a has! plugin expression or an
+ * alias replacement function queried them) are memoized together with the
+ * values of the queried features, and are reused only for requests that
+ * specify the same values for those features. Feature values are
+ * {@link Boolean#TRUE}, {@link Boolean#FALSE}, or null for features not
+ * specified in the request. Up to {@link #MAX_VARIANTS} feature dependent
+ * results are kept for each key.
+ * <p>
+ * A cache belongs to a single loaded config, so results are discarded along
+ * with the config when the config is reloaded.
+ *
+ * @param <T>
+ *            the result type
+ */
+final class ResolutionCache<T> {
+
+	/**
+	 * The default maximum number of keys held by the cache
+	 */
+	static final int DEFAULT_CAPACITY = 10000;
+
+	/**
+	 * The maximum number of feature dependent results held for a key
+	 */
+	static final int MAX_VARIANTS = 16;
+
+	private final String name;
+
+	private final ConcurrentLinkedHashMap<String, Object> map;
+
+	private final AtomicLong hits = new AtomicLong();
+
+	private final AtomicLong misses = new AtomicLong();
+
+	/**
+	 * @param name
+	 *            the cache name, used by {@link #toString()}
+	 * @param capacity
+	 *            the maximum number of keys held by the cache
+	 */
+	ResolutionCache(String name, int capacity) {
+		this.name = name;
+		map = new ConcurrentLinkedHashMap.Builder<String, Object>()
+				.maximumWeightedCapacity(capacity)
+				.build();
+	}
+
+	/**
+	 * Returns the memoized result for the specified key, or null if there is
+	 * no result that is valid for the specified features. If the result
+	 * depends on features, then those features are added to
+	 * <code>dependentFeatures</code>.
+	 *
+	 * @param key
+	 *            the key
+	 * @param features
+	 *            the features specified in the request
+	 * @param dependentFeatures
+	 *            Output - the features the result depends on. May be null.
+	 * @return the memoized result, or null
+	 */
+	@SuppressWarnings("unchecked")
+	T get(String key, Features features, Set<String> dependentFeatures) {
+		Object value = map.get(key);
+		if (value instanceof Variant[]) {
+			Object result = null;
+			for (Variant variant : (Variant[])value) {
+				if (variant.matches(features)) {
+					if (dependentFeatures != null) {
+						Collections.addAll(dependentFeatures, variant.features);
+					}
+					result = variant.result;
+					break;
+				}
+			}
+			value = result;
+		}
+		(value != null ? hits : misses).incrementAndGet();
+		return (T)value;
+	}
+
+	/**
+	 * Memoizes a result that doesn't depend on features.
+	 *
+	 * @param key
+	 *            the key
+	 * @param result
+	 *            the result
+	 */
+	void put(String key, T result) {
+		map.put(key, result);
+	}
+
+	/**
+	 * Memoizes a result that depends on the specified features.
+	 *
+	 * @param key
+	 *            the key
+	 * @param result
+	 *            the result
+	 * @param features
+	 *            the features specified in the request
+	 * @param queriedFeatures
+	 *            the features the result depends on
+	 */
+	void put(String key, T result, Features features, Set<String> queriedFeatures) {
+		if (queriedFeatures.isEmpty()) {
+			put(key, result);
+			return;
+		}
+		Variant variant = new Variant(result, features, queriedFeatures);
+		Variant[] variants = new Variant[]{variant};
+		// Racing updates for the same key may drop a variant, which costs
+		// only a repeat resolution
+		Object value = map.putIfAbsent(key, variants);
+		if (value instanceof Variant[]) {
+			Variant[] old = (Variant[])value;
+			int len = Math.min(old.length, MAX_VARIANTS-1);
+			variants = new Variant[len+1];
+			variants[0] = variant;
+			System.arraycopy(old, 0, variants, 1, len);
+			map.replace(key, old, variants);
+		} else if (value != null) {
+			map.replace(key, value, variants);
+		}
+	}
+
+	/**
+	 * Discards the memoized results
+	 */
+	void clear() {
+		map.clear();
+	}
+
+	/**
+	 * @return the number of keys in the cache
+	 */
+	int size() {
+		return map.size();
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		long hitCount = hits.get(), total = hitCount + misses.get();
+		return MessageFormat.format(
+				"{0}: entries = {1}, hits = {2}, misses = {3} ({4}% hit rate)", //$NON-NLS-1$
+				new Object[]{name, map.size(), hitCount, total - hitCount, total > 0 ? hitCount * 100 / total : 0}
+				);
+	}
+
+	private static final class Variant {
+		private final Object result;
+		private final String[] features;
+		private final Boolean[] values;
+
+		Variant(Object result, Features features, Set<String> queriedFeatures) {
+			this.result = result;
+			this.features = queriedFeatures.toArray(new String[queriedFeatures.size()]);
+			values = new Boolean[this.features.length];
+			for (int i = 0; i < this.features.length; i++) {
+				values[i] = valueOf(features, this.features[i]);
+			}
+		}
+
+		boolean matches(Features features) {
+			for (int i = 0; i < this.features.length; i++) {
+				if (values[i] != valueOf(features, this.features[i])) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		private static Boolean valueOf(Features features, String name) {
+			return features != null && features.contains(name) ? Boolean.valueOf(features.isFeature(name)) : null;
+		}
+	}
+}
@@ -0,0 +1,313 @@
+/*
+ * (C) Copyright IBM Corp. 2012, 2016 All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ibm.jaggr.core.impl.deps;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Reads and writes the compact binary representation of a {@link DepTree}
+ * that is saved in the dependency cache directory.
+ * <p>
+ * The file consists of a header, followed by a string table, a node table and
+ * a root table. Every string in the tree (node names, URIs, dependency names
+ * and feature names) is stored once in the string table and is referenced
+ * everywhere else by its index, so that the many duplicate dependency names in
+ * a typical tree share a single {@code String} instance when the file is
+ * loaded. Nodes are written in pre-order, each one specifying the index of its
+ * parent node, so the tree can be rebuilt with a single pass over the node
+ * table.
+ * <pre>
+ * header:  int magic, int version, long stamp, int rawConfig, int cacheBust
+ * strings: int count, { int length, byte[length] utf-8 }*
+ * nodes:   int count, { int parent, int name, int uri, long lastModified,
+ *                       long lastModifiedDep, ints define, ints require,
+ *                       ints features }*
+ * roots:   int count, { int uri, int node }*
+ * </pre>
+ * String references are -1 for null, and integer arrays ({@code ints}) are
+ * written as a count followed by the elements, with a count of -1 for null.
+ */
+final class DepMapFile {
+
+	/** 'JDEP' */
+	static final int MAGIC = 0x4A444550;
+
+	static final int VERSION = 1;
+
+	private static final Charset UTF8 = Charset.forName("UTF-8"); //$NON-NLS-1$
+
+	private DepMapFile() {}
+
+	/**
+	 * Writes the specified tree to the specified file
+	 *
+	 * @param tree
+	 *            the tree to write
+	 * @param file
+	 *            the target file
+	 * @throws IOException
+	 */
+	static void write(DepTree tree, File file) throws IOException {
+		Writer writer = new Writer();
+		writer.addTree(tree);
+		DataOutputStream os = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+		try {
+			writer.writeTo(os);
+		} finally {
+			try { os.close(); } catch (Exception ignore) {}
+		}
+	}
+
+	/**
+	 * Reads the tree from the specified file
+	 *
+	 * @param file
+	 *            the file to read
+	 * @return the tree, or null if the file was not written by this version of
+	 *         this class
+	 * @throws IOException
+	 */
+	static DepTree read(File file) throws IOException {
+		FileInputStream is = new FileInputStream(file);
+		ByteBuffer buf;
+		try {
+			FileChannel channel = is.getChannel();
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE) {
+				throw new IOException(file.toString());
+			}
+			buf = ByteBuffer.allocate((int)size);
+			while (buf.hasRemaining() && channel.read(buf) != -1);
+			buf.flip();
+		} finally {
+			try { is.close(); } catch (Exception ignore) {}
+		}
+		return read(buf);
+	}
+
+	/**
+	 * Reads the tree from the specified buffer
+	 *
+	 * @param buf
+	 *            the buffer containing the file contents
+	 * @return the tree, or null if the buffer was not written by this version
+	 *         of this class
+	 * @throws IOException
+	 */
+	static DepTree read(ByteBuffer buf) throws IOException {
+		if (buf.remaining() < 8 || buf.getInt() != MAGIC || buf.getInt() != VERSION) {
+			return null;
+		}
+		try {
+			DepTree result = new DepTree();
+			result.stamp = buf.getLong();
+			int rawConfig = buf.getInt(), cacheBust = buf.getInt();
+
+			String[] strings = new String[buf.getInt()];
+			for (int i = 0; i < strings.length; i++) {
+				int len = buf.getInt();
+				ByteBuffer bytes = buf.slice();
+				bytes.limit(len);
+				strings[i] = UTF8.decode(bytes).toString();
+				buf.position(buf.position() + len);
+			}
+			result.rawConfig = rawConfig == -1 ? null : strings[rawConfig];
+			result.cacheBust = cacheBust == -1 ? null : strings[cacheBust];
+
+			URI[] uris = new URI[strings.length];
+			DepTreeNode[] nodes = new DepTreeNode[buf.getInt()];
+			for (int i = 0; i < nodes.length; i++) {
+				int parent = buf.getInt();
+				String name = strings[buf.getInt()];
+				URI uri = toURI(buf.getInt(), strings, uris);
+				long lastModified = buf.getLong(), lastModifiedDep = buf.getLong();
+				String[] define = readStrings(buf, strings);
+				String[] require = readStrings(buf, strings);
+				String[] features = readStrings(buf, strings);
+				DepTreeNode node = new DepTreeNode(name, uri);
+				node.setDependencies(define, require, features, lastModified, lastModifiedDep);
+				if (parent != -1) {
+					nodes[parent].add(node);
+				}
+				nodes[i] = node;
+			}
+
+			int rootCount = buf.getInt();
+			ConcurrentMap<URI, DepTreeNode> depMap = new ConcurrentHashMap<URI, DepTreeNode>(rootCount * 4 / 3 + 1);
+			for (int i = 0; i < rootCount; i++) {
+				URI uri = toURI(buf.getInt(), strings, uris);
+				depMap.put(uri, nodes[buf.getInt()]);
+			}
+			result.depMap = depMap;
+			return result;
+		} catch (RuntimeException e) {
+			// Buffer underflow, bad index, etc.
+			throw new IOException(e);
+		}
+	}
+
+	private static URI toURI(int index, String[] strings, URI[] uris) {
+		if (index == -1) {
+			return null;
+		}
+		URI result = uris[index];
+		if (result == null) {
+			result = uris[index] = URI.create(strings[index]);
+		}
+		return result;
+	}
+
+	private static String[] readStrings(ByteBuffer buf, String[] strings) {
+		int len = buf.getInt();
+		if (len == -1) {
+			return null;
+		}
+		String[] result = new String[len];
+		for (int i = 0; i < len; i++) {
+			int index = buf.getInt();
+			result[i] = index == -1 ? null : strings[index];
+		}
+		return result;
+	}
+
+	/**
+	 * Builds the string and node tables for a tree
+	 */
+	private static class Writer {
+		private final Map<String, Integer> stringIndex = new HashMap<String, Integer>();
+		private final List<String> strings = new ArrayList<String>();
+		private final List<int[]> nodeRefs = new ArrayList<int[]>();
+		private final List<DepTreeNode> nodes = new ArrayList<DepTreeNode>();
+		private final List<int[]> roots = new ArrayList<int[]>();
+		private long stamp;
+		private int rawConfig, cacheBust;
+
+		void addTree(DepTree tree) {
+			stamp = tree.stamp;
+			rawConfig = indexOf(tree.rawConfig);
+			cacheBust = indexOf(tree.cacheBust);
+			if (tree.depMap != null) {
+				for (Map.Entry<URI, DepTreeNode> entry : tree.depMap.entrySet()) {
+					int uri = indexOf(entry.getKey().toString());
+					roots.add(new int[]{uri, addNode(entry.getValue(), -1)});
+				}
+			}
+		}
+
+		void writeTo(DataOutputStream os) throws IOException {
+			os.writeInt(MAGIC);
+			os.writeInt(VERSION);
+			os.writeLong(stamp);
+			os.writeInt(rawConfig);
+			os.writeInt(cacheBust);
+
+			os.writeInt(strings.size());
+			for (String str : strings) {
+				byte[] bytes = str.getBytes(UTF8);
+				os.writeInt(bytes.length);
+				os.write(bytes);
+			}
+
+			os.writeInt(nodes.size());
+			for (int i = 0; i < nodes.size(); i++) {
+				DepTreeNode node = nodes.get(i);
+				int[] refs = nodeRefs.get(i);
+				os.writeInt(refs[0]);	// parent
+				os.writeInt(refs[1]);	// name
+				os.writeInt(refs[2]);	// uri
+				os.writeLong(node.lastModified());
+				os.writeLong(node.lastModifiedDep());
+				writeStrings(os, node.getDefineDepArray());
+				writeStrings(os, node.getRequireDepArray());
+				writeStrings(os, node.getDependentFeatures());
+			}
+
+			os.writeInt(roots.size());
+			for (int[] root : roots) {
+				os.writeInt(root[0]);
+				os.writeInt(root[1]);
+			}
+		}
+
+		private int addNode(DepTreeNode node, int parent) {
+			int index = nodes.size();
+			nodes.add(node);
+			nodeRefs.add(new int[]{
+					parent,
+					indexOf(node.getName()),
+					node.getURI() == null ? -1 : indexOf(node.getURI().toString())
+			});
+			addStrings(node.getDefineDepArray());
+			addStrings(node.getRequireDepArray());
+			addStrings(node.getDependentFeatures());
+			Map<String, DepTreeNode> children = node.getChildren();
+			if (children != null) {
+				for (DepTreeNode child : children.values()) {
+					addNode(child, index);
+				}
+			}
+			return index;
+		}
+
+		private void addStrings(String[] strs) {
+			if (strs != null) {
+				for (String str : strs) {
+					indexOf(str);
+				}
+			}
+		}
+
+		private void writeStrings(DataOutputStream os, String[] strs) throws IOException {
+			if (strs == null) {
+				os.writeInt(-1);
+				return;
+			}
+			os.writeInt(strs.length);
+			for (String str : strs) {
+				os.writeInt(indexOf(str));
+			}
+		}
+
+		private int indexOf(String str) {
+			if (str == null) {
+				return -1;
+			}
+			Integer index = stringIndex.get(str);
+			if (index == null) {
+				index = strings.size();
+				stringIndex.put(str, index);
+				strings.add(str);
+			}
+			return index;
+		}
+	}
+}
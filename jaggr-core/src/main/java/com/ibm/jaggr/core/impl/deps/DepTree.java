@@ -21,24 +21,21 @@ import com.ibm.jaggr.core.IAggregatorExtension;
 import com.ibm.jaggr.core.config.IConfig;
 import com.ibm.jaggr.core.deps.IDependencies;
 import com.ibm.jaggr.core.modulebuilder.IModuleBuilderExtensionPoint;
+import com.ibm.jaggr.core.options.IOptions;
 import com.ibm.jaggr.core.util.AggregatorUtil;
 import com.ibm.jaggr.core.util.CompilerUtil;
 import com.ibm.jaggr.core.util.ConsoleService;
-import com.ibm.jaggr.core.util.SignalUtil;
 
 import org.apache.commons.lang3.StringUtils;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.lang.reflect.AccessibleObject;
 import java.net.URI;
 import java.text.MessageFormat;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
@@ -49,14 +46,11 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
-import java.util.concurrent.CompletionService;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -79,8 +73,7 @@ public class DepTree implements Serializable {
 	static final String sourceClass = DepTree.class.getName();
 	static final Logger log = Logger.getLogger(sourceClass);
 
-	static final String TREEBUILDER_TGNAME = "treeBuilder"; //$NON-NLS-1$
-	static final String JSPARSER_TGNAME = "jsParser"; //$NON-NLS-1$
+	static final String DEPSCAN_TGNAME = "depScanner"; //$NON-NLS-1$
 	static final String THREADNAME = "{0} Thread-{1}";  //$NON-NLS-1$
 
 	/**
@@ -165,15 +158,13 @@ public class DepTree implements Serializable {
 			// If we're not starting clean, try to de-serialize the map from
 			// cache
 			try {
-				ObjectInputStream is = new ObjectInputStream(
-						new FileInputStream(cacheFile));
-				try {
-					if (isTraceLogging) {
-						log.finer("Attempting to read cached dependencies from " + cacheFile.toString()); //$NON-NLS-1$
-					}
-					cached = (DepTree) is.readObject();
-				} finally {
-					try { is.close(); } catch (Exception ignore) {}
+				if (isTraceLogging) {
+					log.finer("Attempting to read cached dependencies from " + cacheFile.toString()); //$NON-NLS-1$
+				}
+				cached = DepMapFile.read(cacheFile);
+				if (cached == null && log.isLoggable(Level.INFO)) {
+					// Cache file was written by a previous version
+					log.log(Level.INFO, Messages.DepTree_1);
 				}
 			} catch (FileNotFoundException e) {
 				/*
@@ -248,57 +239,32 @@ public class DepTree implements Serializable {
 		paths = DepUtils.removeRedundantPaths(paths);
 
 		/*
-		 * Create the thread pools, one for the tree builders and one for the
-		 * parsers. Since a tree builder thread will wait for all the outstanding
-		 * parser threads started by that builder to complete, we need to use two
-		 * independent thread pools to guard against the possibility of deadlock
-		 * caused by all the threads in the pool being consumed by tree builders
-		 * and leaving none available to service the parsers.
+		 * Create the thread pool used to walk the folders and parse the
+		 * javascript files. The tree builders don't block pool threads waiting
+		 * for the tasks they've started to complete, so a single pool, sized
+		 * to the configured parallelism, is shared by all the builders.
 		 */
-		final ThreadGroup
-		treeBuilderTG = new ThreadGroup(TREEBUILDER_TGNAME),
-		parserTG = new ThreadGroup(JSPARSER_TGNAME);
-		ExecutorService
-		treeBuilderExc = Executors.newFixedThreadPool(10, new ThreadFactory() {
-			public Thread newThread(Runnable r) {
-				return new Thread(treeBuilderTG, r,
-						MessageFormat.format(THREADNAME,
-								new Object[]{
-								treeBuilderTG.getName(),
-								treeBuilderTG.activeCount()
-						}
-								)
-						);
-			}
-		}),
-		parserExc = Executors.newFixedThreadPool(20, new ThreadFactory() {
+		final ThreadGroup depScanTG = new ThreadGroup(DEPSCAN_TGNAME);
+		ExecutorService depScanExc = Executors.newFixedThreadPool(getParallelism(aggregator), new ThreadFactory() {
 			public Thread newThread(Runnable r) {
-				return new Thread(parserTG, r,
+				return new Thread(depScanTG, r,
 						MessageFormat.format(THREADNAME,
 								new Object[]{
-								parserTG.getName(),
-								parserTG.activeCount()
+								depScanTG.getName(),
+								depScanTG.activeCount()
 						}
 								)
 						);
 			}
 		});
 
-		// Counter to keep track of number of tree builder threads started
-		AtomicInteger treeBuilderCount = new AtomicInteger(0);
-
-		// The completion services for the thread pools
-		final CompletionService<URI> parserCs = new ExecutorCompletionService<URI>(
-				parserExc);
-		CompletionService<DepTreeBuilder.Result> treeBuilderCs = new ExecutorCompletionService<DepTreeBuilder.Result>(
-				treeBuilderExc);
-
 		// Load compiler options from config to specify when parsing
 		Map<AccessibleObject, List<Object>> compilerOptionsMap = new HashMap<AccessibleObject, List<Object>>();
 		CompilerUtil.compilerOptionsMapFromConfig(config, compilerOptionsMap);
 
 		Set<String> nonJSExtensions = Collections.unmodifiableSet(getNonJSExtensions(aggregator));
-		// Start the tree builder threads to process the paths
+		List<DepTreeBuilder> treeBuilders = new ArrayList<DepTreeBuilder>(paths.size());
+		// Start the tree builders to process the paths
 		for (final URI path : paths) {
 			/*
 			 * Create or get from cache the root node for this path and
@@ -328,20 +294,20 @@ public class DepTree implements Serializable {
 			}
 			depMap.put(path, root);
 
-			treeBuilderCount.incrementAndGet();
-			treeBuilderCs.submit(new DepTreeBuilder(aggregator, parserCs, path, root, cachedNode, nonJSExtensions, compilerOptionsMap));
+			DepTreeBuilder builder = new DepTreeBuilder(aggregator, depScanExc, path, root, cachedNode, nonJSExtensions, compilerOptionsMap);
+			treeBuilders.add(builder);
+			builder.start();
 		}
 
 		// List of parser exceptions
 		LinkedList<Exception> parserExceptions = new LinkedList<Exception>();
 
 		/*
-		 * Pull the completed tree builder tasks from the completion queue until
-		 * all the paths have been processed
+		 * Wait for the tree builders to finish processing their paths
 		 */
-		while (treeBuilderCount.decrementAndGet() >= 0) {
+		for (DepTreeBuilder builder : treeBuilders) {
 			try {
-				DepTreeBuilder.Result result = SignalUtil.take(treeBuilderCs, sourceClass, sourceMethod).get();
+				DepTreeBuilder.Result result = builder.await();
 				if (log.isLoggable(Level.INFO)) {
 					log.info(
 							MessageFormat.format(
@@ -360,9 +326,8 @@ public class DepTree implements Serializable {
 			}
 		}
 
-		// shutdown the thread pools now that we're done with them
-		parserExc.shutdown();
-		treeBuilderExc.shutdown();
+		// shutdown the thread pool now that we're done with it
+		depScanExc.shutdown();
 
 		// If parser exceptions occurred, then rethrow the first one
 		if (parserExceptions.size() > 0) {
@@ -386,17 +351,11 @@ public class DepTree implements Serializable {
 						));
 			}
 
-		// Serialize the map to the cache directory
-		ObjectOutputStream os;
-		os = new ObjectOutputStream(new FileOutputStream(cacheFile));
-		try {
-			if (isTraceLogging) {
-				log.finer("Writing cached dependencies to " + cacheFile.toString()); //$NON-NLS-1$
-			}
-			os.writeObject(this);
-		} finally {
-			try { os.close(); } catch (Exception ignore) {}
+		// Save the map to the cache directory
+		if (isTraceLogging) {
+			log.finer("Writing cached dependencies to " + cacheFile.toString()); //$NON-NLS-1$
 		}
+		save(cacheFile);
 		msg = MessageFormat.format(
 				Messages.DepTree_7,
 				new Object[]{aggregator.getName()}
@@ -412,6 +371,18 @@ public class DepTree implements Serializable {
 		}
 	}
 
+	/**
+	 * Saves this object to the specified file in the compact binary format
+	 * read by the constructor.
+	 *
+	 * @param cacheFile
+	 *            the file to write
+	 * @throws IOException
+	 */
+	void save(File cacheFile) throws IOException {
+		DepMapFile.write(this, cacheFile);
+	}
+
 	/**
 	 * @return true if the dependencies were loaded from cache
 	 */
@@ -538,4 +509,29 @@ public class DepTree implements Serializable {
 		log.exiting(sourceClass, sourceMethod, result);
 		return result;
 	}
+
+	/**
+	 * Returns the number of threads to use for walking folders and parsing
+	 * javascript files. The value is obtained from the
+	 * {@link IOptions#DEPSCAN_PARALLELISM} option, or is the number of
+	 * available processors if the option is not specified or is not valid.
+	 *
+	 * @param aggregator
+	 *            the aggregator instance
+	 * @return the number of threads
+	 */
+	private static int getParallelism(IAggregator aggregator) {
+		int result = Runtime.getRuntime().availableProcessors();
+		IOptions options = aggregator.getOptions();
+		String value = options != null ? options.getOption(IOptions.DEPSCAN_PARALLELISM) : null;
+		if (value != null) {
+			try {
+				int parallelism = Integer.parseInt(value.trim());
+				if (parallelism > 0) {
+					result = parallelism;
+				}
+			} catch (NumberFormatException ignore) {}
+		}
+		return result;
+	}
 }
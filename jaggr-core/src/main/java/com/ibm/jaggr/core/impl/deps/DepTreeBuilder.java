@@ -27,30 +27,39 @@ import java.net.URI;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.Callable;
-import java.util.concurrent.CompletionService;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
- * This class implements the {@link Callable} interface to build/validate a
- * dependecy tree rooted at the specified path. The provided
- * {@link CompletionService} is used to launch the parser threads that parse the
- * javascript files and extract the module dependencies from the module's
- * define() function. Separate threads are used for the parser in order to try
- * and achieve a measure of parallel processing so that the builder is not so
- * I/O bound.
+ * This class builds/validates a dependency tree rooted at the specified path.
+ * <p>
+ * The work is divided into folder walker tasks, which each visit the contents
+ * of a single folder, and parser tasks, which parse the javascript files and
+ * extract the module dependencies from the module's define() function. When a
+ * walker encounters a sub-folder, it submits a new walker task for the
+ * sub-folder rather than recursing into it, so large folder trees are split
+ * across the threads of the provided {@link Executor}. The executor is shared
+ * by all the builders participating in a dependency scan, so idle threads pick
+ * up walker and parser tasks belonging to any of the paths being scanned.
+ * <p>
+ * Tasks never wait for other tasks to complete. Instead, the builder counts
+ * the outstanding tasks and {@link #await()} returns when the count drops to
+ * zero. This allows a single bounded thread pool to service both the walkers
+ * and the parsers without the risk of deadlock.
  */
-final class DepTreeBuilder implements Callable<DepTreeBuilder.Result> {
+final class DepTreeBuilder {
 	static final String sourceClass = DepTreeBuilder.class.getName();
 	static final Logger log = Logger.getLogger(sourceClass);
 
 	private final IAggregator aggregator;
 	/**
-	 * The {@link CompletionService} used to lauch parser threads
+	 * The {@link Executor} used to run the walker and parser tasks
 	 */
-	private final CompletionService<URI> parserCs;
+	private final Executor executor;
 
 	/**
 	 * URI to the folder resource containing the javascript modules
@@ -71,12 +80,28 @@ final class DepTreeBuilder implements Callable<DepTreeBuilder.Result> {
 	private final Map<AccessibleObject, List<Object>> compilerOptionsMap;
 
 	/**
-	 * Counter to keep track of the number of parser threads started
+	 * Counter to keep track of the number of parser tasks started
 	 */
 	private final AtomicInteger parserCount = new AtomicInteger(0);
 
 	/**
-	 * Result type returned by the {@link #call()} method.
+	 * Counter to keep track of the number of tasks that have been submitted
+	 * but have not yet completed
+	 */
+	private final AtomicInteger pendingCount = new AtomicInteger(0);
+
+	/**
+	 * Latch that is released when all of the tasks have completed
+	 */
+	private final CountDownLatch doneSignal = new CountDownLatch(1);
+
+	/**
+	 * The first exception thrown by a walker task
+	 */
+	private final AtomicReference<Exception> error = new AtomicReference<Exception>();
+
+	/**
+	 * Result type returned by the {@link #await()} method.
 	 */
 	public static class Result {
 		public final String dirName;
@@ -93,8 +118,8 @@ final class DepTreeBuilder implements Callable<DepTreeBuilder.Result> {
 	 *
 	 * @param aggregator
 	 *            The aggregator instance
-	 * @param parserCs
-	 *            The {@link CompletionService} to use to start parser threads
+	 * @param executor
+	 *            The {@link Executor} to use to run walker and parser tasks
 	 * @param path
 	 *            The root path containing the javascrpt modules to be parsed
 	 * @param node
@@ -106,11 +131,11 @@ final class DepTreeBuilder implements Callable<DepTreeBuilder.Result> {
 	 * @param compilerOptionsMap
 	 *            Compiler options from config
 	 */
-	DepTreeBuilder(IAggregator aggregator, CompletionService<URI> parserCs,
+	DepTreeBuilder(IAggregator aggregator, Executor executor,
 			URI path, DepTreeNode node, DepTreeNode cached, Set<String> nonJSExtensions,
 			Map<AccessibleObject, List<Object>> compilerOptionsMap) {
 		this.aggregator = aggregator;
-		this.parserCs = parserCs;
+		this.executor = executor;
 		this.uri = path;
 		this.root = node;
 		this.cached = cached;
@@ -118,118 +143,202 @@ final class DepTreeBuilder implements Callable<DepTreeBuilder.Result> {
 		this.compilerOptionsMap = compilerOptionsMap;
 	}
 
-	/* (non-Javadoc)
-	 * @see java.util.concurrent.Callable#call()
+	/**
+	 * Starts building the tree by submitting the walker task for the root
+	 * folder. Returns without waiting for the tasks to complete.
 	 */
-	public Result call() throws Exception {
-		final String sourceMethod = "call"; //$NON-NLS-1$
-		IResourceVisitor visitor = new IResourceVisitor() {
-			/* (non-Javadoc)
-			 * @see com.ibm.jaggr.service.modules.ResourceVisitor#visitResource(com.ibm.jaggr.service.modules.Resource)
+	void start() {
+		// Hold a reference on the pending count until we're done submitting
+		// so that the done signal isn't released prematurely.
+		pendingCount.incrementAndGet();
+		try {
+			IResource resource = aggregator.newResource(uri);
+			if (resource.exists()) {
+				submit(new FolderWalker(resource, root, "")); //$NON-NLS-1$
+			}
+			/*
+			 * Visit the javascript module with the same pathname as the
+			 * folder, if it exists.
 			 */
-			@Override
-			public boolean visitResource(Resource resource, String pathname) throws IOException {
-				if (pathname == null) {
-					pathname = ""; //$NON-NLS-1$
-				}
-				int idx = pathname.lastIndexOf("/"); //$NON-NLS-1$
-				String resname = idx == -1 ? pathname : pathname.substring(idx+1);
-
-				if (resource.isFolder()) {
-					if (!resname.startsWith(".")) { //$NON-NLS-1$
-						root.createOrGet(pathname, resource.getURI());
-						return true;
-					} else {
-						return false;
-					}
-				}
-				if (!resource.getURI().getPath().endsWith(".js")) { //$NON-NLS-1$
-					// non-JavaScript resource
-					idx = resname.lastIndexOf("."); //$NON-NLS-1$
-					String extension = idx == -1 ? "" : resname.substring(idx+1); //$NON-NLS-1$
-					if (nonJSExtensions.contains(extension)) {
-						DepTreeNode node = root.createOrGet(pathname, resource.getURI());
-						node.setDependencies(null, null,  null,  resource.lastModified(), resource.lastModified());
-					}
-					return false;
-				}
-				// strip off the .js extension
-				if (pathname.endsWith(".js")) {  //$NON-NLS-1$
-					pathname = pathname.substring(0, pathname.length()-3);
+			String name = uri.getPath();
+			if (!name.endsWith(".js")) { //$NON-NLS-1$
+				if (name.endsWith("/")) { //$NON-NLS-1$
+					name = name.substring(0, name.length()-1);
 				}
-				DepTreeNode node = (pathname.length() > 0) ? root.createOrGet(pathname, resource.getURI()) : root;
-				DepTreeNode cachedNode = null;
-				if (cached != null) {
-					cachedNode = (pathname.length() > 0) ? cached.getDescendent(pathname) : cached;
+				int idx = name.lastIndexOf("/"); //$NON-NLS-1$
+				if (idx != -1) {
+					name = name.substring(idx + 1);
 				}
-				if (cachedNode != null) {
-					node.setDependencies(
-							cachedNode.getDefineDepArray(),
-							cachedNode.getRequireDepArray(),
-							cachedNode.getDependentFeatures(),
-							cachedNode.lastModified(), cachedNode.lastModifiedDep());
-				}
-				/*
-				 * The path is for a javascript module. Check the timestamp for the
-				 * node against the timestamp for the file object to see if the file
-				 * has changed and we need to re-parse it.
-				 */
-				if (node.lastModified() != resource.lastModified()) {
-					// File has changed, or is new. Submit an async parser job.
-					parserCs.submit(new DepParser(node, resource.newResource(aggregator), compilerOptionsMap));
-					parserCount.incrementAndGet();
+				name += ".js"; //$NON-NLS-1$
+
+				resource = aggregator.newResource(
+						uri.resolve((uri.getPath().endsWith("/") ? "../" : "./") + name)); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+				if (resource.exists()) {
+					new FolderWalker(null, root, "").visitResource(resource.asVisitorResource(), ""); //$NON-NLS-1$ //$NON-NLS-2$
 				}
-				return true;
 			}
-		};
-
-		/*
-		 * Process the path. The treeWalker method will queue files
-		 * to the parser completion service to parse javascript
-		 * files in order to read the require list from the AMD
-		 * define() function, and increments parserCount for each
-		 * file queued.
+		} catch (Exception e) {
+			error.compareAndSet(null, e);
+		} finally {
+			taskDone();
+		}
+	}
+
+	/**
+	 * Waits for all of the walker and parser tasks started by this builder to
+	 * complete.
+	 *
+	 * @return the result
+	 * @throws Exception
+	 *             if a walker task failed
+	 */
+	Result await() throws Exception {
+		final String sourceMethod = "await"; //$NON-NLS-1$
+		SignalUtil.await(doneSignal, sourceClass, sourceMethod);
+		Exception e = error.get();
+		if (e != null) {
+			throw e;
+		}
+		return new Result(uri.toString(), parserCount.get());
+	}
+
+	private void submit(Runnable task) {
+		pendingCount.incrementAndGet();
+		executor.execute(task);
+	}
+
+	private void taskDone() {
+		if (pendingCount.decrementAndGet() == 0) {
+			doneSignal.countDown();
+		}
+	}
+
+	/**
+	 * Visits the contents of a single folder, creating the child nodes of the
+	 * folder's node and submitting parser tasks for new or changed javascript
+	 * files and walker tasks for sub-folders. Only the walker for a folder
+	 * modifies the children of the folder's node, so the (non thread-safe)
+	 * nodes are never updated concurrently by multiple walkers.
+	 */
+	private class FolderWalker implements Runnable, IResourceVisitor {
+		private final IResource folder;
+		private final DepTreeNode folderNode;
+		/**
+		 * Path name of the folder relative to {@link DepTreeBuilder#root}
 		 */
-		IResource resource = aggregator.newResource(uri);
-		if (resource.exists()) {
-			resource.walkTree(visitor);
+		private final String folderPath;
+
+		FolderWalker(IResource folder, DepTreeNode folderNode, String folderPath) {
+			this.folder = folder;
+			this.folderNode = folderNode;
+			this.folderPath = folderPath;
 		}
-		/*
-		 * Call treeWalker again, this time to add the javascript
-		 * module with the same pathname, if it exists.
+
+		/* (non-Javadoc)
+		 * @see java.lang.Runnable#run()
 		 */
-		String name = uri.getPath();
-		if (!name.endsWith(".js")) { //$NON-NLS-1$
-			if (name.endsWith("/")) { //$NON-NLS-1$
-				name = name.substring(0, name.length()-1);
+		@Override
+		public void run() {
+			try {
+				folder.walkTree(this);
+			} catch (Exception e) {
+				error.compareAndSet(null, e);
+			} finally {
+				taskDone();
 			}
-			int idx = name.lastIndexOf("/"); //$NON-NLS-1$
-			if (idx != -1) {
-				name = name.substring(idx + 1);
+		}
+
+		/* (non-Javadoc)
+		 * @see com.ibm.jaggr.core.resource.IResourceVisitor#visitResource(com.ibm.jaggr.core.resource.IResourceVisitor.Resource, java.lang.String)
+		 */
+		@Override
+		public boolean visitResource(Resource resource, String pathname) throws IOException {
+			if (pathname == null) {
+				pathname = ""; //$NON-NLS-1$
 			}
-			name += ".js"; //$NON-NLS-1$
+			int idx = pathname.lastIndexOf("/"); //$NON-NLS-1$
+			String resname = idx == -1 ? pathname : pathname.substring(idx+1);
 
-			resource = aggregator.newResource(
-					uri.resolve((uri.getPath().endsWith("/") ? "../" : "./") + name)); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
-			if (resource.exists()) {
-				visitor.visitResource(resource.asVisitorResource(), ""); //$NON-NLS-1$
+			if (resource.isFolder()) {
+				if (!resname.startsWith(".")) { //$NON-NLS-1$
+					// Walk the sub-folder in a separate task
+					DepTreeNode node = folderNode.createOrGet(pathname, resource.getURI());
+					submit(new FolderWalker(resource.newResource(aggregator), node, fullPath(pathname)));
+				}
+				return false;
+			}
+			if (!resource.getURI().getPath().endsWith(".js")) { //$NON-NLS-1$
+				// non-JavaScript resource
+				idx = resname.lastIndexOf("."); //$NON-NLS-1$
+				String extension = idx == -1 ? "" : resname.substring(idx+1); //$NON-NLS-1$
+				if (nonJSExtensions.contains(extension)) {
+					DepTreeNode node = folderNode.createOrGet(pathname, resource.getURI());
+					node.setDependencies(null, null,  null,  resource.lastModified(), resource.lastModified());
+				}
+				return false;
+			}
+			// strip off the .js extension
+			if (pathname.endsWith(".js")) {  //$NON-NLS-1$
+				pathname = pathname.substring(0, pathname.length()-3);
 			}
+			DepTreeNode node = (pathname.length() > 0) ? folderNode.createOrGet(pathname, resource.getURI()) : folderNode;
+			DepTreeNode cachedNode = null;
+			if (cached != null) {
+				String path = fullPath(pathname);
+				cachedNode = (path.length() > 0) ? cached.getDescendent(path) : cached;
+			}
+			if (cachedNode != null) {
+				node.setDependencies(
+						cachedNode.getDefineDepArray(),
+						cachedNode.getRequireDepArray(),
+						cachedNode.getDependentFeatures(),
+						cachedNode.lastModified(), cachedNode.lastModifiedDep());
+			}
+			/*
+			 * The path is for a javascript module. Check the timestamp for the
+			 * node against the timestamp for the file object to see if the file
+			 * has changed and we need to re-parse it.
+			 */
+			if (node.lastModified() != resource.lastModified()) {
+				// File has changed, or is new. Submit an async parser task.
+				parserCount.incrementAndGet();
+				submit(new ParserTask(new DepParser(node, resource.newResource(aggregator), compilerOptionsMap)));
+			}
+			return true;
 		}
-		// Record the count of files queue
-		int totalCount = parserCount.get();
 
-		// Pull the completed parser tasks from the completion queue
-		// until all files have been parsed
-		while (parserCount.decrementAndGet() >= 0) {
+		private String fullPath(String pathname) {
+			if (folderPath.length() == 0) {
+				return pathname;
+			}
+			return pathname.length() == 0 ? folderPath : folderPath + "/" + pathname; //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * Runs a {@link DepParser}, logging any exceptions
+	 */
+	private class ParserTask implements Runnable {
+		private final DepParser parser;
+
+		ParserTask(DepParser parser) {
+			this.parser = parser;
+		}
+
+		/* (non-Javadoc)
+		 * @see java.lang.Runnable#run()
+		 */
+		@Override
+		public void run() {
+			final String sourceMethod = "run"; //$NON-NLS-1$
 			try {
-				SignalUtil.take(parserCs, sourceClass, sourceMethod).get();
+				parser.call();
 			} catch (Exception e) {
 				if (log.isLoggable(Level.SEVERE))
 					log.logp(Level.SEVERE, sourceClass, sourceMethod, e.getMessage(), e);
+			} finally {
+				taskDone();
 			}
 		}
-
-		// Return the buildReader
-		return new Result(uri.toString(), totalCount);
 	}
 }
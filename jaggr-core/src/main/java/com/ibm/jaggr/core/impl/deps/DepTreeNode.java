@@ -136,6 +136,13 @@ public class DepTreeNode implements Cloneable, Serializable {
 		return name;
 	}
 
+	/**
+	 * @return The source URI, or null
+	 */
+	URI getURI() {
+		return uri;
+	}
+
 	/**
 	 * @return The last modified date of the of the corresponding file on the
 	 *         file system if this node is for a module (as opposed to a
@@ -0,0 +1,267 @@
+/*
+ * (C) Copyright IBM Corp. 2012, 2016 All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ibm.jaggr.core.impl.layer;
+
+import com.ibm.jaggr.core.cache.ICache;
+import com.ibm.jaggr.core.cachekeygenerator.ICacheKeyGenerator;
+import com.ibm.jaggr.core.impl.transport.AbstractHttpTransport;
+import com.ibm.jaggr.core.layer.ILayer;
+import com.ibm.jaggr.core.util.RequestUtil;
+
+import com.googlecode.concurrentlinkedhashmap.ConcurrentLinkedHashMap;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.WeakReference;
+import java.text.MessageFormat;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Size bounded map of raw layer requests to the cached layer builds that were
+ * used to satisfy them.
+ * <p>
+ * Requests are keyed on the request path and query string together with the
+ * request headers and cookies that can influence the response (the gzip
+ * encoding flag, the Accept-Language header and the has cookie). Repeat
+ * requests for a layer can then be satisfied directly from the layer build
+ * without decoding the request, building the layer cache key, or running the
+ * cache key generators.
+ * <p>
+ * Entries are validated on every lookup. An entry is discarded if the layer
+ * build has been deleted or garbage collected, if the cache key generators for
+ * the layer have been updated since the entry was added, or if the aggregator
+ * cache has been replaced (which happens whenever the config, dependencies or
+ * options change). Entries hold only weak references to the layer builds, so
+ * the cache does not prevent evicted layer builds from being reclaimed.
+ */
+public final class FrontDoorCache {
+
+	/**
+	 * Name of the request attribute used by {@link LayerImpl} to provide the
+	 * layer build used for the response to the aggregator. Set only if the
+	 * response may be served from this cache.
+	 */
+	public static final String ENTRY_REQATTRNAME = FrontDoorCache.class.getName() + ".entry"; //$NON-NLS-1$
+
+	/**
+	 * The default maximum number of requests held by the cache
+	 */
+	public static final int DEFAULT_CAPACITY = 10000;
+
+	private final ConcurrentLinkedHashMap<String, Entry> map;
+
+	private volatile ICache cache;
+
+	private final AtomicLong hits = new AtomicLong();
+
+	private final AtomicLong misses = new AtomicLong();
+
+	public FrontDoorCache() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	public FrontDoorCache(int capacity) {
+		map = new ConcurrentLinkedHashMap.Builder<String, Entry>()
+				.maximumWeightedCapacity(capacity)
+				.build();
+	}
+
+	/**
+	 * Returns the cache key for the specified request, or null if the request
+	 * is not eligible to be served from this cache.
+	 *
+	 * @param request
+	 *            the request object
+	 * @return the cache key, or null
+	 */
+	public static String getKey(HttpServletRequest request) {
+		String pathInfo = request.getPathInfo();
+		if (pathInfo != null && pathInfo.endsWith(ILayer.SOURCEMAP_RESOURCE_PATH)) {
+			return null;
+		}
+		String query = request.getQueryString();
+		String language = request.getHeader("Accept-Language"); //$NON-NLS-1$
+		StringBuffer sb = new StringBuffer(
+				(pathInfo != null ? pathInfo.length() : 0) +
+				(query != null ? query.length() : 0) +
+				(language != null ? language.length() : 0) + 16);
+		sb.append(RequestUtil.isGzipEncoding(request) ? '1' : '0').append('\n')
+		  .append(pathInfo != null ? pathInfo : "").append('?') //$NON-NLS-1$
+		  .append(query != null ? query : "").append('\n') //$NON-NLS-1$
+		  .append(language != null ? language : ""); //$NON-NLS-1$
+		Cookie[] cookies = request.getCookies();
+		if (cookies != null) {
+			for (Cookie cookie : cookies) {
+				if (AbstractHttpTransport.FEATUREMAP_REQPARAM.equals(cookie.getName())) {
+					sb.append('\n').append(cookie.getValue());
+					break;
+				}
+			}
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Returns the valid entry for the specified key, or null.
+	 *
+	 * @param key
+	 *            the key returned by {@link #getKey(HttpServletRequest)}
+	 * @param currentCache
+	 *            the current aggregator cache
+	 * @return the entry or null
+	 */
+	public Entry get(String key, ICache currentCache) {
+		checkCache(currentCache);
+		Entry entry = map.get(key);
+		if (entry != null && !entry.isValid()) {
+			map.remove(key, entry);
+			entry = null;
+		}
+		(entry != null ? hits : misses).incrementAndGet();
+		return entry;
+	}
+
+	/**
+	 * Adds an entry for the response that was just generated for the
+	 * specified request. Does nothing if the layer did not provide a layer
+	 * build for the response.
+	 *
+	 * @param key
+	 *            the key returned by {@link #getKey(HttpServletRequest)}
+	 * @param currentCache
+	 *            the current aggregator cache
+	 * @param request
+	 *            the request object
+	 * @param lastModified
+	 *            the value of the Last-Modified response header
+	 * @param cacheControl
+	 *            the value of the Cache-Control response header
+	 */
+	public void put(String key, ICache currentCache, HttpServletRequest request, long lastModified, String cacheControl) {
+		Entry entry = (Entry)request.getAttribute(ENTRY_REQATTRNAME);
+		if (entry != null) {
+			checkCache(currentCache);
+			entry.lastModified = lastModified;
+			entry.cacheControl = cacheControl;
+			map.put(key, entry);
+		}
+	}
+
+	/**
+	 * Removes all the entries from the cache
+	 */
+	public void clear() {
+		map.clear();
+	}
+
+	/**
+	 * @return the number of entries in the cache
+	 */
+	public int size() {
+		return map.size();
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return MessageFormat.format(
+				"Front door cache: entries = {0}, hits = {1}, misses = {2}", //$NON-NLS-1$
+				new Object[]{map.size(), hits.get(), misses.get()}
+				);
+	}
+
+	private void checkCache(ICache currentCache) {
+		if (cache != currentCache) {
+			synchronized (this) {
+				if (cache != currentCache) {
+					map.clear();
+					cache = currentCache;
+				}
+			}
+		}
+	}
+
+	/**
+	 * A layer build that can be used to respond to a request
+	 */
+	public static final class Entry {
+		private final WeakReference<LayerImpl> layerRef;
+		private final WeakReference<CacheEntry> cacheEntryRef;
+		private final Map<String, ICacheKeyGenerator> keyGens;
+		private volatile long lastModified;
+		private volatile String cacheControl;
+
+		Entry(LayerImpl layer, CacheEntry cacheEntry, Map<String, ICacheKeyGenerator> keyGens) {
+			layerRef = new WeakReference<LayerImpl>(layer);
+			cacheEntryRef = new WeakReference<CacheEntry>(cacheEntry);
+			this.keyGens = keyGens;
+		}
+
+		/**
+		 * @return the value of the Last-Modified response header
+		 */
+		public long getLastModified() {
+			return lastModified;
+		}
+
+		/**
+		 * @return the value of the Cache-Control response header
+		 */
+		public String getCacheControl() {
+			return cacheControl;
+		}
+
+		/**
+		 * Returns the input stream for the layer build and sets the
+		 * Content-Type, Content-Length and Content-Encoding response headers,
+		 * or returns null if the layer build is no longer available.
+		 *
+		 * @param request
+		 *            the request object
+		 * @param response
+		 *            the response object
+		 * @return the input stream or null
+		 * @throws IOException
+		 */
+		public InputStream tryGetInputStream(HttpServletRequest request, HttpServletResponse response) throws IOException {
+			LayerImpl layer = layerRef.get();
+			CacheEntry cacheEntry = cacheEntryRef.get();
+			if (layer == null || cacheEntry == null || cacheEntry.isDeleted()) {
+				return null;
+			}
+			InputStream result = cacheEntry.tryGetInputStream(request, null);
+			if (result != null) {
+				layer.setResponseHeaders(request, response, cacheEntry.getSize());
+			}
+			return result;
+		}
+
+		private boolean isValid() {
+			LayerImpl layer = layerRef.get();
+			CacheEntry cacheEntry = cacheEntryRef.get();
+			return layer != null && cacheEntry != null && !cacheEntry.isDeleted() &&
+					layer.getCacheKeyGenerators() == keyGens;
+		}
+	}
+}
@@ -62,6 +62,10 @@ public class LatchingCounter implements Serializable {
 		return latched;
 	}
 
+	public synchronized void latch() {
+		latched = true;
+	}
+
 	public boolean isLatched() {
 		return latched;
 	}
@@ -26,6 +26,7 @@ import java.util.NavigableMap;
 import java.util.NavigableSet;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.locks.ReadWriteLock;
 
@@ -61,6 +62,13 @@ class LayerBuildsAccessor {
 	private final String keyPrefixUpperBound;
 	private final WeakReference<LayerCacheImpl> layerCacheRef;
 
+	/**
+	 * The keys (including the layer identifier prefix) of the entries in the
+	 * map that belong to this layer.  Used by {@link #evictAll()} so that
+	 * evicting a layer doesn't require scanning the whole map.
+	 */
+	private final Set<String> keys = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
 	LayerBuildsAccessor(
 			int layerId,
 			ConcurrentMap<String, CacheEntry> map,
@@ -77,7 +85,9 @@ class LayerBuildsAccessor {
 		this.layerCacheRef = new WeakReference<LayerCacheImpl>(layerCache);
 		int count = 0;
 		if (sortedKeys != null) {
-			count = sortedKeys.subSet(keyPrefix, true, keyPrefixUpperBound, false).size();
+			Set<String> layerKeys = sortedKeys.subSet(keyPrefix, true, keyPrefixUpperBound, false);
+			keys.addAll(layerKeys);
+			count = layerKeys.size();
 		}
 		this.evictionLatch = new LatchingCounter(count);
 	}
@@ -152,6 +162,7 @@ class LayerBuildsAccessor {
 				}
 				existingValue = map.putIfAbsent(key, value);
 				if (existingValue == null) {
+					keys.add(key);
 					incrementCount = true;
 				} else {
 					if (update &&
@@ -177,6 +188,7 @@ class LayerBuildsAccessor {
 				// value was added to the cache.  Increment the counter
 				Boolean evicted = evictionLatch.increment();
 				if (evicted) {
+					keys.remove(key);
 					map.remove(key,  value);
 					value.delete(cacheMgr);
 				}
@@ -213,6 +225,7 @@ class LayerBuildsAccessor {
 				removed = map.remove(keyPrefix + key, value);
 			}
 			if (removed) {
+				keys.remove(keyPrefix + key);
 				evictionLatch.decrement();
 				value.delete(cacheMgr);
 			} else {
@@ -245,17 +258,20 @@ class LayerBuildsAccessor {
 	 * counter for the layer. If the counter is decremented to zero, then
 	 * the <code>_evicted</code> flag is set.
 	 *
+	 * @param key
+	 *            the map key, including the layer identifier prefix
 	 * @param cacheEntry
 	 *            the cache entry being evicted
 	 * @return true if the <code>_evicted</code> flag was set
 	 */
-	public boolean cacheEntryEvicted(CacheEntry cacheEntry) {
+	public boolean cacheEntryEvicted(String key, CacheEntry cacheEntry) {
 		final String sourceMethod = "cacheEntryEvicted"; //$NON-NLS-1$
 
 		boolean evicted = false;
 		SignalUtil.lock(cloneLock.readLock(), sourceClass, sourceMethod);
 		try {
 			if (cacheEntry.layerId == layerId) {
+				keys.remove(key);
 				evicted = evictionLatch.decrement();
 			}
 		} finally {
@@ -264,6 +280,38 @@ class LayerBuildsAccessor {
 		return evicted;
 	}
 
+	/**
+	 * Sets the <code>_evicted</code> flag so that no new entries will be added
+	 * to the map for this layer, and removes the existing entries belonging to
+	 * this layer from the map. Called when the layer is evicted from the layer
+	 * cache.
+	 */
+	public void evictAll() {
+		final String sourceMethod = "evictAll"; //$NON-NLS-1$
+		SignalUtil.lock(cloneLock.readLock(), sourceClass, sourceMethod);
+		try {
+			evictionLatch.latch();
+			for (String key : keys) {
+				CacheEntry cacheEntry = map.get(key);
+				if (cacheEntry != null && cacheEntry.layerId == layerId && map.remove(key, cacheEntry)) {
+					cacheEntry.delete(cacheMgr);
+				}
+			}
+			keys.clear();
+		} finally {
+			cloneLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Sets the <code>_evicted</code> flag without removing any entries. Used
+	 * for layers that are not admitted to the layer cache so that builds for
+	 * the layer are discarded after the response is generated.
+	 */
+	public void latchEvicted() {
+		evictionLatch.latch();
+	}
+
 	public boolean isLayerEvicted() {
 		return evictionLatch.isLatched();
 	}
@@ -73,12 +73,23 @@ import javax.servlet.http.HttpServletRequest;
  * between the evicted entry and the ILayer object.  When a ILayer object
  * no longer has any CacheEntry objects in the layerBuildMap, it is
  * removed from the layerMap.
+ * <p>
+ * The layerMap is also bounded. When the number of layers reaches the limit,
+ * the least recently used layer is evicted together with all of its builds in
+ * the layerBuildMap. To avoid having the cache flushed by one-time requests
+ * for unusual module combinations, a layer is admitted to a full layerMap only
+ * if its key has been requested recently. The keys of layers that were not
+ * admitted are tracked in a separate bounded doorkeeper map. Layers that are
+ * not admitted are still used to satisfy the request, but their builds are
+ * discarded once the response has been generated.
  */
 public class LayerCacheImpl extends GenericCacheImpl<ILayer> implements ILayerCache, Serializable {
 	private static final String sourceClass = LayerCacheImpl.class.getName();
 
 	static final int DEFAULT_MAXLAYERCACHECAPACITY_MB = 500;
 
+	static final int DEFAULT_MAXLAYERCACHEENTRIES = 10000;
+
 	private ConcurrentLinkedHashMap<String, CacheEntry> layerBuildMap;
 
 	private IAggregator aggregator;
@@ -89,10 +100,20 @@ public class LayerCacheImpl extends GenericCacheImpl<ILayer> implements ILayerCa
 
 	private AtomicInteger numEvictions = new AtomicInteger(0);
 
+	private int maxLayerEntries = DEFAULT_MAXLAYERCACHEENTRIES;
+
+	private ConcurrentLinkedHashMap<String, Boolean> doorkeeper = newDoorkeeper(DEFAULT_MAXLAYERCACHEENTRIES);
+
+	private AtomicInteger numLayerEvictions = new AtomicInteger(0);
+
+	private AtomicInteger numLayersNotAdmitted = new AtomicInteger(0);
+
 	private ReadWriteLock cloneLock = new ReentrantReadWriteLock();
 
 	// Used by Serialization proxy
-	protected LayerCacheImpl() {}
+	protected LayerCacheImpl() {
+		cacheMap = newLayerMap(maxLayerEntries);
+	}
 
 	/**
 	 * Copy constructor.  Used by sub-classes that need to override writeReplace
@@ -106,11 +127,18 @@ public class LayerCacheImpl extends GenericCacheImpl<ILayer> implements ILayerCa
 		newLayerId = layerCache.newLayerId;
 		maxCapacity = layerCache.maxCapacity;
 		numEvictions = layerCache.numEvictions;
+		maxLayerEntries = layerCache.maxLayerEntries;
+		doorkeeper = layerCache.doorkeeper;
+		numLayerEvictions = layerCache.numLayerEvictions;
+		numLayersNotAdmitted = layerCache.numLayersNotAdmitted;
 		cloneLock = layerCache.cloneLock;
 	}
 
 	public LayerCacheImpl(IAggregator aggregator) {
 		maxCapacity = getMaxCapacity(aggregator);
+		maxLayerEntries = getMaxLayerEntries(aggregator);
+		cacheMap = newLayerMap(maxLayerEntries);
+		doorkeeper = newDoorkeeper(maxLayerEntries);
 		layerBuildMap = new ConcurrentLinkedHashMap.Builder<String, CacheEntry>()
 				.maximumWeightedCapacity(maxCapacity)
 				.listener(newEvictionListener())
@@ -127,6 +155,7 @@ public class LayerCacheImpl extends GenericCacheImpl<ILayer> implements ILayerCa
 		try {
 			cacheMap.clear();
 			layerBuildMap.clear();
+			doorkeeper.clear();
 		} finally {
 			cloneLock.readLock().unlock();
 		}
@@ -149,6 +178,8 @@ public class LayerCacheImpl extends GenericCacheImpl<ILayer> implements ILayerCa
 		}
 		writer.append("Number of layer cache entires = ").append(Integer.toString(cacheMap.size())).append(linesep); //$NON-NLS-1$
 		writer.append("Number of layer cache evictions = ").append(Integer.toString(numEvictions.get())).append(linesep); //$NON-NLS-1$
+		writer.append("Number of idle layer evictions = ").append(Integer.toString(numLayerEvictions.get())).append(linesep); //$NON-NLS-1$
+		writer.append("Number of layers not admitted = ").append(Integer.toString(numLayersNotAdmitted.get())).append(linesep); //$NON-NLS-1$
 	}
 
 	@Override
@@ -168,11 +199,17 @@ public class LayerCacheImpl extends GenericCacheImpl<ILayer> implements ILayerCa
 			if (result == null) {
 				int id = newLayerId.incrementAndGet();
 				LayerImpl newLayer = new LayerImpl(key, id);
-				if (!ignoreCached) {
+				boolean admitted = !ignoreCached && admit(key);
+				if (admitted) {
 					result = cacheMap.putIfAbsent(key, newLayer);
 				}
 				if (result == null) {
-					newLayer.setLayerBuildsAccessor(new LayerBuildsAccessor(id, layerBuildMap, aggregator.getCacheManager(), cloneLock, null, this));
+					LayerBuildsAccessor accessor = new LayerBuildsAccessor(id, layerBuildMap, aggregator.getCacheManager(), cloneLock, null, this);
+					if (!ignoreCached && !admitted) {
+						// Don't keep builds for layers that aren't in the cache
+						accessor.latchEvicted();
+					}
+					newLayer.setLayerBuildsAccessor(accessor);
 					result = newLayer;
 				}
 			}
@@ -182,6 +219,25 @@ public class LayerCacheImpl extends GenericCacheImpl<ILayer> implements ILayerCa
 		}
 	}
 
+	/**
+	 * Returns true if a new layer with the specified key should be added to
+	 * the layer map. New layers are always admitted if the layer map is not
+	 * full. Otherwise, a layer is admitted only if the key was previously
+	 * rejected and is still being tracked by the doorkeeper.
+	 *
+	 * @param key
+	 *            the layer key
+	 * @return true if the layer should be added to the layer map
+	 */
+	protected boolean admit(String key) {
+		if (cacheMap.size() < maxLayerEntries || doorkeeper.remove(key) != null) {
+			return true;
+		}
+		doorkeeper.put(key, Boolean.TRUE);
+		numLayersNotAdmitted.incrementAndGet();
+		return false;
+	}
+
 	boolean remove(String key, ILayer layer) {
 		final String sourceMethod = "remove"; //$NON-NLS-1$
 		SignalUtil.lock(cloneLock.readLock(), sourceClass, sourceMethod);
@@ -208,6 +264,18 @@ public class LayerCacheImpl extends GenericCacheImpl<ILayer> implements ILayerCa
 		return maxCapacity;
 	}
 
+	int getNumLayerEvictions() {
+		return numLayerEvictions.get();
+	}
+
+	int getNumLayersNotAdmitted() {
+		return numLayersNotAdmitted.get();
+	}
+
+	int getMaxLayerEntries() {
+		return maxLayerEntries;
+	}
+
 	/* (non-Javadoc)
 	 * @see com.ibm.jaggr.service.layer.ILayerCache#setAggregator(com.ibm.jaggr.service.IAggregator)
 	 */
@@ -241,6 +309,15 @@ public class LayerCacheImpl extends GenericCacheImpl<ILayer> implements ILayerCa
 		} else {
 			setLayerBuildAccessors(layerBuildMap.keySet());
 		}
+
+		// Apply the max layers init-param now that the layers have their accessors,
+		// since reducing the capacity of the layer map will evict layers.
+		int newMaxLayerEntries = getMaxLayerEntries(aggregator);
+		if (maxLayerEntries != newMaxLayerEntries) {
+			maxLayerEntries = newMaxLayerEntries;
+			((ConcurrentLinkedHashMap<String, ILayer>)cacheMap).setCapacity(maxLayerEntries);
+			doorkeeper.setCapacity(maxLayerEntries);
+		}
 	}
 
 	/**
@@ -278,7 +355,7 @@ public class LayerCacheImpl extends GenericCacheImpl<ILayer> implements ILayerCa
 				LayerImpl layer = (LayerImpl)cacheMap.get(cacheEntry.layerKey);
 				if (layer != null) {
 					numEvictions.incrementAndGet();
-					if (layer.cacheEntryEvicted(cacheEntry)) {
+					if (layer.cacheEntryEvicted(layerKey, cacheEntry)) {
 						cacheMap.remove(layer.getKey(), layer);
 					}
 				}
@@ -288,6 +365,24 @@ public class LayerCacheImpl extends GenericCacheImpl<ILayer> implements ILayerCa
 		};
 	}
 
+	protected ConcurrentLinkedHashMap<String, ILayer> newLayerMap(int capacity) {
+		return new ConcurrentLinkedHashMap.Builder<String, ILayer>()
+				.maximumWeightedCapacity(capacity)
+				.listener(new EvictionListener<String, ILayer>() {
+					@Override
+					public void onEviction(String key, ILayer layer) {
+						numLayerEvictions.incrementAndGet();
+						((LayerImpl)layer).layerEvicted();
+					}
+				}).build();
+	}
+
+	private static ConcurrentLinkedHashMap<String, Boolean> newDoorkeeper(int capacity) {
+		return new ConcurrentLinkedHashMap.Builder<String, Boolean>()
+				.maximumWeightedCapacity(capacity)
+				.build();
+	}
+
 	protected Weigher<CacheEntry> newWeigher() {
 		return new Weigher<CacheEntry>() {
 			@Override
@@ -308,6 +403,16 @@ public class LayerCacheImpl extends GenericCacheImpl<ILayer> implements ILayerCa
 		return result;
 	}
 
+	protected int getMaxLayerEntries(IAggregator aggregator) {
+		InitParams initParams =  aggregator.getInitParams();
+		int result = DEFAULT_MAXLAYERCACHEENTRIES;
+		if (initParams != null) {
+			List<String> values = initParams.getValues(InitParams.MAXLAYERCACHEENTRIES_INITPARAM);
+			result = TypeUtil.asInt(values.size()  > 0 ? values.get(values.size()-1) : null,  DEFAULT_MAXLAYERCACHEENTRIES);
+		}
+		return result;
+	}
+
 	/* ---------------- Serialization Support -------------- */
 	/*
 	 *  ConcurrentLinkedHashMap serialization doesn't maintain LRU ordering of entries,
@@ -332,6 +437,7 @@ public class LayerCacheImpl extends GenericCacheImpl<ILayer> implements ILayerCa
 		private final int newLayerId;
 		private final int maxCapacity;
 		private final int numEvictions;
+		private final int maxLayerEntries;
 		private final Class<?> clazz;
 		private final Map<String, ILayer> cacheMap;
 		private final Map<String, CacheEntry> layerBuildMap;
@@ -344,6 +450,7 @@ public class LayerCacheImpl extends GenericCacheImpl<ILayer> implements ILayerCa
 				newLayerId = cache.newLayerId.get();
 				maxCapacity = cache.maxCapacity;
 				numEvictions = cache.numEvictions.get();
+				maxLayerEntries = cache.maxLayerEntries;
 				cacheMap = new HashMap<String, ILayer>();
 				for (Map.Entry<String, ILayer> entry : cache.cacheMap.entrySet()) {
 					cacheMap.put(entry.getKey(), ((LayerImpl)entry.getValue()).cloneForSerialization());
@@ -362,6 +469,11 @@ public class LayerCacheImpl extends GenericCacheImpl<ILayer> implements ILayerCa
 			} catch (Exception e) {
 				throw new RuntimeException(e);
 			}
+			if (maxLayerEntries > 0) {
+				cache.maxLayerEntries = maxLayerEntries;
+				cache.cacheMap = cache.newLayerMap(maxLayerEntries);
+				cache.doorkeeper = newDoorkeeper(maxLayerEntries);
+			}
 			cache.cacheMap.putAll(cacheMap);
 			cache.newLayerId = new AtomicInteger(newLayerId);
 			cache.maxCapacity = maxCapacity;
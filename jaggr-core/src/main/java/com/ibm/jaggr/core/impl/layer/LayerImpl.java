@@ -285,6 +285,7 @@ public class LayerImpl implements ILayer {
 					}
 					if (existingEntry != null) {
 						if ((result = trySetResponse(request, response, existingEntry)) != null) {
+							setFrontDoorEntry(request, existingEntry, cacheKeyGenerators);
 							if (log.isLoggable(Level.FINEST)) {
 								log.finest(cacheInfoReport.toString() + "\n" +  //$NON-NLS-1$
 										"key:" + key +  //$NON-NLS-1$
@@ -339,6 +340,7 @@ public class LayerImpl implements ILayer {
 				// Check to see if data is available one more time in case a different thread finished
 				// building the output while we were blocked on the sync object.
 				if (!ignoreCached && key != null && (result = trySetResponse(request, response, entry)) != null) {
+					setFrontDoorEntry(request, entry, cacheKeyGenerators);
 					if (cacheInfoReport != null) {
 						cacheInfoReport.add("hit_2"); //$NON-NLS-1$
 					}
@@ -530,6 +532,9 @@ public class LayerImpl implements ILayer {
 				}
 			}
 			result = setResponse(request, response, entry);
+			if (!ignoreCached && key != null && request.getAttribute(NOCACHE_RESPONSE_REQATTRNAME) == null) {
+				setFrontDoorEntry(request, entry, _cacheKeyGenerators);
+			}
 			// return the input stream to the LayerBuild
 			if (log.isLoggable(Level.FINEST)) {
 				log.finest(cacheInfoReport.toString() + "\n" + //$NON-NLS-1$
@@ -618,6 +623,24 @@ public class LayerImpl implements ILayer {
 		return result;
 	}
 
+	/**
+	 * Provides the layer build used for the response to the aggregator so that
+	 * subsequent identical requests may be satisfied by the
+	 * {@link FrontDoorCache}.
+	 *
+	 * @param request
+	 *            the request object
+	 * @param entry
+	 *            the layer build
+	 * @param cacheKeyGenerators
+	 *            the cache key generators used to locate the layer build
+	 */
+	protected void setFrontDoorEntry(HttpServletRequest request, CacheEntry entry, Map<String, ICacheKeyGenerator> cacheKeyGenerators) {
+		if (cacheKeyGenerators != null && !entry.isDeleted()) {
+			request.setAttribute(FrontDoorCache.ENTRY_REQATTRNAME, new FrontDoorCache.Entry(this, entry, cacheKeyGenerators));
+		}
+	}
+
 	/**
 	 * Adds the cache key generators specified in {@code gens} to the map of
 	 * classname/key-generator pairs, combining key-generators as needed.
@@ -1075,17 +1098,29 @@ public class LayerImpl implements ILayer {
 	 * Called by the layer cache manager when a layer build is evicted from the
 	 * eviction map do to size limitations.
 	 *
+	 * @param key
+	 *            The layer build map key of the evicted entry
 	 * @param cacheEntry
 	 *            The cache entry that was evicted
 	 * @return true if this layer has no more builds and the layer should be
 	 *         removed from the layer cache
 	 */
-	protected boolean cacheEntryEvicted(CacheEntry cacheEntry) {
-		return _layerBuilds.cacheEntryEvicted(cacheEntry);
+	protected boolean cacheEntryEvicted(String key, CacheEntry cacheEntry) {
+		return _layerBuilds.cacheEntryEvicted(key, cacheEntry);
+	}
+
+	/**
+	 * Called by the layer cache manager when this layer is evicted from the
+	 * layer cache. Removes the builds for this layer from the layer build map.
+	 */
+	protected void layerEvicted() {
+		if (_layerBuilds != null) {
+			_layerBuilds.evictAll();
+		}
 	}
 
 	/**
-	 * This method is provided for unit testing
+	 * Used by the front door cache and by unit test cases.
 	 *
 	 * @return The cacheKeyGenerators for this layer
 	 */
@@ -0,0 +1,224 @@
+/*
+ * (C) Copyright IBM Corp. 2012, 2016 All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ibm.jaggr.core.impl.layer;
+
+import com.ibm.jaggr.core.BadRequestException;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+
+/**
+ * Request wrapper for one of the layers requested by a multi-layer request.
+ * <p>
+ * The request parameters and query string are those of the layer's part of the
+ * multi-layer request. Request attributes are private to the wrapper (they are
+ * initialized from the attributes of the wrapped request) so that the layers
+ * can be decorated and built concurrently. The Accept-Encoding and
+ * If-Modified-Since headers are hidden because the layers are always returned
+ * uncompressed and in full, with the encoding and the Not Modified check being
+ * handled for the multi-layer response as a whole.
+ */
+public class LayerPartRequest extends HttpServletRequestWrapper {
+
+	private static final String ACCEPT_ENCODING_HEADER = "Accept-Encoding"; //$NON-NLS-1$
+	private static final String IF_MODIFIED_SINCE_HEADER = "If-Modified-Since"; //$NON-NLS-1$
+
+	private final String queryString;
+
+	private final Map<String, String[]> parameters;
+
+	private final ConcurrentMap<String, Object> attributes = new ConcurrentHashMap<String, Object>();
+
+	/**
+	 * @param request
+	 *            the multi-layer request
+	 * @param queryString
+	 *            the query string for the layer
+	 * @throws BadRequestException
+	 *             if the query string is not properly encoded
+	 */
+	public LayerPartRequest(HttpServletRequest request, String queryString) throws BadRequestException {
+		super(request);
+		this.queryString = queryString;
+		parameters = Collections.unmodifiableMap(parseQueryString(queryString));
+		Enumeration<?> names = request.getAttributeNames();
+		while (names != null && names.hasMoreElements()) {
+			String name = (String)names.nextElement();
+			Object value = request.getAttribute(name);
+			if (value != null) {
+				attributes.put(name, value);
+			}
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see javax.servlet.http.HttpServletRequestWrapper#getQueryString()
+	 */
+	@Override
+	public String getQueryString() {
+		return queryString;
+	}
+
+	/* (non-Javadoc)
+	 * @see javax.servlet.ServletRequestWrapper#getParameter(java.lang.String)
+	 */
+	@Override
+	public String getParameter(String name) {
+		String[] values = parameters.get(name);
+		return values != null ? values[0] : null;
+	}
+
+	/* (non-Javadoc)
+	 * @see javax.servlet.ServletRequestWrapper#getParameterValues(java.lang.String)
+	 */
+	@Override
+	public String[] getParameterValues(String name) {
+		String[] values = parameters.get(name);
+		return values != null ? values.clone() : null;
+	}
+
+	/* (non-Javadoc)
+	 * @see javax.servlet.ServletRequestWrapper#getParameterNames()
+	 */
+	@Override
+	public Enumeration<String> getParameterNames() {
+		return Collections.enumeration(parameters.keySet());
+	}
+
+	/* (non-Javadoc)
+	 * @see javax.servlet.ServletRequestWrapper#getParameterMap()
+	 */
+	@Override
+	public Map<String, String[]> getParameterMap() {
+		return parameters;
+	}
+
+	/* (non-Javadoc)
+	 * @see javax.servlet.ServletRequestWrapper#getAttribute(java.lang.String)
+	 */
+	@Override
+	public Object getAttribute(String name) {
+		return attributes.get(name);
+	}
+
+	/* (non-Javadoc)
+	 * @see javax.servlet.ServletRequestWrapper#getAttributeNames()
+	 */
+	@Override
+	public Enumeration<String> getAttributeNames() {
+		return Collections.enumeration(attributes.keySet());
+	}
+
+	/* (non-Javadoc)
+	 * @see javax.servlet.ServletRequestWrapper#setAttribute(java.lang.String, java.lang.Object)
+	 */
+	@Override
+	public void setAttribute(String name, Object value) {
+		if (value == null) {
+			attributes.remove(name);
+		} else {
+			attributes.put(name, value);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see javax.servlet.ServletRequestWrapper#removeAttribute(java.lang.String)
+	 */
+	@Override
+	public void removeAttribute(String name) {
+		attributes.remove(name);
+	}
+
+	/* (non-Javadoc)
+	 * @see javax.servlet.http.HttpServletRequestWrapper#getHeader(java.lang.String)
+	 */
+	@Override
+	public String getHeader(String name) {
+		return isHiddenHeader(name) ? null : super.getHeader(name);
+	}
+
+	/* (non-Javadoc)
+	 * @see javax.servlet.http.HttpServletRequestWrapper#getHeaders(java.lang.String)
+	 */
+	@Override
+	public Enumeration<String> getHeaders(String name) {
+		return isHiddenHeader(name) ? Collections.enumeration(Collections.<String>emptyList()) : super.getHeaders(name);
+	}
+
+	/* (non-Javadoc)
+	 * @see javax.servlet.http.HttpServletRequestWrapper#getDateHeader(java.lang.String)
+	 */
+	@Override
+	public long getDateHeader(String name) {
+		return isHiddenHeader(name) ? -1 : super.getDateHeader(name);
+	}
+
+	private static boolean isHiddenHeader(String name) {
+		return ACCEPT_ENCODING_HEADER.equalsIgnoreCase(name) || IF_MODIFIED_SINCE_HEADER.equalsIgnoreCase(name);
+	}
+
+	/**
+	 * Parses the specified query string into a map of parameter names to
+	 * values, preserving the order of the parameters.
+	 *
+	 * @param queryString
+	 *            the query string
+	 * @return the parameter map
+	 * @throws BadRequestException
+	 */
+	static Map<String, String[]> parseQueryString(String queryString) throws BadRequestException {
+		Map<String, String[]> result = new LinkedHashMap<String, String[]>();
+		if (queryString == null || queryString.length() == 0) {
+			return result;
+		}
+		try {
+			for (String param : queryString.split("&")) { //$NON-NLS-1$
+				if (param.length() == 0) {
+					continue;
+				}
+				int idx = param.indexOf('=');
+				String name = URLDecoder.decode(idx == -1 ? param : param.substring(0, idx), "UTF-8"); //$NON-NLS-1$
+				String value = idx == -1 ? "" : URLDecoder.decode(param.substring(idx+1), "UTF-8"); //$NON-NLS-1$ //$NON-NLS-2$
+				String[] values = result.get(name);
+				if (values == null) {
+					values = new String[]{value};
+				} else {
+					String[] newValues = new String[values.length+1];
+					System.arraycopy(values, 0, newValues, 0, values.length);
+					newValues[values.length] = value;
+					values = newValues;
+				}
+				result.put(name, values);
+			}
+		} catch (UnsupportedEncodingException e) {
+			// UTF-8 is always supported
+			throw new RuntimeException(e);
+		} catch (IllegalArgumentException e) {
+			throw new BadRequestException(e);
+		}
+		return result;
+	}
+}
@@ -0,0 +1,149 @@
+/*
+ * (C) Copyright IBM Corp. 2012, 2016 All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ibm.jaggr.core.impl.layer;
+
+import java.io.PrintWriter;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+/**
+ * Response wrapper for one of the layers requested by a multi-layer request.
+ * <p>
+ * The headers and status set by the layer are recorded by the wrapper rather
+ * than being set in the wrapped response, since the response headers are set
+ * for the multi-layer response as a whole. Only the content type is retained.
+ * The layer content is obtained from the input stream returned by
+ * {@link com.ibm.jaggr.core.layer.ILayer#getInputStream}, so the output stream
+ * and writer are not available.
+ */
+public class LayerPartResponse extends HttpServletResponseWrapper {
+
+	private volatile String contentType;
+
+	/**
+	 * @param response
+	 *            the multi-layer response
+	 */
+	public LayerPartResponse(HttpServletResponse response) {
+		super(response);
+	}
+
+	/* (non-Javadoc)
+	 * @see javax.servlet.ServletResponseWrapper#setContentType(java.lang.String)
+	 */
+	@Override
+	public void setContentType(String type) {
+		contentType = type;
+	}
+
+	/* (non-Javadoc)
+	 * @see javax.servlet.ServletResponseWrapper#getContentType()
+	 */
+	@Override
+	public String getContentType() {
+		return contentType;
+	}
+
+	/* (non-Javadoc)
+	 * @see javax.servlet.ServletResponseWrapper#setContentLength(int)
+	 */
+	@Override
+	public void setContentLength(int len) {
+	}
+
+	/* (non-Javadoc)
+	 * @see javax.servlet.ServletResponseWrapper#setCharacterEncoding(java.lang.String)
+	 */
+	@Override
+	public void setCharacterEncoding(String charset) {
+	}
+
+	/* (non-Javadoc)
+	 * @see javax.servlet.http.HttpServletResponseWrapper#setHeader(java.lang.String, java.lang.String)
+	 */
+	@Override
+	public void setHeader(String name, String value) {
+	}
+
+	/* (non-Javadoc)
+	 * @see javax.servlet.http.HttpServletResponseWrapper#addHeader(java.lang.String, java.lang.String)
+	 */
+	@Override
+	public void addHeader(String name, String value) {
+	}
+
+	/* (non-Javadoc)
+	 * @see javax.servlet.http.HttpServletResponseWrapper#setDateHeader(java.lang.String, long)
+	 */
+	@Override
+	public void setDateHeader(String name, long date) {
+	}
+
+	/* (non-Javadoc)
+	 * @see javax.servlet.http.HttpServletResponseWrapper#addDateHeader(java.lang.String, long)
+	 */
+	@Override
+	public void addDateHeader(String name, long date) {
+	}
+
+	/* (non-Javadoc)
+	 * @see javax.servlet.http.HttpServletResponseWrapper#setIntHeader(java.lang.String, int)
+	 */
+	@Override
+	public void setIntHeader(String name, int value) {
+	}
+
+	/* (non-Javadoc)
+	 * @see javax.servlet.http.HttpServletResponseWrapper#addIntHeader(java.lang.String, int)
+	 */
+	@Override
+	public void addIntHeader(String name, int value) {
+	}
+
+	/* (non-Javadoc)
+	 * @see javax.servlet.http.HttpServletResponseWrapper#addCookie(javax.servlet.http.Cookie)
+	 */
+	@Override
+	public void addCookie(Cookie cookie) {
+	}
+
+	/* (non-Javadoc)
+	 * @see javax.servlet.http.HttpServletResponseWrapper#setStatus(int)
+	 */
+	@Override
+	public void setStatus(int sc) {
+	}
+
+	/* (non-Javadoc)
+	 * @see javax.servlet.ServletResponseWrapper#getOutputStream()
+	 */
+	@Override
+	public ServletOutputStream getOutputStream() {
+		throw new IllegalStateException();
+	}
+
+	/* (non-Javadoc)
+	 * @see javax.servlet.ServletResponseWrapper#getWriter()
+	 */
+	@Override
+	public PrintWriter getWriter() {
+		throw new IllegalStateException();
+	}
+}
@@ -0,0 +1,326 @@
+/*
+ * (C) Copyright IBM Corp. 2012, 2016 All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ibm.jaggr.core.impl.layer;
+
+import com.ibm.jaggr.core.layer.ILayer;
+
+import com.googlecode.concurrentlinkedhashmap.ConcurrentLinkedHashMap;
+
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * Learns which layer requests a client typically issues right after a given
+ * layer request, and predicts the follow-up requests for new requests.
+ * <p>
+ * Requests from the same client (identified by the remote address and user
+ * agent) that arrive within {@link #FOLLOWUP_WINDOW} milliseconds of each
+ * other are recorded as transitions from the first request URI to the second.
+ * A request URI that has followed a given request at least
+ * {@link #MIN_OCCURRENCES} times is predicted as a follow-up for later
+ * requests of that URI. The aggregator uses the predictions to add preload
+ * hints to the response and to build the predicted layers speculatively.
+ * <p>
+ * The number of concurrent speculative builds is limited by a fixed number of
+ * permits. Statistics on the accuracy of the predictions and on the number of
+ * speculative builds that were followed by a request for the same layer are
+ * reported by {@link #toString()}.
+ */
+public final class LayerPrefetcher {
+
+	/**
+	 * The default maximum number of clients and request URIs tracked
+	 */
+	public static final int DEFAULT_CAPACITY = 1000;
+
+	/**
+	 * The time, in milliseconds, within which a request must follow the
+	 * previous request from the same client to be considered a follow-up
+	 */
+	public static final long FOLLOWUP_WINDOW = 2000;
+
+	/**
+	 * The number of times a transition must have been observed before it is
+	 * predicted
+	 */
+	public static final int MIN_OCCURRENCES = 2;
+
+	/**
+	 * The maximum number of follow-up requests predicted for a request
+	 */
+	public static final int MAX_PREDICTIONS = 3;
+
+	/**
+	 * The maximum number of candidate follow-up requests tracked for each
+	 * request URI
+	 */
+	static final int MAX_SUCCESSORS = 4;
+
+	private final ConcurrentLinkedHashMap<String, Visit> clients;
+
+	private final ConcurrentLinkedHashMap<String, Successors> transitions;
+
+	private final ConcurrentLinkedHashMap<String, Boolean> prefetched;
+
+	private final Semaphore permits;
+
+	private final int maxConcurrentPrefetches;
+
+	private final AtomicLong predictions = new AtomicLong();
+
+	private final AtomicLong predictionHits = new AtomicLong();
+
+	private final AtomicLong prefetchesStarted = new AtomicLong();
+
+	private final AtomicLong prefetchesSkipped = new AtomicLong();
+
+	private final AtomicLong prefetchHits = new AtomicLong();
+
+	public LayerPrefetcher() {
+		this(DEFAULT_CAPACITY, Math.max(1, Runtime.getRuntime().availableProcessors() / 4));
+	}
+
+	/**
+	 * @param capacity
+	 *            the maximum number of clients and request URIs tracked
+	 * @param maxConcurrentPrefetches
+	 *            the maximum number of concurrent speculative builds
+	 */
+	public LayerPrefetcher(int capacity, int maxConcurrentPrefetches) {
+		clients = new ConcurrentLinkedHashMap.Builder<String, Visit>()
+				.maximumWeightedCapacity(capacity)
+				.build();
+		transitions = new ConcurrentLinkedHashMap.Builder<String, Successors>()
+				.maximumWeightedCapacity(capacity)
+				.build();
+		prefetched = new ConcurrentLinkedHashMap.Builder<String, Boolean>()
+				.maximumWeightedCapacity(capacity)
+				.build();
+		this.maxConcurrentPrefetches = maxConcurrentPrefetches;
+		permits = new Semaphore(maxConcurrentPrefetches);
+	}
+
+	/**
+	 * @return the maximum number of concurrent speculative builds
+	 */
+	public int getMaxConcurrentPrefetches() {
+		return maxConcurrentPrefetches;
+	}
+
+	/**
+	 * Returns the key identifying the client that issued the request, or null
+	 * if the request did not come from a remote client.
+	 *
+	 * @param request
+	 *            the request object
+	 * @return the client key, or null
+	 */
+	public static String getClientKey(HttpServletRequest request) {
+		String addr = request.getRemoteAddr();
+		if (addr == null) {
+			return null;
+		}
+		String userAgent = request.getHeader("User-Agent"); //$NON-NLS-1$
+		return userAgent != null ? (addr + '\n' + userAgent) : addr;
+	}
+
+	/**
+	 * Returns the URI, including the query string, that the client used to
+	 * request the layer, or null if the request is not eligible for
+	 * prediction.
+	 *
+	 * @param request
+	 *            the request object
+	 * @return the request URI, or null
+	 */
+	public static String getRequestUri(HttpServletRequest request) {
+		String pathInfo = request.getPathInfo();
+		String query = request.getQueryString();
+		if (query == null || pathInfo != null && pathInfo.endsWith(ILayer.SOURCEMAP_RESOURCE_PATH)) {
+			return null;
+		}
+		return request.getRequestURI() + '?' + query;
+	}
+
+	/**
+	 * Records a request and returns the predicted follow-up requests.
+	 *
+	 * @param client
+	 *            the key returned by {@link #getClientKey(HttpServletRequest)}
+	 * @param uri
+	 *            the URI returned by {@link #getRequestUri(HttpServletRequest)}
+	 * @param time
+	 *            the time the request was received
+	 * @return the predicted follow-up request URIs, most likely first
+	 */
+	public List<String> requestReceived(String client, String uri, long time) {
+		if (prefetched.remove(uri) != null) {
+			prefetchHits.incrementAndGet();
+		}
+		Successors successors = transitions.get(uri);
+		List<String> result = successors != null ? successors.predict() : Collections.<String>emptyList();
+		predictions.addAndGet(result.size());
+
+		Visit previous = clients.put(client, new Visit(uri, time, result));
+		if (previous != null && time - previous.time <= FOLLOWUP_WINDOW && !previous.uri.equals(uri)) {
+			if (previous.predicted.contains(uri)) {
+				predictionHits.incrementAndGet();
+			}
+			successors = transitions.get(previous.uri);
+			if (successors == null) {
+				successors = new Successors();
+				Successors existing = transitions.putIfAbsent(previous.uri, successors);
+				if (existing != null) {
+					successors = existing;
+				}
+			}
+			successors.add(uri);
+		}
+		return result;
+	}
+
+	/**
+	 * Determines if a speculative build should be started for the specified
+	 * request URI. If this method returns true, then the caller must call
+	 * {@link #prefetchDone()} when the build has completed.
+	 *
+	 * @param uri
+	 *            the predicted request URI
+	 * @return true if the build should be started
+	 */
+	public boolean startPrefetch(String uri) {
+		if (prefetched.containsKey(uri)) {
+			// already built and not yet requested
+			return false;
+		}
+		if (!permits.tryAcquire()) {
+			prefetchesSkipped.incrementAndGet();
+			return false;
+		}
+		prefetched.put(uri, Boolean.TRUE);
+		prefetchesStarted.incrementAndGet();
+		return true;
+	}
+
+	/**
+	 * Releases the permit acquired by {@link #startPrefetch(String)}
+	 */
+	public void prefetchDone() {
+		permits.release();
+	}
+
+	/**
+	 * Discards the learned transitions
+	 */
+	public void clear() {
+		clients.clear();
+		transitions.clear();
+		prefetched.clear();
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		long predicted = predictions.get(), started = prefetchesStarted.get();
+		return MessageFormat.format(
+				"Layer prefetch: predictions = {0}, prediction hits = {1} ({2}%), speculative builds = {3}, speculative build hits = {4} ({5}%), speculative builds skipped = {6}", //$NON-NLS-1$
+				new Object[]{
+						predicted,
+						predictionHits.get(),
+						predicted > 0 ? predictionHits.get() * 100 / predicted : 0,
+						started,
+						prefetchHits.get(),
+						started > 0 ? prefetchHits.get() * 100 / started : 0,
+						prefetchesSkipped.get()
+				});
+	}
+
+	/**
+	 * The last request received from a client
+	 */
+	private static final class Visit {
+		private final String uri;
+		private final long time;
+		private final List<String> predicted;
+
+		private Visit(String uri, long time, List<String> predicted) {
+			this.uri = uri;
+			this.time = time;
+			this.predicted = predicted;
+		}
+	}
+
+	/**
+	 * The most frequent follow-up requests for a request URI. When a new
+	 * follow-up request is seen and the table is full, the least frequent
+	 * entry is replaced.
+	 */
+	static final class Successors {
+		private final String[] uris = new String[MAX_SUCCESSORS];
+		private final int[] counts = new int[MAX_SUCCESSORS];
+
+		synchronized void add(String uri) {
+			int min = 0;
+			for (int i = 0; i < MAX_SUCCESSORS; i++) {
+				if (uris[i] == null) {
+					uris[i] = uri;
+					counts[i] = 1;
+					return;
+				}
+				if (uris[i].equals(uri)) {
+					counts[i]++;
+					return;
+				}
+				if (counts[i] < counts[min]) {
+					min = i;
+				}
+			}
+			uris[min] = uri;
+			counts[min] = 1;
+		}
+
+		synchronized List<String> predict() {
+			List<String> result = null;
+			boolean[] used = new boolean[MAX_SUCCESSORS];
+			for (int n = 0; n < MAX_PREDICTIONS; n++) {
+				int max = -1;
+				for (int i = 0; i < MAX_SUCCESSORS; i++) {
+					if (!used[i] && uris[i] != null && counts[i] >= MIN_OCCURRENCES && (max == -1 || counts[i] > counts[max])) {
+						max = i;
+					}
+				}
+				if (max == -1) {
+					break;
+				}
+				used[max] = true;
+				if (result == null) {
+					result = new ArrayList<String>(MAX_PREDICTIONS);
+				}
+				result.add(uris[max]);
+			}
+			return result != null ? result : Collections.<String>emptyList();
+		}
+	}
+}
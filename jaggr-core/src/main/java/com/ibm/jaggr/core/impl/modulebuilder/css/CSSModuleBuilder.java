@@ -22,7 +22,11 @@ import com.ibm.jaggr.core.IExtensionInitializer;
 import com.ibm.jaggr.core.IExtensionSingleton;
 import com.ibm.jaggr.core.IServiceRegistration;
 import com.ibm.jaggr.core.IShutdownListener;
+import com.ibm.jaggr.core.IStatisticsProvider;
 import com.ibm.jaggr.core.NotFoundException;
+import com.ibm.jaggr.core.cache.ICache;
+import com.ibm.jaggr.core.cache.ICacheManager;
+import com.ibm.jaggr.core.cache.IGenericCache;
 import com.ibm.jaggr.core.cachekeygenerator.AbstractCacheKeyGenerator;
 import com.ibm.jaggr.core.cachekeygenerator.ICacheKeyGenerator;
 import com.ibm.jaggr.core.config.IConfig;
@@ -32,21 +36,23 @@ import com.ibm.jaggr.core.options.IOptions;
 import com.ibm.jaggr.core.readers.CommentStrippingReader;
 import com.ibm.jaggr.core.resource.IResource;
 import com.ibm.jaggr.core.transport.IHttpTransport;
+import com.ibm.jaggr.core.util.Base64Util;
 import com.ibm.jaggr.core.util.CopyUtil;
+import com.ibm.jaggr.core.util.ExternalProcessor;
 import com.ibm.jaggr.core.util.PathUtil;
 import com.ibm.jaggr.core.util.SignalUtil;
 import com.ibm.jaggr.core.util.TypeUtil;
 import com.ibm.jaggr.core.util.rhino.ReadFileExtFunction;
+import com.ibm.jaggr.core.util.rhino.RhinoEngine;
+import com.ibm.jaggr.core.util.rhino.ScopePool;
 
 import com.google.common.collect.ImmutableMap;
 
-import org.apache.commons.codec.binary.Base64;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.mutable.MutableObject;
 import org.mozilla.javascript.Context;
-import org.mozilla.javascript.EvaluatorException;
 import org.mozilla.javascript.Function;
 import org.mozilla.javascript.JavaScriptException;
 import org.mozilla.javascript.NativeArray;
@@ -54,7 +60,7 @@ import org.mozilla.javascript.Script;
 import org.mozilla.javascript.Scriptable;
 import org.mozilla.javascript.ScriptableObject;
 
-import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -72,13 +78,12 @@ import java.util.Hashtable;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
-import java.util.concurrent.CompletionService;
-import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.locks.ReadWriteLock;
@@ -186,8 +191,29 @@ import javax.servlet.http.HttpServletRequest;
  *    }
  * ],
  * </pre></code>
+ * <h2>Thread scope pool</h2>
+ * <p>PostCSS runs in JavaScript thread scopes that are obtained from an elastic pool.
+ * The pool is pre-warmed asynchronously with {@link #SCOPEPOOLSIZE_CONFIGPARAM} scopes
+ * (default {@link #DEFAULT_SCOPE_POOL_SIZE}) when the config is loaded, and grows on
+ * demand when builds have to wait for a scope, up to {@link #SCOPEPOOLMAXSIZE_CONFIGPARAM}
+ * scopes (default is the number of available processors).  Scopes in excess of the
+ * minimum are discarded after a period without contention.
+ * <h2>External processors</h2>
+ * <p>PostCSS processing can be delegated to a command line processor (for example, a
+ * locally installed <code>postcss</code>) specified by the {@link #POSTCSSCOMMAND_CONFIGPARAM}
+ * config param as an array of the command and its arguments, or as a space delimited string.
+ * The CSS is written to the standard input of the command, and the processed CSS is read from
+ * its standard output.  The command is responsible for applying the plugins, so only the
+ * minifier runs in-process on its output.  If the command fails, then the CSS is processed
+ * in-process with the configured plugins.
+ * <p>At most {@link #CSSWORKERPOOLSIZE_CONFIGPARAM} processes (default is the number of
+ * available processors) run concurrently for each command, and a process that doesn't finish
+ * within {@link #CSSWORKERTIMEOUT_CONFIGPARAM} seconds (default
+ * {@link #DEFAULT_WORKER_TIMEOUT_SECONDS}) is abandoned.  A command that can't be started,
+ * fails the health check that is run when the config is loaded, or times out, is not used for
+ * a while.
  */
-public class CSSModuleBuilder extends TextModuleBuilder implements  IExtensionInitializer, IExtensionSingleton, IShutdownListener, IConfigListener {
+public class CSSModuleBuilder extends TextModuleBuilder implements  IExtensionInitializer, IExtensionSingleton, IShutdownListener, IConfigListener, IStatisticsProvider {
 
 	static final String sourceClass = CSSModuleBuilder.class.getName();
 	static final Logger log = Logger.getLogger(sourceClass);
@@ -201,7 +227,11 @@ public class CSSModuleBuilder extends TextModuleBuilder implements  IExtensionIn
 	static public final String INCLUDEAMDPATHS_CONFIGPARAM = "cssEnableAMDIncludePaths";  //$NON-NLS-1$
 	static public final String POSTCSSPLUGINS_CONFIGPARAM = "postcssPlugins"; //$NON-NLS-1$
 	static public final String SCOPEPOOLSIZE_CONFIGPARAM = "cssScopePoolSize"; //$NON-NLS-1$
+	static public final String SCOPEPOOLMAXSIZE_CONFIGPARAM = "cssScopePoolMaxSize"; //$NON-NLS-1$
 	static public final String POSTCSS_CONFIGPARAM = "postcss"; //$NON-NLS-1$
+	static public final String POSTCSSCOMMAND_CONFIGPARAM = "postcssCommand"; //$NON-NLS-1$
+	static public final String CSSWORKERPOOLSIZE_CONFIGPARAM = "cssWorkerPoolSize"; //$NON-NLS-1$
+	static public final String CSSWORKERTIMEOUT_CONFIGPARAM = "cssWorkerTimeout"; //$NON-NLS-1$
 
 	// Custom server-side AMD config param default values
 	static public final boolean INLINEIMPORTS_DEFAULT_VALUE = true;
@@ -211,6 +241,15 @@ public class CSSModuleBuilder extends TextModuleBuilder implements  IExtensionIn
 	static public final String INLINEIMPORTS_REQPARAM_NAME = "inlineImports"; //$NON-NLS-1$
 	static public final String INLINEIMAGES_REQPARAM_NAME = "inlineImages"; //$NON-NLS-1$
 
+	static final String DATAURI_CACHE_NAME = "cssDataUriCache"; //$NON-NLS-1$
+	static final String IMPORTFRAGMENT_CACHE_NAME = "cssImportFragmentCache"; //$NON-NLS-1$
+
+	/**
+	 * The sources (URIs and last-modified times) of the import fragment
+	 * being built on the current thread, or null
+	 */
+	private static final ThreadLocal<Map<String, Long>> importSources = new ThreadLocal<Map<String, Long>>();
+
 	static public final String PREAMBLE = "[JAGGR inlined import]: "; //$NON-NLS-1$
 
 	static public final String BLANK = ""; //$NON-NLS-1$
@@ -221,6 +260,7 @@ public class CSSModuleBuilder extends TextModuleBuilder implements  IExtensionIn
 	static public final String PROCESS = "process";  //$NON-NLS-1$
 	static public final String PLUGINS = "plugins"; //$NON-NLS-1$
 	static public final String POSTCSS_INSTANCE = "postcssInstance"; //$NON-NLS-1$
+	static public final String MINIFIER_INSTANCE = "minifierInstance"; //$NON-NLS-1$
 	static public final String MODULE = "module"; //$NON-NLS-1$
 	static public final String EXPORTS = "exports"; //$NON-NLS-1$
 	static public final String AMD_DEFINE_SHIM_JS = "var module={exports:0},define=function(deps, f){if(deps&&deps.length)throw new Error('define dependencies not supported.');module.exports=f();};define.amd=true;"; //$NON-NLS-1$
@@ -232,6 +272,7 @@ public class CSSModuleBuilder extends TextModuleBuilder implements  IExtensionIn
 	static public final int INITIALIZER_THREAD_POOL_SIZE = 4;
 	static public final int DEFAULT_SCOPE_POOL_SIZE = 4;
 	static public final int SCOPE_POOL_TIMEOUT_SECONDS = 60;
+	static public final int DEFAULT_WORKER_TIMEOUT_SECONDS = 30;
 
 	static final protected Pattern urlPattern = Pattern.compile("url\\((\\s*(('[^']*')|(\"[^\"]*\")|([^)]*))\\s*)\\)?"); //$NON-NLS-1$
 	static final protected Pattern protocolPattern = Pattern.compile("^[a-zA-Z]*:"); //$NON-NLS-1$
@@ -267,7 +308,6 @@ public class CSSModuleBuilder extends TextModuleBuilder implements  IExtensionIn
 		InputStream minifyJsStream = null;
 		Context cx = Context.enter();
 		try {
-			cx.setOptimizationLevel(9);
 			postcssJsStream = CSSModuleBuilder.class.getClassLoader().getResourceAsStream(POSTCSS_RES_NAME);
 			if (postcssJsStream == null) {
 				throw new NotFoundException(POSTCSS_RES_NAME);
@@ -277,11 +317,11 @@ public class CSSModuleBuilder extends TextModuleBuilder implements  IExtensionIn
 				throw new NotFoundException(MINIFYER_RES_NAME);
 			}
 			String postcssJsString = IOUtils.toString(postcssJsStream);
-			postcssJsScript = cx.compileString(postcssJsString, POSTCSS_RES_NAME, 1, null);
+			postcssJsScript = RhinoEngine.compile(cx, postcssJsString, POSTCSS_RES_NAME);
 			String minifyJsString = IOUtils.toString(minifyJsStream);
-			minifyJsScript = cx.compileString(minifyJsString, BLANK, 1, null);
-			amdDefineShimScript = cx.compileString(AMD_DEFINE_SHIM_JS, BLANK, 1, null);
-			minifierInitScript = cx.compileString(MINIFIER_INITIALIZATION_JS, BLANK, 1, null);
+			minifyJsScript = RhinoEngine.compile(cx, minifyJsString, BLANK);
+			amdDefineShimScript = RhinoEngine.compile(cx, AMD_DEFINE_SHIM_JS, BLANK);
+			minifierInitScript = RhinoEngine.compile(cx, MINIFIER_INITIALIZATION_JS, BLANK);
 
 		} catch(IOException e) {
 			throw new RuntimeException(e);
@@ -349,7 +389,8 @@ public class CSSModuleBuilder extends TextModuleBuilder implements  IExtensionIn
 	private Script minifierInitScript;
 	private List<PluginInfo> pluginInfoList;
 	private Scriptable postcssOptions;
-	private BlockingQueue<Scriptable> threadScopes;
+	private volatile ScopePool<Scriptable> scopePool;
+	private volatile ExternalProcessor postcssProcessor;
 	private ExecutorService es;
 	private int ctorScopePoolSize = 0;
 
@@ -517,20 +558,7 @@ public class CSSModuleBuilder extends TextModuleBuilder implements  IExtensionIn
 				throw new NotFoundException(importNameMatch);
 			}
 
-			String importCss = null;
-			importCss = readToString(
-					new CommentStrippingReader(
-							new InputStreamReader(
-									uri.toURL().openStream(),
-									"UTF-8" //$NON-NLS-1$
-									)
-							)
-					);
-			importCss = inlineImageUrls(req, importCss, importRes);
-
-			if (inlineImports) {
-				importCss = inlineImports(req, importCss, importRes, importNameMatch);
-			}
+			String importCss = getImportFragment(req, importRes, importNameMatch, includePreamble);
 			m.appendReplacement(buf, BLANK);
 			buf.append(importCss);
 		}
@@ -595,6 +623,71 @@ public class CSSModuleBuilder extends TextModuleBuilder implements  IExtensionIn
 		return css;
 	}
 
+	/**
+	 * Returns the processed content of an imported CSS file.  The imported CSS
+	 * is comment stripped, image URLs in-lined, and nested &#064;imports
+	 * in-lined.  The result is cached in the import fragment cache, together
+	 * with the import graph it was built from, and is re-used until one of the
+	 * files in the graph is modified.
+	 *
+	 * @param req
+	 *            The request associated with the call.
+	 * @param importRes
+	 *            The resource for the imported CSS file
+	 * @param path
+	 *            The path, as specified in the &#064;import statement
+	 * @param includePreamble
+	 *            True if the names of imported files are included in comments
+	 * @return The processed CSS
+	 * @throws IOException
+	 */
+	protected String getImportFragment(HttpServletRequest req, IResource importRes, String path, boolean includePreamble) throws IOException {
+		URI uri = importRes.getURI();
+		ImportFragmentCache cache = getImportFragmentCache();
+		String key = uri.toString() + "|" + path + "|" + (includePreamble ? "1" : "0") //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+				+ (TypeUtil.asBoolean(req.getParameter(INLINEIMAGES_REQPARAM_NAME), true) ? "1" : "0"); //$NON-NLS-1$ //$NON-NLS-2$
+		Map<String, Long> outerSources = importSources.get();
+		ImportFragmentCache.Fragment fragment = cache != null ? cache.get(key, aggregator) : null;
+		if (fragment == null) {
+			Map<String, Long> sources = new HashMap<String, Long>();
+			sources.put(uri.toString(), importRes.lastModified());
+			importSources.set(sources);
+			String importCss = null;
+			try {
+				importCss = readToString(
+						new CommentStrippingReader(
+								new InputStreamReader(
+										uri.toURL().openStream(),
+										"UTF-8" //$NON-NLS-1$
+										)
+								)
+						);
+				importCss = inlineImageUrls(req, importCss, importRes);
+
+				if (inlineImports) {
+					importCss = inlineImports(req, importCss, importRes, path);
+				}
+			} finally {
+				if (outerSources != null) {
+					importSources.set(outerSources);
+				} else {
+					importSources.remove();
+				}
+			}
+			if (cache == null) {
+				if (outerSources != null) {
+					outerSources.putAll(sources);
+				}
+				return importCss;
+			}
+			fragment = cache.put(key, importCss, sources);
+		}
+		if (outerSources != null) {
+			outerSources.putAll(fragment.sources);
+		}
+		return fragment.css;
+	}
+
 	/**
 	 * Replace <code>url(&lt;<i>relative-path</i>&gt;)</code> references in the
 	 * input CSS with
@@ -622,6 +715,7 @@ public class CSSModuleBuilder extends TextModuleBuilder implements  IExtensionIn
 			return css;
 		}
 
+		DataUriCache dataUriCache = getDataUriCache();
 		StringBuffer buf = new StringBuffer();
 		Matcher m = urlPattern.matcher(css);
 		while (m.find()) {
@@ -694,10 +788,15 @@ public class CSSModuleBuilder extends TextModuleBuilder implements  IExtensionIn
 					}
 
 					if (include || imageRes.getSize() <= imageSizeThreshold) {
-						String base64 = getBase64(imageRes.getInputStream());
+						String dataUri = dataUriCache != null ?
+								dataUriCache.getDataUri(imageRes, type) : DataUriCache.newDataUri(imageRes, type);
+						// Record the image as a source of the import fragment being built
+						Map<String, Long> sources = importSources.get();
+						if (sources != null) {
+							sources.put(imageUri.toString(), imageRes.lastModified());
+						}
 						m.appendReplacement(buf, BLANK);
-						buf.append("url('data:" + type + //$NON-NLS-1$
-								";base64," + base64 + "')"); //$NON-NLS-1$ //$NON-NLS-2$
+						buf.append("url('").append(dataUri).append("')"); //$NON-NLS-1$ //$NON-NLS-2$
 						imageInlined = true;
 					}
 				} catch (IOException ex) {
@@ -738,20 +837,32 @@ public class CSSModuleBuilder extends TextModuleBuilder implements  IExtensionIn
 	 * @throws IOException
 	 */
 	protected String postcss(HttpServletRequest request, String css, IResource res) throws IOException {
-		if (threadScopes == null) {
+		final String sourceMethod = "postcss"; //$NON-NLS-1$
+		ScopePool<Scriptable> pool = scopePool;
+		if (pool == null) {
 			return css;
 		}
+		String instanceName = POSTCSS_INSTANCE;
+		ExternalProcessor processor = postcssProcessor;
+		if (processor != null && processor.isAvailable()) {
+			try {
+				css = processor.process(css, getWorkingDirectory(res));
+				// The plugins have been applied.  Just minify.
+				instanceName = MINIFIER_INSTANCE;
+			} catch (IOException e) {
+				if (log.isLoggable(Level.WARNING)) {
+					log.logp(Level.WARNING, sourceClass, sourceMethod, "Processing " + res.getURI() + " in-process: " + e.getMessage()); //$NON-NLS-1$ //$NON-NLS-2$
+				}
+			}
+		}
 		Context cx = Context.enter();
 		Scriptable threadScope = null;
 		String result = null;
 		try {
-			threadScope = threadScopes.poll(SCOPE_POOL_TIMEOUT_SECONDS, TimeUnit.SECONDS);
-			if (threadScope == null) {
-				throw new TimeoutException("Timeout waiting for thread scope"); //$NON-NLS-1$
-			}
+			threadScope = pool.acquire(SCOPE_POOL_TIMEOUT_SECONDS, TimeUnit.SECONDS);
 			Scriptable scope = cx.newObject(threadScope);
 			scope.setParentScope(threadScope);
-			Scriptable postcssInstance = (Scriptable)threadScope.get(POSTCSS_INSTANCE, scope);
+			Scriptable postcssInstance = (Scriptable)threadScope.get(instanceName, scope);
 			Function postcssProcessor = (Function)postcssInstance.getPrototype().get(PROCESS, postcssInstance);
 			Object processed = postcssProcessor.call(cx, scope, postcssInstance, new Object[]{css, postcssOptions});
 			result = Context.toString(processed);
@@ -766,8 +877,8 @@ public class CSSModuleBuilder extends TextModuleBuilder implements  IExtensionIn
 		}
 		finally {
 			if (threadScope != null) {
-				// put the thread scope back in the queue now that we're done with it
-				threadScopes.add(threadScope);
+				// put the thread scope back in the pool now that we're done with it
+				pool.release(threadScope);
 			}
 			Context.exit();
 		}
@@ -798,15 +909,21 @@ public class CSSModuleBuilder extends TextModuleBuilder implements  IExtensionIn
 			Scriptable configScript = (Scriptable)config.getRawConfig();
 			final Scriptable configScope = (Scriptable)config.getConfigScope();
 
-			int scopePoolSize = DEFAULT_SCOPE_POOL_SIZE;
+			int scopePoolSize = DEFAULT_SCOPE_POOL_SIZE, scopePoolMaxSize;
 			if (ctorScopePoolSize != 0) {
-				scopePoolSize = ctorScopePoolSize;
+				// Fixed size pool
+				scopePoolSize = scopePoolMaxSize = ctorScopePoolSize;
 			} else {
 				// Read the scope pool size if specified
 				Object scopePoolSizeConfig = configScript.get(SCOPEPOOLSIZE_CONFIGPARAM, configScript);
 				if (scopePoolSizeConfig != Scriptable.NOT_FOUND) {
 					scopePoolSize = ((Number)scopePoolSizeConfig).intValue();
 				}
+				scopePoolMaxSize = Math.max(scopePoolSize, Runtime.getRuntime().availableProcessors());
+				Object scopePoolMaxSizeConfig = configScript.get(SCOPEPOOLMAXSIZE_CONFIGPARAM, configScript);
+				if (scopePoolMaxSizeConfig != Scriptable.NOT_FOUND) {
+					scopePoolMaxSize = Math.max(scopePoolSize, ((Number)scopePoolMaxSizeConfig).intValue());
+				}
 			}
 			// Create a new scope to evaluate the minifier initialization code because configScope is sealed.
 			Scriptable scope = cx.newObject(configScope);
@@ -869,52 +986,44 @@ public class CSSModuleBuilder extends TextModuleBuilder implements  IExtensionIn
 							} finally {
 								IOUtils.closeQuietly(is);
 							}
-							Script script = null;
-							cx.setOptimizationLevel(9);
-							try {
-								script = cx.compileString(js, uri.toString(), 1, null);
-							} catch (EvaluatorException e) {
-								// Try with optimization disabled
-								cx.setOptimizationLevel(-1);
-								script = cx.compileString(js, uri.toString(), 1, null);
-							}
+							Script script = RhinoEngine.compile(cx, js, uri.toString());
 							pluginInfoList.add(new PluginInfo(initializer, script));
 						}
 					}
 				}
 			}
 
-			// Create the thread scope pool
-			threadScopes = new ArrayBlockingQueue<Scriptable>(scopePoolSize);
-			// Now create the thread scope pool.  We use a thread pool executor service to
-			// create the scope pool in order to take advantage of parallel processing
-			// capabilities on multi-core processors.
+			// Create the thread scope pool.  We use a thread pool executor service to
+			// create the scopes in order to take advantage of parallel processing
+			// capabilities on multi-core processors.  The pool is pre-warmed asynchronously.
+			// Builds that need a scope before one is available will wait for it.
 			if (es == null) {
-				es = Executors.newFixedThreadPool(INITIALIZER_THREAD_POOL_SIZE);
+				es = newInitializerExecutor();
 			}
-			final CompletionService<Scriptable> cs = new ExecutorCompletionService<Scriptable>(es);
-			for (int i = 0; i < scopePoolSize; i++) {
-				cs.submit(new Callable<Scriptable>() {
-					@Override
-					public Scriptable call() throws Exception {
-						Context ctx = Context.enter();
-						try {
-							return createThreadScope(ctx, configScope);
-						} finally {
-							Context.exit();
+			ScopePool<Scriptable> oldPool = scopePool;
+			scopePool = new ScopePool<Scriptable>(
+					getClass().getSimpleName() + " scope pool", //$NON-NLS-1$
+					scopePoolSize,
+					scopePoolMaxSize,
+					new Callable<Scriptable>() {
+						@Override
+						public Scriptable call() throws Exception {
+							Context ctx = Context.enter();
+							try {
+								Scriptable threadScope = createThreadScope(ctx, configScope);
+								// Seal the scopes to prevent changes
+								((ScriptableObject)threadScope).sealObject();
+								return threadScope;
+							} finally {
+								Context.exit();
+							}
 						}
-					}
-				});
+					},
+					es);
+			scopePool.prewarm();
+			if (oldPool != null) {
+				oldPool.clear();
 			}
-			// now get the results
-			for (int i = 0; i < scopePoolSize; i++) {
-				Scriptable threadScope = SignalUtil.take(cs, sourceClass, sourceMethod).get();
-				// Seal the scopes to prevent changes
-				((ScriptableObject)threadScope).sealObject();
-				threadScopes.add(threadScope);
-			}
-			// Shut down the executor and release the threads
-			es.shutdown();
 
 		} catch (Exception e) {
 			throw new RuntimeException(e.getMessage(), e);
@@ -957,6 +1066,7 @@ public class CSSModuleBuilder extends TextModuleBuilder implements  IExtensionIn
 		/*
 		 * Now load and initialize plugins
 		 */
+		Scriptable minifierPlugin = null;
 		for (PluginInfo info : pluginInfoList) {
 			// Set up new scope for defining the module so that module.exports is not shared between plugins
 			Scriptable defineScope = cx.newObject(scope);
@@ -970,24 +1080,167 @@ public class CSSModuleBuilder extends TextModuleBuilder implements  IExtensionIn
 			Scriptable plugin = (Scriptable)info.initializer.call(cx, scope, scope, new Object[]{module});
 			// Add the plugin to the array
 			pushFn.call(cx, scope, plugins, new Object[]{plugin});
+			if (minifierPlugin == null) {
+				// the minifier is always the first plugin
+				minifierPlugin = plugin;
+			}
 		}
 		// Create an instance of the PostCSS processor and save to a variable in thread scope
 		Function postcss = (Function)scope.get(POSTCSS, scope);
 		postcssOptions = (Scriptable)Context.javaToJS(POSTCSS_OPTIONS, scope);
 		Scriptable postcssInstance = (Scriptable)postcss.call(cx, scope, scope, new Object[]{plugins});
 		scope.put(POSTCSS_INSTANCE, scope, postcssInstance);
+		// and one that only minifies, for CSS that has been processed by an external processor
+		Scriptable minifierInstance = (Scriptable)postcss.call(cx, scope, scope, new Object[]{cx.newArray(scope, new Object[]{minifierPlugin})});
+		scope.put(MINIFIER_INSTANCE, scope, minifierInstance);
 
 		return scope;
 	}
 
 	/**
-	 * Returns the thread scope queue
+	 * Returns the executor service used to create thread scopes.  Threads
+	 * are released when idle.
 	 *
-	 * @return the thread scope queue
+	 * @return the executor service
+	 */
+	protected ExecutorService newInitializerExecutor() {
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(
+				INITIALIZER_THREAD_POOL_SIZE, INITIALIZER_THREAD_POOL_SIZE,
+				60, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<Runnable>(),
+				new ThreadFactory() {
+					@Override
+					public Thread newThread(Runnable r) {
+						Thread thread = new Thread(r, CSSModuleBuilder.this.getClass().getSimpleName() + " scope initializer"); //$NON-NLS-1$
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+
+	/**
+	 * Returns the idle thread scopes
+	 *
+	 * @return the queue of idle thread scopes
 	 */
 	protected BlockingQueue<Scriptable> getThreadScopes() {
-		return threadScopes;
+		ScopePool<Scriptable> pool = scopePool;
+		return pool != null ? pool.getAvailable() : null;
+	}
+
+	/**
+	 * Returns the thread scope pool
+	 *
+	 * @return the thread scope pool
+	 */
+	protected ScopePool<Scriptable> getScopePool() {
+		return scopePool;
+	}
+
+	/**
+	 * Returns the utilization and wait time statistics for the thread scope
+	 * pool.
+	 *
+	 * @return the thread scope pool statistics
+	 */
+	public String getScopePoolStatistics() {
+		ScopePool<Scriptable> pool = scopePool;
+		return pool != null ? pool.toString() : ""; //$NON-NLS-1$
 	}
+
+	/**
+	 * Returns the statistics for the external processors, if any.
+	 *
+	 * @return the external processor statistics
+	 */
+	public String getExternalProcessorStatistics() {
+		ExternalProcessor processor = postcssProcessor;
+		return processor != null ? processor.toString() : ""; //$NON-NLS-1$
+	}
+
+	/**
+	 * Returns the thread scope pool statistics followed by the external
+	 * processor statistics, if any.
+	 *
+	 * @return the statistics for this builder
+	 */
+	@Override
+	public String getStatistics() {
+		StringBuffer sb = new StringBuffer(getScopePoolStatistics());
+		String stats = getExternalProcessorStatistics();
+		if (stats.length() > 0) {
+			sb.append(sb.length() > 0 ? System.getProperty("line.separator") : "").append(stats); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Creates the external processor for the command specified by the named
+	 * config param, and checks its health asynchronously.
+	 *
+	 * @param conf
+	 *            the config
+	 * @param commandParam
+	 *            the name of the config param specifying the command
+	 * @param name
+	 *            the processor name
+	 * @return the external processor, or null if no command is specified
+	 * @throws IllegalArgumentException
+	 *             if the config param is not valid
+	 */
+	protected ExternalProcessor newExternalProcessor(IConfig conf, String commandParam, String name) {
+		Object obj = conf.getProperty(commandParam, List.class);
+		if (obj == IConfig.NOT_FOUND || obj == null) {
+			return null;
+		}
+		List<String> command = new ArrayList<String>();
+		if (obj instanceof String) {
+			for (String s : ((String)obj).split("\\s")) { //$NON-NLS-1$
+				if (s.length() > 0) {
+					command.add(s);
+				}
+			}
+		} else if (obj instanceof List) {
+			for (Object o : (List<?>)obj) {
+				command.add(o.toString());
+			}
+		} else {
+			throw new IllegalArgumentException(commandParam + ": " + obj); //$NON-NLS-1$
+		}
+		if (command.isEmpty()) {
+			return null;
+		}
+		int poolSize = TypeUtil.asInt(conf.getProperty(CSSWORKERPOOLSIZE_CONFIGPARAM, null), Runtime.getRuntime().availableProcessors());
+		int timeout = TypeUtil.asInt(conf.getProperty(CSSWORKERTIMEOUT_CONFIGPARAM, null), DEFAULT_WORKER_TIMEOUT_SECONDS);
+		final ExternalProcessor processor = new ExternalProcessor(name, command, poolSize, timeout, TimeUnit.SECONDS);
+		if (es == null) {
+			es = newInitializerExecutor();
+		}
+		es.submit(new Runnable() {
+			@Override
+			public void run() {
+				processor.check();
+			}
+		});
+		return processor;
+	}
+
+	/**
+	 * Returns the working directory for external processing of the specified
+	 * resource. Relative imports are resolved against the working directory.
+	 *
+	 * @param res
+	 *            the resource
+	 * @return the directory containing the resource, or null if the resource
+	 *         is not a file
+	 */
+	protected File getWorkingDirectory(IResource res) {
+		URI uri = res.getURI();
+		return "file".equals(uri.getScheme()) ? new File(uri).getParentFile() : null; //$NON-NLS-1$
+	}
+
 	/**
 	 * Returns a base64 encoded string representation of the contents of the
 	 * resource associated with the {@link URLConnection}.
@@ -998,9 +1251,70 @@ public class CSSModuleBuilder extends TextModuleBuilder implements  IExtensionIn
 	 * @throws IOException
 	 */
 	protected String getBase64(InputStream in) throws IOException {
-		ByteArrayOutputStream out = new ByteArrayOutputStream();
-		CopyUtil.copy(in, out);
-		return new String(Base64.encodeBase64(out.toByteArray()), "UTF-8"); //$NON-NLS-1$
+		StringBuilder sb = new StringBuilder();
+		Base64Util.encode(in, sb);
+		return sb.toString();
+	}
+
+	/**
+	 * Returns the named cache of in-lined image data URIs, creating it and
+	 * adding it to the aggregator cache if necessary.
+	 *
+	 * @return the data URI cache, or null if the cache manager is not
+	 *         available
+	 */
+	protected DataUriCache getDataUriCache() {
+		ICacheManager cacheMgr = aggregator.getCacheManager();
+		if (cacheMgr == null) {
+			return null;
+		}
+		ICache cache = cacheMgr.getCache();
+		IGenericCache result = cache.getCache(DATAURI_CACHE_NAME);
+		if (result == null) {
+			DataUriCache newCache = new DataUriCache();
+			result = cache.putIfAbsent(DATAURI_CACHE_NAME, newCache);
+			if (result == null) {
+				result = newCache;
+			}
+		}
+		return result instanceof DataUriCache ? (DataUriCache)result : null;
+	}
+
+	/**
+	 * Returns the named cache of processed &#064;import fragments, creating it
+	 * and adding it to the aggregator cache if necessary.
+	 *
+	 * @return the import fragment cache, or null if the cache manager is not
+	 *         available
+	 */
+	protected ImportFragmentCache getImportFragmentCache() {
+		return getFragmentCache(IMPORTFRAGMENT_CACHE_NAME);
+	}
+
+	/**
+	 * Returns the named fragment cache, creating it and adding it to the
+	 * aggregator cache if necessary.
+	 *
+	 * @param name
+	 *            the cache name
+	 * @return the fragment cache, or null if the cache manager is not
+	 *         available
+	 */
+	protected ImportFragmentCache getFragmentCache(String name) {
+		ICacheManager cacheMgr = aggregator.getCacheManager();
+		if (cacheMgr == null) {
+			return null;
+		}
+		ICache cache = cacheMgr.getCache();
+		IGenericCache result = cache.getCache(name);
+		if (result == null) {
+			ImportFragmentCache newCache = new ImportFragmentCache();
+			result = cache.putIfAbsent(name, newCache);
+			if (result == null) {
+				result = newCache;
+			}
+		}
+		return result instanceof ImportFragmentCache ? (ImportFragmentCache)result : null;
 	}
 
 	private static final Pattern escaper = Pattern.compile("([\\\\.*?+\\[{|()^$])"); //$NON-NLS-1$
@@ -1060,7 +1374,17 @@ public class CSSModuleBuilder extends TextModuleBuilder implements  IExtensionIn
 			reg.unregister();
 		}
 		registrations.clear();
-		threadScopes.clear();
+		ScopePool<Scriptable> pool = scopePool;
+		if (pool != null) {
+			pool.clear();
+		}
+		ExternalProcessor processor = postcssProcessor;
+		if (processor != null) {
+			processor.shutdown();
+		}
+		if (es != null) {
+			es.shutdown();
+		}
 	}
 
 	/* (non-Javadoc)
@@ -1149,6 +1473,20 @@ public class CSSModuleBuilder extends TextModuleBuilder implements  IExtensionIn
 			}
 			inlinedImageExcludeList = list;
 			initPostcss(conf);
+
+			ExternalProcessor oldProcessor = postcssProcessor;
+			postcssProcessor = newExternalProcessor(conf, POSTCSSCOMMAND_CONFIGPARAM, "PostCSS processor"); //$NON-NLS-1$
+			if (oldProcessor != null) {
+				oldProcessor.shutdown();
+			}
+
+			// Processed import fragments depend on the config settings
+			if (aggregator != null) {
+				ImportFragmentCache cache = getImportFragmentCache();
+				if (cache != null) {
+					cache.clear();
+				}
+			}
 		} finally {
 			configUpdatingRWL.writeLock().unlock();
 		}
@@ -0,0 +1,145 @@
+/*
+ * (C) Copyright IBM Corp. 2012, 2016 All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ibm.jaggr.core.impl.modulebuilder.css;
+
+import com.ibm.jaggr.core.cache.IGenericCache;
+import com.ibm.jaggr.core.impl.cache.GenericCacheImpl;
+import com.ibm.jaggr.core.resource.IResource;
+import com.ibm.jaggr.core.util.Base64Util;
+
+import com.googlecode.concurrentlinkedhashmap.ConcurrentLinkedHashMap;
+import com.googlecode.concurrentlinkedhashmap.Weigher;
+
+import java.io.IOException;
+import java.io.Serializable;
+
+/**
+ * Named cache of the data URIs for in-lined CSS images.  Entries are keyed
+ * by image URI and are valid only for the last-modified time of the image
+ * that the data URI was created from, so the same image is encoded once no
+ * matter how many CSS modules, themes or build variants reference it.
+ * <p>
+ * The cache is bounded by the total number of characters in the cached data
+ * URIs, with least recently used entries being evicted first.
+ */
+public class DataUriCache extends GenericCacheImpl<DataUriCache.CacheEntry> implements Serializable {
+	private static final long serialVersionUID = -2926012339735744307L;
+
+	/**
+	 * The default maximum number of data URI characters held by the cache
+	 */
+	static final int DEFAULT_CAPACITY = 8 * 1024 * 1024;
+
+	static class CacheEntry implements Serializable {
+		private static final long serialVersionUID = 5765468738604744914L;
+
+		final long lastModified;
+		final String type;
+		final String dataUri;
+
+		CacheEntry(long lastModified, String type, String dataUri) {
+			this.lastModified = lastModified;
+			this.type = type;
+			this.dataUri = dataUri;
+		}
+
+		/* (non-Javadoc)
+		 * @see java.lang.Object#toString()
+		 */
+		@Override
+		public String toString() {
+			return "lastModified:" + lastModified + ", type:" + type + ", size:" + dataUri.length(); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		}
+	}
+
+	private static class EntryWeigher implements Weigher<CacheEntry>, Serializable {
+		private static final long serialVersionUID = 3236358457316216519L;
+
+		/* (non-Javadoc)
+		 * @see com.googlecode.concurrentlinkedhashmap.Weigher#weightOf(java.lang.Object)
+		 */
+		@Override
+		public int weightOf(CacheEntry entry) {
+			return Math.max(1, entry.dataUri.length());
+		}
+	}
+
+	private final int capacity;
+
+	public DataUriCache() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	DataUriCache(int capacity) {
+		this.capacity = capacity;
+		cacheMap = new ConcurrentLinkedHashMap.Builder<String, CacheEntry>()
+				.maximumWeightedCapacity(capacity)
+				.weigher(new EntryWeigher())
+				.build();
+	}
+
+	/**
+	 * Returns the data URI for the specified image, creating it and adding
+	 * it to the cache if the cache doesn't hold a data URI for the current
+	 * version of the image.  Concurrent requests for the same image may
+	 * each encode the image, in which case the last one wins.
+	 *
+	 * @param image
+	 *            the image resource
+	 * @param type
+	 *            the image content type
+	 * @return the data URI
+	 * @throws IOException
+	 */
+	public String getDataUri(IResource image, String type) throws IOException {
+		String key = image.getURI().toString();
+		long lastModified = image.lastModified();
+		CacheEntry entry = cacheMap.get(key);
+		if (entry != null && entry.lastModified == lastModified && entry.type.equals(type)) {
+			return entry.dataUri;
+		}
+		String dataUri = newDataUri(image, type);
+		cacheMap.put(key, new CacheEntry(lastModified, type, dataUri));
+		return dataUri;
+	}
+
+	/**
+	 * Returns a new data URI for the specified image.  The encoded image data
+	 * is written directly to a buffer sized for the complete data URI.
+	 *
+	 * @param image
+	 *            the image resource
+	 * @param type
+	 *            the image content type
+	 * @return the data URI
+	 * @throws IOException
+	 */
+	static String newDataUri(IResource image, String type) throws IOException {
+		StringBuilder sb = new StringBuilder(type.length() + 13 + Base64Util.encodedLength(image.getSize()));
+		sb.append("data:").append(type).append(";base64,"); //$NON-NLS-1$ //$NON-NLS-2$
+		Base64Util.encode(image.getInputStream(), sb);
+		return sb.toString();
+	}
+
+	/* (non-Javadoc)
+	 * @see com.ibm.jaggr.core.impl.cache.GenericCacheImpl#newInstance()
+	 */
+	@Override
+	public IGenericCache newInstance() {
+		return new DataUriCache(capacity);
+	}
+}
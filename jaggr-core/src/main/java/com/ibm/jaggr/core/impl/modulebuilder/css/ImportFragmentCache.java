@@ -0,0 +1,167 @@
+/*
+ * (C) Copyright IBM Corp. 2012, 2016 All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ibm.jaggr.core.impl.modulebuilder.css;
+
+import com.ibm.jaggr.core.IAggregator;
+import com.ibm.jaggr.core.cache.IGenericCache;
+import com.ibm.jaggr.core.impl.cache.GenericCacheImpl;
+
+import com.googlecode.concurrentlinkedhashmap.ConcurrentLinkedHashMap;
+import com.googlecode.concurrentlinkedhashmap.Weigher;
+
+import java.io.Serializable;
+import java.net.URI;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Named cache of the processed content of CSS files that are in-lined by
+ * &#064;import statements.  Each fragment records the import graph it was
+ * built from (the imported file, the files it imports, transitively, and
+ * the in-lined images) together with the last-modified times of those
+ * files.  A fragment is re-spliced into importing stylesheets for as long
+ * as none of the files in its graph has changed, so a change to a shared
+ * file causes only the fragments that depend on it to be rebuilt.
+ * <p>
+ * The same structure is used by the LESS module builder to cache compiled
+ * LESS, with the graph of files read by the LESS compiler.
+ * <p>
+ * Because fragments are validated against their import graph when they are
+ * used, they are carried over when the aggregator cache is cleared.  The
+ * cache is cleared by the module builder when the config changes.
+ */
+public class ImportFragmentCache extends GenericCacheImpl<ImportFragmentCache.Fragment> implements Serializable {
+	private static final long serialVersionUID = -4766326370003564817L;
+
+	/**
+	 * The default maximum number of fragment characters held by the cache
+	 */
+	static final int DEFAULT_CAPACITY = 8 * 1024 * 1024;
+
+	public static class Fragment implements Serializable {
+		private static final long serialVersionUID = 2353418567233744612L;
+
+		public final String css;
+
+		/** Map of source URIs to last-modified times */
+		public final Map<String, Long> sources;
+
+		Fragment(String css, Map<String, Long> sources) {
+			this.css = css;
+			this.sources = Collections.unmodifiableMap(new HashMap<String, Long>(sources));
+		}
+
+		/**
+		 * Returns true if none of the sources of this fragment have been
+		 * modified since the fragment was built.
+		 *
+		 * @param aggregator
+		 *            the aggregator
+		 * @return true if the fragment is current
+		 */
+		boolean isValid(IAggregator aggregator) {
+			for (Map.Entry<String, Long> entry : sources.entrySet()) {
+				if (aggregator.newResource(URI.create(entry.getKey())).lastModified() != entry.getValue()) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		/* (non-Javadoc)
+		 * @see java.lang.Object#toString()
+		 */
+		@Override
+		public String toString() {
+			return "size:" + css.length() + ", sources:" + sources; //$NON-NLS-1$ //$NON-NLS-2$
+		}
+	}
+
+	private static class FragmentWeigher implements Weigher<Fragment>, Serializable {
+		private static final long serialVersionUID = -4121429405961101040L;
+
+		/* (non-Javadoc)
+		 * @see com.googlecode.concurrentlinkedhashmap.Weigher#weightOf(java.lang.Object)
+		 */
+		@Override
+		public int weightOf(Fragment fragment) {
+			return Math.max(1, fragment.css.length());
+		}
+	}
+
+	private final int capacity;
+
+	public ImportFragmentCache() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	ImportFragmentCache(int capacity) {
+		this.capacity = capacity;
+		cacheMap = new ConcurrentLinkedHashMap.Builder<String, Fragment>()
+				.maximumWeightedCapacity(capacity)
+				.weigher(new FragmentWeigher())
+				.build();
+	}
+
+	/**
+	 * Returns the fragment with the specified key if it is current.
+	 *
+	 * @param key
+	 *            the fragment key
+	 * @param aggregator
+	 *            the aggregator
+	 * @return the fragment, or null if the cache doesn't hold a current
+	 *         fragment for the key
+	 */
+	public Fragment get(String key, IAggregator aggregator) {
+		Fragment fragment = cacheMap.get(key);
+		if (fragment != null && !fragment.isValid(aggregator)) {
+			cacheMap.remove(key, fragment);
+			fragment = null;
+		}
+		return fragment;
+	}
+
+	/**
+	 * Adds a fragment to the cache.
+	 *
+	 * @param key
+	 *            the fragment key
+	 * @param css
+	 *            the processed CSS
+	 * @param sources
+	 *            map of the URIs of the files the fragment was built from to
+	 *            their last-modified times
+	 * @return the new fragment
+	 */
+	public Fragment put(String key, String css, Map<String, Long> sources) {
+		Fragment fragment = new Fragment(css, sources);
+		cacheMap.put(key, fragment);
+		return fragment;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.ibm.jaggr.core.impl.cache.GenericCacheImpl#newInstance()
+	 */
+	@Override
+	public IGenericCache newInstance() {
+		ImportFragmentCache result = new ImportFragmentCache(capacity);
+		result.cacheMap.putAll(cacheMap);
+		return result;
+	}
+}
@@ -17,6 +17,9 @@
 package com.ibm.jaggr.core.impl.modulebuilder.i18n;
 
 import com.ibm.jaggr.core.IAggregator;
+import com.ibm.jaggr.core.cache.ICache;
+import com.ibm.jaggr.core.cache.ICacheManager;
+import com.ibm.jaggr.core.cache.IGenericCache;
 import com.ibm.jaggr.core.cachekeygenerator.I18nCacheKeyGenerator;
 import com.ibm.jaggr.core.cachekeygenerator.ICacheKeyGenerator;
 import com.ibm.jaggr.core.impl.modulebuilder.javascript.JavaScriptModuleBuilder;
@@ -24,13 +27,11 @@ import com.ibm.jaggr.core.module.IModule;
 import com.ibm.jaggr.core.modulebuilder.ModuleBuild;
 import com.ibm.jaggr.core.options.IOptions;
 import com.ibm.jaggr.core.resource.IResource;
-import com.ibm.jaggr.core.resource.IResourceVisitor;
 import com.ibm.jaggr.core.transport.IHttpTransport;
 import com.ibm.jaggr.core.util.Prioritized;
 import com.ibm.jaggr.core.util.TypeUtil;
 
 import java.io.IOException;
-import java.net.URI;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -61,6 +62,9 @@ public class I18nModuleBuilder
 extends JavaScriptModuleBuilder {
 
 	public static String OPTION_DISABLE_LOCALE_EXPANSION = "disableLocaleExpansion"; //$NON-NLS-1$
+
+	static final String LOCALEINDEX_CACHE_NAME = "i18nLocaleIndex"; //$NON-NLS-1$
+
 	// regexp for reconstructing the master bundle name from parts of the regexp match
 	// nlsRe.exec("foo/bar/baz/nls/en-ca/foo") gives:
 	// ["foo/bar/baz/nls/en-ca/foo", "foo/bar/baz/nls/", "/", "/", "en-ca", "foo"]
@@ -112,10 +116,11 @@ extends JavaScriptModuleBuilder {
 		if (isExpandLocaleResources(request)) {
 			Matcher m = re.matcher(mid);
 			m.matches();
-			Collection<String> availableLocales = Arrays.asList(getAvailableLocales(request, mid, resource, keyGens));
+			String[] availableLocales = getAvailableLocales(request, mid, resource, keyGens);
 			result = new LinkedList<String>();
 			Set<String> added = new HashSet<String>();
 			IAggregator aggr = (IAggregator)request.getAttribute(IAggregator.AGGREGATOR_REQATTRNAME);
+			LocaleIndex index = getLocaleIndex(aggr);
 
 			// Find the bundles that matche the requested locales.
 			@SuppressWarnings("unchecked")
@@ -126,20 +131,20 @@ extends JavaScriptModuleBuilder {
 				// check for special case locales="*" meaning all available locales.
 				for (String locale : locales) {
 					if ("*".equals(locale)) { //$NON-NLS-1$
-						locales = new HashSet<String>(availableLocales);
+						locales = new HashSet<String>(Arrays.asList(availableLocales));
 						break;
 					}
 				}
 				for (String locale : locales) {
-					processLocale(resource, result, m, availableLocales, added,
-							aggr, bundleName, locale);
+					processLocale(index, resource, result, m, availableLocales, added,
+							bundleName, locale);
 				}
 			} else {
 				// Use the first locale we can match resources for in the Accept-Language header
 				locales = parseAcceptLanguageHeader(request);
 				for (String locale : locales) {
-					processLocale(resource, result, m, availableLocales, added,
-							aggr, bundleName, locale);
+					processLocale(index, resource, result, m, availableLocales, added,
+							bundleName, locale);
 					if (!result.isEmpty()) break;
 				}
 			}
@@ -152,40 +157,41 @@ extends JavaScriptModuleBuilder {
 		return null;
 	}
 
-	private void processLocale(IResource resource, List<String> result,
-			Matcher m, Collection<String> availableLocales, Set<String> added,
-			IAggregator aggr, String bundleName, String locale)
-					throws IOException {
-		String[] a = locale.split("-"); //$NON-NLS-1$
-		String language = a[0].toLowerCase();
-		String country = (a.length > 1) ? a[1].toLowerCase() : ""; //$NON-NLS-1$
-		String varient = (a.length > 2) ? a[2].toLowerCase() : ""; //$NON-NLS-1$
-		if (language.length() > 0 && varient.length() > 0 && country.length() > 0) {
-			// Try language + country + region code first
-			String tryLocale = language+"-"+country+"-"+varient; //$NON-NLS-1$ //$NON-NLS-2$
+	/**
+	 * Adds the most specific available locale specific bundle for the
+	 * requested locale that hasn't already been added.
+	 *
+	 * @param index
+	 *            the locale index, or null
+	 * @param resource
+	 *            the root bundle resource
+	 * @param result
+	 *            the list of modules to add the locale specific bundle to
+	 * @param m
+	 *            the matcher for the root bundle module id
+	 * @param availableLocales
+	 *            the available locales for the bundle
+	 * @param added
+	 *            the paths, relative to the bundle root, of the locale
+	 *            specific bundles that have already been added
+	 * @param bundleName
+	 *            the bundle name
+	 * @param locale
+	 *            the requested locale
+	 */
+	private void processLocale(LocaleIndex index, IResource resource, List<String> result,
+			Matcher m, String[] availableLocales, Set<String> added,
+			String bundleName, String locale) {
+		String[] chain = index != null ?
+				index.getFallbackChain(resource, availableLocales, locale) :
+				LocaleIndex.getFallbackChain(locale, Arrays.asList(availableLocales));
+		for (String tryLocale : chain) {
 			String path = tryLocale + "/" + bundleName; //$NON-NLS-1$
-			if (!added.contains(path) && tryAddModule(aggr, result, m.group(1), resource, tryLocale, bundleName, availableLocales)) {
-				added.add(path);
-				return;
-			}
-		}
-		if (language.length() > 0 && country.length() > 0) {
-			// Now try language + country code
-			String tryLocale = language+"-"+country; //$NON-NLS-1$
-			String path = tryLocale + bundleName;
-			if (!added.contains(path) && tryAddModule(aggr, result, m.group(1), resource, tryLocale, bundleName, availableLocales)) {
-				added.add(path);
+			if (added.add(path)) {
+				result.add(m.group(1) + "/" + path); //$NON-NLS-1$
 				return;
 			}
 		}
-		if (language.length() > 0) {
-			// Now try just language code
-			String tryLocale = language;
-			String path = tryLocale+"/"+bundleName; //$NON-NLS-1$
-			if (!added.contains(path) && tryAddModule(aggr, result, m.group(1), resource, tryLocale, bundleName, availableLocales)) {
-				added.add(path);
-			}
-		}
 	}
 
 	static boolean isExpandLocaleResources(HttpServletRequest request) {
@@ -228,69 +234,44 @@ extends JavaScriptModuleBuilder {
 			}
 		}
 
-		// Get the available locales from disk
-		final Collection<String> result = new HashSet<String>();
-
-		String path = res.getPath();
-		int idx = path.lastIndexOf("/"); //$NON-NLS-1$
-		final String resourceName = idx == 0 ? path : path.substring(idx+1);
-		final IAggregator aggregator = (IAggregator)request.getAttribute(IAggregator.AGGREGATOR_REQATTRNAME);
-		final IResource baseRes = aggregator.newResource(res.resolve("")); //$NON-NLS-1$
-		baseRes.walkTree(new IResourceVisitor() {
-			@Override
-			public boolean visitResource(Resource resource, String pathName) throws IOException {
-				if (resource.isFolder() && !pathName.startsWith(".")) { //$NON-NLS-1$
-					IResource localeRes = aggregator.newResource(baseRes.resolve(pathName + "/" + resourceName)); //$NON-NLS-1$
-					if (localeRes.exists()) {
-						result.add(pathName);
-					}
-				}
-				return false;
-			}
-		});
-		availableLocales = result.toArray(new String[result.size()]);
+		// Get the available locales from the locale index, or from disk if the index
+		// isn't available.  In development mode, the index entry is validated so that
+		// added or removed locales are detected.
+		IAggregator aggregator = (IAggregator)request.getAttribute(IAggregator.AGGREGATOR_REQATTRNAME);
+		LocaleIndex index = getLocaleIndex(aggregator);
+		if (index != null) {
+			IOptions options = aggregator.getOptions();
+			availableLocales = index.getLocales(aggregator, res, options != null && options.isDevelopmentMode());
+		} else {
+			availableLocales = LocaleIndex.newEntry(aggregator, res, aggregator.newResource(res.resolve(""))).locales; //$NON-NLS-1$
+		}
 		reqmap.put(key, availableLocales);
 		return availableLocales;
 	}
 
 	/**
-	 * Adds the source for the locale specific i18n resource if it exists.
+	 * Returns the named locale index, creating it and adding it to the
+	 * aggregator cache if necessary.
 	 *
-	 * @param list
-	 *            The list of source files to add the i18n resource to
-	 * @param bundleRoot
-	 *            The module path for the bundle root (e.g. 'foo/nls')
-	 * @param bundleRootRes
-	 *            The bundle root resource that was requested
-	 * @param localePath
-	 *            The path relative to the bundle root for the locale specific
-	 *            resource (e.g. 'en-us/bar')
-	 * @return True if the source file for for the locale specified resource was
-	 *         added
-	 * @throws IOException
+	 * @param aggregator
+	 *            the aggregator
+	 * @return the locale index, or null if the cache manager is not available
 	 */
-	private boolean tryAddModule(
-			IAggregator aggregator,
-			List<String> list,
-			String bundleRoot,
-			IResource bundleRootRes,
-			String locale,
-			String resource,
-			Collection<String> availableLocales)
-					throws IOException {
-		if (availableLocales != null && !availableLocales.contains(locale)) {
-			return false;
+	static LocaleIndex getLocaleIndex(IAggregator aggregator) {
+		ICacheManager cacheMgr = aggregator.getCacheManager();
+		if (cacheMgr == null) {
+			return null;
 		}
-		boolean result = false;
-		URI uri = bundleRootRes.getURI();
-		URI testUri = uri.resolve(locale + "/" + resource + ".js"); //$NON-NLS-1$ //$NON-NLS-2$
-		IResource testResource = aggregator.newResource(testUri);
-		if (availableLocales != null || testResource.exists()) {
-			String mid = bundleRoot+"/"+locale+"/"+resource; //$NON-NLS-1$ //$NON-NLS-2$
-			list.add(mid);
-			result = true;
+		ICache cache = cacheMgr.getCache();
+		IGenericCache result = cache.getCache(LOCALEINDEX_CACHE_NAME);
+		if (result == null) {
+			LocaleIndex newCache = new LocaleIndex();
+			result = cache.putIfAbsent(LOCALEINDEX_CACHE_NAME, newCache);
+			if (result == null) {
+				result = newCache;
+			}
 		}
-		return result;
+		return result instanceof LocaleIndex ? (LocaleIndex)result : null;
 	}
 
 	/* (non-Javadoc)
@@ -0,0 +1,308 @@
+/*
+ * (C) Copyright IBM Corp. 2012, 2016 All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ibm.jaggr.core.impl.modulebuilder.i18n;
+
+import com.ibm.jaggr.core.IAggregator;
+import com.ibm.jaggr.core.cache.IGenericCache;
+import com.ibm.jaggr.core.impl.cache.GenericCacheImpl;
+import com.ibm.jaggr.core.resource.IResource;
+import com.ibm.jaggr.core.resource.IResourceVisitor;
+
+import com.googlecode.concurrentlinkedhashmap.ConcurrentLinkedHashMap;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Named cache of the locales that are available for i18n bundles.  Entries
+ * are keyed by the URI of the root bundle, so the bundle's NLS folder is
+ * walked once for each bundle rather than once for each request that builds
+ * the bundle.
+ * <p>
+ * Each entry records the last-modified times of the NLS folder and of the
+ * locale folders that were found in it.  Adding or removing a locale folder,
+ * or adding or removing a bundle in a locale folder, changes the last-modified
+ * time of the parent folder, so callers that need to detect such changes (for
+ * example, in development mode) can ask for the entry to be validated.
+ * Otherwise, entries are used until the aggregator cache is cleared.
+ * <p>
+ * Entries also memoize, for each requested locale, the chain of available
+ * locales that the locale falls back to (most specific first), so that
+ * expanding a bundle request to the locale specific bundles doesn't need to
+ * re-derive the fallback chain for every build of the bundle.
+ */
+public class LocaleIndex extends GenericCacheImpl<LocaleIndex.Entry> implements Serializable {
+	private static final long serialVersionUID = 2045516478016617290L;
+
+	/**
+	 * The default maximum number of bundles held by the index
+	 */
+	static final int DEFAULT_CAPACITY = 10000;
+
+	/**
+	 * Entries for folders modified less than this many milliseconds before
+	 * the entry was created are not trusted by validated lookups, since
+	 * further changes within the file system's timestamp resolution would go
+	 * undetected
+	 */
+	static final long TIMESTAMP_RESOLUTION = 2000;
+
+	/**
+	 * The maximum number of fallback chains memoized for an entry.  Requested
+	 * locales come from the client, so the number of distinct locales is not
+	 * bounded by the available locales.
+	 */
+	static final int MAX_FALLBACK_CHAINS = 256;
+
+	static class Entry implements Serializable {
+		private static final long serialVersionUID = -3962203575624366417L;
+
+		final String[] locales;
+
+		/** The last-modified time of the NLS folder */
+		final long lastModified;
+
+		/** Map of locale folder names to last-modified times */
+		final Map<String, Long> folders;
+
+		/** True if the folders were not modified shortly before the entry was created */
+		final boolean settled;
+
+		/** Set view of {@link #locales} */
+		final Set<String> localeSet;
+
+		/** Map of requested locales to fallback chains */
+		final ConcurrentMap<String, String[]> fallbackChains = new ConcurrentHashMap<String, String[]>();
+
+		Entry(String[] locales, long lastModified, Map<String, Long> folders, long created) {
+			this.locales = locales;
+			localeSet = Collections.unmodifiableSet(new HashSet<String>(Arrays.asList(locales)));
+			this.lastModified = lastModified;
+			this.folders = Collections.unmodifiableMap(new HashMap<String, Long>(folders));
+			long latest = lastModified;
+			for (long folderLastModified : folders.values()) {
+				latest = Math.max(latest, folderLastModified);
+			}
+			settled = created - latest >= TIMESTAMP_RESOLUTION;
+		}
+
+		/**
+		 * Returns true if neither the NLS folder nor any of the locale folders
+		 * have been modified since the entry was created.
+		 *
+		 * @param aggregator
+		 *            the aggregator
+		 * @param baseRes
+		 *            the NLS folder
+		 * @return true if the entry is current
+		 */
+		boolean isValid(IAggregator aggregator, IResource baseRes) {
+			if (!settled || baseRes.lastModified() != lastModified) {
+				return false;
+			}
+			for (Map.Entry<String, Long> entry : folders.entrySet()) {
+				if (aggregator.newResource(baseRes.resolve(entry.getKey())).lastModified() != entry.getValue()) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * Returns the fallback chain of available locales for the specified
+		 * requested locale, memoizing the result.
+		 *
+		 * @param locale
+		 *            the requested locale
+		 * @return the available locales, most specific first
+		 */
+		String[] getFallbackChain(String locale) {
+			String[] result = fallbackChains.get(locale);
+			if (result == null) {
+				result = LocaleIndex.getFallbackChain(locale, localeSet);
+				if (fallbackChains.size() < MAX_FALLBACK_CHAINS) {
+					fallbackChains.put(locale, result);
+				}
+			}
+			return result;
+		}
+
+		/* (non-Javadoc)
+		 * @see java.lang.Object#toString()
+		 */
+		@Override
+		public String toString() {
+			return "locales:" + Arrays.asList(locales) + ", lastModified:" + lastModified + ", folders:" + folders; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		}
+	}
+
+	private final int capacity;
+
+	public LocaleIndex() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	LocaleIndex(int capacity) {
+		this.capacity = capacity;
+		cacheMap = new ConcurrentLinkedHashMap.Builder<String, Entry>()
+				.maximumWeightedCapacity(capacity)
+				.build();
+	}
+
+	/**
+	 * Returns the locales that are available for the specified root bundle,
+	 * walking the bundle's NLS folder if the index doesn't hold a current
+	 * entry for the bundle.
+	 *
+	 * @param aggregator
+	 *            the aggregator
+	 * @param res
+	 *            the root bundle resource
+	 * @param validate
+	 *            true if the entry should be validated against the
+	 *            last-modified times of the NLS folder and its locale folders
+	 * @return the available locales
+	 * @throws IOException
+	 */
+	public String[] getLocales(IAggregator aggregator, IResource res, boolean validate) throws IOException {
+		String key = res.getURI().toString();
+		IResource baseRes = aggregator.newResource(res.resolve("")); //$NON-NLS-1$
+		Entry entry = cacheMap.get(key);
+		if (entry == null || validate && !entry.isValid(aggregator, baseRes)) {
+			entry = newEntry(aggregator, res, baseRes);
+			cacheMap.put(key, entry);
+		}
+		return entry.locales;
+	}
+
+	/**
+	 * Returns the chain of available locales that the specified locale falls
+	 * back to, most specific first.  The chain is memoized in the index entry
+	 * for the bundle if the entry's locales are the same as the specified
+	 * available locales.
+	 *
+	 * @param res
+	 *            the root bundle resource
+	 * @param availableLocales
+	 *            the available locales for the bundle
+	 * @param locale
+	 *            the requested locale
+	 * @return the available locales, most specific first
+	 */
+	public String[] getFallbackChain(IResource res, String[] availableLocales, String locale) {
+		Entry entry = cacheMap.get(res.getURI().toString());
+		if (entry != null && (entry.locales == availableLocales ||
+				entry.locales.length == availableLocales.length &&
+				entry.localeSet.containsAll(Arrays.asList(availableLocales)))) {
+			return entry.getFallbackChain(locale);
+		}
+		return getFallbackChain(locale, Arrays.asList(availableLocales));
+	}
+
+	/**
+	 * Returns the chain of available locales that the specified locale falls
+	 * back to, most specific first.  For example, if <code>en-us-x</code> is
+	 * requested and <code>en-us</code> and <code>en</code> are available,
+	 * then the chain is <code>[en-us, en]</code>.
+	 *
+	 * @param locale
+	 *            the requested locale
+	 * @param availableLocales
+	 *            the available locales
+	 * @return the available locales, most specific first
+	 */
+	static String[] getFallbackChain(String locale, Collection<String> availableLocales) {
+		String[] a = locale.split("-"); //$NON-NLS-1$
+		String language = a[0].toLowerCase();
+		String country = (a.length > 1) ? a[1].toLowerCase() : ""; //$NON-NLS-1$
+		String varient = (a.length > 2) ? a[2].toLowerCase() : ""; //$NON-NLS-1$
+		List<String> result = new ArrayList<String>(3);
+		if (language.length() > 0 && varient.length() > 0 && country.length() > 0) {
+			addIfAvailable(result, language+"-"+country+"-"+varient, availableLocales); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		if (language.length() > 0 && country.length() > 0) {
+			addIfAvailable(result, language+"-"+country, availableLocales); //$NON-NLS-1$
+		}
+		if (language.length() > 0) {
+			addIfAvailable(result, language, availableLocales);
+		}
+		return result.toArray(new String[result.size()]);
+	}
+
+	private static void addIfAvailable(List<String> list, String locale, Collection<String> availableLocales) {
+		if (availableLocales.contains(locale)) {
+			list.add(locale);
+		}
+	}
+
+	/**
+	 * Walks the NLS folder to find the locales for which the specified root
+	 * bundle is available.
+	 *
+	 * @param aggregator
+	 *            the aggregator
+	 * @param res
+	 *            the root bundle resource
+	 * @param baseRes
+	 *            the NLS folder
+	 * @return the new entry
+	 * @throws IOException
+	 */
+	static Entry newEntry(final IAggregator aggregator, IResource res, final IResource baseRes) throws IOException {
+		final Collection<String> result = new HashSet<String>();
+		final Map<String, Long> folders = new HashMap<String, Long>();
+		String path = res.getPath();
+		int idx = path.lastIndexOf("/"); //$NON-NLS-1$
+		final String resourceName = idx == 0 ? path : path.substring(idx+1);
+		// Get the last-modified time before walking so that changes made during the walk are detected
+		long created = System.currentTimeMillis();
+		long lastModified = baseRes.lastModified();
+		baseRes.walkTree(new IResourceVisitor() {
+			@Override
+			public boolean visitResource(Resource resource, String pathName) throws IOException {
+				if (resource.isFolder() && !pathName.startsWith(".")) { //$NON-NLS-1$
+					folders.put(pathName, resource.lastModified());
+					IResource localeRes = aggregator.newResource(baseRes.resolve(pathName + "/" + resourceName)); //$NON-NLS-1$
+					if (localeRes.exists()) {
+						result.add(pathName);
+					}
+				}
+				return false;
+			}
+		});
+		return new Entry(result.toArray(new String[result.size()]), lastModified, folders, created);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.ibm.jaggr.core.impl.cache.GenericCacheImpl#newInstance()
+	 */
+	@Override
+	public IGenericCache newInstance() {
+		return new LocaleIndex(capacity);
+	}
+}
@@ -21,6 +21,7 @@ import com.ibm.jaggr.core.modulebuilder.IModuleBuildRenderer;
 import com.ibm.jaggr.core.transport.IHttpTransport;
 import com.ibm.jaggr.core.util.ConcurrentListBuilder;
 import com.ibm.jaggr.core.util.Features;
+import com.ibm.jaggr.core.util.RequestUtil;
 
 import java.io.Serializable;
 import java.util.ArrayList;
@@ -205,11 +206,11 @@ public class JavaScriptBuildRenderer implements Serializable, IModuleBuildRender
 
 			@SuppressWarnings("unchecked")
 			ConcurrentListBuilder<String[]> expDeps = (ConcurrentListBuilder<String[]>)request.getAttribute(JavaScriptModuleBuilder.MODULE_EXPANDED_DEPS);
-			Map<?,?> formulaCache = (Map<?,?>)request.getAttribute(JavaScriptModuleBuilder.FORMULA_CACHE_REQATTR);
 			Map<Integer, Integer> indexMap = new HashMap<Integer, Integer>();
 			Map<Integer, Set<String>> midMap = new HashMap<Integer, Set<String>>();
 			StringBuffer sb = new StringBuffer();
 			int i;
+			boolean bddSimplification = RequestUtil.isBddSimplification(request);
 			for (Map.Entry<Integer, ModuleDeps> entry : expandedDeps.entrySet()) {
 				ModuleDeps expanded = new ModuleDeps(entry.getValue());
 				if (features != null) {
@@ -218,7 +219,7 @@ public class JavaScriptBuildRenderer implements Serializable, IModuleBuildRender
 				if (enclosingDeps != null) {
 					expanded.subtractAll(enclosingDeps);
 				}
-				Set<String> moduleIds = expanded.getModuleIds(formulaCache);
+				Set<String> moduleIds = expanded.getModuleIds(bddSimplification);
 				indexMap.put(entry.getKey(), expDeps.add(moduleIds.toArray(new String[moduleIds.size()])));
 				midMap.put(entry.getKey(), moduleIds);
 			}
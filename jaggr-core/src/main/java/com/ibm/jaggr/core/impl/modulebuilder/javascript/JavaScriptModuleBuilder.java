@@ -83,7 +83,6 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
@@ -123,8 +122,6 @@ public class JavaScriptModuleBuilder implements IModuleBuilder, IExtensionInitia
 	 */
 	public static final String MODULE_EXPANDED_DEPS = JavaScriptModuleBuilder.class.getName() + ".moduleExpandedDeps"; //$NON-NLS-1$
 
-	static final String FORMULA_CACHE_REQATTR = JavaScriptModuleBuilder.class.getName() + ".formulaCache"; //$NON-NLS-1$
-
 	/**
 	 * The name of the scoped JavaScript variable used to specify the expanded dependency
 	 * module names and number ids used for module id encoding.
@@ -194,7 +191,6 @@ public class JavaScriptModuleBuilder implements IModuleBuilder, IExtensionInitia
 			// build renderer to filter layer dependencies from the require list expansion.
 			if (RequestUtil.isExplodeRequires(request)) {
 				request.setAttribute(MODULE_EXPANDED_DEPS, new ConcurrentListBuilder<String[]>(modules.size()));
-				request.setAttribute(FORMULA_CACHE_REQATTR, new ConcurrentHashMap<Object, Object>());
 				boolean isReqExpLogging = RequestUtil.isDependencyExpansionLogging(request);
 				IRequestedModuleNames requestedModuleNames = (IRequestedModuleNames)request.getAttribute(IHttpTransport.REQUESTEDMODULENAMES_REQATTRNAME);
 				List<String> moduleIds = new ArrayList<String>(modules.size());
@@ -262,7 +258,7 @@ public class JavaScriptModuleBuilder implements IModuleBuilder, IExtensionInitia
 				// Now filter out any dependencies that aren't fully resolved (i.e. those that
 				// depend on any undefined features) because those aren't included in the layer.
 				ModuleDeps resolvedDeps = new ModuleDeps();
-				layerDeps.simplify((Map<?,?>)request.getAttribute(JavaScriptModuleBuilder.FORMULA_CACHE_REQATTR));
+				layerDeps.simplify(RequestUtil.isBddSimplification(request));
 				for (Map.Entry<String, ModuleDepInfo> entry : layerDeps.resolveWith(Features.emptyFeatures).entrySet()) {
 					if (entry.getValue().containsTerm(BooleanTerm.TRUE)) {
 						resolvedDeps.add(entry.getKey(), entry.getValue());
@@ -277,11 +273,6 @@ public class JavaScriptModuleBuilder implements IModuleBuilder, IExtensionInitia
 		} else if (type == EventType.END_LAYER) {
 			// Emit module id encoding code
 			result = moduleNameIdEncodingEndLayer(request, modules);
-
-			Map<?, ?> formulaCache = (Map<?, ?>)request.getAttribute(FORMULA_CACHE_REQATTR);
-			if (formulaCache != null) {
-				formulaCache.clear();
-			}
 		}
 		return result;
 	}
@@ -24,32 +24,41 @@ import com.ibm.jaggr.core.cachekeygenerator.ICacheKeyGenerator;
 import com.ibm.jaggr.core.cachekeygenerator.KeyGenUtil;
 import com.ibm.jaggr.core.config.IConfig;
 import com.ibm.jaggr.core.impl.modulebuilder.css.CSSModuleBuilder;
+import com.ibm.jaggr.core.impl.modulebuilder.css.ImportFragmentCache;
 import com.ibm.jaggr.core.modulebuilder.ModuleBuild;
 import com.ibm.jaggr.core.resource.IResource;
 import com.ibm.jaggr.core.transport.IHttpTransport;
+import com.ibm.jaggr.core.util.ExternalProcessor;
 import com.ibm.jaggr.core.util.Features;
 import com.ibm.jaggr.core.util.rhino.HasFunction;
 import com.ibm.jaggr.core.util.rhino.ReadFileExtFunction;
+import com.ibm.jaggr.core.util.rhino.RhinoEngine;
+import com.ibm.jaggr.core.util.rhino.ScopePool;
 
 import com.google.common.collect.ImmutableList;
 
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.mutable.MutableObject;
 import org.mozilla.javascript.Context;
 import org.mozilla.javascript.Function;
 import org.mozilla.javascript.JavaScriptException;
+import org.mozilla.javascript.NativeJSON;
 import org.mozilla.javascript.Script;
 import org.mozilla.javascript.Scriptable;
 import org.mozilla.javascript.ScriptableObject;
 import org.mozilla.javascript.Undefined;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -62,6 +71,14 @@ import javax.servlet.http.HttpServletRequest;
 
 /**
  * This class compiles LESS resources that are loaded by the AMD aggregator.
+ * <p>
+ * LESS compilation can be delegated to a command line compiler (for example,
+ * <code>['lessc', '-']</code>) specified by the {@link #LESSCOMMAND_CONFIGPARAM}
+ * config param. See {@link CSSModuleBuilder} for how external processors are
+ * configured. The external compiler is used only for LESS files on the file
+ * system, with imports resolved relative to the file's directory, when
+ * <code>lessGlobals</code> and cross package imports are not used. Otherwise,
+ * or if the external compiler fails, the LESS is compiled in-process.
  */
 public class LessModuleBuilder extends CSSModuleBuilder implements IExtensionSingleton {
 	static final String sourceClass = LessModuleBuilder.class.getName();
@@ -80,6 +97,10 @@ public class LessModuleBuilder extends CSSModuleBuilder implements IExtensionSin
 
 	private static final String LESS_SUFFIX = ".less"; //$NON-NLS-1$
 
+	static public final String LESSCOMMAND_CONFIGPARAM = "lessCommand"; //$NON-NLS-1$
+
+	static final String LESSCOMPILE_CACHE_NAME = "lessCompileCache"; //$NON-NLS-1$
+
 	private static final String compilerString = new StringBuffer()
 		.append("var ").append(LESS_COMPILER_VAR).append(" = function(input, options, additionalData) {") //$NON-NLS-1$ //$NON-NLS-2$
 		.append("	var result;") //$NON-NLS-1$
@@ -98,6 +119,7 @@ public class LessModuleBuilder extends CSSModuleBuilder implements IExtensionSin
 	Script compilerScript = null;
 	Object lessGlobals = null;
 	boolean isFeatureDependent = false;
+	volatile ExternalProcessor lessProcessor = null;
 
 	public LessModuleBuilder() {
 		super();
@@ -118,16 +140,15 @@ public class LessModuleBuilder extends CSSModuleBuilder implements IExtensionSin
 		}
 		Context cx = Context.enter();
 		try {
-			cx.setOptimizationLevel(9);
 			for (String fname : LESS_JS_RES) {
 				InputStream in = CSSModuleBuilder.class.getClassLoader().getResourceAsStream(fname);
 				if (in == null) {
 					throw new NotFoundException(fname);
 				}
 				String source = IOUtils.toString(in);
-				lessJsScript.add(cx.compileString(source,  fname, 1, null));
+				lessJsScript.add(RhinoEngine.compile(cx, source, fname));
 			}
-			compilerScript = cx.compileString(compilerString, BLANK, 1, null);
+			compilerScript = RhinoEngine.compile(cx, compilerString, BLANK);
 		} catch (IOException e) {
 			throw new RuntimeException(e);
 		} finally {
@@ -245,7 +266,8 @@ public class LessModuleBuilder extends CSSModuleBuilder implements IExtensionSin
 			log.entering(sourceClass, sourceMethod, new Object[]{css, resource});
 		}
 		if (resource.getPath().toLowerCase().endsWith(LESS_SUFFIX)) {
-			css = processLess(resource.getReferenceURI().toString(), css);
+			String compiled = processLessExternally(resource, css);
+			css = compiled != null ? compiled : processLess(resource.getReferenceURI().toString(), css);
 			if (inlineImports) {
 				css = _inlineImports(request, css, resource, ""); //$NON-NLS-1$
 			}
@@ -329,19 +351,48 @@ public class LessModuleBuilder extends CSSModuleBuilder implements IExtensionSin
 		return result;
 	}
 
+	/**
+	 * Compiles the LESS using the external compiler, if one is configured and
+	 * it can be used for the specified resource.
+	 *
+	 * @param resource
+	 *            the LESS resource
+	 * @param css
+	 *            the LESS source
+	 * @return the compiled CSS, or null if the LESS needs to be compiled
+	 *         in-process
+	 */
+	protected String processLessExternally(IResource resource, String css) {
+		final String sourceMethod = "processLessExternally"; //$NON-NLS-1$
+		ExternalProcessor processor = lessProcessor;
+		if (processor == null || !processor.isAvailable() || lessGlobals != null || includeAMDPaths) {
+			return null;
+		}
+		File dir = getWorkingDirectory(resource);
+		if (dir == null) {
+			return null;
+		}
+		try {
+			return processor.process(css, dir);
+		} catch (IOException e) {
+			if (log.isLoggable(Level.WARNING)) {
+				log.logp(Level.WARNING, sourceClass, sourceMethod, "Compiling " + resource.getURI() + " in-process: " + e.getMessage()); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+		}
+		return null;
+	}
+
 	protected String processLess(String filename, String css) throws IOException {
 		final String sourceMethod = "processLess"; //$NON-NLS-1$
 		final boolean isTraceLogging = log.isLoggable(Level.FINER);
 		if (isTraceLogging) {
 			log.entering(sourceClass, sourceMethod, new Object[]{filename, css});
 		}
+		ScopePool<Scriptable> pool = getScopePool();
 		Context cx = Context.enter();
 		Scriptable threadScope = null;
 		try {
-			threadScope = getThreadScopes().poll(SCOPE_POOL_TIMEOUT_SECONDS, TimeUnit.SECONDS);
-			if (threadScope == null) {
-				throw new TimeoutException("Timeout waiting for thread scope"); //$NON-NLS-1$
-			}
+			threadScope = pool.acquire(SCOPE_POOL_TIMEOUT_SECONDS, TimeUnit.SECONDS);
 			Scriptable scope = cx.newObject(threadScope);
 			scope.setPrototype(threadScope);
 			scope.setParentScope(null);
@@ -372,8 +423,35 @@ public class LessModuleBuilder extends CSSModuleBuilder implements IExtensionSin
 					log.logp(Level.FINER, sourceClass, sourceMethod, "lessGlobals = " + Context.toString(lessGlobals)); //$NON-NLS-1$
 				}
 			}
-			Function compiler = (Function) threadScope.get(LESS_COMPILER_VAR, threadScope);
-			css = compiler.call(cx, scope, null, new Object[] { css, options, additionalData }).toString();
+			/*
+			 * The compiled CSS is cached by source, by the effective global variables and by the
+			 * files that were imported, so requests with different features for which lessGlobals
+			 * evaluates the same share a single compile.
+			 */
+			ImportFragmentCache cache = getAggregator() != null ? getFragmentCache(LESSCOMPILE_CACHE_NAME) : null;
+			ImportFragmentCache.Fragment fragment = null;
+			String key = null;
+			if (cache != null) {
+				String globals = additionalData != Undefined.instance ?
+						Context.toString(NativeJSON.stringify(cx, scope, additionalData, null, null)) : BLANK;
+				key = filename + "|" + DigestUtils.md5Hex(css) + "|" + DigestUtils.md5Hex(globals); //$NON-NLS-1$ //$NON-NLS-2$
+				fragment = cache.get(key, getAggregator());
+			}
+			if (fragment != null) {
+				css = fragment.css;
+			} else {
+				Map<String, Long> sources = new HashMap<String, Long>();
+				ReadFileExtFunction.recordSources(sources);
+				try {
+					Function compiler = (Function) threadScope.get(LESS_COMPILER_VAR, threadScope);
+					css = compiler.call(cx, scope, null, new Object[] { css, options, additionalData }).toString();
+				} finally {
+					ReadFileExtFunction.recordSources(null);
+				}
+				if (cache != null) {
+					cache.put(key, css, sources);
+				}
+			}
 		} catch (JavaScriptException e) {
 			// Add module info
 			String message = "Error parsing " + filename + "\r\n" + e.getMessage(); //$NON-NLS-1$ //$NON-NLS-2$
@@ -384,7 +462,7 @@ public class LessModuleBuilder extends CSSModuleBuilder implements IExtensionSin
 			throw new RuntimeException(e);
 		} finally {
 			if (threadScope != null) {
-				getThreadScopes().add(threadScope);
+				pool.release(threadScope);
 			}
 			Context.exit();
 		}
@@ -407,6 +485,18 @@ public class LessModuleBuilder extends CSSModuleBuilder implements IExtensionSin
 			lessGlobals = null;
 		}
 		isFeatureDependent = lessGlobals != null && (lessGlobals instanceof Function);
+		// Compiled LESS depends on the config settings
+		if (getAggregator() != null) {
+			ImportFragmentCache cache = getFragmentCache(LESSCOMPILE_CACHE_NAME);
+			if (cache != null) {
+				cache.clear();
+			}
+		}
+		ExternalProcessor oldProcessor = lessProcessor;
+		lessProcessor = newExternalProcessor(conf, LESSCOMMAND_CONFIGPARAM, "LESS compiler"); //$NON-NLS-1$
+		if (oldProcessor != null) {
+			oldProcessor.shutdown();
+		}
 		if (isTraceLogging) {
 			log.logp(Level.FINER, sourceClass, sourceMethod, "lessGlobals = " + lessGlobals); //$NON-NLS-1$
 			log.logp(Level.FINER, sourceClass, sourceMethod, "isFeatureDependent = " + isFeatureDependent); //$NON-NLS-1$
@@ -414,6 +504,31 @@ public class LessModuleBuilder extends CSSModuleBuilder implements IExtensionSin
 		}
 	}
 
+	/* (non-Javadoc)
+	 * @see com.ibm.jaggr.core.impl.modulebuilder.css.CSSModuleBuilder#shutdown(com.ibm.jaggr.core.IAggregator)
+	 */
+	@Override
+	public void shutdown(IAggregator aggregator) {
+		super.shutdown(aggregator);
+		ExternalProcessor processor = lessProcessor;
+		if (processor != null) {
+			processor.shutdown();
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see com.ibm.jaggr.core.impl.modulebuilder.css.CSSModuleBuilder#getExternalProcessorStatistics()
+	 */
+	@Override
+	public String getExternalProcessorStatistics() {
+		String result = super.getExternalProcessorStatistics();
+		ExternalProcessor processor = lessProcessor;
+		if (processor != null) {
+			result += (result.length() > 0 ? System.getProperty("line.separator") : "") + processor.toString(); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		return result;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 *
@@ -18,7 +18,9 @@ package com.ibm.jaggr.core.impl.resource;
 import com.ibm.jaggr.core.IAggregator;
 import com.ibm.jaggr.core.IAggregatorExtension;
 import com.ibm.jaggr.core.IExtensionInitializer;
+import com.ibm.jaggr.core.IPlatformServices;
 import com.ibm.jaggr.core.IServiceRegistration;
+import com.ibm.jaggr.core.IShutdownListener;
 import com.ibm.jaggr.core.NotFoundException;
 import com.ibm.jaggr.core.cache.ICache;
 import com.ibm.jaggr.core.cache.ICacheManager;
@@ -33,7 +35,9 @@ import com.ibm.jaggr.core.resource.IResourceVisitor;
 import com.ibm.jaggr.core.resource.IResourceVisitor.Resource;
 import com.ibm.jaggr.core.util.SignalUtil;
 import com.ibm.jaggr.core.util.TypeUtil;
+import com.ibm.jaggr.core.util.rhino.RhinoEngine;
 
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.io.IOUtils;
@@ -61,9 +65,15 @@ import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.logging.Level;
@@ -73,8 +83,19 @@ import java.util.logging.Logger;
  * Converter for jsx files.  If the requested JavaScript file doesn't exist, then
  * check to see if there's a .jsx file in the same directory with the same base name
  * and if there is, then return the compiled output as the converted resource.
+ * <p>
+ * The .jsx files that are found when folders are walked (for example, by the
+ * dependency scan at startup) are converted in the background, in parallel
+ * across the pooled transformer scopes, so that they are already converted by
+ * the time they are requested.  The transformed output is also saved in a
+ * store in the aggregator's working directory that is keyed on a hash of the
+ * .jsx source, the transformer and the transformer options.  The store is not
+ * cleared when the aggregator cache is cleared, so unchanged .jsx files are not
+ * transformed again following a cache clear or a restart.  Both features can be
+ * disabled with the <code>preconvert</code> and <code>persistent-store</code>
+ * init-params.
  */
-public class JsxResourceConverter implements IResourceConverter, IExtensionInitializer, ICacheManagerListener {
+public class JsxResourceConverter implements IResourceConverter, IExtensionInitializer, ICacheManagerListener, IShutdownListener {
 	private static final String sourceClass = JsxResourceConverter.class.getName();
 	private static final Logger log = Logger.getLogger(sourceClass);
 
@@ -97,15 +118,32 @@ public class JsxResourceConverter implements IResourceConverter, IExtensionIniti
 	private static final String SCOPE_POOL_SIZE_INITPARAM = "scope-pool-size"; //$NON-NLS-1$
 	private static final String DEFAULT_JSX_OPTIONS = "{}"; //$NON-NLS-1$
 	private static final String JSX_OPTIONS_INITPARAM = "options"; //$NON-NLS-1$
-
+	private static final String PRECONVERT_INITPARAM = "preconvert"; //$NON-NLS-1$
+	private static final String PERSISTENT_STORE_INITPARAM = "persistent-store"; //$NON-NLS-1$
+	static final String JSX_STORE_DIRNAME = "jsxstore"; //$NON-NLS-1$
+	/** Store files that have not been used for this many days are deleted when the converter is initialized */
+	static final int STORE_EXPIRY_DAYS = 30;
+	private static final int PRECONVERTER_KEEPALIVE_SECONDS = 30;
+	private static final String PRECONVERTER_THREADNAME = "JSX Preconverter Thread"; //$NON-NLS-1$
 
 	private IAggregator aggregator;
 	private IServiceRegistration cacheMgrListenerReg;
+	private IServiceRegistration shutdownListenerReg;
 	private int scopePoolSize = DEFAULT_SCOPE_POOL_SIZE;
 	private String jsxOptions = DEFAULT_JSX_OPTIONS;
 	private IResource xformerRes;
 	private ExecutorService es;
 	private int ctorScopePoolSize = 0;
+	private boolean preconvert = false;
+	private File storeDir;
+	private volatile ExecutorService preconverter;
+	private boolean isShutdown = false;	// guarded by this
+
+	/**
+	 * Map of the URIs of the .js resources that have been queued for preconversion to the
+	 * last-modified time of the .jsx file when it was queued
+	 */
+	private final ConcurrentMap<URI, Long> preconverted = new ConcurrentHashMap<URI, Long>();
 
 	public JsxResourceConverter() {
 	}
@@ -147,7 +185,10 @@ public class JsxResourceConverter implements IResourceConverter, IExtensionIniti
 		Dictionary<String,String> dict;
 		dict = new Hashtable<String, String>();
 		dict.put("name", aggregator.getName()); //$NON-NLS-1$
-		cacheMgrListenerReg = aggregator.getPlatformServices().registerService(ICacheManagerListener.class.getName(), this, dict);
+		IPlatformServices platformServices = aggregator.getPlatformServices();
+		cacheMgrListenerReg = platformServices.registerService(ICacheManagerListener.class.getName(), this, dict);
+		// Register a shutdown listener so that we can stop the background conversions
+		shutdownListenerReg = platformServices.registerService(IShutdownListener.class.getName(), this, dict);
 
 		if (ctorScopePoolSize > 0) {
 			scopePoolSize = ctorScopePoolSize;
@@ -160,6 +201,10 @@ public class JsxResourceConverter implements IResourceConverter, IExtensionIniti
 				if (options != null && options.length() > 0) {
 					jsxOptions = options;
 				}
+				preconvert = TypeUtil.asBoolean(extension.getInitParams().getValue(PRECONVERT_INITPARAM), true);
+				if (TypeUtil.asBoolean(extension.getInitParams().getValue(PERSISTENT_STORE_INITPARAM), true)) {
+					storeDir = new File(aggregator.getWorkingDirectory(), JSX_STORE_DIRNAME);
+				}
 			}
 		}
 		if (isTraceLogging) {
@@ -189,7 +234,7 @@ public class JsxResourceConverter implements IResourceConverter, IExtensionIniti
 		if (isTraceLogging) {
 			log.logp(Level.FINER, sourceClass, sourceMethod, "Initializing resource converter" + (oldCache != null ? " from cache." : ".")); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
 		}
-		converter.initialize(es, xformerRes.getURI());
+		converter.initialize(es, xformerRes.getURI(), storeDir);
 
 		if (isTraceLogging) {
 			log.exiting(sourceClass, sourceMethod);
@@ -253,6 +298,98 @@ public class JsxResourceConverter implements IResourceConverter, IExtensionIniti
 		return result;
 	}
 
+	/**
+	 * Queues the .jsx file for the specified .js resource for conversion in the background,
+	 * unless it has already been queued and hasn't been modified since.
+	 *
+	 * @param jsUri
+	 *            the uri of the .js resource
+	 * @param lastModified
+	 *            the last-modified time of the .jsx file
+	 */
+	protected void preconvert(final URI jsUri, long lastModified) {
+		final String sourceMethod = "preconvert"; //$NON-NLS-1$
+		Long previous = preconverted.put(jsUri, lastModified);
+		if (previous != null && previous == lastModified) {
+			return;
+		}
+		try {
+			getPreconverter().submit(new Runnable() {
+				@Override
+				public void run() {
+					// Running the converters adds the converted resource to the jsx cache
+					IResource result = aggregator.runConverters(new NotFoundResource(jsUri));
+					if (result instanceof ExceptionResource) {
+						// Allow the conversion to be retried when the resource is requested
+						preconverted.remove(jsUri);
+					}
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			preconverted.remove(jsUri);
+			if (log.isLoggable(Level.FINE)) {
+				log.logp(Level.FINE, sourceClass, sourceMethod, e.getMessage(), e);
+			}
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see com.ibm.jaggr.core.IShutdownListener#shutdown(com.ibm.jaggr.core.IAggregator)
+	 */
+	@Override
+	public void shutdown(IAggregator aggregator) {
+		IServiceRegistration reg = shutdownListenerReg;
+		if (reg != null) {
+			reg.unregister();
+			shutdownListenerReg = null;
+		}
+		ExecutorService executor;
+		synchronized (this) {
+			isShutdown = true;
+			executor = preconverter;
+		}
+		if (executor != null) {
+			// Queued conversions are of no use to an aggregator that is shutting down
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Returns the executor used for background conversions, creating it if necessary.  The
+	 * number of threads is the same as the size of the scope pool, and idle threads time out.
+	 *
+	 * @return the executor
+	 * @throws RejectedExecutionException
+	 *             if the converter has been shut down
+	 */
+	private ExecutorService getPreconverter() {
+		ExecutorService result = preconverter;
+		if (result == null) {
+			synchronized (this) {
+				if (isShutdown) {
+					throw new RejectedExecutionException("Shut down"); //$NON-NLS-1$
+				}
+				result = preconverter;
+				if (result == null) {
+					ThreadPoolExecutor executor = new ThreadPoolExecutor(scopePoolSize, scopePoolSize,
+							PRECONVERTER_KEEPALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+							new ThreadFactory() {
+								@Override
+								public Thread newThread(Runnable r) {
+									Thread thread = new Thread(r, PRECONVERTER_THREADNAME);
+									thread.setDaemon(true);
+									thread.setPriority(Thread.MIN_PRIORITY);
+									return thread;
+								}
+							});
+					executor.allowCoreThreadTimeOut(true);
+					preconverter = result = executor;
+				}
+			}
+		}
+		return result;
+	}
+
 	protected JsxConverter newConverter() {
 		return new JsxConverter(scopePoolSize, jsxOptions);
 	}
@@ -391,6 +528,9 @@ public class JsxResourceConverter implements IResourceConverter, IExtensionIniti
 							isSkipResourceConversion.set(false);
 						}
 						if (!jsRes.exists()) {
+							if (preconvert) {
+								preconvert(jsUri, resource.lastModified());
+							}
 							// Synthesize a visitor resource entry for the .js file and
 							// call the resource visitor
 							visitor.visitResource(
@@ -489,6 +629,9 @@ public class JsxResourceConverter implements IResourceConverter, IExtensionIniti
 
 		private transient BlockingQueue<Scriptable> threadScopes;
 		private transient boolean initialized;
+		private transient File storeDir;
+		/** Hash of the transformer source and options, included in the store keys */
+		private transient String storeKeyPrefix;
 		final private int scopePoolSize;
 		final private String jsxOptions;
 
@@ -510,6 +653,20 @@ public class JsxResourceConverter implements IResourceConverter, IExtensionIniti
 		 *          the URI for the transformer resource
 		 */
 		public void initialize(ExecutorService es, URI xformer) {
+			initialize(es, xformer, null);
+		}
+
+		/**
+		 * The rhino properties are not serializable and so must be initialized every time this class is
+		 * instantiated or de-serialized.
+		 * @param es
+		 *          ExecutorService to use or null
+		 * @param xformer
+		 *          the URI for the transformer resource
+		 * @param storeDir
+		 *          the directory of the persistent store of transformed output, or null
+		 */
+		public void initialize(ExecutorService es, URI xformer, File storeDir) {
 			final String sourceMethod = "initialize"; //$NON-NLS-1$
 			final boolean isTraceLogging = log.isLoggable(Level.FINER);
 			if (initialized) {
@@ -530,14 +687,8 @@ public class JsxResourceConverter implements IResourceConverter, IExtensionIniti
 			builder.setModuleScriptProvider(new SoftCachingModuleScriptProvider(
 				new UrlModuleSourceProvider(modulePaths, null)
 			));
-			Context ctx = Context.enter();
-			// create the shared scope
-			final Scriptable sharedScope;
-			try {
-				sharedScope = ctx.initStandardObjects();
-			} finally {
-				Context.exit();
-			}
+			// use the sealed standard objects shared by the Rhino backed builders and converters
+			final Scriptable sharedScope = RhinoEngine.getSharedScope();
 			// Now create the thread scope pool.  We use a thread pool executor service to
 			// create the scope pool in order to take advantage of parallel processing
 			// capabilities on multi-core processors.
@@ -552,6 +703,8 @@ public class JsxResourceConverter implements IResourceConverter, IExtensionIniti
 					public Scriptable call() throws Exception {
 						Context ctx = Context.enter();
 						try {
+							// the transformer module is compiled when it is first required
+							ctx.setOptimizationLevel(RhinoEngine.getOptimizationLevel());
 							Scriptable threadScope = ctx.newObject(sharedScope);
 							threadScope.setPrototype(sharedScope);
 							threadScope.setParentScope(null);
@@ -588,6 +741,9 @@ public class JsxResourceConverter implements IResourceConverter, IExtensionIniti
 			}
 			// Shut down the executor and release the threads
 			es.shutdown();
+			if (storeDir != null) {
+				initializeStore(xformer, storeDir);
+			}
 			initialized = true;
 
 			if (isTraceLogging) {
@@ -595,6 +751,72 @@ public class JsxResourceConverter implements IResourceConverter, IExtensionIniti
 			}
 		}
 
+		/**
+		 * Initializes the persistent store, deleting expired store files.  The store is
+		 * disabled if the store directory can't be created or the transformer can't be read.
+		 *
+		 * @param xformer
+		 *          the URI for the transformer resource
+		 * @param dir
+		 *          the store directory
+		 */
+		private void initializeStore(URI xformer, File dir) {
+			final String sourceMethod = "initializeStore"; //$NON-NLS-1$
+			try {
+				if (!dir.isDirectory() && !dir.mkdirs()) {
+					throw new IOException(dir.toString());
+				}
+				InputStream is = xformer.toURL().openStream();
+				try {
+					storeKeyPrefix = DigestUtils.md5Hex(is) + DigestUtils.md5Hex(String.valueOf(jsxOptions));
+				} finally {
+					IOUtils.closeQuietly(is);
+				}
+				long expired = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(STORE_EXPIRY_DAYS);
+				File[] files = dir.listFiles();
+				for (File file : files != null ? files : new File[0]) {
+					if (file.lastModified() < expired) {
+						file.delete();
+					}
+				}
+				storeDir = dir;
+			} catch (IOException e) {
+				if (log.isLoggable(Level.WARNING)) {
+					log.logp(Level.WARNING, JsxConverter.class.getName(), sourceMethod, e.getMessage(), e);
+				}
+			}
+		}
+
+		/**
+		 * Saves the transformed output in the persistent store.  Failures are logged and
+		 * otherwise ignored.
+		 *
+		 * @param storeFile
+		 *          the store file
+		 * @param js
+		 *          the transformed output
+		 */
+		private void store(File storeFile, String js) {
+			final String sourceMethod = "store"; //$NON-NLS-1$
+			File tempFile = null;
+			try {
+				// Write to a temporary file and rename it so that readers never see a partial file
+				tempFile = File.createTempFile("jsx.", ".tmp", storeFile.getParentFile()); //$NON-NLS-1$ //$NON-NLS-2$
+				FileUtils.writeStringToFile(tempFile, js, "UTF-8"); //$NON-NLS-1$
+				if (!tempFile.renameTo(storeFile) && !storeFile.exists()) {
+					throw new IOException(storeFile.toString());
+				}
+			} catch (IOException e) {
+				if (log.isLoggable(Level.WARNING)) {
+					log.logp(Level.WARNING, JsxConverter.class.getName(), sourceMethod, e.getMessage(), e);
+				}
+			} finally {
+				if (tempFile != null && tempFile.exists()) {
+					tempFile.delete();
+				}
+			}
+		}
+
 		/* (non-Javadoc)
 		 * @see com.ibm.jaggr.core.impl.cache.ResourceConverterCacheImpl.IConverter#generateCacheContent(com.ibm.jaggr.core.resource.IResource, java.io.File)
 		 */
@@ -612,11 +834,26 @@ public class JsxResourceConverter implements IResourceConverter, IExtensionIniti
 			InputStream is = source.getInputStream();
 			String jsx;
 			try {
-				jsx = IOUtils.toString(is);
+				jsx = IOUtils.toString(is, "UTF-8"); //$NON-NLS-1$
 			} finally {
 				IOUtils.closeQuietly(is);
 			}
 
+			// Use the transformed output from the persistent store if it's there
+			File storeFile = null;
+			if (storeDir != null) {
+				storeFile = new File(storeDir, DigestUtils.md5Hex(storeKeyPrefix + jsx) + ".js"); //$NON-NLS-1$
+				if (storeFile.exists()) {
+					FileUtils.copyFile(storeFile, cacheFile);
+					// Mark the store file as used so that it doesn't expire
+					storeFile.setLastModified(System.currentTimeMillis());
+					if (isTraceLogging) {
+						log.exiting(JsxConverter.class.getName(), sourceMethod, storeFile);
+					}
+					return;
+				}
+			}
+
 			String jsstring;
 			Scriptable scope = null;
 			Context ctx = Context.enter();
@@ -644,7 +881,10 @@ public class JsxResourceConverter implements IResourceConverter, IExtensionIniti
 				Context.exit();
 			}
 			// write the contents of the transformed javascript to the target file
-			FileUtils.writeStringToFile(cacheFile, jsstring);
+			FileUtils.writeStringToFile(cacheFile, jsstring, "UTF-8"); //$NON-NLS-1$
+			if (storeFile != null) {
+				store(storeFile, jsstring);
+			}
 			if (isTraceLogging) {
 				log.exiting(JsxConverter.class.getName(), sourceMethod);
 			}
@@ -29,6 +29,7 @@ import com.ibm.jaggr.core.config.IConfigModifier;
 import com.ibm.jaggr.core.deps.IDependencies;
 import com.ibm.jaggr.core.deps.IDependenciesListener;
 import com.ibm.jaggr.core.impl.resource.ExceptionResource;
+import com.ibm.jaggr.core.options.IOptions;
 import com.ibm.jaggr.core.readers.AggregationReader;
 import com.ibm.jaggr.core.resource.AbstractResourceBase;
 import com.ibm.jaggr.core.resource.IResource;
@@ -39,6 +40,7 @@ import com.ibm.jaggr.core.transport.IHttpTransport;
 import com.ibm.jaggr.core.transport.IHttpTransportExtensionPoint;
 import com.ibm.jaggr.core.transport.IRequestedModuleNames;
 import com.ibm.jaggr.core.util.AggregatorUtil;
+import com.ibm.jaggr.core.util.FeatureIndex;
 import com.ibm.jaggr.core.util.Features;
 import com.ibm.jaggr.core.util.SignalUtil;
 import com.ibm.jaggr.core.util.TypeUtil;
@@ -51,7 +53,6 @@ import org.apache.wink.json4j.JSONException;
 import org.mozilla.javascript.Context;
 import org.mozilla.javascript.Scriptable;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
@@ -180,11 +181,23 @@ public abstract class AbstractHttpTransport implements IHttpTransport, IConfigMo
 	public static final String LAYERCONTRIBUTIONSTATE_REQATTRNAME = sourceClass + ".LayerContributionState"; //$NON-NLS-1$
 	public static final String ENCODED_FEATURE_MAP_REQPARAM = "hasEnc"; //$NON-NLS-1$
 
+	/**
+	 * Request param specifying the number of layers requested by a multi-layer request.
+	 * The query string for each of the layers is specified by the
+	 * {@link #LAYERPART_REQPARAM_PREFIX} param suffixed with the zero based index of the
+	 * layer (e.g. <code>?parts=2&amp;p0=...&amp;p1=...</code>).  Multi-layer requests are
+	 * accepted only if the {@link IOptions#ENABLE_MULTILAYER_REQUESTS} option is enabled.
+	 */
+	public static final String LAYERPARTS_REQPARAM = "parts"; //$NON-NLS-1$
+	public static final String LAYERPART_REQPARAM_PREFIX = "p"; //$NON-NLS-1$
+
 	static final String WARN_DEPRECATED_USE_OF_MODULES_QUERYARG = sourceClass + ".DEPRECATED_USE_OF_MODULES"; //$NON-NLS-1$
 	static final String WARN_DEPRECATED_USE_OF_REQUIRED_QUERYARG = sourceClass + ".DEPRECATED_USE_OF_REQUIRED"; //$NON-NLS-1$
 
 	static final int REQUESTED_MODULES_MAX_COUNT = 10000;
 
+	static final int LAYERPARTS_MAX_COUNT = 8;
+
 	protected static String FEATUREMAP_JS_NAME = "featureList.js"; //$NON-NLS-1$
 	public static final String FEATURE_LIST_PRELUDE = "define([], "; //$NON-NLS-1$
 	public static final String FEATURE_LIST_PROLOGUE = ");"; //$NON-NLS-1$
@@ -194,6 +207,7 @@ public abstract class AbstractHttpTransport implements IHttpTransport, IConfigMo
 	private List<String> extensionContributions = new LinkedList<String>();
 
 	private List<String> dependentFeatures = null;
+	private volatile FeatureIndex dependentFeatureIndex = FeatureIndex.EMPTY;
 	private IResource depFeatureListResource = null;
 
 	private CountDownLatch depsInitialized = null;
@@ -216,6 +230,7 @@ public abstract class AbstractHttpTransport implements IHttpTransport, IConfigMo
 	AbstractHttpTransport(CountDownLatch depsInitialized, List<String> dependentFeatures, long depsLastMod) {
 		this.depsInitialized = depsInitialized;
 		this.dependentFeatures = dependentFeatures;
+		this.dependentFeatureIndex = new FeatureIndex(dependentFeatures);
 		this.depFeatureListResource = createFeatureListResource(dependentFeatures, getFeatureListResourceUri(), depsLastMod);
 	}
 
@@ -236,6 +251,13 @@ public abstract class AbstractHttpTransport implements IHttpTransport, IConfigMo
 	@Override
 	public void decorateRequest(HttpServletRequest request) throws IOException {
 
+		// The layers requested by multi-layer requests are decorated individually
+		List<String> layerParts = getLayerPartsFromRequest(request);
+		if (layerParts != null) {
+			request.setAttribute(LAYERPARTS_REQATTRNAME, layerParts);
+			return;
+		}
+
 		request.setAttribute(CACHEBUST_REQATTRNAME, getParameter(request, CACHEBUST_REQPARAMS));
 
 		// Get module lists from request
@@ -287,6 +309,49 @@ public abstract class AbstractHttpTransport implements IHttpTransport, IConfigMo
 		}
 	}
 
+	/**
+	 * Returns the query strings for the layers requested by a multi-layer
+	 * request, or null if the request is not a multi-layer request.
+	 *
+	 * @param request
+	 *            the request object
+	 * @return the list of query strings, or null
+	 * @throws BadRequestException
+	 *             if multi-layer requests are not enabled, or if the request is
+	 *             malformed
+	 */
+	protected List<String> getLayerPartsFromRequest(HttpServletRequest request) throws BadRequestException {
+		String countParam = request.getParameter(LAYERPARTS_REQPARAM);
+		if (countParam == null) {
+			return null;
+		}
+		if (!Boolean.parseBoolean(getAggregator().getOptions().getOption(IOptions.ENABLE_MULTILAYER_REQUESTS))) {
+			throw new BadRequestException(LAYERPARTS_REQPARAM);
+		}
+		if (request.getAttribute(LAYERPARTS_REQATTRNAME) != null) {
+			// The request is for one of the layers of a multi-layer request
+			throw new BadRequestException(LAYERPARTS_REQPARAM);
+		}
+		int count;
+		try {
+			count = Integer.parseInt(countParam);
+		} catch (NumberFormatException e) {
+			throw new BadRequestException(e);
+		}
+		if (count < 1 || count > LAYERPARTS_MAX_COUNT) {
+			throw new BadRequestException(LAYERPARTS_REQPARAM + "=" + countParam); //$NON-NLS-1$
+		}
+		List<String> result = new ArrayList<String>(count);
+		for (int i = 0; i < count; i++) {
+			String part = request.getParameter(LAYERPART_REQPARAM_PREFIX + i);
+			if (part == null || part.length() == 0) {
+				throw new BadRequestException(LAYERPART_REQPARAM_PREFIX + i);
+			}
+			result.add(part);
+		}
+		return result;
+	}
+
 	/* (non-Javadoc)
 	 * @see com.ibm.jaggr.core.transport.IHttpTransport#getModuleIdMap()
 	 */
@@ -414,7 +479,7 @@ public abstract class AbstractHttpTransport implements IHttpTransport, IConfigMo
 			features = getFeaturesFromRequestEncoded(request, defaultFeatures);
 		}
 		if (features == null) {
-			features = new Features(defaultFeatures);
+			features = new Features(defaultFeatures, dependentFeatureIndex);
 			String has  = getHasConditionsFromRequest(request);
 			if (has != null) {
 				for (String s : has.split("[;,*]")) { //$NON-NLS-1$
@@ -962,32 +1027,29 @@ public abstract class AbstractHttpTransport implements IHttpTransport, IConfigMo
 			log.finer(ENCODED_FEATURE_MAP_REQPARAM + " param = " + encoded); //$NON-NLS-1$
 		}
 		byte[] decoded = Base64.decodeBase64(encoded);
-		int len = dependentFeatures.size();
-		ByteArrayOutputStream bos = new ByteArrayOutputStream(len);
+		FeatureIndex featureIndex = dependentFeatureIndex;
+		int len = featureIndex.size();
 
 		// Validate the input - first two bytes specify length of feature list on the client
-		if (len != (decoded[0]&0xFF)+((decoded[1]&0xFF)<< 8) || decoded.length != len/5 + (len%5==0?0:1) + 2) {
+		if (decoded.length < 2 || len != (decoded[0]&0xFF)+((decoded[1]&0xFF)<< 8) || decoded.length != len/5 + (len%5==0?0:1) + 2) {
 			if (log.isLoggable(Level.FINER)) {
 				log.finer("Invalid encoded feature list.  Expected feature list length = " + len); //$NON-NLS-1$
 			}
 			throw new BadRequestException("Invalid encoded feature list"); //$NON-NLS-1$
 		}
-		// Now decode the trit map
-		for (int i = 2; i < decoded.length; i++) {
+		// Now decode the trit map directly into the result.  The positions of the
+		// features in the index match the positions of the trits.
+		Features result = new Features(defaultFeatures, featureIndex);
+		for (int i = 2, index = 0; i < decoded.length; i++) {
 			int q = decoded[i] & 0xFF;
-			for (int j = 0; j < 5 && (i-2)*5+j < len; j++) {
-				bos.write(q % 3);
+			for (int j = 0; j < 5 && index < len; j++, index++) {
+				int trit = q % 3;
+				if (trit < 2) {
+					result.put(index, trit == 1);
+				}
 				q = q / 3;
 			}
 		}
-		Features result = new Features(defaultFeatures);
-		int i = 0;
-		for (byte b : bos.toByteArray()) {
-			if (b < 2) {
-				result.put(dependentFeatures.get(i), b == 1);
-			}
-			i++;
-		}
 		if (traceLogging) {
 			log.exiting(sourceClass, methodName, result);
 		}
@@ -1115,6 +1177,7 @@ public abstract class AbstractHttpTransport implements IHttpTransport, IConfigMo
 				features.addAll(deps.getDependentFeatures(mid));
 			}
 			dependentFeatures = Collections.unmodifiableList(Arrays.asList(features.toArray(new String[features.size()])));
+			dependentFeatureIndex = new FeatureIndex(dependentFeatures);
 			depFeatureListResource = createFeatureListResource(dependentFeatures, getFeatureListResourceUri(), deps.getLastModified());
 			generateModuleIdMap(deps);
 			depsInitialized.countDown();
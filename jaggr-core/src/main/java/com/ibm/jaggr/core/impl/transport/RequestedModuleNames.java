@@ -400,39 +400,33 @@ class RequestedModuleNames implements IRequestedModuleNames {
 			// strip off base flag
 			boolean use32BitEncoding = hasIdListHash ? decoded[idListHash.length] == 1 : false;
 
-			// convert to int array
+			// read the ids directly from the decoded bytes
 			int start = hasIdListHash ? idListHash.length+1 : 0;
-			int elemSize = use32BitEncoding ? 4 : 2;
-			int[] intArray = new int[(decoded.length-start)/elemSize];
-			for (int i = 0; i < intArray.length; i ++) {
-				int j = start+i*elemSize;
-				if (use32BitEncoding) {
-					intArray[i] = (((int)(decoded[j])&0xFF) << 24) + (((int)(decoded[j+1])&0xFF) << 16) +
-					              (((int)(decoded[j+2])&0xFF) << 8) + ((int)(decoded[j+3])&0xFF);
-				} else {
-					intArray[i] = (((int)(decoded[j])&0xFF) << 8) + ((int)(decoded[j+1])&0xFF);
-				}
-			}
+			int numIds = (decoded.length-start)/(use32BitEncoding ? 4 : 2);
 			if (isTraceLogging) {
-				log.finer("ids = " + Arrays.asList(intArray).toString()); //$NON-NLS-1$
+				List<Integer> ids = new ArrayList<Integer>(numIds);
+				for (int i = 0; i < numIds; i++) {
+					ids.add(readId(decoded, start, i, numIds, use32BitEncoding));
+				}
+				log.finer("ids = " + ids.toString()); //$NON-NLS-1$
 			}
-			for (int i = 0, position = -1, length = 0; i < intArray.length;) {
+			for (int i = 0, position = -1, length = 0; i < numIds;) {
 				if (position == -1) {
 					// read the position and length values
-					position = intArray[i++];
-					length = intArray[i++];
+					position = readId(decoded, start, i++, numIds, use32BitEncoding);
+					length = readId(decoded, start, i++, numIds, use32BitEncoding);
 				}
 				for (int j = 0; j < length; j++) {
 					String pluginName = null, moduleName = null;
-					int id = intArray[i++];
+					int id = readId(decoded, start, i++, numIds, use32BitEncoding);
 					if (id == 0) {
 						// 0 means the next two ints specify plugin and modulename
-						id = intArray[i++];
+						id = readId(decoded, start, i++, numIds, use32BitEncoding);
 						pluginName = idList.get(id);
 						if (pluginName == null) {
 							throw new BadRequestException();
 						}
-						id = intArray[i++];
+						id = readId(decoded, start, i++, numIds, use32BitEncoding);
 						moduleName = id != 0 ? idList.get(id) : ""; //$NON-NLS-1$
 
 					} else {
@@ -454,6 +448,36 @@ class RequestedModuleNames implements IRequestedModuleNames {
 		}
 	}
 
+	/**
+	 * Returns the 16-bit or 32-bit id at the specified index in an encoded id
+	 * list.
+	 *
+	 * @param decoded
+	 *            the base64 decoded id list
+	 * @param start
+	 *            the offset of the first id in {@code decoded}
+	 * @param index
+	 *            the index of the id to read
+	 * @param numIds
+	 *            the number of ids in the list
+	 * @param use32BitEncoding
+	 *            true if the ids are 32-bit values
+	 * @return the id
+	 * @throws BadRequestException
+	 *             if {@code index} is past the end of the list
+	 */
+	private static int readId(byte[] decoded, int start, int index, int numIds, boolean use32BitEncoding) throws BadRequestException {
+		if (index >= numIds) {
+			throw new BadRequestException();
+		}
+		if (use32BitEncoding) {
+			int j = start+index*4;
+			return ((decoded[j]&0xFF) << 24) + ((decoded[j+1]&0xFF) << 16) +
+			       ((decoded[j+2]&0xFF) << 8) + (decoded[j+3]&0xFF);
+		}
+		int j = start+index*2;
+		return ((decoded[j]&0xFF) << 8) + (decoded[j+1]&0xFF);
+	}
 
 	/**
 	 * Regular expression for a non-path property (i.e. auxiliary information or processing
@@ -543,16 +567,7 @@ class RequestedModuleNames implements IRequestedModuleNames {
 			}
 		}
 		else if (obj instanceof String){
-			String[] values = ((String)obj).split("-"); //$NON-NLS-1$
-			int idx = Integer.parseInt(values[0]);
-			if (modules.get(idx) != null) {
-				throw new BadRequestException();
-			}
-			modules.put(idx, values.length > 1 ?
-					((aPrefixes != null ?
-							aPrefixes[Integer.parseInt(values[1])] : values[1])
-							+ "!" + path) : //$NON-NLS-1$
-								path);
+			addUnfoldedModule((String)obj, path, aPrefixes, modules);
 		} else {
 			throw new BadRequestException();
 		}
@@ -561,6 +576,215 @@ class RequestedModuleNames implements IRequestedModuleNames {
 		}
 	}
 
+	/**
+	 * Unfolds the encoded folded module name list specified by {@code encstr}
+	 * directly into {@code sparseArray}.
+	 * <p>
+	 * This produces the same result as
+	 * <code>unfoldModules(decodeModules(encstr), sparseArray)</code>, but parses
+	 * the encoded string in a single pass instead of rewriting it as JSON and
+	 * building the intermediate JSON objects.
+	 *
+	 * @param encstr
+	 *            the encoded module name list
+	 * @param sparseArray
+	 *            Output - the sparse array to which the unfolded module names
+	 *            will be added
+	 * @throws IOException
+	 */
+	protected void unfoldEncodedModules(String encstr, Map<Integer, String> sparseArray) throws IOException {
+		final String sourceMethod = "unfoldEncodedModules"; //$NON-NLS-1$
+		if (isTraceLogging) {
+			log.entering(RequestedModuleNames.class.getName(), sourceMethod, new Object[]{encstr, sparseArray});
+		}
+		if (encstr != null && encstr.length() > 0) {
+			FoldedPathParser parser = new FoldedPathParser(encstr);
+			parser.parse();
+			for (int i = 0; i < parser.paths.size(); i++) {
+				addUnfoldedModule(parser.values.get(i), parser.paths.get(i), parser.prefixes, sparseArray);
+			}
+		}
+		if (isTraceLogging) {
+			log.exiting(RequestedModuleNames.class.getName(), sourceMethod, sparseArray);
+		}
+	}
+
+	/**
+	 * Adds the module specified by a folded path leaf to the sparse array
+	 *
+	 * @param value
+	 *            the leaf value ({@code <position>} or
+	 *            {@code <position>-<plugin prefix>})
+	 * @param path
+	 *            the module path
+	 * @param aPrefixes
+	 *            Array of loader plugin prefixes
+	 * @param modules
+	 *            Output - the sparse array of unfolded module names
+	 * @throws BadRequestException
+	 */
+	private void addUnfoldedModule(String value, String path, String[] aPrefixes, Map<Integer, String> modules) throws BadRequestException {
+		String[] values = value.split("-"); //$NON-NLS-1$
+		String prefix = null;
+		int idx;
+		try {
+			idx = Integer.parseInt(values[0]);
+			if (values.length > 1) {
+				if (aPrefixes != null) {
+					int ordinal = Integer.parseInt(values[1]);
+					if (ordinal < 0 || ordinal >= aPrefixes.length) {
+						throw new BadRequestException(value);
+					}
+					prefix = aPrefixes[ordinal];
+				} else {
+					prefix = values[1];
+				}
+			}
+		} catch (NumberFormatException ex) {
+			throw new BadRequestException(ex.getMessage(), ex);
+		}
+		if (idx < 0 || modules.get(idx) != null) {
+			throw new BadRequestException();
+		}
+		modules.put(idx, prefix != null ? (prefix + "!" + path) : path); //$NON-NLS-1$
+	}
+
+	/**
+	 * Single pass parser for the encoded folded path format produced by the
+	 * loader extension.  The encoded string is a JSON object with the
+	 * punctuation replaced as follows: <code>(</code> for <code>{</code>,
+	 * <code>)</code> for <code>}</code>, <code>!</code> for <code>:</code> and
+	 * <code>*</code> for <code>,</code>.  Within names and values,
+	 * <code>|</code>, <code>&lt;</code> and <code>&gt;</code> stand for
+	 * <code>!</code>, <code>(</code> and <code>)</code>.
+	 * <p>
+	 * The parser collects the paths and values of the leaf nodes, and the
+	 * plugin prefixes, without building any intermediate objects.
+	 */
+	static class FoldedPathParser {
+		private final String str;
+		private int pos = 0;
+		final List<String> paths = new ArrayList<String>();
+		final List<String> values = new ArrayList<String>();
+		String[] prefixes = null;
+
+		FoldedPathParser(String str) {
+			this.str = str;
+		}
+
+		void parse() throws BadRequestException {
+			expect('(');
+			if (!consume(')')) {
+				do {
+					String key = readToken();
+					expect('!');
+					if (PLUGIN_PREFIXES_PROP_NAME.equals(key)) {
+						parsePrefixes();
+					} else if (NON_PATH_PROP_PATTERN.matcher(key).find()) {
+						parseValue(null);
+					} else {
+						parseValue(key);
+					}
+				} while (consume('*'));
+				expect(')');
+			}
+			if (pos != str.length()) {
+				throw new BadRequestException(str);
+			}
+		}
+
+		/**
+		 * Parses an object or leaf value.  If {@code path} is null, the value
+		 * is parsed but not collected.
+		 */
+		private void parseValue(String path) throws BadRequestException {
+			if (consume('(')) {
+				if (!consume(')')) {
+					do {
+						String key = readToken();
+						expect('!');
+						parseValue(path != null ? (path + "/" + key) : null); //$NON-NLS-1$
+					} while (consume('*'));
+					expect(')');
+				}
+			} else {
+				String value = readToken();
+				if (path != null) {
+					paths.add(path);
+					values.add(value);
+				}
+			}
+		}
+
+		private void parsePrefixes() throws BadRequestException {
+			List<String> names = new ArrayList<String>();
+			List<String> ordinals = new ArrayList<String>();
+			expect('(');
+			if (!consume(')')) {
+				do {
+					names.add(readToken());
+					expect('!');
+					ordinals.add(readToken());
+				} while (consume('*'));
+				expect(')');
+			}
+			prefixes = new String[names.size()];
+			for (int i = 0; i < names.size(); i++) {
+				int ordinal;
+				try {
+					ordinal = Integer.parseInt(ordinals.get(i));
+				} catch (NumberFormatException ex) {
+					throw new BadRequestException(ex.getMessage(), ex);
+				}
+				if (ordinal < 0 || ordinal >= prefixes.length || prefixes[ordinal] != null) {
+					throw new BadRequestException(str);
+				}
+				prefixes[ordinal] = names.get(i);
+			}
+		}
+
+		private String readToken() throws BadRequestException {
+			int start = pos;
+			boolean escaped = false;
+			for (; pos < str.length(); pos++) {
+				char c = str.charAt(pos);
+				if (c == '(' || c == ')' || c == '!' || c == '*') {
+					break;
+				} else if (c == '|' || c == '<' || c == '>') {
+					escaped = true;
+				} else if (c == '"') {
+					throw new BadRequestException(str);
+				}
+			}
+			if (pos == start) {
+				throw new BadRequestException(str);
+			}
+			if (!escaped) {
+				return str.substring(start, pos);
+			}
+			StringBuffer sb = new StringBuffer(pos - start);
+			for (int i = start; i < pos; i++) {
+				char c = str.charAt(i);
+				sb.append(c == '|' ? '!' : (c == '<' ? '(' : (c == '>' ? ')' : c)));
+			}
+			return sb.toString();
+		}
+
+		private boolean consume(char c) {
+			if (pos < str.length() && str.charAt(pos) == c) {
+				pos++;
+				return true;
+			}
+			return false;
+		}
+
+		private void expect(char c) throws BadRequestException {
+			if (!consume(c)) {
+				throw new BadRequestException(str);
+			}
+		}
+	}
+
 	/* (non-Javadoc)
 	 * @see com.ibm.jaggr.core.transport.IRequestedModuleNames#getDeps()
 	 */
@@ -627,10 +851,8 @@ class RequestedModuleNames implements IRequestedModuleNames {
 		}
 		Map<Integer, String> sparseArray = new TreeMap<Integer, String>();
 		try {
-			unfoldModules(decodeModules(names), sparseArray);
+			unfoldEncodedModules(names, sparseArray);
 			decodeModuleIds(idList, sparseArray, hasIdListHash);
-		} catch (JSONException ex) {
-			throw new BadRequestException(ex);
 		} catch (IOException ex) {
 			throw new BadRequestException(ex);
 		}
@@ -0,0 +1,49 @@
+/*
+ * (C) Copyright IBM Corp. 2012, 2016 All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ibm.jaggr.core.layer;
+
+import java.util.Map;
+
+import javax.servlet.http.Cookie;
+
+/**
+ * Interface implemented by aggregators that are able to process layer
+ * requests outside of a servlet request. Aggregators that implement this
+ * interface build the layers predicted to follow a request speculatively when
+ * the {@link com.ibm.jaggr.core.options.IOptions#ENABLE_LAYER_PREFETCH} option
+ * is enabled. Other aggregators only add preload hints for the predicted
+ * layers to the response.
+ */
+public interface ILayerPrefetchHandler {
+
+	/**
+	 * Builds the layer for a predicted follow-up request so that it will be
+	 * in the cache when the client requests it. Called on a prefetch thread,
+	 * after the request that triggered the prediction may have completed, so
+	 * the request must be processed using a request object that is independent
+	 * of the servlet container.
+	 *
+	 * @param requestUri
+	 *            the predicted request URI, including the query string
+	 * @param headers
+	 *            the request headers that can influence the response
+	 * @param cookies
+	 *            the cookies sent with the triggering request, or null
+	 * @throws Exception
+	 */
+	public void prefetchLayer(String requestUri, Map<String, String> headers, Cookie[] cookies) throws Exception;
+}
@@ -109,6 +109,19 @@ public interface IOptions {
 	 */
 	public static final String DISABLE_HASPLUGINBRANCHING = "disableHasPluginBranching"; //$NON-NLS-1$
 
+	/**
+	 * Name of property that specifies if has! plugin formulas involving many
+	 * features should be simplified using binary decision diagrams instead of
+	 * the Quine-McCluskey algorithm during require list expansion. The cost of
+	 * Quine-McCluskey grows exponentially with the number of distinct features
+	 * in a formula, so enabling this option can significantly reduce build
+	 * times for applications that use large feature sets. Formulas with only a
+	 * few features are always simplified using Quine-McCluskey.
+	 * <p>
+	 * Valid values: <code>true/false</code>
+	 */
+	public static final String BDD_SIMPLIFICATION = "bddSimplification"; //$NON-NLS-1$
+
 	/**
 	 * Name of property that specifies if module name id encoding should be disabled.
 	 * <p>
@@ -167,6 +180,64 @@ public interface IOptions {
 	 */
 	public static final String VERIFY_DEPS = "verifyDeps"; //$NON-NLS-1$
 
+	/**
+	 * Name of property that specifies the number of threads used to walk the
+	 * module folders and parse the javascript modules when building the
+	 * dependency map. If not specified, the number of available processors is
+	 * used.
+	 * <p>
+	 * Valid values: Integer value > 0
+	 */
+	public static final String DEPSCAN_PARALLELISM = "depScanParallelism"; //$NON-NLS-1$
+
+	/**
+	 * Name of property that specifies if repeat requests for layers should not
+	 * be satisfied directly from the front door cache, which maps the raw
+	 * request URL and relevant headers to previously served layer builds. The
+	 * front door cache is never used when development mode or debug mode is
+	 * enabled, or when request listeners are registered.
+	 * <p>
+	 * Valid values: <code>true/false</code>
+	 */
+	public static final String DISABLE_FRONTDOORCACHE = "disableFrontDoorCache"; //$NON-NLS-1$
+
+	/**
+	 * Name of property that specifies if the aggregator should learn which
+	 * layers clients request right after a given layer, add preload hints
+	 * (<code>Link: &lt;uri&gt;; rel=preload</code> response headers) for the
+	 * predicted follow-up layers, and build the predicted layers
+	 * speculatively where the platform supports it. Layer prefetching is never
+	 * used when development mode or debug mode is enabled.
+	 * <p>
+	 * Valid values: <code>true/false</code>
+	 */
+	public static final String ENABLE_LAYER_PREFETCH = "enableLayerPrefetch"; //$NON-NLS-1$
+
+	/**
+	 * Name of property that specifies if the transport should accept requests
+	 * that combine the module lists for several layers into a single request.
+	 * The layers are resolved in parallel and returned in a single response,
+	 * with each layer being cached individually. When enabled, the loader
+	 * extension combines the requests it would otherwise send separately (e.g.
+	 * the i18n and non-i18n parts of a split request) as long as the combined
+	 * request URL doesn't exceed the maximum URL length.
+	 * <p>
+	 * Valid values: <code>true/false</code>
+	 */
+	public static final String ENABLE_MULTILAYER_REQUESTS = "enableMultiLayerRequests"; //$NON-NLS-1$
+
+	/**
+	 * Name of property that specifies if layer requests should be processed
+	 * asynchronously. When enabled, and the servlet container supports
+	 * asynchronous processing for the aggregator servlet, layer requests are
+	 * suspended and handed off to a thread pool owned by the aggregator (see
+	 * {@link com.ibm.jaggr.core.InitParams#REQUESTPOOLSIZE_INITPARAM}) so
+	 * that container threads are not held while layers are being built.
+	 * <p>
+	 * Valid values: <code>true/false</code>
+	 */
+	public static final String ENABLE_ASYNC_REQUESTS = "enableAsyncRequests"; //$NON-NLS-1$
+
 	/**
 	 * Name of property to specify the directory to use for cache files. If not
 	 * specified, then the plugin state area for the bundle is determined by the
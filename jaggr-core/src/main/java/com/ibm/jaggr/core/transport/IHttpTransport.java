@@ -243,6 +243,17 @@ public interface IHttpTransport extends IExtensionInitializer {
 	public static final String GENERATESOURCEMAPS_REQATTRNAME = IHttpTransport.class
 			.getName() + "GenerateSourceMap"; //$NON-NLS-1$
 
+	/**
+	 * Name of request attribute specifying the layers requested by a
+	 * multi-layer request. The value is a {@link java.util.List} of the query
+	 * strings for the individual layers. Requests having this attribute are
+	 * not otherwise decorated by the transport. Instead, the aggregator
+	 * decorates and builds a request for each of the layers and returns the
+	 * layers, in order, in a single response.
+	 */
+	public static final String LAYERPARTS_REQATTRNAME = IHttpTransport.class
+			.getName() + "LayerParts"; //$NON-NLS-1$
+
 	/**
 	 * Supported optimization levels. Module builders are not required to
 	 * support all, or any, of these.
@@ -0,0 +1,94 @@
+/*
+ * (C) Copyright IBM Corp. 2012, 2016 All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.jaggr.core.util;
+
+import org.apache.commons.codec.binary.Base64OutputStream;
+import org.apache.commons.io.IOUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Streaming base64 encoder that reads the data to be encoded from an input
+ * stream and appends the encoded characters directly to the output, without
+ * buffering the whole of the input or the encoded output in intermediate byte
+ * arrays or strings.  The encoding is done by {@link Base64OutputStream}.
+ */
+public class Base64Util {
+
+	private static final int BUFFER_SIZE = 3 * 1024;
+
+	/**
+	 * Returns the number of characters in the base64 encoding of the
+	 * specified number of bytes.
+	 *
+	 * @param size
+	 *            the number of bytes
+	 * @return the encoded length
+	 */
+	public static int encodedLength(long size) {
+		return (int)((size + 2) / 3 * 4);
+	}
+
+	/**
+	 * Reads the input stream to end of stream and appends the base64 encoding
+	 * of the data to the output. The input stream is closed on return.
+	 *
+	 * @param in
+	 *            the input stream
+	 * @param out
+	 *            the output
+	 * @return the number of bytes read from the input stream
+	 * @throws IOException
+	 */
+	public static long encode(InputStream in, Appendable out) throws IOException {
+		long total = 0;
+		try {
+			// No line breaks in the encoded output
+			OutputStream os = new Base64OutputStream(new AppendableOutputStream(out), true, 0, null);
+			total = IOUtils.copyLarge(in, os, new byte[BUFFER_SIZE]);
+			os.close();	// writes the final group and padding
+		} finally {
+			IOUtils.closeQuietly(in);
+		}
+		return total;
+	}
+
+	/**
+	 * Output stream that appends the bytes written to it, which must be ASCII
+	 * characters, to an {@link Appendable}.
+	 */
+	private static class AppendableOutputStream extends OutputStream {
+		private final Appendable out;
+
+		private AppendableOutputStream(Appendable out) {
+			this.out = out;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			out.append((char)(b & 0xff));
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			for (int i = off, end = off + len; i < end; i++) {
+				out.append((char)(b[i] & 0xff));
+			}
+		}
+	}
+}
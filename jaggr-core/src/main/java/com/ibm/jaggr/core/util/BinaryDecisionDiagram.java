@@ -0,0 +1,394 @@
+/*
+ * (C) Copyright IBM Corp. 2012, 2016 All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ibm.jaggr.core.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A reduced ordered binary decision diagram (ROBDD) manager used for
+ * simplifying boolean formulas with many variables.
+ * <p>
+ * Nodes are identified by int handles into parallel node arrays. All nodes
+ * created by an instance of this class share a single unique table, so that
+ * structurally identical sub-graphs are represented by the same handle, and
+ * the results of the apply operations are memoized in a direct mapped
+ * operation cache. Variables are ordered by their index, so variable 0 is
+ * tested at the root of the diagram.
+ * <p>
+ * {@link #minimize(List, int)} uses the diagram to compute a prime and
+ * irredundant sum-of-products cover for a formula without expanding the
+ * formula into minterms, which avoids the exponential blow-up of
+ * Quine-McCluskey when formulas contain many distinct variables.
+ * <p>
+ * Instances of this class are not thread-safe.
+ */
+final class BinaryDecisionDiagram {
+
+	static final int ZERO = 0;
+	static final int ONE = 1;
+
+	private static final int OP_AND = 0;
+	private static final int OP_OR = 1;
+	private static final int OP_NOT = 2;
+
+	private static final int INITIAL_CAPACITY = 1024;
+	private static final int CACHE_SIZE = 1 << 14;
+
+	private final int numVars;
+
+	// The node arrays
+	private int[] vars;
+	private int[] lows;
+	private int[] highs;
+	private int nodeCount;
+
+	// The unique table (open addressing, -1 is empty)
+	private int[] uniqueTable;
+
+	// The operation cache (direct mapped, lossy)
+	private final int[] cacheOp = new int[CACHE_SIZE];
+	private final int[] cacheA = new int[CACHE_SIZE];
+	private final int[] cacheB = new int[CACHE_SIZE];
+	private final int[] cacheResult = new int[CACHE_SIZE];
+
+	/**
+	 * @param numVars
+	 *            the number of variables
+	 */
+	BinaryDecisionDiagram(int numVars) {
+		this.numVars = numVars;
+		vars = new int[INITIAL_CAPACITY];
+		lows = new int[INITIAL_CAPACITY];
+		highs = new int[INITIAL_CAPACITY];
+		uniqueTable = new int[INITIAL_CAPACITY * 2];
+		Arrays.fill(uniqueTable, -1);
+		Arrays.fill(cacheOp, -1);
+		// The terminals sort after all the variables
+		vars[ZERO] = vars[ONE] = numVars;
+		lows[ONE] = highs[ONE] = ONE;
+		nodeCount = 2;
+	}
+
+	/**
+	 * @return the number of nodes in the diagram, including the terminals
+	 */
+	int getNodeCount() {
+		return nodeCount;
+	}
+
+	/**
+	 * Returns the node for the specified variable and branches, creating it
+	 * if necessary.
+	 *
+	 * @param var
+	 *            the variable index
+	 * @param low
+	 *            the node to use when the variable is false
+	 * @param high
+	 *            the node to use when the variable is true
+	 * @return the node handle
+	 */
+	int mk(int var, int low, int high) {
+		if (low == high) {
+			return low;
+		}
+		if (nodeCount == vars.length) {
+			grow();
+		}
+		int mask = uniqueTable.length - 1;
+		int slot = hash(var, low, high) & mask;
+		int node;
+		while ((node = uniqueTable[slot]) != -1) {
+			if (vars[node] == var && lows[node] == low && highs[node] == high) {
+				return node;
+			}
+			slot = (slot + 1) & mask;
+		}
+		node = nodeCount++;
+		vars[node] = var;
+		lows[node] = low;
+		highs[node] = high;
+		uniqueTable[slot] = node;
+		return node;
+	}
+
+	/**
+	 * @param a
+	 *            a node handle
+	 * @param b
+	 *            a node handle
+	 * @return the conjunction of the two nodes
+	 */
+	int and(int a, int b) {
+		return apply(OP_AND, a, b);
+	}
+
+	/**
+	 * @param a
+	 *            a node handle
+	 * @param b
+	 *            a node handle
+	 * @return the disjunction of the two nodes
+	 */
+	int or(int a, int b) {
+		return apply(OP_OR, a, b);
+	}
+
+	/**
+	 * @param a
+	 *            a node handle
+	 * @return the negation of the node
+	 */
+	int not(int a) {
+		if (a == ZERO) {
+			return ONE;
+		} else if (a == ONE) {
+			return ZERO;
+		}
+		int slot = cacheSlot(OP_NOT, a, 0);
+		if (cacheOp[slot] == OP_NOT && cacheA[slot] == a) {
+			return cacheResult[slot];
+		}
+		int result = mk(vars[a], not(lows[a]), not(highs[a]));
+		cacheStore(slot, OP_NOT, a, 0, result);
+		return result;
+	}
+
+	/**
+	 * Returns the node for the conjunction of the literals in the specified
+	 * cube.
+	 *
+	 * @param cube
+	 *            array of variable values indexed by variable. Values are 1
+	 *            for true, 0 for false, or {@link Term#DontCare} if the
+	 *            variable does not appear in the cube.
+	 * @return the node handle
+	 */
+	int cube(byte[] cube) {
+		int result = ONE;
+		for (int i = numVars - 1; i >= 0; i--) {
+			if (cube[i] == 1) {
+				result = mk(i, ZERO, result);
+			} else if (cube[i] == 0) {
+				result = mk(i, result, ZERO);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns true if the cube is contained in (implies) the specified
+	 * function.
+	 *
+	 * @param cube
+	 *            the cube
+	 * @param f
+	 *            the function node
+	 * @return true if every assignment satisfying the cube also satisfies
+	 *         {@code f}
+	 */
+	boolean implies(byte[] cube, int f) {
+		int c = cube(cube);
+		return and(c, f) == c;
+	}
+
+	/**
+	 * Computes a prime and irredundant cover for the disjunction of the
+	 * specified terms.
+	 * <p>
+	 * Each input term is expanded to a prime implicant by removing literals
+	 * for as long as the expanded term remains contained in the function,
+	 * after which terms that are covered by the union of the remaining terms
+	 * are removed. Containment tests are done using the diagram, so the cost
+	 * is proportional to the size of the diagram rather than the number of
+	 * minterms.
+	 *
+	 * @param terms
+	 *            the terms to be or'ed together
+	 * @param numVars
+	 *            the number of variables in the terms
+	 * @return the terms of the simplified formula. An empty array means the
+	 *         formula is false and an array containing a single term of all
+	 *         don't cares means the formula is true.
+	 */
+	static Term[] minimize(List<Term> terms, int numVars) {
+		BinaryDecisionDiagram bdd = new BinaryDecisionDiagram(numVars);
+		List<byte[]> cubes = new ArrayList<byte[]>(terms.size());
+		int f = ZERO;
+		for (Term term : terms) {
+			byte[] cube = new byte[numVars];
+			for (int i = 0; i < numVars; i++) {
+				cube[i] = term.get(i);
+			}
+			cubes.add(cube);
+			f = bdd.or(f, bdd.cube(cube));
+		}
+		if (f == ZERO) {
+			return new Term[0];
+		}
+		if (f == ONE) {
+			byte[] dontCares = new byte[numVars];
+			Arrays.fill(dontCares, Term.DontCare);
+			return new Term[]{new Term(dontCares)};
+		}
+		// Expand the most general terms first since they are the most likely
+		// to produce primes that cover the other terms.
+		Collections.sort(cubes, new LiteralCountComparator(true));
+		List<byte[]> primes = new ArrayList<byte[]>();
+		for (byte[] cube : cubes) {
+			if (isCovered(cube, primes)) {
+				continue;
+			}
+			for (int i = 0; i < numVars; i++) {
+				byte val = cube[i];
+				if (val != Term.DontCare) {
+					cube[i] = Term.DontCare;
+					if (!bdd.implies(cube, f)) {
+						cube[i] = val;
+					}
+				}
+			}
+			if (!isCovered(cube, primes)) {
+				primes.add(cube);
+			}
+		}
+		// Remove the redundant primes, trying the most specific ones first
+		Collections.sort(primes, new LiteralCountComparator(false));
+		for (int i = 0; i < primes.size(); ) {
+			int others = ZERO;
+			for (int j = 0; j < primes.size(); j++) {
+				if (j != i) {
+					others = bdd.or(others, bdd.cube(primes.get(j)));
+				}
+			}
+			if (bdd.implies(primes.get(i), others)) {
+				primes.remove(i);
+			} else {
+				i++;
+			}
+		}
+		Term[] result = new Term[primes.size()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = new Term(primes.get(i));
+		}
+		return result;
+	}
+
+	private int apply(int op, int a, int b) {
+		if (op == OP_AND) {
+			if (a == ZERO || b == ZERO) return ZERO;
+			if (a == ONE || a == b) return b;
+			if (b == ONE) return a;
+		} else {
+			if (a == ONE || b == ONE) return ONE;
+			if (a == ZERO || a == b) return b;
+			if (b == ZERO) return a;
+		}
+		if (a > b) {
+			// both operations are commutative
+			int t = a; a = b; b = t;
+		}
+		int slot = cacheSlot(op, a, b);
+		if (cacheOp[slot] == op && cacheA[slot] == a && cacheB[slot] == b) {
+			return cacheResult[slot];
+		}
+		int varA = vars[a], varB = vars[b];
+		int var = Math.min(varA, varB);
+		int low = apply(op, varA == var ? lows[a] : a, varB == var ? lows[b] : b);
+		int high = apply(op, varA == var ? highs[a] : a, varB == var ? highs[b] : b);
+		int result = mk(var, low, high);
+		cacheStore(slot, op, a, b, result);
+		return result;
+	}
+
+	private static boolean isCovered(byte[] cube, List<byte[]> cover) {
+		for (byte[] other : cover) {
+			boolean contains = true;
+			for (int i = 0; i < cube.length && contains; i++) {
+				contains = other[i] == Term.DontCare || other[i] == cube[i];
+			}
+			if (contains) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void grow() {
+		int capacity = vars.length * 2;
+		vars = Arrays.copyOf(vars, capacity);
+		lows = Arrays.copyOf(lows, capacity);
+		highs = Arrays.copyOf(highs, capacity);
+		uniqueTable = new int[capacity * 2];
+		Arrays.fill(uniqueTable, -1);
+		int mask = uniqueTable.length - 1;
+		for (int node = 2; node < nodeCount; node++) {
+			int slot = hash(vars[node], lows[node], highs[node]) & mask;
+			while (uniqueTable[slot] != -1) {
+				slot = (slot + 1) & mask;
+			}
+			uniqueTable[slot] = node;
+		}
+	}
+
+	private int cacheSlot(int op, int a, int b) {
+		return hash(op, a, b) & (CACHE_SIZE - 1);
+	}
+
+	private void cacheStore(int slot, int op, int a, int b, int result) {
+		cacheOp[slot] = op;
+		cacheA[slot] = a;
+		cacheB[slot] = b;
+		cacheResult[slot] = result;
+	}
+
+	private static int hash(int x, int y, int z) {
+		int h = x * 0x9E3779B1 + y * 0x85EBCA6B + z * 0xC2B2AE35;
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * Orders cubes by the number of literals they contain
+	 */
+	private static class LiteralCountComparator implements Comparator<byte[]> {
+		private final boolean ascending;
+
+		LiteralCountComparator(boolean ascending) {
+			this.ascending = ascending;
+		}
+
+		@Override
+		public int compare(byte[] c1, byte[] c2) {
+			int result = count(c1) - count(c2);
+			return ascending ? result : -result;
+		}
+
+		private static int count(byte[] cube) {
+			int result = 0;
+			for (byte b : cube) {
+				if (b != Term.DontCare) {
+					result++;
+				}
+			}
+			return result;
+		}
+	}
+}
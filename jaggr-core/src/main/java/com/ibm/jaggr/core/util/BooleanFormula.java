@@ -44,6 +44,14 @@ public class BooleanFormula implements Set<BooleanTerm>, Serializable {
 
 	private static final long serialVersionUID = 1202056345279875004L;
 
+	/**
+	 * Formulas with fewer distinct variables than this are simplified using
+	 * Quine-McCluskey even when BDD simplification is enabled, since the cost of
+	 * expanding small formulas into minterms is negligible and Quine-McCluskey
+	 * produces minimal results.
+	 */
+	static final int BDD_MIN_VARS = 6;
+
 	/**
 	 * A Set of {@link BooleanTerm} objects. A BooleanTerm is a set of variable
 	 * state objects that are logically and'ed together, while instances of this
@@ -115,7 +123,21 @@ public class BooleanFormula implements Set<BooleanTerm>, Serializable {
 	 * @return The simplified representation of this formula, or this object, if already simplified.
 	 */
 	public BooleanFormula simplify() {
-		return simplify(null);
+		return simplify(false);
+	}
+
+	/**
+	 * Provided for backwards compatibility
+	 *
+	 * @param fCache
+	 *          not used.  Formerly a request scoped formula cache.
+	 *
+	 * @return The simplified representation of this formula, or this object, if already simplified.
+	 * @deprecated simplified formulas are cached in the process-wide {@link FormulaCache}.
+	 *             Use {@link #simplify(boolean)} instead.
+	 */
+	public BooleanFormula simplify(Map<?, ?> fCache) {
+		return simplify(false);
 	}
 
 	/**
@@ -124,13 +146,23 @@ public class BooleanFormula implements Set<BooleanTerm>, Serializable {
 	 * <p>
 	 * This method uses the Quine-McCluskey algorithm and code described at
 	 * http://en.literateprograms.org/Quine-McCluskey_algorithm_%28Java%29
+	 * for formulas with few variables.  Formulas with many variables are
+	 * simplified using binary decision diagrams if <code>bddSimplification</code>
+	 * is true, or if the formula has too many variables for Quine-McCluskey.
+	 * <p>
+	 * Simplified formulas are cached in the process-wide {@link FormulaCache},
+	 * so formulas that have already been simplified by any request are not
+	 * simplified again.  Both algorithms produce logically equivalent results,
+	 * so a cached result may have been produced by either one.
 	 *
-	 * @param fCache
-	 *          the formula cache
+	 * @param bddSimplification
+	 *          true if formulas with {@link #BDD_MIN_VARS} or more variables
+	 *          should be simplified using binary decision diagrams
+	 *          (see {@link com.ibm.jaggr.core.options.IOptions#BDD_SIMPLIFICATION})
 	 *
 	 * @return The simplified representation of this formula, or this object, if already simplified.
 	 */
-	public BooleanFormula simplify(Map<?, ?> fCache) {
+	public BooleanFormula simplify(boolean bddSimplification) {
 
 		if (isSimplified) {
 			return this;
@@ -154,14 +186,12 @@ public class BooleanFormula implements Set<BooleanTerm>, Serializable {
 				trimmed.add(term);
 			}
 		}
-		// if a formula cache was provided.  See if we already evaluated this formula
-		@SuppressWarnings("unchecked")
-		Map<BooleanFormula, BooleanFormula> formulaCache = (Map<BooleanFormula, BooleanFormula>)fCache;
-		if (formulaCache != null) {
-			BooleanFormula f = (BooleanFormula)formulaCache.get(this);
-			if (f != null) {
-				return f;
-			}
+		// See if we already evaluated this formula
+		FormulaCache formulaCache = FormulaCache.getInstance();
+		Set<TermMask> cacheKey = FormulaCache.keyFor(trimmed);
+		BooleanFormula cached = formulaCache.get(cacheKey);
+		if (cached != null) {
+			return cached;
 		}
 
 
@@ -181,9 +211,6 @@ public class BooleanFormula implements Set<BooleanTerm>, Serializable {
 			entry.setValue(i++);
 		}
 		int count = names.size();
-		if (count >= Integer.SIZE) {
-			throw new IllegalArgumentException(Integer.toString(count));
-		}
 		List<Term> terms = new ArrayList<Term>(booleanTerms.size());
 		for (Set<BooleanVar> term : booleanTerms) {
 			byte[] bytes = new byte[count];
@@ -206,26 +233,27 @@ public class BooleanFormula implements Set<BooleanTerm>, Serializable {
 		Set<BooleanTerm> result = new HashSet<BooleanTerm>();
 		if (terms.size() == 0) {
 			BooleanFormula f = new BooleanFormula(false);
-			// Add the result to the cache if one was provided
-			if (formulaCache != null) {
-				formulaCache.put(this, f);
-			}
+			// Add the result to the cache
+			formulaCache.put(cacheKey, f);
 			return f;
 		}
 
-		terms = expandDontCares(count, terms);
+		Term[] termList;
+		if (count >= Integer.SIZE || bddSimplification && count >= BDD_MIN_VARS) {
+			termList = BinaryDecisionDiagram.minimize(terms, count);
+		} else {
+			terms = expandDontCares(count, terms);
 
-		Formula formula = new Formula(terms);
-		formula.reduceToPrimeImplicants();
-		formula.reducePrimeImplicantsToSubset();
+			Formula formula = new Formula(terms);
+			formula.reduceToPrimeImplicants();
+			formula.reducePrimeImplicantsToSubset();
+			termList = formula.getTermList();
+		}
 
 		// now convert back to featureExpression form
-		Term[] termList = formula.getTermList();
 		if (termList.length == 0) {
 			BooleanFormula f = new BooleanFormula(false);
-			if (formulaCache != null) {
-				formulaCache.put(this, f);
-			}
+			formulaCache.put(cacheKey, f);
 			return f;
 		}
 		for (Term term : termList) {
@@ -249,9 +277,7 @@ public class BooleanFormula implements Set<BooleanTerm>, Serializable {
 			newFormula.booleanTerms = result;
 			newFormula.isSimplified = true;
 		}
-		if (formulaCache != null) {
-			formulaCache.put(this, newFormula);
-		}
+		formulaCache.put(cacheKey, newFormula);
 		return newFormula;
 	}
 
@@ -31,6 +31,12 @@ public class BooleanTerm extends HashSet<BooleanVar> {
 
 	private boolean initialized = false;	// true except when the object is being constructed
 
+	/**
+	 * The bit-mask representation of this term.  Computed on demand because
+	 * bit positions are not stable across processes.
+	 */
+	private transient TermMask mask = null;
+
 	public static final BooleanTerm TRUE = new BooleanTerm();
 
 	public static final BooleanTerm FALSE = new BooleanTerm();
@@ -128,20 +134,33 @@ public class BooleanTerm extends HashSet<BooleanVar> {
 		if (isEmpty()) {
 			return this;
 		}
+		// The true features are in the positive bits of the feature mask and the
+		// false features are in the negated bits, so a var that doesn't match the
+		// feature value shows up as a conflict.
+		TermMask thisMask = getMask(), featureMask = features.getTermMask();
+		if (coerceUndefinedToFalse) {
+			return thisMask.isTrueFor(featureMask) ? BooleanTerm.TRUE : BooleanTerm.FALSE;
+		}
+		if (thisMask.conflictsWith(featureMask)) {
+			return BooleanTerm.FALSE;
+		}
+		// Remove the vars that are defined by the features.  They are all true.
+		TermMask remainder = thisMask.remove(featureMask);
+		if (remainder == thisMask) {
+			return this;
+		}
+		if (remainder.isEmpty()) {
+			return BooleanTerm.TRUE;
+		}
 		Set<BooleanVar> term = new HashSet<BooleanVar>();
 		for (BooleanVar var : this) {
-			if (features.contains(var.name) || coerceUndefinedToFalse) {
-				boolean featureState = features.isFeature(var.name);
-				if (featureState && var.state || !featureState && !var.state) {
-					// The var is true.  Don't add to term
-				} else {
-					return BooleanTerm.FALSE;
-				}
-			} else {
+			if (remainder.includes(var)) {
 				term.add(var);
 			}
 		}
-		return term.isEmpty() ? BooleanTerm.TRUE : new BooleanTerm(term);
+		BooleanTerm result = new BooleanTerm(term);
+		result.mask = remainder;
+		return result;
 	}
 
 	/**
@@ -164,16 +183,52 @@ public class BooleanTerm extends HashSet<BooleanVar> {
 			// anding with true, other is unchanged
 			return other;
 		}
+		TermMask thisMask = getMask(), otherMask = other.getMask();
+		if (thisMask.conflictsWith(otherMask)) {
+			// If the same term has the same var with opposite states
+			// then the resulting term is false;
+			return BooleanTerm.FALSE;
+		}
+		if (thisMask.containsAll(otherMask)) {
+			// other doesn't add any new vars
+			return this;
+		}
+		if (otherMask.containsAll(thisMask)) {
+			return other;
+		}
 		Set<BooleanVar> result = new HashSet<BooleanVar>(this);
-		for (BooleanVar var : other) {
-			if (result.contains(var.negate())) {
-				// If the same term has the same var with opposite states
-				// then the resulting term is false;
-				return BooleanTerm.FALSE;
-			}
-			result.add(var);
+		result.addAll(other);
+		BooleanTerm term = new BooleanTerm(result);
+		term.mask = thisMask.and(otherMask);
+		return term;
+	}
+
+	/**
+	 * Returns the bit-mask representation of this term, computing it if
+	 * necessary.
+	 *
+	 * @return the term mask
+	 */
+	TermMask getMask() {
+		TermMask result = mask;
+		if (result == null) {
+			// Benign race.  TermMask is immutable so any thread
+			// will see either null or a fully constructed object.
+			mask = result = isEmpty() ? TermMask.EMPTY_MASK : TermMask.of(this);
+		}
+		return result;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.AbstractCollection#containsAll(java.util.Collection)
+	 */
+	@Override
+	public boolean containsAll(Collection<?> collection) {
+		if (collection instanceof BooleanTerm) {
+			// Use the bit-masks to avoid hashing each of the vars
+			return getMask().containsAll(((BooleanTerm)collection).getMask());
 		}
-		return new BooleanTerm(result);
+		return super.containsAll(collection);
 	}
 
 	/* (non-Javadoc)
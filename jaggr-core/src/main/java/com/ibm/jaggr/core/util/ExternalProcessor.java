@@ -0,0 +1,326 @@
+/*
+ * (C) Copyright IBM Corp. 2012, 2016 All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ibm.jaggr.core.util;
+
+import org.apache.commons.io.IOUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs text through an external command line processor (for example, a
+ * locally installed <code>lessc</code> or <code>postcss</code>). The input is
+ * written to the standard input of the process and the result is read from the
+ * standard output, one process per input.
+ * <p>
+ * At most <code>maxProcesses</code> processes run concurrently. Callers that
+ * can't obtain a process slot within the timeout, like callers whose process
+ * doesn't finish within the timeout, fail with an {@link IOException}.
+ * <p>
+ * If the command can't be started or times out, then the processor is
+ * disabled for a retry interval, during which {@link #isAvailable()} returns
+ * false so that callers can fall back to an in-process implementation without
+ * first paying for the failure. A non-zero exit status (for example, because
+ * of a syntax error in the input) fails the call but doesn't disable the
+ * processor.
+ */
+public class ExternalProcessor {
+	private static final String sourceClass = ExternalProcessor.class.getName();
+	private static final Logger log = Logger.getLogger(sourceClass);
+
+	/**
+	 * The default time for which the processor is disabled after a failure
+	 */
+	public static final long DEFAULT_RETRY_MILLIS = 60000;
+
+	private static final String UTF8_CHARSET = "UTF-8"; //$NON-NLS-1$
+
+	private final String name;
+
+	private final List<String> command;
+
+	private final int maxProcesses;
+
+	private final long timeoutMillis;
+
+	private final Semaphore permits;
+
+	private final ExecutorService es;
+
+	private volatile long disabledUntil = 0;
+
+	private long retryMillis = DEFAULT_RETRY_MILLIS;
+
+	private final AtomicLong processed = new AtomicLong();
+
+	private final AtomicLong errors = new AtomicLong();
+
+	private final AtomicLong failures = new AtomicLong();
+
+	/**
+	 * @param name
+	 *            the processor name, used in log messages and by
+	 *            {@link #toString()}
+	 * @param command
+	 *            the command and its arguments
+	 * @param maxProcesses
+	 *            the maximum number of concurrently running processes
+	 * @param timeout
+	 *            the maximum time to wait for a process slot, and for a
+	 *            process to finish
+	 * @param unit
+	 *            the time unit of <code>timeout</code>
+	 */
+	public ExternalProcessor(String name, List<String> command, int maxProcesses, long timeout, TimeUnit unit) {
+		if (command.isEmpty()) {
+			throw new IllegalArgumentException(name);
+		}
+		this.name = name;
+		this.command = Collections.unmodifiableList(new ArrayList<String>(command));
+		this.maxProcesses = Math.max(1, maxProcesses);
+		this.timeoutMillis = unit.toMillis(timeout);
+		permits = new Semaphore(this.maxProcesses, true);
+		// Three stream pumping threads (stdin, stdout and stderr) per process
+		es = Executors.newCachedThreadPool(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, ExternalProcessor.this.name + " stream pump"); //$NON-NLS-1$
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * @return the command and its arguments
+	 */
+	public List<String> getCommand() {
+		return command;
+	}
+
+	/**
+	 * Returns true if the processor is not disabled because of a recent
+	 * failure to start or complete a process.
+	 *
+	 * @return true if the processor is available
+	 */
+	public boolean isAvailable() {
+		return System.currentTimeMillis() >= disabledUntil;
+	}
+
+	/**
+	 * Checks the health of the processor by processing an empty input. The
+	 * processor is disabled if the check fails.
+	 *
+	 * @return true if the processor is healthy
+	 */
+	public boolean check() {
+		final String sourceMethod = "check"; //$NON-NLS-1$
+		try {
+			process("", null); //$NON-NLS-1$
+			return true;
+		} catch (IOException e) {
+			if (log.isLoggable(Level.WARNING)) {
+				log.logp(Level.WARNING, sourceClass, sourceMethod, MessageFormat.format(
+						"Health check failed for {0} {1}: {2}", //$NON-NLS-1$
+						new Object[]{name, command, e.getMessage()}));
+			}
+			if (isAvailable()) {
+				// failed with an error status
+				disable();
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * Runs the specified input through the external processor and returns the
+	 * result.
+	 *
+	 * @param input
+	 *            the input text
+	 * @param workingDir
+	 *            the working directory for the process, or null to use the
+	 *            working directory of the current process
+	 * @return the processed text
+	 * @throws IOException
+	 *             if the process can't be started, times out, or exits with a
+	 *             non-zero status
+	 */
+	public String process(final String input, File workingDir) throws IOException {
+		final String sourceMethod = "process"; //$NON-NLS-1$
+		final boolean isTraceLogging = log.isLoggable(Level.FINER);
+		if (isTraceLogging) {
+			log.entering(sourceClass, sourceMethod, new Object[]{input, workingDir});
+		}
+		long deadline = System.currentTimeMillis() + timeoutMillis;
+		try {
+			if (!permits.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS)) {
+				throw new IOException(MessageFormat.format(
+						"Timed out waiting for {0}", //$NON-NLS-1$
+						new Object[]{name}));
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException(e);
+		}
+		Process process = null;
+		String result = null;
+		try {
+			ProcessBuilder pb = new ProcessBuilder(command);
+			if (workingDir != null) {
+				pb.directory(workingDir);
+			}
+			try {
+				process = pb.start();
+			} catch (IOException e) {
+				disable();
+				throw e;
+			}
+			final OutputStream stdin = process.getOutputStream();
+			Future<Void> inFuture = es.submit(new Callable<Void>() {
+				@Override
+				public Void call() throws Exception {
+					try {
+						stdin.write(input.getBytes(UTF8_CHARSET));
+					} finally {
+						IOUtils.closeQuietly(stdin);
+					}
+					return null;
+				}
+			});
+			Future<String> outFuture = es.submit(reader(process.getInputStream()));
+			Future<String> errFuture = es.submit(reader(process.getErrorStream()));
+			result = get(outFuture, deadline);
+			String stderr = get(errFuture, deadline);
+			int status = process.waitFor();
+			if (status != 0) {
+				errors.incrementAndGet();
+				throw new IOException(MessageFormat.format(
+						"{0} exited with status {1}: {2}", //$NON-NLS-1$
+						new Object[]{name, status, stderr}));
+			}
+			try {
+				get(inFuture, deadline);
+			} catch (IOException e) {
+				// The process succeeded without reading all of its input
+			}
+			processed.incrementAndGet();
+		} catch (RejectedExecutionException e) {
+			// the processor has been shut down
+			throw new IOException(e);
+		} catch (TimeoutException e) {
+			disable();
+			throw new IOException(MessageFormat.format(
+					"Timed out waiting for {0} to complete", //$NON-NLS-1$
+					new Object[]{name}), e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException(e);
+		} finally {
+			if (process != null) {
+				process.destroy();
+			}
+			permits.release();
+		}
+		if (isTraceLogging) {
+			log.exiting(sourceClass, sourceMethod, result);
+		}
+		return result;
+	}
+
+	/**
+	 * Releases the stream pumping threads
+	 */
+	public void shutdown() {
+		es.shutdown();
+	}
+
+	/**
+	 * Sets the time for which the processor is disabled after a failure
+	 *
+	 * @param retryMillis
+	 *            the retry interval in milliseconds
+	 */
+	void setRetryMillis(long retryMillis) {
+		this.retryMillis = retryMillis;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return MessageFormat.format(
+				"{0}: command = {1}, max processes = {2}, running = {3}, processed = {4}, errors = {5}, failures = {6}{7}", //$NON-NLS-1$
+				new Object[]{name, command, maxProcesses, maxProcesses - permits.availablePermits(),
+						processed.get(), errors.get(), failures.get(), isAvailable() ? "" : " (disabled)"} //$NON-NLS-1$ //$NON-NLS-2$
+				);
+	}
+
+	private void disable() {
+		final String sourceMethod = "disable"; //$NON-NLS-1$
+		failures.incrementAndGet();
+		disabledUntil = System.currentTimeMillis() + retryMillis;
+		if (log.isLoggable(Level.WARNING)) {
+			log.logp(Level.WARNING, sourceClass, sourceMethod, MessageFormat.format(
+					"Disabling {0} for {1,number,#} ms", //$NON-NLS-1$
+					new Object[]{name, retryMillis}));
+		}
+	}
+
+	private static Callable<String> reader(final InputStream in) {
+		return new Callable<String>() {
+			@Override
+			public String call() throws Exception {
+				try {
+					return IOUtils.toString(in, UTF8_CHARSET);
+				} finally {
+					IOUtils.closeQuietly(in);
+				}
+			}
+		};
+	}
+
+	private static <T> T get(Future<T> future, long deadline) throws IOException, InterruptedException, TimeoutException {
+		try {
+			return future.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			throw cause instanceof IOException ? (IOException)cause : new IOException(cause);
+		}
+	}
+}
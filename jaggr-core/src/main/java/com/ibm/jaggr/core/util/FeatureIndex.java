@@ -0,0 +1,86 @@
+/*
+ * (C) Copyright IBM Corp. 2012, 2016 All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ibm.jaggr.core.util;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable table that assigns a fixed position to each of a list of feature
+ * names. {@link Features} objects created with an index store the values of
+ * the indexed features in bit sets instead of a map.
+ * <p>
+ * The transport creates an index from the list of dependent features that is
+ * sent to the client, so that the positions in the index match the positions
+ * of the encoded feature values in requests.
+ */
+public final class FeatureIndex {
+
+	public static final FeatureIndex EMPTY = new FeatureIndex(Collections.<String>emptyList());
+
+	private final String[] names;
+
+	private final Map<String, Integer> positions;
+
+	/**
+	 * @param names
+	 *            the feature names
+	 * @throws IllegalArgumentException
+	 *             if {@code names} contains duplicates
+	 */
+	public FeatureIndex(Collection<String> names) {
+		this.names = names.toArray(new String[names.size()]);
+		positions = new HashMap<String, Integer>(this.names.length * 4 / 3 + 1);
+		for (int i = 0; i < this.names.length; i++) {
+			if (positions.put(this.names[i], i) != null) {
+				throw new IllegalArgumentException(this.names[i]);
+			}
+		}
+	}
+
+	/**
+	 * @param name
+	 *            the feature name
+	 * @return the position of the named feature, or -1 if the feature is not
+	 *         in this index
+	 */
+	public int indexOf(String name) {
+		if (names.length == 0) {
+			return -1;
+		}
+		Integer result = positions.get(name);
+		return result != null ? result : -1;
+	}
+
+	/**
+	 * @param index
+	 *            the position
+	 * @return the name of the feature at the specified position
+	 */
+	public String get(int index) {
+		return names[index];
+	}
+
+	/**
+	 * @return the number of positions in this index
+	 */
+	public int size() {
+		return names.length;
+	}
+}
@@ -16,43 +16,180 @@
 
 package com.ibm.jaggr.core.util;
 
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 
 /**
  * Convenience class for defining all of the features passed to the aggregator.
  * Provides methods to determine if they exist, and if they are true or false.
+ * <p>
+ * Features that are in the {@link FeatureIndex} specified when the object is
+ * created are stored in a pair of bit sets (defined and value) at the position
+ * assigned by the index. Any other features are stored in a map. Copies share
+ * the storage of the object they were copied from until either of them is
+ * modified.
  */
 public class Features {
-	public static final Features emptyFeatures;
-	static {
-		Map<String, Boolean> emptyMap = Collections.emptyMap();
-		emptyFeatures = new Features(emptyMap);
-	}
+	public static final Features emptyFeatures = new Features();
+
+	private final FeatureIndex index;
+
+	/** Indexed features that are defined */
+	private BitSet defined;
+
+	/** Values of the indexed features */
+	private BitSet values;
+
+	/** Features that are not in the index */
+	private Map<String, Boolean> features;
+
+	/** True if the storage is shared with a copy of this object */
+	private boolean shared;
+
+	/**
+	 * The feature names in sorted order. Computed on demand and discarded
+	 * when the feature set is modified.
+	 */
+	private volatile String[] sortedNames;
+
+	/**
+	 * The feature names. Computed on demand and discarded when the feature
+	 * set is modified.
+	 */
+	private volatile Set<String> names;
+
+	/**
+	 * The bit-mask representation of the features used to resolve
+	 * {@link BooleanTerm}s. Computed on demand and discarded when the feature
+	 * set is modified.
+	 */
+	private volatile TermMask termMask;
 
-	private final Map<String, Boolean> features;
 	public Features() {
+		this(FeatureIndex.EMPTY);
+	}
+
+	/**
+	 * Creates an empty feature set that uses the specified index
+	 *
+	 * @param index
+	 *            the feature index
+	 */
+	public Features(FeatureIndex index) {
+		this.index = index;
+		defined = new BitSet(index.size());
+		values = new BitSet(index.size());
 		features = new HashMap<String, Boolean>();
 	}
 
 	public Features(Features features) {
-		this.features = new HashMap<String, Boolean>(features.features);
+		index = features.index;
+		share(features);
 	}
 
-	private Features(Map<String, Boolean> features) {
-		this();
-		this.features.putAll(features);
+	/**
+	 * Creates a copy of the specified features that uses the specified index.
+	 *
+	 * @param features
+	 *            the features to copy
+	 * @param index
+	 *            the feature index
+	 */
+	public Features(Features features, FeatureIndex index) {
+		this.index = index;
+		if (features.index == index) {
+			share(features);
+		} else {
+			defined = new BitSet(index.size());
+			values = new BitSet(index.size());
+			this.features = new HashMap<String, Boolean>();
+			for (String name : features.featureNames()) {
+				put(name, features.isFeature(name));
+			}
+		}
 	}
 
 	public void put(String name, boolean value) {
-		features.put(name, Boolean.valueOf(value));
+		int i = index.indexOf(name);
+		if (i != -1) {
+			put(i, value);
+		} else {
+			beforeWrite();
+			features.put(name, Boolean.valueOf(value));
+		}
+	}
+
+	/**
+	 * Sets the value of the feature at the specified position in the index
+	 * that was specified when this object was created.
+	 *
+	 * @param featureIndex
+	 *            the position of the feature in the index
+	 * @param value
+	 *            the feature value
+	 */
+	public void put(int featureIndex, boolean value) {
+		if (featureIndex < 0 || featureIndex >= index.size()) {
+			throw new IndexOutOfBoundsException(Integer.toString(featureIndex));
+		}
+		beforeWrite();
+		defined.set(featureIndex);
+		values.set(featureIndex, value);
 	}
 
 	public Set<String> featureNames() {
-		return features.keySet();
+		Set<String> result = names;
+		if (result == null) {
+			if (defined.isEmpty()) {
+				result = Collections.unmodifiableSet(features.keySet());
+			} else {
+				Set<String> set = new HashSet<String>(features.keySet());
+				for (int i = defined.nextSetBit(0); i >= 0; i = defined.nextSetBit(i+1)) {
+					set.add(index.get(i));
+				}
+				result = Collections.unmodifiableSet(set);
+			}
+			names = result;
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the feature names in sorted order. The array is computed once
+	 * and shared by subsequent callers until the feature set is modified, so
+	 * callers must not modify it.
+	 *
+	 * @return the sorted feature names
+	 */
+	public String[] sortedFeatureNames() {
+		String[] result = sortedNames;
+		if (result == null) {
+			Set<String> names = featureNames();
+			result = names.toArray(new String[names.size()]);
+			Arrays.sort(result);
+			sortedNames = result;
+		}
+		return result;
+	}
+	/**
+	 * Returns the bit-mask representation of the features, computing it if
+	 * necessary.
+	 *
+	 * @return the term mask
+	 */
+	TermMask getTermMask() {
+		TermMask result = termMask;
+		if (result == null || !result.isCurrent()) {
+			termMask = result = TermMask.of(this);
+		}
+		return result;
 	}
+
 	/**
 	 * Check to see if a feature is present.
 	 *
@@ -61,11 +198,22 @@ public class Features {
 	 * @return If the feature was specified.
 	 */
 	public boolean contains(String feature) {
-		return features.containsKey(feature);
+		int i = index.indexOf(feature);
+		return i != -1 ? defined.get(i) : features.containsKey(feature);
 	}
 
 	public void remove(String feature) {
-		features.remove(feature);
+		int i = index.indexOf(feature);
+		if (i != -1) {
+			if (defined.get(i)) {
+				beforeWrite();
+				defined.clear(i);
+				values.clear(i);
+			}
+		} else if (features.containsKey(feature)) {
+			beforeWrite();
+			features.remove(feature);
+		}
 	}
 
 	/**
@@ -78,29 +226,70 @@ public class Features {
 	 * @return If the feature is true.
 	 */
 	public boolean isFeature(String feature) {
+		int i = index.indexOf(feature);
+		if (i != -1) {
+			return values.get(i);
+		}
 		Boolean result = features.get(feature);
 		return (result != null) ? result : false;
 	}
 
 	public Features unmodifiableFeatures() {
-		return new Features(Collections.unmodifiableMap(features));
+		return new Features(this);
 	}
 
 	@Override
 	public String toString() {
-		return features.toString();
+		return asMap().toString();
 	}
 
 	@Override
 	public boolean equals(Object other) {
 		if (other != null && other.getClass().equals(Features.class)) {
-			return features.equals(((Features)other).features);
+			return asMap().equals(((Features)other).asMap());
 		}
 		return false;
 	}
 
 	@Override
 	public int hashCode() {
-		return features.hashCode();
+		return asMap().hashCode();
+	}
+
+	/**
+	 * Shares the storage of the specified object. The storage is copied by
+	 * whichever object is modified first.
+	 */
+	private void share(Features other) {
+		defined = other.defined;
+		values = other.values;
+		features = other.features;
+		sortedNames = other.sortedNames;
+		names = other.names;
+		termMask = other.termMask;
+		shared = other.shared = true;
+	}
+
+	private void beforeWrite() {
+		if (shared) {
+			defined = (BitSet)defined.clone();
+			values = (BitSet)values.clone();
+			features = new HashMap<String, Boolean>(features);
+			shared = false;
+		}
+		sortedNames = null;
+		names = null;
+		termMask = null;
+	}
+
+	private Map<String, Boolean> asMap() {
+		if (defined.isEmpty()) {
+			return features;
+		}
+		Map<String, Boolean> result = new HashMap<String, Boolean>(features);
+		for (int i = defined.nextSetBit(0); i >= 0; i = defined.nextSetBit(i+1)) {
+			result.put(index.get(i), Boolean.valueOf(values.get(i)));
+		}
+		return result;
 	}
 }
@@ -0,0 +1,222 @@
+/*
+ * (C) Copyright IBM Corp. 2012, 2016 All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ibm.jaggr.core.util;
+
+import com.googlecode.concurrentlinkedhashmap.ConcurrentLinkedHashMap;
+import com.googlecode.concurrentlinkedhashmap.EvictionListener;
+
+import java.text.MessageFormat;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process-wide, size bounded cache of simplified {@link BooleanFormula}
+ * objects, shared by all requests.
+ * <p>
+ * Formulas are keyed on the set of {@link TermMask} objects for the terms in
+ * the un-simplified formula, which is a canonical representation of the
+ * formula that doesn't depend on the order in which terms were added, and
+ * which is independent of the mutable formula object used to perform the
+ * lookup. Cached results are copied before being returned to callers, so
+ * callers are free to modify the formulas they obtain from the cache.
+ * <p>
+ * Least recently used entries are evicted when the cache reaches its
+ * capacity. The capacity is the largest value specified by any aggregator
+ * with the {@link com.ibm.jaggr.core.InitParams#MAXFORMULACACHEENTRIES_INITPARAM}
+ * init-param, or {@link #DEFAULT_CAPACITY} if none of them specify it. The
+ * cache is cleared by the cache manager whenever the aggregator
+ * cache is cleared (e.g. when the config, dependencies or options change).
+ */
+public final class FormulaCache {
+
+	/**
+	 * The default maximum number of formulas held by the cache
+	 */
+	public static final int DEFAULT_CAPACITY = 20000;
+
+	private static final FormulaCache instance = new FormulaCache(DEFAULT_CAPACITY);
+
+	private final ConcurrentLinkedHashMap<Set<TermMask>, BooleanFormula> map;
+
+	private final AtomicLong hits = new AtomicLong();
+
+	private final AtomicLong misses = new AtomicLong();
+
+	private final AtomicLong evictions = new AtomicLong();
+
+	/**
+	 * The largest capacity requested by {@link #ensureCapacity(int)}
+	 */
+	private int requestedCapacity = 0;
+
+	/**
+	 * @return the process-wide formula cache
+	 */
+	public static FormulaCache getInstance() {
+		return instance;
+	}
+
+	FormulaCache(int capacity) {
+		map = new ConcurrentLinkedHashMap.Builder<Set<TermMask>, BooleanFormula>()
+				.maximumWeightedCapacity(capacity)
+				.listener(new EvictionListener<Set<TermMask>, BooleanFormula>() {
+					@Override
+					public void onEviction(Set<TermMask> key, BooleanFormula value) {
+						evictions.incrementAndGet();
+					}
+				}).build();
+	}
+
+	/**
+	 * Returns the cache key for the formula comprised of the specified terms
+	 *
+	 * @param terms
+	 *            the formula terms
+	 * @return the cache key
+	 */
+	static Set<TermMask> keyFor(Collection<BooleanTerm> terms) {
+		Set<TermMask> key = new HashSet<TermMask>(terms.size() * 4 / 3 + 1);
+		for (BooleanTerm term : terms) {
+			key.add(term.getMask());
+		}
+		return Collections.unmodifiableSet(key);
+	}
+
+	/**
+	 * Returns a copy of the simplified formula for the specified key, or null
+	 * if the formula is not in the cache.
+	 *
+	 * @param key
+	 *            the key returned by {@link #keyFor(Collection)}
+	 * @return the simplified formula or null
+	 */
+	BooleanFormula get(Set<TermMask> key) {
+		BooleanFormula result = map.get(key);
+		if (result == null) {
+			misses.incrementAndGet();
+			return null;
+		}
+		hits.incrementAndGet();
+		return new BooleanFormula(result);
+	}
+
+	/**
+	 * Adds the simplified formula to the cache.  The formula is copied so that
+	 * changes made by the caller do not affect the cached value.
+	 *
+	 * @param key
+	 *            the key returned by {@link #keyFor(Collection)}
+	 * @param simplified
+	 *            the simplified formula
+	 */
+	void put(Set<TermMask> key, BooleanFormula simplified) {
+		map.put(key, new BooleanFormula(simplified));
+	}
+
+	/**
+	 * Removes all of the formulas from the cache and resets the statistics
+	 */
+	public void clear() {
+		map.clear();
+		hits.set(0);
+		misses.set(0);
+		evictions.set(0);
+	}
+
+	/**
+	 * @return the number of formulas in the cache
+	 */
+	public int size() {
+		return map.size();
+	}
+
+	/**
+	 * @return the maximum number of formulas held by the cache
+	 */
+	public int getCapacity() {
+		return (int)map.capacity();
+	}
+
+	/**
+	 * Sets the maximum number of formulas held by the cache, evicting entries
+	 * if necessary.
+	 *
+	 * @param capacity
+	 *            the new capacity
+	 */
+	public void setCapacity(int capacity) {
+		map.setCapacity(capacity);
+	}
+
+	/**
+	 * Sets the capacity of the cache to the largest of the capacities
+	 * requested by calls to this method, so that a cache shared by several
+	 * aggregators is sized for the one that needs the most entries.
+	 *
+	 * @param capacity
+	 *            the requested capacity
+	 */
+	public synchronized void ensureCapacity(int capacity) {
+		if (capacity > requestedCapacity) {
+			requestedCapacity = capacity;
+			setCapacity(capacity);
+		}
+	}
+
+	/**
+	 * @return the number of lookups that found the formula in the cache
+	 */
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	/**
+	 * @return the number of lookups that did not find the formula in the cache
+	 */
+	public long getMissCount() {
+		return misses.get();
+	}
+
+	/**
+	 * @return the number of formulas evicted from the cache
+	 */
+	public long getEvictionCount() {
+		return evictions.get();
+	}
+
+	/**
+	 * @return the ratio of hits to lookups, or 0 if there have been no lookups
+	 */
+	public double getHitRate() {
+		long hitCount = hits.get(), total = hitCount + misses.get();
+		return total == 0 ? 0 : (double)hitCount / total;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return MessageFormat.format(
+				"Formula cache: entries = {0}, capacity = {1}, hits = {2}, misses = {3}, hit rate = {4,number,percent}, evictions = {5}", //$NON-NLS-1$
+				new Object[]{size(), getCapacity(), getHitCount(), getMissCount(), getHitRate(), getEvictionCount()}
+				);
+	}
+}
@@ -87,6 +87,19 @@ public class RequestUtil {
 		return (options != null) ? !options.isDisableHasFiltering() : true;
 	}
 
+	/**
+	 * Static method for determining if has! plugin formulas should be simplified
+	 * using binary decision diagrams.
+	 *
+	 * @param request The http request object
+	 * @return True if the {@link IOptions#BDD_SIMPLIFICATION} option is enabled
+	 */
+	public static boolean isBddSimplification(HttpServletRequest request) {
+		IAggregator aggr = (IAggregator)request.getAttribute(IAggregator.AGGREGATOR_REQATTRNAME);
+		IOptions options = aggr.getOptions();
+		return options != null && TypeUtil.asBoolean(options.getOption(IOptions.BDD_SIMPLIFICATION));
+	}
+
 	/**
 	 * @param request
 	 * @return True if require expansion logging should be enabled for the request
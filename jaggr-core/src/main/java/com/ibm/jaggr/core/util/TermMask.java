@@ -0,0 +1,396 @@
+/*
+ * (C) Copyright IBM Corp. 2012, 2016 All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ibm.jaggr.core.util;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compact bit-mask representation of a {@link BooleanTerm}.
+ * <p>
+ * Feature names are interned to bit positions using a process-wide table,
+ * and a term is represented by a pair of bit sets: one with the bits set for
+ * the variables that appear un-negated in the term and one with the bits set
+ * for the variables that appear negated. The bit sets are stored as
+ * {@code long} arrays, so terms involving up to 64 distinct features occupy a
+ * single word per bit set.
+ * <p>
+ * The same representation is used for a {@link Features} object, with the
+ * bits for the true features in the first bit set and the bits for the false
+ * features in the second (see {@link #of(Features)}).
+ * <p>
+ * Because the bit positions assigned to feature names are specific to the
+ * running process, instances of this class are never serialized. They are
+ * computed on demand by {@link BooleanTerm#getMask()} and
+ * {@link Features#getTermMask()}.
+ * <p>
+ * Instances of this class are immutable.
+ */
+final class TermMask {
+
+	private static final long[] EMPTY = new long[0];
+
+	/**
+	 * Mask for the empty term
+	 */
+	static final TermMask EMPTY_MASK = new TermMask(EMPTY, EMPTY);
+
+	/**
+	 * Map of feature names to bit positions
+	 */
+	private static final ConcurrentMap<String, Integer> indexMap = new ConcurrentHashMap<String, Integer>();
+
+	private static final AtomicInteger nextIndex = new AtomicInteger();
+
+	/**
+	 * The number of feature names that have been added to {@link #indexMap}.
+	 * Incremented after the name is added.
+	 */
+	private static final AtomicInteger internCount = new AtomicInteger();
+
+	/**
+	 * Bits for the variables that are true in the term
+	 */
+	private final long[] pos;
+
+	/**
+	 * Bits for the variables that are false (negated) in the term
+	 */
+	private final long[] neg;
+
+	private final int hash;
+
+	/**
+	 * For masks built from a {@link Features} object, the value of
+	 * {@link #internCount} when the mask was built. Otherwise -1.
+	 */
+	private final int generation;
+
+	private TermMask(long[] pos, long[] neg) {
+		this(pos, neg, -1);
+	}
+
+	private TermMask(long[] pos, long[] neg, int generation) {
+		this.pos = pos;
+		this.neg = neg;
+		this.hash = 31 * Arrays.hashCode(pos) + Arrays.hashCode(neg);
+		this.generation = generation;
+	}
+
+	/**
+	 * Returns the bit position assigned to the specified feature name,
+	 * assigning a new position if the name has not been seen before.
+	 *
+	 * @param name
+	 *            the feature name
+	 * @return the bit position
+	 */
+	static int indexOf(String name) {
+		Integer index = indexMap.get(name);
+		if (index == null) {
+			Integer newIndex = nextIndex.getAndIncrement();
+			index = indexMap.putIfAbsent(name, newIndex);
+			if (index == null) {
+				index = newIndex;
+				internCount.incrementAndGet();
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * Builds the mask for the specified variables
+	 *
+	 * @param vars
+	 *            the variables that are and'ed together in the term
+	 * @return the mask
+	 */
+	static TermMask of(Collection<BooleanVar> vars) {
+		if (vars.isEmpty()) {
+			return EMPTY_MASK;
+		}
+		long[] pos = EMPTY, neg = EMPTY;
+		for (BooleanVar var : vars) {
+			int index = indexOf(var.name);
+			int word = index >>> 6;
+			long bit = 1L << (index & 63);
+			if (var.state) {
+				if (pos.length <= word) {
+					pos = Arrays.copyOf(pos, word+1);
+				}
+				pos[word] |= bit;
+			} else {
+				if (neg.length <= word) {
+					neg = Arrays.copyOf(neg, word+1);
+				}
+				neg[word] |= bit;
+			}
+		}
+		return new TermMask(pos, neg);
+	}
+
+	/**
+	 * Builds the mask for the specified features. The true features are
+	 * represented by the first bit set and the false features by the second.
+	 * Features whose names have not been assigned a bit position are left
+	 * out, since no term can contain them, and the names of request features
+	 * are not added to the process-wide table. The mask is stale once a new
+	 * name has been added (see {@link #isCurrent()}).
+	 *
+	 * @param features
+	 *            the features
+	 * @return the mask
+	 */
+	static TermMask of(Features features) {
+		// Read the count first so that any name added after this point makes the mask stale
+		int generation = internCount.get();
+		long[] pos = EMPTY, neg = EMPTY;
+		for (String name : features.featureNames()) {
+			Integer index = indexMap.get(name);
+			if (index == null) {
+				continue;
+			}
+			int word = index >>> 6;
+			long bit = 1L << (index & 63);
+			if (features.isFeature(name)) {
+				if (pos.length <= word) {
+					pos = Arrays.copyOf(pos, word+1);
+				}
+				pos[word] |= bit;
+			} else {
+				if (neg.length <= word) {
+					neg = Arrays.copyOf(neg, word+1);
+				}
+				neg[word] |= bit;
+			}
+		}
+		return new TermMask(pos, neg, generation);
+	}
+
+	/**
+	 * Returns false if this mask was built from a {@link Features} object and
+	 * feature names have been assigned bit positions since, in which case the
+	 * mask may be missing features that terms now refer to.
+	 *
+	 * @return true if the mask may still be used
+	 */
+	boolean isCurrent() {
+		return generation == -1 || generation == internCount.get();
+	}
+
+	/**
+	 * Returns true if the variable with the name of the specified variable
+	 * is in this mask, in either state.
+	 *
+	 * @param var
+	 *            the variable
+	 * @return true if the variable's name is in this mask
+	 */
+	boolean includes(BooleanVar var) {
+		Integer index = indexMap.get(var.name);
+		if (index == null) {
+			return false;
+		}
+		int word = index >>> 6;
+		long bit = 1L << (index & 63);
+		return word < pos.length && (pos[word] & bit) != 0 || word < neg.length && (neg[word] & bit) != 0;
+	}
+
+	/**
+	 * Returns true if the term represented by this mask is true when the
+	 * variables that are true in the specified feature mask are true and all
+	 * other variables are false.
+	 *
+	 * @param features
+	 *            the feature mask
+	 * @return true if the term is true for the features
+	 */
+	boolean isTrueFor(TermMask features) {
+		return isSubset(pos, features.pos) && !intersects(neg, features.pos);
+	}
+
+	/**
+	 * Returns true if this mask contains no variables
+	 *
+	 * @return true if the mask is empty
+	 */
+	boolean isEmpty() {
+		return isZero(pos) && isZero(neg);
+	}
+
+	/**
+	 * Returns the mask formed by removing from this mask the variables whose
+	 * names are in the specified mask, in either state.
+	 *
+	 * @param other
+	 *            the mask of the variables to remove
+	 * @return this object if no variables were removed,
+	 *         {@link #EMPTY_MASK} if all of them were, or else the new mask
+	 */
+	TermMask remove(TermMask other) {
+		long[] newPos = andNot(andNot(pos, other.pos), other.neg);
+		long[] newNeg = andNot(andNot(neg, other.pos), other.neg);
+		if (newPos == pos && newNeg == neg) {
+			return this;
+		}
+		if (newPos.length == 0 && newNeg.length == 0) {
+			return EMPTY_MASK;
+		}
+		return new TermMask(newPos, newNeg);
+	}
+
+	/**
+	 * Returns true if this mask includes all of the variables in the specified
+	 * mask. Logically, this means that the term represented by this mask
+	 * implies the term represented by the other mask.
+	 *
+	 * @param other
+	 *            the mask to test
+	 * @return true if every variable in {@code other} is also in this mask
+	 */
+	boolean containsAll(TermMask other) {
+		return isSubset(other.pos, pos) && isSubset(other.neg, neg);
+	}
+
+	/**
+	 * Returns true if the term formed by and'ing this mask with the specified
+	 * mask is always false because the same variable appears with opposite
+	 * states.
+	 *
+	 * @param other
+	 *            the mask to test
+	 * @return true if the conjunction of the two masks is false
+	 */
+	boolean conflictsWith(TermMask other) {
+		return intersects(pos, other.neg) || intersects(neg, other.pos);
+	}
+
+	/**
+	 * Returns the mask formed by and'ing this mask with the specified mask.
+	 * The caller is responsible for checking {@link #conflictsWith(TermMask)}
+	 * before calling this method.
+	 *
+	 * @param other
+	 *            the mask to and with this mask
+	 * @return the combined mask
+	 */
+	TermMask and(TermMask other) {
+		return new TermMask(or(pos, other.pos), or(neg, other.neg));
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#hashCode()
+	 */
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#equals(java.lang.Object)
+	 */
+	@Override
+	public boolean equals(Object other) {
+		if (this == other) {
+			return true;
+		}
+		if (other instanceof TermMask) {
+			TermMask mask = (TermMask)other;
+			return hash == mask.hash && isSubset(pos, mask.pos) && isSubset(mask.pos, pos) &&
+					isSubset(neg, mask.neg) && isSubset(mask.neg, neg);
+		}
+		return false;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		StringBuffer sb = new StringBuffer();
+		sb.append("pos:").append(Arrays.toString(pos)) //$NON-NLS-1$
+		  .append(", neg:").append(Arrays.toString(neg)); //$NON-NLS-1$
+		return sb.toString();
+	}
+
+	private static boolean isSubset(long[] sub, long[] sup) {
+		for (int i = 0; i < sub.length; i++) {
+			long bits = sub[i];
+			if (bits != 0 && (i >= sup.length || (bits & ~sup[i]) != 0)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean intersects(long[] a, long[] b) {
+		int len = Math.min(a.length, b.length);
+		for (int i = 0; i < len; i++) {
+			if ((a[i] & b[i]) != 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns {@code a} with the bits in {@code b} cleared, or {@code a}
+	 * itself if none of them were set. Trailing zero words are dropped so that
+	 * equal masks have equal hash codes.
+	 */
+	private static long[] andNot(long[] a, long[] b) {
+		if (!intersects(a, b)) {
+			return a;
+		}
+		long[] result = a.clone();
+		int len = Math.min(a.length, b.length);
+		for (int i = 0; i < len; i++) {
+			result[i] &= ~b[i];
+		}
+		len = result.length;
+		while (len > 0 && result[len-1] == 0) {
+			len--;
+		}
+		return len == result.length ? result : Arrays.copyOf(result, len);
+	}
+
+	private static boolean isZero(long[] a) {
+		for (long bits : a) {
+			if (bits != 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static long[] or(long[] a, long[] b) {
+		if (a.length < b.length) {
+			long[] t = a; a = b; b = t;
+		}
+		if (b.length == 0) {
+			return a;
+		}
+		long[] result = a.clone();
+		for (int i = 0; i < b.length; i++) {
+			result[i] |= b[i];
+		}
+		return result;
+	}
+}
@@ -43,6 +43,7 @@ import java.net.URI;
 import java.util.Hashtable;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
@@ -65,6 +66,12 @@ public class ReadFileExtFunction extends FunctionObject implements IConfigListen
 	static final public Pattern WEBPACK_MODULE_PAT = Pattern.compile("^~[^/]"); //$NON-NLS-1$
 
 
+	/**
+	 * Map of the URIs of the files read on the current thread to their
+	 * last-modified times, or null if reads are not being recorded
+	 */
+	static final private ThreadLocal<Map<String, Long>> recordedSources = new ThreadLocal<Map<String, Long>>();
+
 	private final IAggregator aggregator;
 	private boolean isIncludeAMDPaths = false;
 	private List<IServiceRegistration> registrations = new LinkedList<IServiceRegistration>();
@@ -184,6 +191,10 @@ public class ReadFileExtFunction extends FunctionObject implements IConfigListen
 		if (res == null || !res.exists()) {
 			throw new FileNotFoundException(res != null ? res.getReferenceURI().toString() : file);
 		}
+		Map<String, Long> sources = recordedSources.get();
+		if (sources != null) {
+			sources.put(res.getURI().toString(), res.lastModified());
+		}
 		Reader in = new CommentStrippingReader(
 				new InputStreamReader(res.getURI().toURL().openStream(), "UTF-8" //$NON-NLS-1$
 		));
@@ -218,6 +229,22 @@ public class ReadFileExtFunction extends FunctionObject implements IConfigListen
 		}
 	}
 
+	/**
+	 * Starts or stops recording the files read by this function on the
+	 * current thread.
+	 *
+	 * @param sources
+	 *            Output - map of the URIs of the files read to their
+	 *            last-modified times, or null to stop recording
+	 */
+	public static void recordSources(Map<String, Long> sources) {
+		if (sources != null) {
+			recordedSources.set(sources);
+		} else {
+			recordedSources.remove();
+		}
+	}
+
 	/* (non-Javadoc)
 	 * @see com.ibm.jaggr.core.config.IConfigListener#configLoaded(com.ibm.jaggr.core.config.IConfig, long)
 	 */
@@ -0,0 +1,194 @@
+/*
+ * (C) Copyright IBM Corp. 2012, 2016 All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ibm.jaggr.core.util.rhino;
+
+import com.googlecode.concurrentlinkedhashmap.ConcurrentLinkedHashMap;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.EvaluatorException;
+import org.mozilla.javascript.Script;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
+
+import java.text.MessageFormat;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Rhino engine management shared by the Rhino backed module builders and
+ * resource converters (LESS, PostCSS and JSX).
+ * <p>
+ * Scripts are compiled at the optimization level specified by the
+ * {@link #OPTIMIZATIONLEVEL_PROPNAME} system property (9 by default), falling
+ * back to interpreted mode for scripts that are too large to be compiled to
+ * Java classes. The compiled scripts are held in a JVM wide cache keyed on the
+ * script name and a digest of the script source, so that the classes generated
+ * for a script are reused by all the scopes that execute the script, and by the
+ * builders and converters that are created when an aggregator is restarted or
+ * its extensions are re-initialized, rather than being generated and loaded
+ * again.
+ * <p>
+ * A sealed scope containing the standard objects is also shared by the callers
+ * for use as the prototype of their thread scopes.
+ */
+public class RhinoEngine {
+	private static final String sourceClass = RhinoEngine.class.getName();
+	private static final Logger log = Logger.getLogger(sourceClass);
+
+	/**
+	 * Name of the system property specifying the Rhino optimization level
+	 * used for compiling scripts (-1 to 9). A value of -1 selects interpreted
+	 * mode.
+	 */
+	public static final String OPTIMIZATIONLEVEL_PROPNAME = sourceClass + ".optimizationLevel"; //$NON-NLS-1$
+
+	/**
+	 * The default optimization level
+	 */
+	public static final int DEFAULT_OPTIMIZATION_LEVEL = 9;
+
+	/**
+	 * The maximum number of compiled scripts held by the cache
+	 */
+	static final int DEFAULT_CAPACITY = 500;
+
+	private static final ConcurrentLinkedHashMap<String, Script> scripts =
+			new ConcurrentLinkedHashMap.Builder<String, Script>()
+			.maximumWeightedCapacity(DEFAULT_CAPACITY)
+			.build();
+
+	private static final AtomicLong hits = new AtomicLong();
+
+	private static final AtomicLong misses = new AtomicLong();
+
+	private static volatile Scriptable sharedScope;
+
+	private RhinoEngine() {}
+
+	/**
+	 * Returns the optimization level used for compiling scripts. Invalid
+	 * values of the {@link #OPTIMIZATIONLEVEL_PROPNAME} system property are
+	 * ignored.
+	 *
+	 * @return the optimization level
+	 */
+	public static int getOptimizationLevel() {
+		Integer level = Integer.getInteger(OPTIMIZATIONLEVEL_PROPNAME, DEFAULT_OPTIMIZATION_LEVEL);
+		return Context.isValidOptimizationLevel(level) ? level : DEFAULT_OPTIMIZATION_LEVEL;
+	}
+
+	/**
+	 * Returns the compiled script for the specified source, compiling the
+	 * source if it is not already in the cache. The optimization level of the
+	 * context is restored before returning.
+	 *
+	 * @param cx
+	 *            the current Rhino context
+	 * @param source
+	 *            the script source
+	 * @param sourceName
+	 *            the script name, used in error messages and stack traces
+	 * @return the compiled script
+	 */
+	public static Script compile(Context cx, String source, String sourceName) {
+		final String sourceMethod = "compile"; //$NON-NLS-1$
+		String key = sourceName + "|" + DigestUtils.md5Hex(source); //$NON-NLS-1$
+		Script script = scripts.get(key);
+		if (script != null) {
+			hits.incrementAndGet();
+			return script;
+		}
+		misses.incrementAndGet();
+		int level = getOptimizationLevel();
+		int savedLevel = cx.getOptimizationLevel();
+		try {
+			cx.setOptimizationLevel(level);
+			try {
+				script = cx.compileString(source, sourceName, 1, null);
+			} catch (EvaluatorException e) {
+				if (level < 0) {
+					throw e;
+				}
+				// The script is too large to be compiled to a class.  Try with optimization disabled
+				if (log.isLoggable(Level.FINE)) {
+					log.logp(Level.FINE, sourceClass, sourceMethod, "Compiling " + sourceName + " in interpreted mode: " + e.getMessage()); //$NON-NLS-1$ //$NON-NLS-2$
+				}
+				cx.setOptimizationLevel(-1);
+				script = cx.compileString(source, sourceName, 1, null);
+			}
+		} finally {
+			cx.setOptimizationLevel(savedLevel);
+		}
+		// Racing compilations of the same script are harmless.  Keep the first one.
+		Script existing = scripts.putIfAbsent(key, script);
+		return existing != null ? existing : script;
+	}
+
+	/**
+	 * Returns the shared scope containing the standard objects. The scope is
+	 * sealed, so it may be used as the prototype of scopes that are used
+	 * concurrently by different threads.
+	 *
+	 * @return the shared scope
+	 */
+	public static Scriptable getSharedScope() {
+		Scriptable result = sharedScope;
+		if (result == null) {
+			synchronized (RhinoEngine.class) {
+				result = sharedScope;
+				if (result == null) {
+					Context cx = Context.enter();
+					try {
+						ScriptableObject scope = cx.initStandardObjects(null, true);
+						scope.sealObject();
+						sharedScope = result = scope;
+					} finally {
+						Context.exit();
+					}
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Discards the cached scripts
+	 */
+	public static void clear() {
+		scripts.clear();
+	}
+
+	/**
+	 * @return the number of cached scripts
+	 */
+	static int size() {
+		return scripts.size();
+	}
+
+	/**
+	 * @return the script cache statistics
+	 */
+	public static String getStatistics() {
+		long hitCount = hits.get(), total = hitCount + misses.get();
+		return MessageFormat.format(
+				"Rhino script cache: optimization level = {0}, scripts = {1}, hits = {2}, misses = {3} ({4}% hit rate)", //$NON-NLS-1$
+				new Object[]{getOptimizationLevel(), scripts.size(), hitCount, total - hitCount, total > 0 ? hitCount * 100 / total : 0}
+				);
+	}
+}
@@ -0,0 +1,296 @@
+/*
+ * (C) Copyright IBM Corp. 2012, 2016 All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.jaggr.core.util.rhino;
+
+import java.text.MessageFormat;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Elastic pool of JavaScript thread scopes (or any other objects that are
+ * expensive to create and may be used by only one thread at a time).
+ * <p>
+ * The pool is pre-warmed asynchronously with the minimum number of scopes
+ * when {@link #prewarm()} is called, so callers don't need to wait for all
+ * the scopes to be created before the pool can be used. When a caller has
+ * to wait longer than the grow threshold for a scope, a new scope is
+ * created asynchronously, up to the maximum pool size. When no caller has
+ * had to wait for a scope for longer than the idle period, scopes in excess
+ * of the minimum pool size are discarded as they are released.
+ * <p>
+ * Utilization and wait time statistics are provided by {@link #toString()}.
+ *
+ * @param <T>
+ *            the scope type
+ */
+public class ScopePool<T> {
+	private static final String sourceClass = ScopePool.class.getName();
+	private static final Logger log = Logger.getLogger(sourceClass);
+
+	/**
+	 * The default amount of time a caller waits for a scope before the pool
+	 * is grown
+	 */
+	public static final long DEFAULT_GROW_WAIT_MILLIS = 100;
+
+	/**
+	 * The default amount of time without contention for scopes after which
+	 * the pool is shrunk
+	 */
+	public static final long DEFAULT_IDLE_MILLIS = 5 * 60 * 1000;
+
+	private final String name;
+	private final int minSize;
+	private final int maxSize;
+	private final Callable<T> factory;
+	private final ExecutorService es;
+	private final BlockingQueue<T> available = new LinkedBlockingQueue<T>();
+
+	/** the number of scopes created or being created */
+	private final AtomicInteger size = new AtomicInteger();
+	private final AtomicInteger inUse = new AtomicInteger();
+	private final AtomicInteger peakInUse = new AtomicInteger();
+	private final AtomicLong acquires = new AtomicLong();
+	private final AtomicLong waits = new AtomicLong();
+	private final AtomicLong timeouts = new AtomicLong();
+	private final AtomicLong totalWaitNanos = new AtomicLong();
+	private final AtomicLong maxWaitNanos = new AtomicLong();
+
+	private volatile long growWaitMillis = DEFAULT_GROW_WAIT_MILLIS;
+	private volatile long idleMillis = DEFAULT_IDLE_MILLIS;
+	private volatile long lastContention = System.currentTimeMillis();
+	private volatile Exception lastCreateError;
+
+	/**
+	 * @param name
+	 *            the pool name, used by {@link #toString()}
+	 * @param minSize
+	 *            the minimum number of scopes in the pool
+	 * @param maxSize
+	 *            the maximum number of scopes in the pool
+	 * @param factory
+	 *            creates new scopes
+	 * @param es
+	 *            the executor service used to create new scopes
+	 */
+	public ScopePool(String name, int minSize, int maxSize, Callable<T> factory, ExecutorService es) {
+		if (minSize < 1 || maxSize < minSize) {
+			throw new IllegalArgumentException(minSize + ", " + maxSize); //$NON-NLS-1$
+		}
+		this.name = name;
+		this.minSize = minSize;
+		this.maxSize = maxSize;
+		this.factory = factory;
+		this.es = es;
+	}
+
+	/**
+	 * Starts creating the minimum number of scopes. Returns without waiting
+	 * for the scopes to be created.
+	 */
+	public void prewarm() {
+		for (int n = size.get(); n < minSize; n++) {
+			if (!grow()) {
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Returns a scope from the pool, waiting if necessary for a scope to
+	 * become available. The scope must be returned to the pool by calling
+	 * {@link #release(Object)}.
+	 *
+	 * @param timeout
+	 *            the maximum time to wait for a scope
+	 * @param unit
+	 *            the time unit of <code>timeout</code>
+	 * @return the scope
+	 * @throws InterruptedException
+	 * @throws TimeoutException
+	 *             if a scope didn't become available within the timeout
+	 */
+	public T acquire(long timeout, TimeUnit unit) throws InterruptedException, TimeoutException {
+		acquires.incrementAndGet();
+		T result = available.poll();
+		if (result == null) {
+			long start = System.nanoTime();
+			lastContention = System.currentTimeMillis();
+			if (size.get() < minSize) {
+				// scope creation failed or the pool wasn't pre-warmed
+				prewarm();
+			}
+			result = available.poll(Math.min(growWaitMillis, unit.toMillis(timeout)), TimeUnit.MILLISECONDS);
+			if (result == null) {
+				if (size.get() == 0 && lastCreateError != null) {
+					throw new RuntimeException(lastCreateError.getMessage(), lastCreateError);
+				}
+				grow();
+				long remaining = unit.toNanos(timeout) - (System.nanoTime() - start);
+				if (remaining > 0) {
+					result = available.poll(remaining, TimeUnit.NANOSECONDS);
+				}
+			}
+			long waited = System.nanoTime() - start;
+			waits.incrementAndGet();
+			totalWaitNanos.addAndGet(waited);
+			long max;
+			do {
+				max = maxWaitNanos.get();
+				if (waited <= max) {
+					break;
+				}
+			} while (!maxWaitNanos.compareAndSet(max, waited));
+			if (result == null) {
+				timeouts.incrementAndGet();
+				throw new TimeoutException("Timeout waiting for thread scope"); //$NON-NLS-1$
+			}
+		}
+		int n = inUse.incrementAndGet(), peak;
+		do {
+			peak = peakInUse.get();
+			if (n <= peak) {
+				break;
+			}
+		} while (!peakInUse.compareAndSet(peak, n));
+		return result;
+	}
+
+	/**
+	 * Returns a scope obtained from {@link #acquire(long, TimeUnit)} to the
+	 * pool.
+	 *
+	 * @param scope
+	 *            the scope
+	 */
+	public void release(T scope) {
+		inUse.decrementAndGet();
+		if (System.currentTimeMillis() - lastContention > idleMillis) {
+			// No recent contention.  Discard the scope if we're above the minimum size
+			int n = size.get();
+			if (n > minSize && size.compareAndSet(n, n-1)) {
+				if (log.isLoggable(Level.FINE)) {
+					log.logp(Level.FINE, sourceClass, "release", name + " shrunk to " + (n-1)); //$NON-NLS-1$ //$NON-NLS-2$
+				}
+				return;
+			}
+		}
+		available.add(scope);
+	}
+
+	/**
+	 * Discards the idle scopes in the pool
+	 */
+	public void clear() {
+		while (available.poll() != null) {
+			size.decrementAndGet();
+		}
+	}
+
+	/**
+	 * @return the queue of idle scopes
+	 */
+	public BlockingQueue<T> getAvailable() {
+		return available;
+	}
+
+	/**
+	 * @return the number of scopes created or being created
+	 */
+	public int size() {
+		return size.get();
+	}
+
+	/**
+	 * @return the number of scopes in use
+	 */
+	public int inUse() {
+		return inUse.get();
+	}
+
+	void setGrowWaitMillis(long growWaitMillis) {
+		this.growWaitMillis = growWaitMillis;
+	}
+
+	void setIdleMillis(long idleMillis) {
+		this.idleMillis = idleMillis;
+	}
+
+	/**
+	 * Starts creating a new scope if the pool is below the maximum size.
+	 *
+	 * @return true if a new scope is being created
+	 */
+	private boolean grow() {
+		int n;
+		do {
+			n = size.get();
+			if (n >= maxSize) {
+				return false;
+			}
+		} while (!size.compareAndSet(n, n+1));
+		if (n >= minSize && log.isLoggable(Level.FINE)) {
+			log.logp(Level.FINE, sourceClass, "grow", name + " growing to " + (n+1)); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		try {
+			es.execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						available.add(factory.call());
+						lastCreateError = null;
+					} catch (Exception e) {
+						size.decrementAndGet();
+						lastCreateError = e;
+						if (log.isLoggable(Level.SEVERE)) {
+							log.log(Level.SEVERE, e.getMessage(), e);
+						}
+					}
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			size.decrementAndGet();
+			lastCreateError = e;
+			return false;
+		}
+		return true;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		long acquireCount = acquires.get(), waitCount = waits.get();
+		return MessageFormat.format(
+				"{0}: size = {1} (min {2}, max {3}), in use = {4}, peak in use = {5}, acquires = {6}, waits = {7}, timeouts = {8}, average wait = {9} ms, max wait = {10} ms", //$NON-NLS-1$
+				new Object[]{
+						name, size.get(), minSize, maxSize, inUse.get(), peakInUse.get(), acquireCount, waitCount, timeouts.get(),
+						waitCount > 0 ? TimeUnit.NANOSECONDS.toMillis(totalWaitNanos.get() / waitCount) : 0,
+						TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get())
+				}
+		);
+	}
+}
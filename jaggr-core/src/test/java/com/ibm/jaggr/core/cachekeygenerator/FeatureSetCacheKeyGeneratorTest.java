@@ -0,0 +1,102 @@
+/*
+ * (C) Copyright IBM Corp. 2012, 2016 All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.jaggr.core.cachekeygenerator;
+
+import com.ibm.jaggr.core.IAggregator;
+import com.ibm.jaggr.core.config.IConfig;
+import com.ibm.jaggr.core.test.TestUtils;
+import com.ibm.jaggr.core.transport.IHttpTransport;
+import com.ibm.jaggr.core.util.Features;
+
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletRequest;
+
+public class FeatureSetCacheKeyGeneratorTest {
+
+	private boolean coerceUndefinedToFalse;
+	private Map<String, Object> requestAttributes;
+	private HttpServletRequest mockRequest;
+	private Features features;
+
+	@Before
+	public void setUp() throws Exception {
+		coerceUndefinedToFalse = false;
+		IConfig mockConfig = EasyMock.createNiceMock(IConfig.class);
+		EasyMock.expect(mockConfig.isCoerceUndefinedToFalse()).andAnswer(new IAnswer<Boolean>() {
+			@Override
+			public Boolean answer() throws Throwable {
+				return coerceUndefinedToFalse;
+			}
+		}).anyTimes();
+		IAggregator mockAggregator = EasyMock.createNiceMock(IAggregator.class);
+		EasyMock.expect(mockAggregator.getConfig()).andReturn(mockConfig).anyTimes();
+		requestAttributes = new HashMap<String, Object>();
+		mockRequest = TestUtils.createMockRequest(mockAggregator, requestAttributes);
+		EasyMock.replay(mockConfig, mockAggregator, mockRequest);
+		features = new Features();
+		features.put("foo", true);
+		features.put("bar", false);
+		features.put("ab", true);
+		requestAttributes.put(IHttpTransport.FEATUREMAP_REQATTRNAME, features);
+	}
+
+	@Test
+	public void testGenerateKeyAllFeatures() {
+		FeatureSetCacheKeyGenerator keyGen = new FeatureSetCacheKeyGenerator(null, false);
+		Assert.assertEquals("has{ab,!bar,foo}", keyGen.generateKey(mockRequest));
+
+		// sorted feature names are recomputed when the features change
+		features.put("baz", false);
+		Assert.assertEquals("has{ab,!bar,!baz,foo}", keyGen.generateKey(mockRequest));
+		features.remove("ab");
+		Assert.assertEquals("has{!bar,!baz,foo}", keyGen.generateKey(mockRequest));
+
+		requestAttributes.remove(IHttpTransport.FEATUREMAP_REQATTRNAME);
+		Assert.assertEquals("has{}", keyGen.generateKey(mockRequest));
+	}
+
+	@Test
+	public void testGenerateKeyDependentFeatures() {
+		FeatureSetCacheKeyGenerator keyGen = new FeatureSetCacheKeyGenerator(Arrays.asList(new String[]{"foo", "bar", "undef"}), false);
+		Assert.assertEquals("has{!bar,foo}", keyGen.generateKey(mockRequest));
+
+		coerceUndefinedToFalse = true;
+		Assert.assertEquals("has{!bar,foo,!undef}", keyGen.generateKey(mockRequest));
+
+		keyGen = new FeatureSetCacheKeyGenerator(Arrays.asList(new String[]{"undef"}), false);
+		Assert.assertEquals("has{!undef}", keyGen.generateKey(mockRequest));
+		coerceUndefinedToFalse = false;
+		Assert.assertEquals("has{}", keyGen.generateKey(mockRequest));
+	}
+
+	@Test
+	public void testSortedFeatureNames() {
+		String[] names = features.sortedFeatureNames();
+		Assert.assertArrayEquals(new String[]{"ab", "bar", "foo"}, names);
+		Assert.assertSame(names, features.sortedFeatureNames());
+		features.put("a", true);
+		Assert.assertArrayEquals(new String[]{"a", "ab", "bar", "foo"}, features.sortedFeatureNames());
+	}
+}
@@ -42,7 +42,12 @@ import java.net.URI;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
+import javax.servlet.AsyncContext;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
@@ -449,6 +454,117 @@ public class AbstractAggregatorImplTest {
 		EasyMock.verify(resp);
 	}
 
+	@Test
+	public void testProcessLayerRequest_async() throws Exception {
+		final IOptions mockOptions = EasyMock.createMock(IOptions.class);
+		EasyMock.expect(mockOptions.getOption(IOptions.ENABLE_ASYNC_REQUESTS)).andReturn("true").anyTimes();
+		final MutableObject<Thread> processingThread = new MutableObject<Thread>();
+		final MutableObject<HttpServletRequest> processingRequest = new MutableObject<HttpServletRequest>();
+		@SuppressWarnings("serial")
+		TestAggregatorImpl testAggregator = new TestAggregatorImpl() {
+			@Override public IOptions getOptions() { return mockOptions; }
+			@Override
+			protected void processAggregatorRequest(HttpServletRequest req, HttpServletResponse resp) {
+				processingThread.setValue(Thread.currentThread());
+				processingRequest.setValue(getCurrentRequest());
+			}
+		};
+		HttpServletRequest req = EasyMock.createMock(HttpServletRequest.class);
+		HttpServletResponse resp = EasyMock.createMock(HttpServletResponse.class);
+		AsyncContext asyncContext = EasyMock.createMock(AsyncContext.class);
+		final CountDownLatch completed = new CountDownLatch(1);
+		EasyMock.expect(req.isAsyncSupported()).andReturn(true).once();
+		EasyMock.expect(req.isAsyncStarted()).andReturn(false).once();
+		EasyMock.expect(req.startAsync(req, resp)).andReturn(asyncContext).once();
+		asyncContext.setTimeout(0);
+		EasyMock.expectLastCall().once();
+		asyncContext.complete();
+		EasyMock.expectLastCall().andAnswer(new IAnswer<Object>() {
+			@Override public Object answer() throws Throwable {
+				completed.countDown();
+				return null;
+			}
+		}).once();
+		EasyMock.replay(mockOptions, req, resp, asyncContext);
+
+		// The request is processed on a request executor thread and the async context is completed
+		testAggregator.processLayerRequest(req, resp);
+		Assert.assertTrue(completed.await(10, TimeUnit.SECONDS));
+		EasyMock.verify(req, resp, asyncContext);
+		Assert.assertNotNull(processingThread.getValue());
+		Assert.assertNotSame(Thread.currentThread(), processingThread.getValue());
+		Assert.assertSame(req, processingRequest.getValue());
+		Assert.assertNull(testAggregator.getCurrentRequest());
+
+		// If the container doesn't support async processing, then the request is processed
+		// on the calling thread
+		processingThread.setValue(null);
+		EasyMock.reset(req);
+		EasyMock.expect(req.isAsyncSupported()).andReturn(false).once();
+		EasyMock.replay(req);
+		testAggregator.processLayerRequest(req, resp);
+		EasyMock.verify(req);
+		Assert.assertSame(Thread.currentThread(), processingThread.getValue());
+		Assert.assertNull(testAggregator.getCurrentRequest());
+
+		testAggregator.getRequestExecutor().shutdown();
+	}
+
+	@Test
+	public void testProcessLayerRequest_rejected() throws Exception {
+		final IOptions mockOptions = EasyMock.createMock(IOptions.class);
+		EasyMock.expect(mockOptions.getOption(IOptions.ENABLE_ASYNC_REQUESTS)).andReturn("true").anyTimes();
+		@SuppressWarnings("serial")
+		TestAggregatorImpl testAggregator = new TestAggregatorImpl() {
+			@Override public IOptions getOptions() { return mockOptions; }
+			@Override
+			protected ExecutorService newRequestExecutor() {
+				// Simulate an aggregator that has been shut down
+				ExecutorService executor = Executors.newSingleThreadExecutor();
+				executor.shutdown();
+				return executor;
+			}
+			@Override
+			protected void processAggregatorRequest(HttpServletRequest req, HttpServletResponse resp) {
+				Assert.fail("Request should not be processed");
+			}
+		};
+		HttpServletRequest req = EasyMock.createMock(HttpServletRequest.class);
+		HttpServletResponse resp = EasyMock.createMock(HttpServletResponse.class);
+		AsyncContext asyncContext = EasyMock.createMock(AsyncContext.class);
+		EasyMock.expect(req.isAsyncSupported()).andReturn(true).once();
+		EasyMock.expect(req.isAsyncStarted()).andReturn(false).once();
+		EasyMock.expect(req.startAsync(req, resp)).andReturn(asyncContext).once();
+		asyncContext.setTimeout(0);
+		EasyMock.expectLastCall().once();
+		resp.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+		EasyMock.expectLastCall().once();
+		asyncContext.complete();
+		EasyMock.expectLastCall().once();
+		EasyMock.replay(mockOptions, req, resp, asyncContext);
+
+		testAggregator.processLayerRequest(req, resp);
+		EasyMock.verify(req, resp, asyncContext);
+	}
+
+	@Test
+	public void testGetRequestPoolSize() throws Exception {
+		TestAggregatorImpl testAggregator = new TestAggregatorImpl();
+		Assert.assertEquals(AbstractAggregatorImpl.DEFAULT_REQUESTPOOLSIZE, testAggregator.getRequestPoolSize());
+		testAggregator.initParams = new InitParams(
+				Arrays.asList(new InitParam[] {
+					new InitParam(InitParams.REQUESTPOOLSIZE_INITPARAM, "5", testAggregator)
+				})
+		);
+		Assert.assertEquals(5, testAggregator.getRequestPoolSize());
+		testAggregator.initParams = new InitParams(
+				Arrays.asList(new InitParam[] {
+					new InitParam(InitParams.REQUESTPOOLSIZE_INITPARAM, "0", testAggregator)
+				})
+		);
+		Assert.assertEquals(1, testAggregator.getRequestPoolSize());
+	}
+
 
 	@SuppressWarnings("serial")
 	public class TestAggregatorImpl extends AbstractAggregatorImpl {
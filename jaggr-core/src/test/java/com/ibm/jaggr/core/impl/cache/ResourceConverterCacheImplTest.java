@@ -109,6 +109,7 @@ public class ResourceConverterCacheImplTest {
 		expect(mockExt.getInstance()).andReturn(new FileResourceFactory()).anyTimes();
 		expect(mockExt.getAttribute("scheme")).andReturn("file").anyTimes();
 		expect(mockAggregator.getCacheManager()).andReturn(mockCacheMgr).anyTimes();
+		expect(mockAggregator.getInitParams()).andReturn(null).anyTimes();
 		expect(mockAggregator.getExtensions(IResourceFactoryExtensionPoint.ID)).andReturn(Arrays.asList(new IAggregatorExtension[]{mockExt}));
 		expect(mockCacheMgr.getCacheDir()).andReturn(cacheDir).anyTimes();
 		mockCacheMgr.deleteFileDelayed(isA(String.class));
@@ -0,0 +1,147 @@
+/*
+ * (C) Copyright IBM Corp. 2012, 2016 All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ibm.jaggr.core.impl.cache;
+
+import com.ibm.jaggr.core.IAggregator;
+import com.ibm.jaggr.core.InitParams;
+import com.ibm.jaggr.core.InitParams.InitParam;
+
+import org.easymock.EasyMock;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class WeightedCacheImplTest {
+
+	static final long MB = 1024 * 1024;
+
+	@SuppressWarnings("serial")
+	static class TestCache extends WeightedCacheImpl<Long> {
+		final List<String> evicted = new ArrayList<String>();
+
+		TestCache() {
+			super("testcapacity_mb", 1);
+		}
+
+		void put(String key, Long size) {
+			cacheMap.put(key, size);
+		}
+
+		@Override
+		protected long weightOf(Long entry) {
+			return entry;
+		}
+
+		@Override
+		protected void evicted(String key, Long entry) {
+			evicted.add(key);
+		}
+	}
+
+	private TestCache cache;
+
+	@Before
+	public void setUp() throws Exception {
+		cache = new TestCache();
+	}
+
+	@Test
+	public void testEviction() throws Exception {
+		Assert.assertEquals(MB, cache.getCapacity());
+		cache.put("a", MB/4);
+		cache.put("b", MB/4);
+		cache.put("c", MB/4);
+		Assert.assertEquals(3*MB/4, cache.getWeightedSize());
+		// Access "a" so that "b" is the least recently used entry
+		Assert.assertNotNull(cache.get("a"));
+		cache.put("d", MB/2);
+		Assert.assertEquals(Arrays.asList("b"), cache.evicted);
+		Assert.assertEquals(1, cache.getEvictions());
+		Assert.assertFalse(cache.contains("b"));
+		Assert.assertEquals(MB, cache.getWeightedSize());
+
+		// Entries that are no longer in the cache aren't re-weighed
+		Assert.assertTrue(cache.reweigh("a", MB/4));
+		Assert.assertFalse(cache.reweigh("b", MB/4));
+
+		// Zero weights are allowed
+		cache.put("e", 0L);
+		Assert.assertTrue(cache.contains("e"));
+	}
+
+	@Test
+	public void testSetAggregator() throws Exception {
+		IAggregator mockAggregator = EasyMock.createNiceMock(IAggregator.class);
+		EasyMock.expect(mockAggregator.getInitParams()).andReturn(new InitParams(Arrays.asList(
+				new InitParam("testcapacity_mb", "2")))).anyTimes();
+		EasyMock.replay(mockAggregator);
+		cache.put("a", MB/2);
+		cache.setAggregator(mockAggregator);
+		Assert.assertEquals(2*MB, cache.getCapacity());
+		cache.put("b", MB);
+		Assert.assertTrue(cache.evicted.isEmpty());
+
+		// Reducing the capacity evicts entries
+		mockAggregator = EasyMock.createNiceMock(IAggregator.class);
+		EasyMock.replay(mockAggregator);
+		cache.setAggregator(mockAggregator);
+		Assert.assertEquals(MB, cache.getCapacity());
+		Assert.assertEquals(Arrays.asList("a"), cache.evicted);
+	}
+
+	@Test
+	public void testStatistics() throws Exception {
+		cache.put("a", 1L);
+		cache.get("a");
+		cache.get("a");
+		cache.get("b");
+		Assert.assertEquals(
+				"TestCache: entries = 1, size = 1 of 1048576 bytes, hits = 2, misses = 1 (66% hit rate), evictions = 0",
+				cache.toString());
+		StringWriter writer = new StringWriter();
+		cache.dump(writer, null);
+		Assert.assertTrue(writer.toString().contains(cache.toString()));
+	}
+
+	@Test
+	public void testSerialization() throws Exception {
+		cache.put("a", MB/2);
+		cache.get("a");
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		ObjectOutputStream os = new ObjectOutputStream(bos);
+		os.writeObject(cache);
+		os.close();
+		ObjectInputStream is = new ObjectInputStream(new ByteArrayInputStream(bos.toByteArray()));
+		TestCache deserialized = (TestCache)is.readObject();
+		is.close();
+		Assert.assertEquals(Long.valueOf(MB/2), deserialized.get("a"));
+		Assert.assertEquals(MB/2, deserialized.getWeightedSize());
+		// The eviction listener is bound to the deserialized cache
+		deserialized.put("b", MB);
+		Assert.assertEquals(1, deserialized.getEvictions());
+		Assert.assertEquals(0, cache.getEvictions());
+	}
+}
@@ -0,0 +1,106 @@
+/*
+ * (C) Copyright IBM Corp. 2012, 2016 All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.jaggr.core.impl.config;
+
+import com.ibm.jaggr.core.config.IConfig.IAlias;
+import com.ibm.jaggr.core.config.IConfig.IPackage;
+import com.ibm.jaggr.core.config.IConfig.Location;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+public class ConfigIndexTest {
+
+	private static IAlias newAlias(final Object pattern, final Object replacement) {
+		return new IAlias() {
+			public Object getPattern() { return pattern; }
+			public Object getReplacement() { return replacement; }
+		};
+	}
+
+	private static IPackage newPackage(final String name, final Location location) {
+		return new IPackage() {
+			public String getName() { return name; }
+			public Location getLocation() { return location; }
+			public String getMain() { return name + "/main"; }
+		};
+	}
+
+	@Test
+	public void testFindLocation() throws Exception {
+		Location foo = new Location(new URI("file:/foo/")), fooBar = new Location(new URI("file:/foobar/")),
+				pkg = new Location(new URI("file:/pkg/")), slash = new Location(new URI("file:/slash/")),
+				path = new Location(new URI("file:/path/"));
+		Map<String, Location> paths = new HashMap<String, Location>();
+		paths.put("foo", foo);
+		paths.put("foo/bar", fooBar);
+		paths.put("dir/", slash);
+		paths.put("dup", path);
+		Map<String, IPackage> packages = new HashMap<String, IPackage>();
+		packages.put("pkg", newPackage("pkg", pkg));
+		packages.put("dup", newPackage("dup", pkg));
+		ConfigIndex index = new ConfigIndex(paths, packages, Collections.<IAlias>emptyList());
+
+		Map.Entry<String, Location> match = index.findLocation("foo/bar/baz");
+		Assert.assertEquals("foo/bar", match.getKey());
+		Assert.assertSame(fooBar, match.getValue());
+		Assert.assertEquals("foo", index.findLocation("foo/barx/baz").getKey());
+		Assert.assertEquals("foo", index.findLocation("foo/x").getKey());
+		Assert.assertNull(index.findLocation("foox/y"));
+		Assert.assertNull(index.findLocation("foo"));
+		Assert.assertSame(pkg, index.findLocation("pkg/a/b").getValue());
+		Assert.assertEquals("dir/", index.findLocation("dir/x").getKey());
+		Assert.assertEquals("dir/", index.findLocation("dir/").getKey());
+		// paths take precedence over packages
+		Assert.assertSame(path, index.findLocation("dup/x").getValue());
+		Assert.assertNull(index.findLocation("/foo"));
+		Assert.assertNull(index.findLocation(""));
+	}
+
+	@Test
+	public void testFindAlias() throws Exception {
+		IAlias a1 = newAlias("a", "x"), a2 = newAlias(Pattern.compile("^a"), "y"),
+				a3 = newAlias("a", "z"), a4 = newAlias(Pattern.compile("b$"), "w");
+		List<IAlias> aliases = Arrays.asList(a1, a2, a3, a4);
+		ConfigIndex index = new ConfigIndex(Collections.<String, Location>emptyMap(), Collections.<String, IPackage>emptyMap(), aliases);
+		// last matching alias wins
+		Assert.assertSame(a3, index.findAlias("a"));
+		Assert.assertSame(a2, index.findAlias("ab/c"));
+		Assert.assertSame(a4, index.findAlias("ab"));
+		Assert.assertNull(index.findAlias("c"));
+	}
+
+	@Test
+	public void testClearOptionDependentResults() throws Exception {
+		ConfigIndex index = new ConfigIndex(Collections.<String, Location>emptyMap(), Collections.<String, IPackage>emptyMap(), null);
+		URI uri = new URI("file:/foo/a.js");
+		index.aliasCache.put("a", "b");
+		index.resolveCache.put("11a", "b");
+		index.locationCache.put("1a", uri);
+		index.clearOptionDependentResults();
+		Assert.assertNull(index.aliasCache.get("a", null, null));
+		Assert.assertNull(index.resolveCache.get("11a", null, null));
+		Assert.assertSame(uri, index.locationCache.get("1a", null, null));
+	}
+}
@@ -0,0 +1,93 @@
+/*
+ * (C) Copyright IBM Corp. 2012, 2016 All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.jaggr.core.impl.config;
+
+import com.ibm.jaggr.core.util.Features;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+public class ResolutionCacheTest {
+
+	@Test
+	public void testGetPut() throws Exception {
+		ResolutionCache<String> cache = new ResolutionCache<String>("test", 100);
+		Features features = new Features();
+		Set<String> deps = new HashSet<String>();
+		Assert.assertNull(cache.get("a", features, deps));
+		cache.put("a", "b");
+		Assert.assertEquals("b", cache.get("a", features, deps));
+		Assert.assertTrue(deps.isEmpty());
+
+		// Feature dependent results are reused only for the same values of the queried features
+		features.put("f1", true);
+		cache.put("c", "d1", features, new HashSet<String>(Arrays.asList("f1", "f2")));
+		Assert.assertEquals("d1", cache.get("c", features, deps));
+		Assert.assertEquals(new HashSet<String>(Arrays.asList("f1", "f2")), deps);
+		Features other = new Features();
+		other.put("f1", true);
+		other.put("f3", true);
+		Assert.assertEquals("d1", cache.get("c", other, null));
+		other.put("f2", false);
+		Assert.assertNull(cache.get("c", other, null));
+		cache.put("c", "d2", other, new HashSet<String>(Arrays.asList("f1", "f2")));
+		Assert.assertEquals("d2", cache.get("c", other, null));
+		Assert.assertEquals("d1", cache.get("c", features, null));
+		other.put("f1", false);
+		Assert.assertNull(cache.get("c", other, null));
+
+		// Results that don't depend on features are stored as is
+		cache.put("e", "f", features, new HashSet<String>());
+		Assert.assertEquals("f", cache.get("e", null, null));
+
+		cache.clear();
+		Assert.assertEquals(0, cache.size());
+		Assert.assertNull(cache.get("a", features, null));
+		Assert.assertNull(cache.get("c", features, null));
+	}
+
+	@Test
+	public void testMaxVariants() throws Exception {
+		ResolutionCache<String> cache = new ResolutionCache<String>("test", 100);
+		Set<String> queried = new HashSet<String>(Arrays.asList("f"));
+		Features first = new Features();
+		first.put("f", false);
+		cache.put("a", "first", first, queried);
+		Features features = new Features();
+		features.put("f", true);
+		for (int i = 0; i < ResolutionCache.MAX_VARIANTS; i++) {
+			cache.put("a", "r" + i, features, queried);
+		}
+		// newest variant wins and the oldest is dropped
+		Assert.assertEquals("r" + (ResolutionCache.MAX_VARIANTS-1), cache.get("a", features, null));
+		Assert.assertNull(cache.get("a", first, null));
+	}
+
+	@Test
+	public void testToString() throws Exception {
+		ResolutionCache<String> cache = new ResolutionCache<String>("test", 100);
+		cache.put("a", "b");
+		cache.get("a", null, null);
+		cache.get("a", null, null);
+		cache.get("a", null, null);
+		cache.get("c", null, null);
+		Assert.assertEquals("test: entries = 1, hits = 3, misses = 1 (75% hit rate)", cache.toString());
+	}
+}
@@ -19,6 +19,7 @@ package com.ibm.jaggr.core.impl.deps;
 import com.ibm.jaggr.core.util.BooleanFormula;
 import com.ibm.jaggr.core.util.BooleanTerm;
 import com.ibm.jaggr.core.util.Features;
+import com.ibm.jaggr.core.util.FormulaCache;
 
 import org.junit.After;
 import org.junit.AfterClass;
@@ -298,4 +299,61 @@ public class BooleanFormulaTest {
 
 	}
 
+	@Test
+	public void testSimplifyBDD() {
+		FormulaCache.getInstance().clear();
+		try {
+			BooleanFormula expression =
+					new BooleanFormula("(A*B)+(A*!B)+(C*D*E)+(C*D*!E*F)+(G*!H)+(G*H*A)");
+			Assert.assertEquals(new BooleanFormula("A+(C*D*E)+(C*D*F)+(G*!H)"), expression.simplify(true));
+
+			expression = new BooleanFormula("(A*B*C*D*E*F)+(!A*B*C*D*E*F)+(!B*C*D*E*F)+(!C*D*E*F)+(!D*E*F)+(!E*F)+!F");
+			Assert.assertTrue(expression.simplify(true).isTrue());
+
+			expression = new BooleanFormula("(A*!A*B*C*D*E*F)+(B*!B*C*D*E*F)");
+			Assert.assertTrue(expression.simplify(true).isFalse());
+
+			// The result should be logically equivalent to the Quine-McCluskey result
+			String[] formulas = new String[] {
+					"(A*B*!C)+(!A*D)+(B*D*E)+(!C*!E*F)+(A*F*G)+(!B*!G*H)+(C*H)+(!D*!H*A)",
+					"(A*!B*C)+(A*B*C)+(!A*D*!E)+(!A*D*E)+(F*G*!H)+(!F*G*!H)+(B*!C*H)",
+			};
+			for (String str : formulas) {
+				FormulaCache.getInstance().clear();
+				BooleanFormula qm = new BooleanFormula(str).simplify(false);
+				FormulaCache.getInstance().clear();
+				BooleanFormula bdd = new BooleanFormula(str).simplify(true);
+				assertEquivalent(new BooleanFormula(str), bdd, "ABCDEFGH");
+				assertEquivalent(qm, bdd, "ABCDEFGH");
+			}
+		} finally {
+			FormulaCache.getInstance().clear();
+		}
+	}
+
+	@Test
+	public void testSimplifyManyVars() {
+		// More variables than Quine-McCluskey can handle
+		StringBuffer sb = new StringBuffer();
+		for (int i = 0; i < 40; i++) {
+			sb.append(i > 0 ? "+" : "").append("(v").append(i).append("*x)+(v").append(i).append("*!x)");
+		}
+		StringBuffer expected = new StringBuffer();
+		for (int i = 0; i < 40; i++) {
+			expected.append(i > 0 ? "+" : "").append("v").append(i);
+		}
+		Assert.assertEquals(new BooleanFormula(expected.toString()), new BooleanFormula(sb.toString()).simplify());
+	}
+
+	private void assertEquivalent(BooleanFormula f1, BooleanFormula f2, String vars) {
+		for (int i = 0; i < 1 << vars.length(); i++) {
+			Features features = new Features();
+			for (int j = 0; j < vars.length(); j++) {
+				features.put(vars.substring(j, j+1), (i & (1 << j)) != 0);
+			}
+			Assert.assertEquals(features.toString(),
+					new BooleanFormula(f1).resolveWith(features).isTrue(),
+					new BooleanFormula(f2).resolveWith(features).isTrue());
+		}
+	}
 }
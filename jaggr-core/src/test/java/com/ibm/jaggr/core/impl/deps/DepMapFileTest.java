@@ -0,0 +1,117 @@
+/*
+ * (C) Copyright IBM Corp. 2012, 2016 All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ibm.jaggr.core.impl.deps;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import com.ibm.jaggr.core.test.TestUtils;
+
+import com.google.common.io.Files;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.ObjectOutputStream;
+import java.net.URI;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class DepMapFileTest {
+	File tmpdir = null;
+
+	@Before
+	public void setup() throws Exception {
+		tmpdir = Files.createTempDir();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		if (tmpdir != null) {
+			TestUtils.deleteRecursively(tmpdir);
+			tmpdir = null;
+		}
+	}
+
+	@Test
+	public void testRoundTrip() throws Exception {
+		URI p1Uri = new URI("file:/c:/p1/");
+		DepTreeNode p1 = new DepTreeNode("", p1Uri);
+		DepTreeNode a = p1.createOrGet("a", new URI("file:/c:/p1/a.js"));
+		a.setDependencies(new String[]{"./b", "dojo/has"}, new String[]{"dojo/has"}, new String[]{"foo"}, 100, 50);
+		DepTreeNode b = p1.createOrGet("x/b", new URI("file:/c:/p1/x/b.js"));
+		b.setDependencies(new String[]{"dojo/has"}, null, new String[0], 200, 150);
+		DepTreeNode css = p1.createOrGet("x/c.css", new URI("file:/c:/p1/x/c.css"));
+		css.setDependencies(null, null, null, 300, 300);
+
+		DepTree tree = new DepTree();
+		tree.depMap = new ConcurrentHashMap<URI, DepTreeNode>();
+		tree.depMap.put(p1Uri, p1);
+		tree.rawConfig = "{paths:{p1:'p1'}}";
+		tree.cacheBust = null;
+		tree.stamp = 12345;
+
+		File cacheFile = new File(tmpdir, "depmap.cache");
+		tree.save(cacheFile);
+		DepTree result = DepMapFile.read(cacheFile);
+
+		assertEquals(12345, result.stamp);
+		assertEquals("{paths:{p1:'p1'}}", result.rawConfig);
+		assertNull(result.cacheBust);
+		assertEquals(1, result.depMap.size());
+		DepTreeNode root = result.depMap.get(p1Uri);
+		assertEquals(p1Uri, root.getURI());
+
+		DepTreeNode node = root.getDescendent("a");
+		assertSame(root, node.getParent());
+		assertArrayEquals(new String[]{"./b", "dojo/has"}, node.getDefineDepArray());
+		assertArrayEquals(new String[]{"dojo/has"}, node.getRequireDepArray());
+		assertArrayEquals(new String[]{"foo"}, node.getDependentFeatures());
+		assertEquals(100, node.lastModified());
+		assertEquals(50, node.lastModifiedDep());
+		assertEquals(new URI("file:/c:/p1/a.js"), node.getURI());
+
+		node = root.getDescendent("x/b");
+		assertNull(node.getRequireDepArray());
+		assertArrayEquals(new String[0], node.getDependentFeatures());
+		assertEquals(200, node.lastModified());
+		assertEquals(150, node.lastModifiedDep());
+		// Duplicate strings share the same instance
+		assertSame(node.getDefineDepArray()[0], root.getDescendent("a").getRequireDepArray()[0]);
+
+		node = root.getDescendent("x");
+		assertNull(node.getURI());
+		assertEquals(-1, node.lastModified());
+		assertNull(node.getDefineDepArray());
+
+		assertEquals(300, root.getDescendent("x/c.css").lastModified());
+	}
+
+	@Test
+	public void testUnrecognizedFormat() throws Exception {
+		// Files written using Java serialization by previous versions are ignored
+		File cacheFile = new File(tmpdir, "depmap.cache");
+		ObjectOutputStream os = new ObjectOutputStream(new FileOutputStream(cacheFile));
+		os.writeObject(new DepTreeNode("foo", null));
+		os.close();
+		assertNull(DepMapFile.read(cacheFile));
+	}
+}
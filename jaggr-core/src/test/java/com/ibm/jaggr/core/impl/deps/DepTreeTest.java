@@ -28,18 +28,29 @@ import com.ibm.jaggr.core.modulebuilder.ModuleBuild;
 import com.ibm.jaggr.core.resource.IResource;
 import com.ibm.jaggr.core.test.TestUtils;
 
+import com.google.common.io.Files;
+
 import org.easymock.EasyMock;
 import org.easymock.IAnswer;
 import org.junit.Assert;
 import org.junit.Test;
 
 import java.io.File;
+import java.lang.reflect.AccessibleObject;
+import java.net.URI;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import javax.servlet.http.HttpServletRequest;
 
@@ -85,6 +96,63 @@ public class DepTreeTest {
 		Assert.assertEquals(expected, exts);
 	}
 
+	@Test
+	public void testParallelScan() throws Exception {
+		File dir = Files.createTempDir();
+		try {
+			TestUtils.createTestFiles(dir);
+			IAggregator mockAggregator = TestUtils.createMockAggregator(configRef, dir);
+			EasyMock.replay(mockAggregator);
+
+			// Scan the folders one at a time on the calling thread
+			Map<String, String> serial = scan(mockAggregator, dir.toURI(), new Executor() {
+				@Override
+				public void execute(Runnable command) {
+					command.run();
+				}
+			});
+			Assert.assertTrue(serial.get("p2/p1/p1/b").startsWith("[./c]"));
+			Assert.assertEquals("nullnullnull", serial.get("p1/hello.txt"));
+
+			// Scan the folders concurrently and make sure the results are the same
+			ExecutorService executor = Executors.newFixedThreadPool(4);
+			try {
+				for (int i = 0; i < 10; i++) {
+					Assert.assertEquals(serial, scan(mockAggregator, dir.toURI(), executor));
+				}
+			} finally {
+				executor.shutdown();
+			}
+		} finally {
+			TestUtils.deleteRecursively(dir);
+		}
+	}
+
+	/*
+	 * Scans the folder using the specified executor and returns a map of the
+	 * path names of the nodes in the resulting tree to their dependencies
+	 */
+	private Map<String, String> scan(IAggregator aggregator, URI uri, Executor executor) throws Exception {
+		DepTreeNode root = new DepTreeNode("", uri);
+		DepTreeBuilder builder = new DepTreeBuilder(aggregator, executor, uri, root, null,
+				Collections.singleton("txt"), new HashMap<AccessibleObject, List<Object>>());
+		builder.start();
+		Assert.assertEquals(12, builder.await().parseCount);
+		Map<String, String> result = new TreeMap<String, String>();
+		flatten(root, result);
+		return result;
+	}
+
+	private void flatten(DepTreeNode node, Map<String, String> result) {
+		result.put(node.getFullPathName(),
+				Arrays.toString(node.getDefineDepArray()) +
+				Arrays.toString(node.getRequireDepArray()) +
+				Arrays.toString(node.getDependentFeatures()));
+		for (DepTreeNode child : node.getChildren().values()) {
+			flatten(child, result);
+		}
+	}
+
 	class DummyModuleBuilder implements IModuleBuilder {
 		@Override public ModuleBuild build(String mid, IResource resource, HttpServletRequest request, List<ICacheKeyGenerator> keyGens) throws Exception {	return null; }
 		@Override public List<ICacheKeyGenerator> getCacheKeyGenerators(IAggregator aggregator) { return null; }
@@ -34,9 +34,7 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.ObjectOutputStream;
 import java.net.URI;
 import java.util.Arrays;
 import java.util.Collection;
@@ -167,10 +165,7 @@ public class DependenciesTest extends EasyMock {
 		String configJson = "{paths: {p1Alias:'p1', p2Alias:'p2'}}";
 		configRef.set(new ConfigImpl(mockAggregator, tmpdir.toURI(), configJson));
 		deps = new TestDependenciesWrapper(depMap, configRef.get());
-		ObjectOutputStream os;
-		os = new ObjectOutputStream(new FileOutputStream(cacheFile));
-		os.writeObject(deps);
-		os.close();
+		deps.save(cacheFile);
 
 		deps = new TestDependenciesWrapper(tmpdir, mockAggregator, false, false);
 
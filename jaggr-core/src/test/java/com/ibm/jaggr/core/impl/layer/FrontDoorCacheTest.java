@@ -0,0 +1,110 @@
+/*
+ * (C) Copyright IBM Corp. 2012, 2016 All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.jaggr.core.impl.layer;
+
+import com.ibm.jaggr.core.cache.ICache;
+import com.ibm.jaggr.core.cachekeygenerator.ICacheKeyGenerator;
+import com.ibm.jaggr.core.layer.ILayer;
+import com.ibm.jaggr.core.test.TestUtils;
+
+import org.easymock.EasyMock;
+import org.junit.Assert;
+import org.junit.Test;
+import org.powermock.reflect.Whitebox;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+
+public class FrontDoorCacheTest {
+
+	private HttpServletRequest createRequest(String pathInfo, String query, Cookie[] cookies, Map<String, String> headers, Map<String, Object> attributes) {
+		HttpServletRequest request = TestUtils.createMockRequest(null, attributes, null, cookies, headers);
+		EasyMock.expect(request.getPathInfo()).andReturn(pathInfo).anyTimes();
+		EasyMock.expect(request.getQueryString()).andReturn(query).anyTimes();
+		EasyMock.replay(request);
+		return request;
+	}
+
+	@Test
+	public void testGetKey() throws Exception {
+		Map<String, String> headers = new HashMap<String, String>();
+		String key = FrontDoorCache.getKey(createRequest("/layer", "modules=a,b", null, headers, null));
+		Assert.assertEquals(key, FrontDoorCache.getKey(createRequest("/layer", "modules=a,b", null, headers, null)));
+		Assert.assertFalse(key.equals(FrontDoorCache.getKey(createRequest("/layer", "modules=a,c", null, headers, null))));
+
+		// Accept-Encoding, Accept-Language and the has cookie are part of the key
+		headers.put("Accept-Encoding", "gzip");
+		String gzipKey = FrontDoorCache.getKey(createRequest("/layer", "modules=a,b", null, headers, null));
+		Assert.assertFalse(key.equals(gzipKey));
+		headers.put("Accept-Language", "fr");
+		String langKey = FrontDoorCache.getKey(createRequest("/layer", "modules=a,b", null, headers, null));
+		Assert.assertFalse(gzipKey.equals(langKey));
+		Cookie[] cookies = new Cookie[]{new Cookie("foo", "bar"), new Cookie("has", "a!b")};
+		String cookieKey = FrontDoorCache.getKey(createRequest("/layer", "modules=a,b", cookies, headers, null));
+		Assert.assertFalse(langKey.equals(cookieKey));
+
+		// Source map requests are not eligible
+		Assert.assertNull(FrontDoorCache.getKey(createRequest("/layer" + ILayer.SOURCEMAP_RESOURCE_PATH, "modules=a,b", null, headers, null)));
+	}
+
+	@Test
+	public void testPutAndGet() throws Exception {
+		ICache cache1 = EasyMock.createNiceMock(ICache.class), cache2 = EasyMock.createNiceMock(ICache.class);
+		LayerImpl layer = new LayerImpl("layerKey", 1);
+		Map<String, ICacheKeyGenerator> keyGens = new HashMap<String, ICacheKeyGenerator>();
+		Whitebox.setInternalState(layer, "_cacheKeyGenerators", keyGens);
+		CacheEntry entry = new CacheEntry(1, "layerKey", 0);
+
+		FrontDoorCache cache = new FrontDoorCache();
+		Map<String, Object> attributes = new HashMap<String, Object>();
+		HttpServletRequest request = createRequest("/layer", "modules=a", null, null, attributes);
+
+		// Nothing is added if the layer didn't provide an entry
+		cache.put("key", cache1, request, 1000, "public");
+		Assert.assertEquals(0, cache.size());
+
+		layer.setFrontDoorEntry(request, entry, keyGens);
+		cache.put("key", cache1, request, 1000, "public");
+		FrontDoorCache.Entry result = cache.get("key", cache1);
+		Assert.assertNotNull(result);
+		Assert.assertEquals(1000, result.getLastModified());
+		Assert.assertEquals("public", result.getCacheControl());
+		Assert.assertNull(cache.get("otherKey", cache1));
+
+		// Entries are discarded when the key generators change
+		Whitebox.setInternalState(layer, "_cacheKeyGenerators", new HashMap<String, ICacheKeyGenerator>());
+		Assert.assertNull(cache.get("key", cache1));
+		Assert.assertEquals(0, cache.size());
+		Whitebox.setInternalState(layer, "_cacheKeyGenerators", keyGens);
+
+		// Entries are discarded when the layer build is deleted
+		cache.put("key", cache1, request, 1000, "public");
+		Assert.assertNotNull(cache.get("key", cache1));
+		entry.delete(null);
+		Assert.assertNull(cache.get("key", cache1));
+
+		// Entries are discarded when the aggregator cache is replaced
+		entry = new CacheEntry(1, "layerKey", 0);
+		layer.setFrontDoorEntry(request, entry, keyGens);
+		cache.put("key", cache1, request, 1000, "public");
+		Assert.assertEquals(1, cache.size());
+		Assert.assertNull(cache.get("key", cache2));
+		Assert.assertEquals(0, cache.size());
+	}
+}
@@ -79,6 +79,7 @@ public class LayerCacheTest {
 	};
 
 	static int maxCapacity = 10;
+	static int maxLayerEntries = 100;
 
 	@BeforeClass
 	public static void setUpBeforeClass() throws Exception {
@@ -287,6 +288,70 @@ public class LayerCacheTest {
 		Assert.assertEquals(50 * 1024 * 1024, layerCache.getMaxCapacity());
 	}
 
+	@Test
+	public void testGetMaxLayerEntries() throws Exception {
+		List<InitParams.InitParam> initParams = new LinkedList<InitParams.InitParam>();
+		createMockObjects(initParams);
+		LayerCacheImpl layerCache = new LayerCacheImpl(mockAggregator);
+		Assert.assertEquals(LayerCacheImpl.DEFAULT_MAXLAYERCACHEENTRIES, layerCache.getMaxLayerEntries());
+
+		initParams.add(new InitParams.InitParam(InitParams.MAXLAYERCACHEENTRIES_INITPARAM, "50"));
+		layerCache = new LayerCacheImpl(mockAggregator);
+		Assert.assertEquals(50, layerCache.getMaxLayerEntries());
+	}
+
+	@Test
+	public void testLayerEviction() throws Exception {
+		maxLayerEntries = 2;
+		try {
+			createMockObjects(null);
+			LayerCacheImpl layerCache = (LayerCacheImpl)mockAggregator.getCacheManager().getCache().getLayers();
+			requestLayer(layerCache, "p1/a");
+			requestLayer(layerCache, "p1/b");
+			Assert.assertEquals(2, layerCache.size());
+			Assert.assertEquals(2, layerCache.getLayerBuildMap().size());
+
+			// The layer map is full, so a new layer is not admitted the first time it's requested
+			String result = requestLayer(layerCache, "p1/c");
+			Assert.assertTrue(result.contains("c.js"));
+			Assert.assertEquals(2, layerCache.size());
+			Assert.assertNull(layerCache.get("[p1/c]"));
+			Assert.assertEquals(2, layerCache.getLayerBuildMap().size());
+			Assert.assertEquals(1, layerCache.getNumLayersNotAdmitted());
+			Assert.assertEquals(0, layerCache.getNumLayerEvictions());
+
+			// The second request admits the layer, evicting the least recently used layer
+			// together with its builds
+			requestLayer(layerCache, "p1/c");
+			Assert.assertEquals(2, layerCache.size());
+			Assert.assertNotNull(layerCache.get("[p1/c]"));
+			Assert.assertNotNull(layerCache.get("[p1/b]"));
+			Assert.assertNull(layerCache.get("[p1/a]"));
+			Assert.assertEquals(1, layerCache.getNumLayersNotAdmitted());
+			Assert.assertEquals(1, layerCache.getNumLayerEvictions());
+			Assert.assertEquals(0, layerCache.getNumEvictions());
+			Assert.assertEquals(2, layerCache.getLayerBuildMap().size());
+			for (CacheEntry entry : layerCache.getLayerBuildMap().values()) {
+				Assert.assertFalse("[p1/a]".equals(entry.layerKey));
+			}
+		} finally {
+			maxLayerEntries = 100;
+		}
+	}
+
+	private String requestLayer(LayerCacheImpl layerCache, String module) throws IOException {
+		requestAttributes.clear();
+		MockRequestedModuleNames modules = new MockRequestedModuleNames();
+		modules.setModules(Arrays.asList(new String[]{module}));
+		requestAttributes.put(IHttpTransport.REQUESTEDMODULENAMES_REQATTRNAME, modules);
+		requestAttributes.put(IAggregator.AGGREGATOR_REQATTRNAME, mockAggregator);
+		ILayer layer = layerCache.getLayer(mockRequest);
+		InputStream in = layer.getInputStream(mockRequest, mockResponse);
+		Writer writer = new StringWriter();
+		CopyUtil.copy(in, writer);
+		return writer.toString();
+	}
+
 	private void createMockObjects(List<InitParams.InitParam> initParams) throws Exception {
 		final Map<String, String[]> testDepMap = TestUtils.createTestDepMap();
 		IAggregator easyMockAggregator = TestUtils.createMockAggregator(configRef, tmpdir, initParams, Proxy.class, null);
@@ -389,6 +454,11 @@ public class LayerCacheTest {
 			return LayerCacheTest.maxCapacity;
 		}
 
+		@Override
+		protected int getMaxLayerEntries(IAggregator aggregator) {
+			return LayerCacheTest.maxLayerEntries;
+		}
+
 		@Override
 		protected Weigher<CacheEntry> newWeigher() {
 			// All entries have a weight of 1
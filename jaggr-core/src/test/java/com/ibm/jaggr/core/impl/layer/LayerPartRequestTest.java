@@ -0,0 +1,86 @@
+/*
+ * (C) Copyright IBM Corp. 2012, 2016 All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.jaggr.core.impl.layer;
+
+import com.ibm.jaggr.core.BadRequestException;
+
+import org.easymock.EasyMock;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletRequest;
+
+public class LayerPartRequestTest {
+
+	private HttpServletRequest createRequest() {
+		HttpServletRequest request = EasyMock.createNiceMock(HttpServletRequest.class);
+		EasyMock.expect(request.getAttributeNames()).andReturn(Collections.enumeration(Arrays.asList("foo"))).anyTimes();
+		EasyMock.expect(request.getAttribute("foo")).andReturn("bar").anyTimes();
+		EasyMock.expect(request.getParameter("parts")).andReturn("2").anyTimes();
+		EasyMock.expect(request.getHeader("Accept-Language")).andReturn("fr").anyTimes();
+		EasyMock.expect(request.getHeader("Accept-Encoding")).andReturn("gzip").anyTimes();
+		EasyMock.expect(request.getDateHeader("If-Modified-Since")).andReturn(1000L).anyTimes();
+		EasyMock.replay(request);
+		return request;
+	}
+
+	@Test
+	public void testParameters() throws Exception {
+		LayerPartRequest request = new LayerPartRequest(createRequest(), "count=2&modules=a%2Cb&has=x&has=!y&empty");
+		Assert.assertEquals("count=2&modules=a%2Cb&has=x&has=!y&empty", request.getQueryString());
+		Assert.assertEquals("a,b", request.getParameter("modules"));
+		Assert.assertEquals("x", request.getParameter("has"));
+		Assert.assertArrayEquals(new String[]{"x", "!y"}, request.getParameterValues("has"));
+		Assert.assertEquals("", request.getParameter("empty"));
+		// parameters of the multi-layer request are not visible
+		Assert.assertNull(request.getParameter("parts"));
+		Map<String, String[]> params = request.getParameterMap();
+		Assert.assertEquals(Arrays.asList("count", "modules", "has", "empty"), Collections.list(request.getParameterNames()));
+		Assert.assertEquals(4, params.size());
+
+		try {
+			new LayerPartRequest(createRequest(), "modules=a%2");
+			Assert.fail();
+		} catch (BadRequestException expected) {
+		}
+	}
+
+	@Test
+	public void testAttributesAndHeaders() throws Exception {
+		HttpServletRequest wrapped = createRequest();
+		LayerPartRequest request = new LayerPartRequest(wrapped, "count=1&modules=a");
+		Assert.assertEquals("bar", request.getAttribute("foo"));
+		request.setAttribute("foo", "baz");
+		request.setAttribute("other", Boolean.TRUE);
+		Assert.assertEquals("baz", request.getAttribute("foo"));
+		Assert.assertEquals(Boolean.TRUE, request.getAttribute("other"));
+		request.setAttribute("other", null);
+		Assert.assertNull(request.getAttribute("other"));
+		request.removeAttribute("foo");
+		Assert.assertNull(request.getAttribute("foo"));
+		// attributes of the multi-layer request are unaffected
+		Assert.assertEquals("bar", wrapped.getAttribute("foo"));
+
+		Assert.assertEquals("fr", request.getHeader("Accept-Language"));
+		Assert.assertNull(request.getHeader("Accept-Encoding"));
+		Assert.assertFalse(request.getHeaders("accept-encoding").hasMoreElements());
+		Assert.assertEquals(-1, request.getDateHeader("If-Modified-Since"));
+	}
+}
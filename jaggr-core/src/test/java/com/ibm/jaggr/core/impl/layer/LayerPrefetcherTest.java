@@ -0,0 +1,87 @@
+/*
+ * (C) Copyright IBM Corp. 2012, 2016 All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.jaggr.core.impl.layer;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class LayerPrefetcherTest {
+
+	@Test
+	public void testPredictions() {
+		LayerPrefetcher prefetcher = new LayerPrefetcher(100, 1);
+		List<String> empty = Collections.emptyList();
+		long time = 1000;
+
+		// A transition must be seen MIN_OCCURRENCES times before it's predicted
+		Assert.assertEquals(empty, prefetcher.requestReceived("client1", "/boot", time));
+		Assert.assertEquals(empty, prefetcher.requestReceived("client1", "/app", time + 100));
+		Assert.assertEquals(empty, prefetcher.requestReceived("client2", "/boot", time));
+		Assert.assertEquals(empty, prefetcher.requestReceived("client2", "/app", time + 100));
+		Assert.assertEquals(empty, prefetcher.requestReceived("client2", "/other", time + 200));
+		Assert.assertEquals(Arrays.asList("/app"), prefetcher.requestReceived("client3", "/boot", time));
+
+		// Requests outside of the follow-up window are not transitions
+		prefetcher.requestReceived("client3", "/other", time + LayerPrefetcher.FOLLOWUP_WINDOW + 1);
+		prefetcher.requestReceived("client4", "/boot", time);
+		prefetcher.requestReceived("client4", "/other", time + 100);
+		Assert.assertEquals(Arrays.asList("/app"), prefetcher.requestReceived("client5", "/boot", time));
+		prefetcher.requestReceived("client5", "/app", time + 100);
+		Assert.assertEquals(Arrays.asList("/app"), prefetcher.requestReceived("client6", "/boot", time));
+		prefetcher.requestReceived("client6", "/other", time + 100);
+		// most frequent first
+		Assert.assertEquals(Arrays.asList("/app", "/other"), prefetcher.requestReceived("client7", "/boot", time));
+		String stats = prefetcher.toString();
+		Assert.assertTrue(stats, stats.contains("predictions = 6, prediction hits = 1 (16%)"));
+	}
+
+	@Test
+	public void testSuccessors() {
+		LayerPrefetcher.Successors successors = new LayerPrefetcher.Successors();
+		for (int i = 0; i < LayerPrefetcher.MAX_SUCCESSORS; i++) {
+			for (int j = 0; j <= i; j++) {
+				successors.add("uri" + i);
+			}
+		}
+		Assert.assertEquals(Arrays.asList("uri3", "uri2", "uri1"), successors.predict());
+		// the least frequent entry is replaced
+		successors.add("new");
+		successors.add("new");
+		successors.add("new");
+		Assert.assertEquals(Arrays.asList("uri3", "new", "uri2"), successors.predict());
+	}
+
+	@Test
+	public void testStartPrefetch() {
+		LayerPrefetcher prefetcher = new LayerPrefetcher(100, 1);
+		Assert.assertEquals(1, prefetcher.getMaxConcurrentPrefetches());
+		Assert.assertTrue(prefetcher.startPrefetch("/app"));
+		// only one concurrent speculative build is permitted
+		Assert.assertFalse(prefetcher.startPrefetch("/other"));
+		prefetcher.prefetchDone();
+		// a layer that was built speculatively is not rebuilt until it's requested
+		Assert.assertFalse(prefetcher.startPrefetch("/app"));
+		prefetcher.requestReceived("client1", "/app", 1000);
+		Assert.assertTrue(prefetcher.startPrefetch("/app"));
+		prefetcher.prefetchDone();
+		String stats = prefetcher.toString();
+		Assert.assertTrue(stats, stats.contains("speculative builds = 2, speculative build hits = 1 (50%), speculative builds skipped = 1"));
+	}
+}
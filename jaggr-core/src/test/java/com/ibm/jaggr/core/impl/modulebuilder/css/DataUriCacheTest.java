@@ -0,0 +1,76 @@
+/*
+ * (C) Copyright IBM Corp. 2012, 2016 All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ibm.jaggr.core.impl.modulebuilder.css;
+
+import com.ibm.jaggr.core.impl.resource.FileResource;
+
+import com.google.common.io.Files;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+
+public class DataUriCacheTest {
+	private File tmpdir;
+
+	@Before
+	public void setUp() throws Exception {
+		tmpdir = Files.createTempDir();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		FileUtils.deleteDirectory(tmpdir);
+	}
+
+	@Test
+	public void testGetDataUri() throws Exception {
+		File file = new File(tmpdir, "image.png");
+		FileUtils.writeByteArrayToFile(file, new byte[]{1, 2, 3, 4});
+		file.setLastModified(1000000);
+		DataUriCache cache = new DataUriCache();
+		String dataUri = cache.getDataUri(new FileResource(file.toURI()), "image/png");
+		Assert.assertEquals("data:image/png;base64,AQIDBA==", dataUri);
+		Assert.assertEquals(1, cache.size());
+		Assert.assertSame(dataUri, cache.getDataUri(new FileResource(file.toURI()), "image/png"));
+
+		// A different content type or a modified image replaces the entry
+		Assert.assertEquals("data:image/x-png;base64,AQIDBA==", cache.getDataUri(new FileResource(file.toURI()), "image/x-png"));
+		FileUtils.writeByteArrayToFile(file, new byte[]{1, 2, 3});
+		file.setLastModified(2000000);
+		Assert.assertEquals("data:image/x-png;base64,AQID", cache.getDataUri(new FileResource(file.toURI()), "image/x-png"));
+		Assert.assertEquals(1, cache.size());
+	}
+
+	@Test
+	public void testCapacity() throws Exception {
+		DataUriCache cache = new DataUriCache(100);
+		for (int i = 0; i < 10; i++) {
+			File file = new File(tmpdir, "image" + i + ".png");
+			FileUtils.writeByteArrayToFile(file, new byte[30]);
+			cache.getDataUri(new FileResource(file.toURI()), "image/png");
+		}
+		// each data URI is 62 characters long
+		Assert.assertEquals(1, cache.size());
+		Assert.assertTrue(cache.contains(new File(tmpdir, "image9.png").toURI().toString()));
+		Assert.assertTrue(cache.newInstance() instanceof DataUriCache);
+	}
+}
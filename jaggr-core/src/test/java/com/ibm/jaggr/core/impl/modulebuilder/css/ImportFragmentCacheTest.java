@@ -0,0 +1,84 @@
+/*
+ * (C) Copyright IBM Corp. 2012, 2016 All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ibm.jaggr.core.impl.modulebuilder.css;
+
+import com.ibm.jaggr.core.IAggregator;
+import com.ibm.jaggr.core.impl.resource.FileResource;
+import com.ibm.jaggr.core.resource.IResource;
+
+import com.google.common.io.Files;
+
+import org.apache.commons.io.FileUtils;
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+
+public class ImportFragmentCacheTest {
+	private File tmpdir;
+	private IAggregator mockAggregator;
+
+	@Before
+	public void setUp() throws Exception {
+		tmpdir = Files.createTempDir();
+		mockAggregator = EasyMock.createNiceMock(IAggregator.class);
+		EasyMock.expect(mockAggregator.newResource((URI)EasyMock.anyObject())).andAnswer(new IAnswer<IResource>() {
+			public IResource answer() throws Throwable {
+				return new FileResource((URI)EasyMock.getCurrentArguments()[0]);
+			}
+		}).anyTimes();
+		EasyMock.replay(mockAggregator);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		FileUtils.deleteDirectory(tmpdir);
+	}
+
+	@Test
+	public void testGet() throws Exception {
+		File shared = new File(tmpdir, "shared.css"), image = new File(tmpdir, "image.png");
+		FileUtils.writeStringToFile(shared, ".a {}");
+		FileUtils.writeStringToFile(image, "image");
+		shared.setLastModified(1000000);
+		image.setLastModified(1000000);
+		Map<String, Long> sources = new HashMap<String, Long>();
+		sources.put(shared.toURI().toString(), shared.lastModified());
+		sources.put(image.toURI().toString(), image.lastModified());
+		ImportFragmentCache cache = new ImportFragmentCache();
+		cache.put("key", ".a {}", sources);
+		Assert.assertEquals(".a {}", cache.get("key", mockAggregator).css);
+		Assert.assertNull(cache.get("other", mockAggregator));
+
+		// Fragments survive clearing of the aggregator cache
+		ImportFragmentCache newCache = (ImportFragmentCache)cache.newInstance();
+		cache.clear();
+		Assert.assertEquals(".a {}", newCache.get("key", mockAggregator).css);
+
+		// A change to any file in the import graph invalidates the fragment
+		image.setLastModified(2000000);
+		Assert.assertNull(newCache.get("key", mockAggregator));
+		Assert.assertEquals(0, newCache.size());
+	}
+}
@@ -0,0 +1,127 @@
+/*
+ * (C) Copyright IBM Corp. 2012, 2016 All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.jaggr.core.impl.modulebuilder.i18n;
+
+import com.ibm.jaggr.core.IAggregator;
+import com.ibm.jaggr.core.impl.resource.FileResource;
+import com.ibm.jaggr.core.resource.IResource;
+
+import com.google.common.io.Files;
+
+import org.apache.commons.io.FileUtils;
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.HashSet;
+
+public class LocaleIndexTest {
+	private File tmpdir;
+	private IAggregator mockAggregator;
+
+	@Before
+	public void setUp() throws Exception {
+		tmpdir = Files.createTempDir();
+		mockAggregator = EasyMock.createNiceMock(IAggregator.class);
+		EasyMock.expect(mockAggregator.newResource(EasyMock.isA(URI.class))).andAnswer(new IAnswer<IResource>() {
+			@Override
+			public IResource answer() throws Throwable {
+				return new FileResource((URI)EasyMock.getCurrentArguments()[0]);
+			}
+		}).anyTimes();
+		EasyMock.replay(mockAggregator);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		FileUtils.deleteDirectory(tmpdir);
+	}
+
+	@Test
+	public void testGetLocales() throws Exception {
+		File nls = new File(tmpdir, "nls");
+		FileUtils.writeStringToFile(new File(nls, "foo.js"), "define({root:{}, fr:true});");
+		FileUtils.writeStringToFile(new File(nls, "fr/foo.js"), "define({});");
+		FileUtils.writeStringToFile(new File(nls, "es/bar.js"), "define({});");
+		FileUtils.writeStringToFile(new File(nls, ".svn/foo.js"), "");
+		File de = new File(nls, "de");
+		de.mkdir();
+		for (String name : new String[]{"de", "es", "fr", ""}) {
+			new File(nls, name).setLastModified(1000000);
+		}
+
+		IResource res = new FileResource(new File(nls, "foo.js").toURI());
+		LocaleIndex index = new LocaleIndex();
+		String[] locales = index.getLocales(mockAggregator, res, false);
+		Assert.assertEquals(Arrays.asList("fr"), Arrays.asList(locales));
+		Assert.assertEquals(1, index.size());
+		Assert.assertSame(locales, index.getLocales(mockAggregator, res, true));
+
+		// Add a locale.  Unvalidated lookups return the indexed locales.
+		FileUtils.writeStringToFile(new File(de, "foo.js"), "define({});");
+		de.setLastModified(2000000);
+		Assert.assertSame(locales, index.getLocales(mockAggregator, res, false));
+		Assert.assertEquals(new HashSet<String>(Arrays.asList("fr", "de")),
+				new HashSet<String>(Arrays.asList(index.getLocales(mockAggregator, res, true))));
+
+		// Remove a locale folder
+		FileUtils.deleteDirectory(new File(nls, "fr"));
+		nls.setLastModified(2000000);
+		Assert.assertEquals(Arrays.asList("de"), Arrays.asList(index.getLocales(mockAggregator, res, true)));
+
+		// Recently modified folders are walked again by validated lookups
+		nls.setLastModified(System.currentTimeMillis());
+		locales = index.getLocales(mockAggregator, res, true);
+		String[] rewalked = index.getLocales(mockAggregator, res, true);
+		Assert.assertNotSame(locales, rewalked);
+		Assert.assertSame(rewalked, index.getLocales(mockAggregator, res, false));
+
+		// New instances are empty
+		Assert.assertEquals(0, index.newInstance().size());
+	}
+
+	@Test
+	public void testGetFallbackChain() throws Exception {
+		File nls = new File(tmpdir, "nls");
+		FileUtils.writeStringToFile(new File(nls, "foo.js"), "define({root:{}});");
+		for (String locale : new String[]{"en", "en-us", "fr-ca"}) {
+			FileUtils.writeStringToFile(new File(nls, locale + "/foo.js"), "define({});");
+		}
+
+		IResource res = new FileResource(new File(nls, "foo.js").toURI());
+		LocaleIndex index = new LocaleIndex();
+		String[] locales = index.getLocales(mockAggregator, res, false);
+		String[] chain = index.getFallbackChain(res, locales, "en-US-x");
+		Assert.assertEquals(Arrays.asList("en-us", "en"), Arrays.asList(chain));
+		Assert.assertSame(chain, index.getFallbackChain(res, locales, "en-US-x"));
+		Assert.assertSame(chain, index.getFallbackChain(res, locales.clone(), "en-US-x"));
+		Assert.assertEquals(Arrays.asList("en"), Arrays.asList(index.getFallbackChain(res, locales, "en-gb")));
+		Assert.assertEquals(Arrays.asList("fr-ca"), Arrays.asList(index.getFallbackChain(res, locales, "fr-ca")));
+		Assert.assertEquals(0, index.getFallbackChain(res, locales, "fr").length);
+
+		// Chains for other available locales are not memoized
+		String[] other = new String[]{"en"};
+		chain = index.getFallbackChain(res, other, "en-us");
+		Assert.assertEquals(Arrays.asList("en"), Arrays.asList(chain));
+		Assert.assertNotSame(chain, index.getFallbackChain(res, other, "en-us"));
+	}
+}
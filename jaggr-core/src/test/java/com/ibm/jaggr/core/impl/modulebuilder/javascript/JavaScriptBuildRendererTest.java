@@ -16,6 +16,7 @@
 
 package com.ibm.jaggr.core.impl.modulebuilder.javascript;
 
+import com.ibm.jaggr.core.IAggregator;
 import com.ibm.jaggr.core.deps.ModuleDepInfo;
 import com.ibm.jaggr.core.deps.ModuleDeps;
 import com.ibm.jaggr.core.test.TestUtils;
@@ -53,8 +54,9 @@ public class JavaScriptBuildRendererTest {
 		ConcurrentListBuilder<String[]> expDeps = new ConcurrentListBuilder<String[]>();
 
 		Map<String, Object> requestAttributes = new HashMap<String, Object>();
-		HttpServletRequest mockRequest = TestUtils.createMockRequest(TestUtils.createMockAggregator(), requestAttributes);
-		EasyMock.replay(mockRequest);
+		IAggregator mockAggregator = TestUtils.createMockAggregator();
+		HttpServletRequest mockRequest = TestUtils.createMockRequest(mockAggregator, requestAttributes);
+		EasyMock.replay(mockRequest, mockAggregator);
 
 		// validate the rendered output (layer expansion)
 		requestAttributes.put(JavaScriptModuleBuilder.MODULE_EXPANDED_DEPS, expDeps);
@@ -111,8 +113,9 @@ public class JavaScriptBuildRendererTest {
 		ConcurrentListBuilder<String[]> expDeps = new ConcurrentListBuilder<String[]>();
 		Map<String, Object> requestAttributes = new HashMap<String, Object>();
 		requestAttributes.put(JavaScriptModuleBuilder.MODULE_EXPANDED_DEPS, expDeps);
-		HttpServletRequest mockRequest = TestUtils.createMockRequest(TestUtils.createMockAggregator(), requestAttributes);
-		EasyMock.replay(mockRequest);
+		IAggregator mockAggregator = TestUtils.createMockAggregator();
+		HttpServletRequest mockRequest = TestUtils.createMockRequest(mockAggregator, requestAttributes);
+		EasyMock.replay(mockRequest, mockAggregator);
 
 		// validate the rendered output (layer expansion)
 		expDeps = new ConcurrentListBuilder<String[]>();
@@ -19,6 +19,7 @@ import com.ibm.jaggr.core.IAggregator;
 import com.ibm.jaggr.core.IAggregatorExtension;
 import com.ibm.jaggr.core.IPlatformServices;
 import com.ibm.jaggr.core.IServiceRegistration;
+import com.ibm.jaggr.core.IShutdownListener;
 import com.ibm.jaggr.core.InitParams;
 import com.ibm.jaggr.core.InitParams.InitParam;
 import com.ibm.jaggr.core.cache.ICache;
@@ -88,6 +89,7 @@ public class JsxResourceConverterTest {
 		ICacheManager mockCacheManager = EasyMock.createMock(ICacheManager.class);
 		final IResourceConverterCache mockConverterCache = EasyMock.createMock(IResourceConverterCache.class);
 		final IServiceRegistration mockRegistration = EasyMock.createMock(IServiceRegistration.class);
+		final IServiceRegistration mockShutdownRegistration = EasyMock.createMock(IServiceRegistration.class);
 		final Mutable<ICacheManagerListener> listenerWrapper = new MutableObject<ICacheManagerListener>();
 		EasyMock.expect(mockAggregator.getName()).andReturn("test");
 		EasyMock.expect(mockAggregator.getPlatformServices()).andReturn(mockPlatformServices);
@@ -109,6 +111,10 @@ public class JsxResourceConverterTest {
 						return mockRegistration;
 					}
 				});
+		EasyMock.expect(mockPlatformServices.registerService(
+				EasyMock.eq(IShutdownListener.class.getName()),
+				EasyMock.isA(IShutdownListener.class),
+				EasyMock.isA(Dictionary.class))).andReturn(mockShutdownRegistration);
 		EasyMock.replay(mockAggregator, mockPlatformServices);
 		JsxResourceConverter converter = new JsxResourceConverter(new SynchronousExecutor(), 1) {
 			@Override protected IResourceConverterCache newCache(IConverter converter, String prefix, String suffix) {
@@ -277,6 +283,13 @@ public class JsxResourceConverterTest {
 		// Assert that we visited the jsx resource that was in the folder plus the synthesized
 		// .js resource
 		Assert.assertEquals(Arrays.asList(new String[]{"test.js", "test.jsx"}), visited);
+
+		// Shutting down unregisters the shutdown listener
+		mockShutdownRegistration.unregister();
+		EasyMock.expectLastCall();
+		EasyMock.replay(mockShutdownRegistration);
+		converter.shutdown(mockAggregator);
+		EasyMock.verify(mockShutdownRegistration);
 	}
 
 	static final String jsxSource = "var myDivElement = <div className=\"foo\" />;";
@@ -306,6 +319,49 @@ public class JsxResourceConverterTest {
 		Assert.assertEquals(transpiledJs, FileUtils.readFileToString(cacheFile));
 	}
 
+	@Test
+	public void testJsxConverterStore() throws Exception {
+		URI converterUri = JsxResourceConverterTest.class.getClassLoader().getResource("JSXTransformer.js").toURI();
+		File storeDir = new File(tmpdir, JsxResourceConverter.JSX_STORE_DIRNAME);
+		File cacheFile = new File(tmpdir, "test.js");
+		JsxResourceConverter.JsxConverter jsxConverter = new JsxResourceConverter.JsxConverter(1, null);
+		jsxConverter.initialize(new SynchronousExecutor(), converterUri, storeDir);
+		IResource res = new StringResource(jsxSource, new URI("test.jsx"));
+		jsxConverter.generateCacheContent(res, cacheFile);
+		Assert.assertEquals(transpiledJs, FileUtils.readFileToString(cacheFile));
+		File[] storeFiles = storeDir.listFiles();
+		Assert.assertEquals(1, storeFiles.length);
+		Assert.assertEquals(transpiledJs, FileUtils.readFileToString(storeFiles[0]));
+
+		// A new converter (e.g. following a restart) uses the stored output rather than
+		// transforming the source again
+		FileUtils.writeStringToFile(storeFiles[0], "stored");
+		jsxConverter = new JsxResourceConverter.JsxConverter(1, null);
+		jsxConverter.initialize(new SynchronousExecutor(), converterUri, storeDir);
+		jsxConverter.generateCacheContent(res, cacheFile);
+		Assert.assertEquals("stored", FileUtils.readFileToString(cacheFile));
+
+		// Changed sources and different options are transformed
+		res = new StringResource(jsxSource + "\n", new URI("test.jsx"));
+		jsxConverter.generateCacheContent(res, cacheFile);
+		Assert.assertEquals(transpiledJs, FileUtils.readFileToString(cacheFile).trim());
+		jsxConverter = new JsxResourceConverter.JsxConverter(1, "{}");
+		jsxConverter.initialize(new SynchronousExecutor(), converterUri, storeDir);
+		res = new StringResource(jsxSource, new URI("test.jsx"));
+		jsxConverter.generateCacheContent(res, cacheFile);
+		Assert.assertEquals(transpiledJs, FileUtils.readFileToString(cacheFile));
+		Assert.assertEquals(3, storeDir.listFiles().length);
+
+		// Expired store files are deleted when the converter is initialized
+		long expired = System.currentTimeMillis() - (JsxResourceConverter.STORE_EXPIRY_DAYS + 1) * 24L * 60 * 60 * 1000;
+		for (File file : storeDir.listFiles()) {
+			file.setLastModified(expired);
+		}
+		jsxConverter = new JsxResourceConverter.JsxConverter(1, null);
+		jsxConverter.initialize(new SynchronousExecutor(), converterUri, storeDir);
+		Assert.assertEquals(0, storeDir.listFiles().length);
+	}
+
 	static class TestConverterAnswer implements IAnswer<IResource>{
 
 		public IResource answer() throws Throwable {
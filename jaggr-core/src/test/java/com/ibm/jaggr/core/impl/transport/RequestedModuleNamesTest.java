@@ -384,6 +384,58 @@ public class RequestedModuleNamesTest {
 
 	}
 
+	@Test
+	public void testUnfoldEncodedModules() throws Exception {
+		IAggregator mockAggregator = TestUtils.createMockAggregator();
+		HttpServletRequest request = TestUtils.createMockRequest(mockAggregator);
+		EasyMock.replay(request, mockAggregator);
+		RequestedModuleNames requestedNames = new RequestedModuleNames(request, null, null);
+		String[] encoded = new String[] {
+				"(foo!(bar!0*baz!(<|xxx>!2*yyy!1))*dir!3)",
+				"("+RequestedModuleNames.PLUGIN_PREFIXES_PROP_NAME+"!(combo/text!0*abc!1)*foo!(bar!0*baz!(xxx.txt!1-0*yyy.txt!2-1)))",
+				"(foo!(bar!0*baz!(xxx.txt!1-0*yyy.txt!2-1))*"+RequestedModuleNames.PLUGIN_PREFIXES_PROP_NAME+"!(combo/text!0*abc!1))",
+				"(foo!(bar!0*baz!(xxx.txt!1-combo/text*yyy.txt!2-abc))*/ignore/!(a!4))",
+				"()"
+		};
+		// results must match those produced by unfolding the decoded JSON
+		for (String str : encoded) {
+			Map<Integer, String> expected = new TreeMap<Integer, String>();
+			requestedNames.unfoldModules(requestedNames.decodeModules(str), expected);
+			Map<Integer, String> paths = new TreeMap<Integer, String>();
+			requestedNames.unfoldEncodedModules(str, paths);
+			assertEquals(str, expected, paths);
+		}
+		Map<Integer, String> paths = new TreeMap<Integer, String>();
+		requestedNames.unfoldEncodedModules(encoded[1], paths);
+		Assert.assertArrayEquals(new String[] {"foo/bar",  "combo/text!foo/baz/xxx.txt", "abc!foo/baz/yyy.txt"}, paths.values().toArray());
+
+		// malformed lists
+		for (String str : new String[]{"foo!0", "(foo!0", "(foo!0))", "(foo!(bar!0)*)", "(foo!!0)", "(!0)", "(foo!\"0\")"}) {
+			try {
+				requestedNames.unfoldEncodedModules(str, new TreeMap<Integer, String>());
+				fail("Expected exception for " + str);
+			} catch (BadRequestException ex) {
+			}
+		}
+
+		// malformed positions and prefix ordinals
+		String prefixes = RequestedModuleNames.PLUGIN_PREFIXES_PROP_NAME;
+		for (String str : new String[]{
+				"(foo!x)",
+				"(foo!-1)",
+				"("+prefixes+"!(combo/text!x)*foo!0-0)",
+				"("+prefixes+"!(combo/text!1)*foo!0-0)",
+				"("+prefixes+"!(combo/text!0*abc!0)*foo!0-0)",
+				"("+prefixes+"!(combo/text!0)*foo!0-x)",
+				"("+prefixes+"!(combo/text!0)*foo!0-1)"}) {
+			try {
+				requestedNames.unfoldEncodedModules(str, new TreeMap<Integer, String>());
+				fail("Expected exception for " + str);
+			} catch (BadRequestException ex) {
+			}
+		}
+	}
+
 	@Test
 	public void testDecodeModuleIds() throws Exception {
 		final String[] idList = new String[0x10005];
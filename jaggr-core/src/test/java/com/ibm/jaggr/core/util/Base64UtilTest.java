@@ -0,0 +1,55 @@
+/*
+ * (C) Copyright IBM Corp. 2012, 2016 All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.jaggr.core.util;
+
+import org.apache.commons.codec.binary.Base64;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.util.Random;
+
+public class Base64UtilTest {
+
+	@Test
+	public void testEncode() throws Exception {
+		Random random = new Random(0);
+		for (int size : new int[]{0, 1, 2, 3, 4, 5, 3071, 3072, 3073, 10000}) {
+			byte[] bytes = new byte[size];
+			random.nextBytes(bytes);
+			String expected = new String(Base64.encodeBase64(bytes), "UTF-8");
+			StringBuilder sb = new StringBuilder();
+			Assert.assertEquals(size, Base64Util.encode(new ByteArrayInputStream(bytes), sb));
+			Assert.assertEquals(expected, sb.toString());
+			Assert.assertEquals(expected.length(), Base64Util.encodedLength(size));
+		}
+	}
+
+	@Test
+	public void testEncodeShortReads() throws Exception {
+		byte[] bytes = "short reads from the input stream".getBytes("UTF-8");
+		// Input stream that returns at most 2 bytes per read
+		ByteArrayInputStream in = new ByteArrayInputStream(bytes) {
+			@Override
+			public synchronized int read(byte[] b, int off, int len) {
+				return super.read(b, off, Math.min(len, 2));
+			}
+		};
+		StringBuilder sb = new StringBuilder();
+		Base64Util.encode(in, sb);
+		Assert.assertEquals(new String(Base64.encodeBase64(bytes), "UTF-8"), sb.toString());
+	}
+}
@@ -26,7 +26,9 @@ import com.ibm.jaggr.core.util.Features;
 
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 public class BooleanTermTest {
@@ -163,6 +165,86 @@ public class BooleanTermTest {
 		assertEquals(BooleanTerm.FALSE, BooleanTerm.FALSE.resolveWith(features));
 	}
 
+	@Test
+	public void testResolveWithMasks() {
+		// Compare the mask implementation with the set based algorithm for every
+		// combination of values for the features, including undefined
+		String[] names = new String[]{"A", "B", "C", "rw1", "rw70", "rw140"};
+		// Space out the bit positions of the rw features so that the masks span several words
+		for (int i = 3; i < names.length; i++) {
+			TermMask.indexOf(names[i]);
+			for (int j = 0; j < 70; j++) {
+				TermMask.indexOf(names[i] + "_" + j);
+			}
+		}
+		List<BooleanTerm> terms = new ArrayList<BooleanTerm>();
+		for (String str : new String[]{"A", "!A", "A*B", "A*!B*C", "!A*!B*!C", "A*rw70", "!rw1*rw140", "B*!rw70*!rw140"}) {
+			terms.add(new BooleanTerm(str));
+		}
+		int combinations = 1;
+		for (int i = 0; i < names.length; i++) {
+			combinations *= 3;
+		}
+		for (int n = 0; n < combinations; n++) {
+			Features features = new Features();
+			for (int i = 0, v = n; i < names.length; i++, v /= 3) {
+				if (v % 3 != 2) {
+					features.put(names[i], v % 3 == 1);
+				}
+			}
+			for (BooleanTerm term : terms) {
+				for (boolean coerce : new boolean[]{false, true}) {
+					BooleanTerm expected = resolveWithSets(term, features, coerce);
+					BooleanTerm result = term.resolveWith(features, coerce);
+					assertEquals(term + " " + features + " " + coerce, expected, result);
+					assertEquals(expected.isTrue(), result.isTrue());
+					assertEquals(expected.isFalse(), result.isFalse());
+					if (!result.isTrue() && !result.isFalse()) {
+						assertEquals(TermMask.of(result), result.getMask());
+					}
+				}
+			}
+		}
+
+		// The cached feature mask is discarded when the features are modified
+		Features features = new Features();
+		features.put("A", true);
+		assertEquals(new BooleanTerm("B"), new BooleanTerm("A*B").resolveWith(features));
+		features.put("B", false);
+		assertEquals(BooleanTerm.FALSE, new BooleanTerm("A*B").resolveWith(features));
+		Features copy = new Features(features);
+		copy.remove("B");
+		assertEquals(new BooleanTerm("B"), new BooleanTerm("A*B").resolveWith(copy));
+		assertEquals(BooleanTerm.FALSE, new BooleanTerm("A*B").resolveWith(features));
+
+		// Features that aren't in any term yet are picked up once a term uses them
+		features = new Features();
+		features.put("rwNew", true);
+		assertEquals(new BooleanTerm("A"), new BooleanTerm("A").resolveWith(features));
+		assertEquals(BooleanTerm.TRUE, new BooleanTerm("rwNew").resolveWith(features));
+		assertEquals(BooleanTerm.FALSE, new BooleanTerm("!rwNew").resolveWith(features));
+	}
+
+	/*
+	 * The set based implementation of BooleanTerm.resolveWith
+	 */
+	private static BooleanTerm resolveWithSets(BooleanTerm term, Features features, boolean coerceUndefinedToFalse) {
+		if (term.isEmpty()) {
+			return term;
+		}
+		Set<BooleanVar> result = new HashSet<BooleanVar>();
+		for (BooleanVar var : term) {
+			if (features.contains(var.name) || coerceUndefinedToFalse) {
+				if (features.isFeature(var.name) != var.state) {
+					return BooleanTerm.FALSE;
+				}
+			} else {
+				result.add(var);
+			}
+		}
+		return result.isEmpty() ? BooleanTerm.TRUE : new BooleanTerm(result);
+	}
+
 	@Test
 	public void testAndWith() {
 		assertEquals(BooleanTerm.TRUE, BooleanTerm.TRUE.andWith(BooleanTerm.TRUE));
@@ -181,4 +263,42 @@ public class BooleanTermTest {
 		assertEquals(BooleanTerm.FALSE, new BooleanTerm("!A").andWith(new BooleanTerm("A*B")));
 		assertEquals(BooleanTerm.FALSE, new BooleanTerm("A*B").andWith(new BooleanTerm("!A*!B")));
 	}
+
+	@Test
+	public void testContainsAll() {
+		assertTrue(new BooleanTerm("A*B").containsAll(new BooleanTerm("A")));
+		assertTrue(new BooleanTerm("A*!B").containsAll(new BooleanTerm("!B")));
+		assertTrue(new BooleanTerm("A*B").containsAll(new BooleanTerm("B*A")));
+		assertFalse(new BooleanTerm("A").containsAll(new BooleanTerm("A*B")));
+		assertFalse(new BooleanTerm("A*B").containsAll(new BooleanTerm("!A")));
+		assertTrue(new BooleanTerm("A*B").containsAll(BooleanTerm.TRUE));
+		assertFalse(BooleanTerm.TRUE.containsAll(new BooleanTerm("A")));
+
+		// non-term collections use the HashSet implementation
+		Set<BooleanVar> vars = new HashSet<BooleanVar>();
+		vars.add(new BooleanVar("A", true));
+		assertTrue(new BooleanTerm("A*B").containsAll(vars));
+		vars.add(new BooleanVar("C", false));
+		assertFalse(new BooleanTerm("A*B").containsAll(vars));
+	}
+
+	@Test
+	public void testManyVars() {
+		// Exercise masks that span more than one word
+		StringBuffer sb1 = new StringBuffer(), sb2 = new StringBuffer();
+		for (int i = 0; i < 150; i++) {
+			sb1.append(i > 0 ? "*" : "").append("v").append(i);
+			if (i % 2 == 0) {
+				sb2.append(i > 0 ? "*" : "").append("v").append(i);
+			}
+		}
+		BooleanTerm t1 = new BooleanTerm(sb1.toString());
+		BooleanTerm t2 = new BooleanTerm(sb2.toString());
+		assertTrue(t1.containsAll(t2));
+		assertFalse(t2.containsAll(t1));
+		assertEquals(t1, t1.andWith(t2));
+		assertEquals(t1, t2.andWith(t1));
+		assertEquals(BooleanTerm.FALSE, t2.andWith(new BooleanTerm("!v148")));
+		assertEquals(new BooleanTerm(sb2.toString() + "*!v149"), t2.andWith(new BooleanTerm("!v149")));
+	}
 }
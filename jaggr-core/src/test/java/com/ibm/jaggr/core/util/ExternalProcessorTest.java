@@ -0,0 +1,96 @@
+/*
+ * (C) Copyright IBM Corp. 2012, 2016 All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.jaggr.core.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+public class ExternalProcessorTest {
+
+	@Test
+	public void testProcess() throws Exception {
+		ExternalProcessor processor = new ExternalProcessor("test", Arrays.asList("tr", "a-z", "A-Z"), 2, 10, TimeUnit.SECONDS);
+		try {
+			Assert.assertEquals(".FOO{COLOR:RED}", processor.process(".foo{color:red}", null));
+			Assert.assertTrue(processor.check());
+			Assert.assertTrue(processor.isAvailable());
+		} finally {
+			processor.shutdown();
+		}
+	}
+
+	@Test
+	public void testWorkingDirectory() throws Exception {
+		File dir = new File(System.getProperty("java.io.tmpdir")).getCanonicalFile();
+		ExternalProcessor processor = new ExternalProcessor("test", Arrays.asList("pwd"), 1, 10, TimeUnit.SECONDS);
+		try {
+			Assert.assertEquals(dir.getPath(), processor.process("", dir).trim());
+		} finally {
+			processor.shutdown();
+		}
+	}
+
+	@Test
+	public void testErrorStatus() throws Exception {
+		ExternalProcessor processor = new ExternalProcessor("test", Arrays.asList("sh", "-c", "echo oops >&2; exit 1"), 1, 10, TimeUnit.SECONDS);
+		try {
+			processor.process("foo", null);
+			Assert.fail("Expected exception");
+		} catch (IOException e) {
+			Assert.assertTrue(e.getMessage().contains("oops"));
+			// errors don't disable the processor
+			Assert.assertTrue(processor.isAvailable());
+		}
+		// but failed health checks do
+		Assert.assertFalse(processor.check());
+		Assert.assertFalse(processor.isAvailable());
+		processor.shutdown();
+	}
+
+	@Test
+	public void testStartFailure() throws Exception {
+		ExternalProcessor processor = new ExternalProcessor("test", Arrays.asList("no-such-command-xyz"), 1, 10, TimeUnit.SECONDS);
+		processor.setRetryMillis(200);
+		try {
+			processor.process("foo", null);
+			Assert.fail("Expected exception");
+		} catch (IOException e) {
+			Assert.assertFalse(processor.isAvailable());
+		}
+		Thread.sleep(300);
+		Assert.assertTrue(processor.isAvailable());
+		processor.shutdown();
+	}
+
+	@Test
+	public void testTimeout() throws Exception {
+		ExternalProcessor processor = new ExternalProcessor("test", Arrays.asList("sleep", "10"), 1, 200, TimeUnit.MILLISECONDS);
+		long start = System.currentTimeMillis();
+		try {
+			processor.process("foo", null);
+			Assert.fail("Expected exception");
+		} catch (IOException e) {
+			Assert.assertTrue(System.currentTimeMillis() - start < 5000);
+			Assert.assertFalse(processor.isAvailable());
+		}
+		processor.shutdown();
+	}
+}
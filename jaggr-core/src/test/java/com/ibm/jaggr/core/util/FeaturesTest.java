@@ -0,0 +1,106 @@
+/*
+ * (C) Copyright IBM Corp. 2012, 2016 All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ibm.jaggr.core.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+public class FeaturesTest {
+
+	private static final FeatureIndex index = new FeatureIndex(Arrays.asList("a", "b", "c"));
+
+	@Test
+	public void testIndexedFeatures() {
+		Features features = new Features(index);
+		features.put("a", true);
+		features.put(1, false);
+		features.put("foo", true);
+		assertTrue(features.contains("a") && features.isFeature("a"));
+		assertTrue(features.contains("b") && !features.isFeature("b"));
+		assertFalse(features.contains("c") || features.isFeature("c"));
+		assertTrue(features.contains("foo") && features.isFeature("foo"));
+		assertEquals(new HashSet<String>(Arrays.asList("a", "b", "foo")), features.featureNames());
+		assertArrayEquals(new String[]{"a", "b", "foo"}, features.sortedFeatureNames());
+
+		features.remove("a");
+		features.remove("foo");
+		assertFalse(features.contains("a") || features.isFeature("a"));
+		assertEquals(new HashSet<String>(Arrays.asList("b")), features.featureNames());
+		try {
+			features.put(3, true);
+			fail("Expected exception");
+		} catch (IndexOutOfBoundsException ex) {
+		}
+	}
+
+	@Test
+	public void testCopyOnWrite() {
+		Features defaults = new Features();
+		defaults.put("a", true);
+		defaults.put("foo", false);
+
+		// copies using a different index are re-indexed
+		Features features = new Features(defaults, index);
+		features.put("b", true);
+		assertEquals(new HashSet<String>(Arrays.asList("a", "b", "foo")), features.featureNames());
+		assertFalse(defaults.contains("b"));
+
+		// copies using the same index share storage until modified
+		Features copy = new Features(features);
+		assertEquals(features, copy);
+		copy.put("a", false);
+		copy.put("bar", true);
+		assertTrue(features.isFeature("a"));
+		assertFalse(features.contains("bar"));
+		assertFalse(copy.isFeature("a"));
+		features.remove("b");
+		assertTrue(copy.isFeature("b"));
+		assertFalse(features.contains("b"));
+
+		Features unmodifiable = copy.unmodifiableFeatures();
+		copy.remove("bar");
+		assertTrue(unmodifiable.contains("bar"));
+	}
+
+	@Test
+	public void testEquals() {
+		Features indexed = new Features(index);
+		Features unindexed = new Features();
+		for (Features features : new Features[]{indexed, unindexed}) {
+			features.put("a", true);
+			features.put("c", false);
+			features.put("foo", true);
+		}
+		assertEquals(unindexed, indexed);
+		assertEquals(unindexed.hashCode(), indexed.hashCode());
+		indexed.put("c", true);
+		assertFalse(unindexed.equals(indexed));
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testDuplicateIndexNames() {
+		new FeatureIndex(Arrays.asList("a", "b", "a"));
+	}
+}
@@ -0,0 +1,98 @@
+/*
+ * (C) Copyright IBM Corp. 2012, 2016 All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.jaggr.core.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class FormulaCacheTest {
+
+	@Before
+	public void setUp() {
+		FormulaCache.getInstance().clear();
+	}
+
+	@After
+	public void tearDown() {
+		FormulaCache.getInstance().clear();
+	}
+
+	@Test
+	public void testSharedAcrossFormulas() {
+		FormulaCache cache = FormulaCache.getInstance();
+		BooleanFormula expected = new BooleanFormula("B+(A*C)+(!A*!C)");
+		BooleanFormula f1 = new BooleanFormula("(!A*!B*!C)+(!A*B)+(A*B*!C)+(A*C)").simplify();
+		assertEquals(expected, f1);
+		assertEquals(0, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+		assertEquals(1, cache.size());
+
+		// Same terms, different order and a different formula object
+		BooleanFormula f2 = new BooleanFormula("(A*C)+(A*B*!C)+(!A*B)+(!B*!C*!A)").simplify();
+		assertEquals(expected, f2);
+		assertNotSame(f1, f2);
+		assertEquals(1, cache.getHitCount());
+		assertEquals(0.5, cache.getHitRate(), 0);
+
+		// Modifying a result must not affect the cached value
+		f2.add(new BooleanTerm("D"));
+		assertFalse(expected.equals(f2));
+		assertEquals(expected, new BooleanFormula("(!A*!B*!C)+(!A*B)+(A*B*!C)+(A*C)").simplify());
+		assertEquals(2, cache.getHitCount());
+
+		// False terms are ignored when computing the key
+		BooleanFormula f3 = new BooleanFormula("(!A*!B*!C)+(!A*B)+(A*B*!C)+(A*C)");
+		f3.add(BooleanTerm.FALSE);
+		assertEquals(expected, f3.simplify());
+		assertEquals(3, cache.getHitCount());
+	}
+
+	@Test
+	public void testBounded() {
+		FormulaCache cache = new FormulaCache(2);
+		cache.put(FormulaCache.keyFor(new BooleanFormula("A+B")), new BooleanFormula("A+B"));
+		cache.put(FormulaCache.keyFor(new BooleanFormula("A+C")), new BooleanFormula("A+C"));
+		cache.put(FormulaCache.keyFor(new BooleanFormula("A+D")), new BooleanFormula("A+D"));
+		assertEquals(2, cache.size());
+		assertEquals(1, cache.getEvictionCount());
+		assertNull(cache.get(FormulaCache.keyFor(new BooleanFormula("A+B"))));
+		assertEquals(new BooleanFormula("A+D"), cache.get(FormulaCache.keyFor(new BooleanFormula("A+D"))));
+
+		cache.clear();
+		assertEquals(0, cache.size());
+		assertEquals(0, cache.getHitCount());
+		assertEquals(0, cache.getMissCount());
+	}
+
+	@Test
+	public void testEnsureCapacity() {
+		FormulaCache cache = new FormulaCache(FormulaCache.DEFAULT_CAPACITY);
+		// The first requested capacity replaces the default, even if smaller
+		cache.ensureCapacity(100);
+		assertEquals(100, cache.getCapacity());
+		cache.ensureCapacity(500);
+		assertEquals(500, cache.getCapacity());
+		// A smaller capacity requested by another aggregator doesn't shrink the cache
+		cache.ensureCapacity(200);
+		assertEquals(500, cache.getCapacity());
+	}
+}
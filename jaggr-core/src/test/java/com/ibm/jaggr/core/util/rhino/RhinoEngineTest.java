@@ -0,0 +1,93 @@
+/*
+ * (C) Copyright IBM Corp. 2012, 2016 All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.jaggr.core.util.rhino;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.EvaluatorException;
+import org.mozilla.javascript.Script;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
+
+public class RhinoEngineTest {
+
+	@After
+	public void tearDown() {
+		System.clearProperty(RhinoEngine.OPTIMIZATIONLEVEL_PROPNAME);
+		RhinoEngine.clear();
+	}
+
+	@Test
+	public void testGetOptimizationLevel() {
+		Assert.assertEquals(RhinoEngine.DEFAULT_OPTIMIZATION_LEVEL, RhinoEngine.getOptimizationLevel());
+		System.setProperty(RhinoEngine.OPTIMIZATIONLEVEL_PROPNAME, "-1");
+		Assert.assertEquals(-1, RhinoEngine.getOptimizationLevel());
+		System.setProperty(RhinoEngine.OPTIMIZATIONLEVEL_PROPNAME, "42");
+		Assert.assertEquals(RhinoEngine.DEFAULT_OPTIMIZATION_LEVEL, RhinoEngine.getOptimizationLevel());
+		System.setProperty(RhinoEngine.OPTIMIZATIONLEVEL_PROPNAME, "foo");
+		Assert.assertEquals(RhinoEngine.DEFAULT_OPTIMIZATION_LEVEL, RhinoEngine.getOptimizationLevel());
+	}
+
+	@Test
+	public void testCompile() {
+		Context cx = Context.enter();
+		try {
+			cx.setOptimizationLevel(0);
+			Script script = RhinoEngine.compile(cx, "x + 1", "test");
+			Assert.assertEquals(0, cx.getOptimizationLevel());
+			Assert.assertSame(script, RhinoEngine.compile(cx, "x + 1", "test"));
+			Assert.assertNotSame(script, RhinoEngine.compile(cx, "x + 2", "test"));
+			Assert.assertNotSame(script, RhinoEngine.compile(cx, "x + 1", "test2"));
+			Assert.assertEquals(3, RhinoEngine.size());
+
+			// The compiled script can be executed in different scopes
+			Scriptable scope1 = cx.newObject(RhinoEngine.getSharedScope());
+			scope1.setPrototype(RhinoEngine.getSharedScope());
+			scope1.setParentScope(null);
+			scope1.put("x", scope1, 1);
+			Scriptable scope2 = cx.newObject(RhinoEngine.getSharedScope());
+			scope2.setPrototype(RhinoEngine.getSharedScope());
+			scope2.setParentScope(null);
+			scope2.put("x", scope2, 2);
+			Assert.assertEquals(2.0, Context.toNumber(script.exec(cx, scope1)), 0);
+			Assert.assertEquals(3.0, Context.toNumber(script.exec(cx, scope2)), 0);
+
+			RhinoEngine.clear();
+			Assert.assertEquals(0, RhinoEngine.size());
+			Assert.assertNotSame(script, RhinoEngine.compile(cx, "x + 1", "test"));
+		} finally {
+			Context.exit();
+		}
+	}
+
+	@Test
+	public void testSharedScope() {
+		Scriptable scope = RhinoEngine.getSharedScope();
+		Assert.assertSame(scope, RhinoEngine.getSharedScope());
+		Assert.assertTrue(((ScriptableObject)scope).isSealed());
+		Context cx = Context.enter();
+		try {
+			cx.evaluateString(scope, "Array.prototype.foo = 1;", "test", 1, null);
+			Assert.fail("Expected exception");
+		} catch (EvaluatorException e) {
+			// expected
+		} finally {
+			Context.exit();
+		}
+	}
+}
@@ -0,0 +1,119 @@
+/*
+ * (C) Copyright IBM Corp. 2012, 2016 All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ibm.jaggr.core.util.rhino;
+
+import com.ibm.jaggr.core.test.SynchronousExecutor;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ScopePoolTest {
+
+	private static class Factory implements Callable<Integer> {
+		final AtomicInteger count = new AtomicInteger();
+		@Override
+		public Integer call() throws Exception {
+			return count.incrementAndGet();
+		}
+	}
+
+	@Test
+	public void testPrewarm() throws Exception {
+		Factory factory = new Factory();
+		ScopePool<Integer> pool = new ScopePool<Integer>("test", 2, 4, factory, new SynchronousExecutor());
+		pool.prewarm();
+		Assert.assertEquals(2, pool.size());
+		Assert.assertEquals(2, pool.getAvailable().size());
+		Integer scope = pool.acquire(1, TimeUnit.SECONDS);
+		Assert.assertEquals(1, pool.inUse());
+		pool.release(scope);
+		Assert.assertEquals(0, pool.inUse());
+		Assert.assertEquals(2, factory.count.get());
+	}
+
+	@Test
+	public void testGrowAndShrink() throws Exception {
+		Factory factory = new Factory();
+		ScopePool<Integer> pool = new ScopePool<Integer>("test", 1, 2, factory, new SynchronousExecutor());
+		pool.setGrowWaitMillis(10);
+		pool.prewarm();
+		Integer scope1 = pool.acquire(1, TimeUnit.SECONDS);
+		// waiting caller grows the pool
+		Integer scope2 = pool.acquire(1, TimeUnit.SECONDS);
+		Assert.assertEquals(2, pool.size());
+		// can't grow beyond the maximum size
+		try {
+			pool.acquire(50, TimeUnit.MILLISECONDS);
+			Assert.fail();
+		} catch (TimeoutException expected) {
+		}
+		Assert.assertEquals(2, pool.size());
+		Assert.assertTrue(pool.toString().startsWith("test: size = 2 (min 1, max 2), in use = 2, peak in use = 2, acquires = 3, waits = 2, timeouts = 1"));
+
+		// idle pool shrinks to the minimum size
+		pool.setIdleMillis(-1);
+		pool.release(scope1);
+		pool.release(scope2);
+		Assert.assertEquals(1, pool.size());
+		Assert.assertEquals(1, pool.getAvailable().size());
+	}
+
+	@Test
+	public void testAsyncCreation() throws Exception {
+		ExecutorService es = Executors.newFixedThreadPool(2);
+		try {
+			ScopePool<Integer> pool = new ScopePool<Integer>("test", 2, 2, new Callable<Integer>() {
+				@Override
+				public Integer call() throws Exception {
+					Thread.sleep(100);
+					return 1;
+				}
+			}, es);
+			pool.prewarm();
+			// prewarm doesn't wait for the scopes to be created
+			Assert.assertEquals(0, pool.getAvailable().size());
+			Assert.assertNotNull(pool.acquire(5, TimeUnit.SECONDS));
+		} finally {
+			es.shutdown();
+		}
+	}
+
+	@Test
+	public void testCreateError() throws Exception {
+		ScopePool<Integer> pool = new ScopePool<Integer>("test", 1, 1, new Callable<Integer>() {
+			@Override
+			public Integer call() throws Exception {
+				throw new IllegalStateException("failed");
+			}
+		}, new SynchronousExecutor());
+		pool.setGrowWaitMillis(10);
+		pool.prewarm();
+		Assert.assertEquals(0, pool.size());
+		try {
+			pool.acquire(1, TimeUnit.SECONDS);
+			Assert.fail();
+		} catch (RuntimeException e) {
+			Assert.assertEquals("failed", e.getCause().getMessage());
+		}
+	}
+}
@@ -20,6 +20,7 @@ import com.ibm.jaggr.core.IAggregator;
 import com.ibm.jaggr.core.ProcessingDependenciesException;
 import com.ibm.jaggr.core.deps.IDependencies;
 import com.ibm.jaggr.core.deps.ModuleDeps;
+import com.ibm.jaggr.core.impl.AbstractAggregatorImpl;
 import com.ibm.jaggr.core.impl.Messages;
 import com.ibm.jaggr.core.options.IOptions;
 import com.ibm.jaggr.core.util.ConsoleService;
@@ -438,6 +439,9 @@ public class AggregatorCommandProvider implements CommandProvider {
 			Pattern pattern = filter != null ? Pattern.compile(filter) : null;
 			try {
 				aggregator.getCacheManager().dumpCache(writer, pattern);
+				if (aggregator instanceof AbstractAggregatorImpl) {
+					((AbstractAggregatorImpl)aggregator).dumpRequestStatistics(writer);
+				}
 				writer.close();
 				if (outputFile != null) {
 					sb.append(
@@ -29,6 +29,7 @@ import com.ibm.jaggr.core.executors.IExecutors;
 import com.ibm.jaggr.core.impl.AbstractAggregatorImpl;
 import com.ibm.jaggr.core.impl.AggregatorExtension;
 import com.ibm.jaggr.core.impl.options.OptionsImpl;
+import com.ibm.jaggr.core.layer.ILayerPrefetchHandler;
 import com.ibm.jaggr.core.modulebuilder.IModuleBuilderExtensionPoint;
 import com.ibm.jaggr.core.options.IOptions;
 import com.ibm.jaggr.core.resource.IResourceConverterExtensionPoint;
@@ -95,6 +96,7 @@ import java.util.logging.Logger;
 
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletException;
+import javax.servlet.http.Cookie;
 
 /**
  * Implementation for IAggregator and HttpServlet interfaces.
@@ -107,7 +109,7 @@ import javax.servlet.ServletException;
  * attempts will be made to serialize instances of this class.
  */
 @SuppressWarnings("serial")
-public class AggregatorImpl extends AbstractAggregatorImpl implements IExecutableExtension {
+public class AggregatorImpl extends AbstractAggregatorImpl implements IExecutableExtension, ILayerPrefetchHandler {
 	private static final String sourceClass = AggregatorImpl.class.getName();
 	private static final Logger log = Logger.getLogger(sourceClass);
 
@@ -852,5 +854,17 @@ public class AggregatorImpl extends AbstractAggregatorImpl implements IExecutabl
 		return Integer.toString(resp.getStatus());
 	}
 
+	/* (non-Javadoc)
+	 * @see com.ibm.jaggr.core.layer.ILayerPrefetchHandler#prefetchLayer(java.lang.String, java.util.Map, javax.servlet.http.Cookie[])
+	 */
+	@Override
+	public void prefetchLayer(String requestUri, Map<String, String> headers, Cookie[] cookies) throws IOException, ServletException {
+		ConsoleHttpServletRequest req = new ConsoleHttpServletRequest(getServletConfig().getServletContext(), requestUri, headers, cookies);
+		OutputStream nulOutputStream = new OutputStream() {
+			@Override public void write(int b) throws IOException {}
+		};
+		doGet(req, new ConsoleHttpServletResponse(nulOutputStream));
+	}
+
 }
 
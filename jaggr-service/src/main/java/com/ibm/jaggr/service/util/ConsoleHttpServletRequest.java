@@ -58,6 +58,7 @@ public class ConsoleHttpServletRequest implements HttpServletRequest {
 	private Map<String, Object> requestAttributes = new HashMap<String, Object>();
 	private Map<String, String[]> requestParams = new HashMap<String, String[]>();
 	private Map<String, String> headers = new HashMap<String, String>();
+	private final Cookie[] cookies;
 	private String charEncoding = null;
 	private final ServletContext context;
 	private final String queryString;
@@ -71,7 +72,25 @@ public class ConsoleHttpServletRequest implements HttpServletRequest {
 	 * @throws IOException
 	 */
 	public ConsoleHttpServletRequest(ServletContext context, String requestUrl) throws IOException{
+		this(context, requestUrl, null, null);
+	}
+
+	/**
+	 * Constructs a request object from the specified servlet context, request url, request
+	 * headers and cookies.  The content of the request URL preceding the query args is ignored.
+	 *
+	 * @param context the servlet context
+	 * @param requestUrl the request url
+	 * @param headers the request headers, or null
+	 * @param cookies the request cookies, or null
+	 * @throws IOException
+	 */
+	public ConsoleHttpServletRequest(ServletContext context, String requestUrl, Map<String, String> headers, Cookie[] cookies) throws IOException{
 		this.context = context;
+		this.cookies = cookies != null ? cookies : new Cookie[]{};
+		if (headers != null) {
+			this.headers.putAll(headers);
+		}
 
 		int idx = requestUrl.indexOf("?"); //$NON-NLS-1$
 		this.queryString = idx == -1 ? requestUrl : requestUrl.substring(idx+1);
@@ -295,7 +314,7 @@ public class ConsoleHttpServletRequest implements HttpServletRequest {
 
 	@Override
 	public Cookie[] getCookies() {
-		return new Cookie[]{};
+		return cookies;
 	}
 
 	@Override